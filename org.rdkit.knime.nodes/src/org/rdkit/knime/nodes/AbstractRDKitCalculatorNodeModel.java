@@ -54,6 +54,7 @@ import java.util.List;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataCellTypeConverter;
+import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.container.ColumnRearranger;
 import org.knime.core.node.BufferedDataTable;
@@ -66,6 +67,9 @@ import org.knime.core.node.streamable.MergeOperator;
 import org.knime.core.node.streamable.OutputPortRole;
 import org.knime.core.node.streamable.PartitionInfo;
 import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableFunction;
 import org.knime.core.node.streamable.StreamableOperator;
 import org.knime.core.node.streamable.StreamableOperatorInternals;
 import org.rdkit.knime.internals.ContextStatistics;
@@ -216,9 +220,20 @@ public abstract class AbstractRDKitCalculatorNodeModel extends AbstractRDKitNode
    protected void enableDistributionAndStreaming() {
       InputPortRole[] inRoles = new InputPortRole[getNrInPorts()];
       Arrays.fill(inRoles, InputPortRole.DISTRIBUTED_STREAMABLE);
+      enableDistributionAndStreaming(inRoles);
+   }
+   
+   /**
+    * Enables programmatically distribution and streaming with specific roles for the input ports, 
+    * e.g. to read an additional input table completely in pre-processing. All output ports are
+    * distributed. The calculation itself happens always on the first input port.
+    * 
+    * @param arrInputPortRoles Roles for input ports. The number must match the number of input ports.
+    */
+   protected void enableDistributionAndStreaming(final InputPortRole[] arrInputPortRoles) {
       OutputPortRole[] outRoles = new OutputPortRole[getNrOutPorts()];
       Arrays.fill(outRoles, OutputPortRole.DISTRIBUTED); 
-      setPortRoles(inRoles, outRoles);
+      setPortRoles(arrInputPortRoles, outRoles);
       m_bDistributionAndStreamingEnabled = true;
    }
    
@@ -246,13 +261,18 @@ public abstract class AbstractRDKitCalculatorNodeModel extends AbstractRDKitNode
             tableSpec[i] = (inSpecs[i] instanceof DataTableSpec ? (DataTableSpec)inSpecs[i] : null);
          }
          
-         // TODO: We need some preprocessing here for to chain 
+         // Auto-conversion of input rows needs to happen before the real work of the node,
+         // because if both is combined in one column rearranger object a source column, which
+         // is marked for removal, is not being auto-converted. Hence, we chain two functions:
          // 1. Auto-conversion of input rows
          // 2. Perform the real work of the node including the option to remove the source column
-         // Currently, if both is combined in one column rearranger object a source column, which
-         // is marked for removal is not being auto-converted.
-         // Alternatively, this could also be changed in KNIME so that it auto-converts also columns,
-         // which are marked for removal.
+         final ColumnRearranger rearrangerConversion = 
+               createAutoConversionRearranger(tableSpec[0], createInputDataInfos(0, tableSpec[0]));
+         if (rearrangerConversion != null) {
+            final DataTableSpec specConverted = rearrangerConversion.createSpec();
+            return new ChainedStreamableFunction(rearrangerConversion.createStreamableFunction(), specConverted,
+                  createColumnRearranger(0, specConverted).createStreamableFunction(emptyInternals));
+         }
          
          return createColumnRearranger(0, tableSpec[0]).createStreamableFunction(emptyInternals);
       }
@@ -269,6 +289,10 @@ public abstract class AbstractRDKitCalculatorNodeModel extends AbstractRDKitNode
     */
    @Override
    public MergeOperator createMergeOperator() {
+      if (!m_bDistributionAndStreamingEnabled) {
+         return super.createMergeOperator();
+      }
+
       return new MergeOperator() { 
          @Override
          public StreamableOperatorInternals mergeFinal(StreamableOperatorInternals[] operators) {
@@ -288,12 +312,17 @@ public abstract class AbstractRDKitCalculatorNodeModel extends AbstractRDKitNode
    }
 
    /**
-    * Cleans up intermediate results.
+    * Cleans up intermediate results. Nodes, which enabled row streaming instead, 
+    * finish their execution already in the streamable operator.
     * {@inheritDoc}
     */
    @Override
    public void finishStreamableExecution(StreamableOperatorInternals internals, ExecutionContext exec,
          PortOutput[] output) throws Exception {
+      if (!m_bDistributionAndStreamingEnabled) {
+         return;
+      }
+
       try {
          if (internals instanceof StreamingOperatorInternalsBag) {
             WarningConsolidator warnings = (WarningConsolidator)((StreamingOperatorInternalsBag)internals).getItem("warnings");
@@ -446,6 +475,9 @@ public abstract class AbstractRDKitCalculatorNodeModel extends AbstractRDKitNode
 		// Inform all factories about input data to be processed
 		for (final AbstractRDKitCellFactory factory : arrOutputFactories) {
 			factory.setInputDataInfos(arrInputDataInfo);
+			if (factory.allowsParallelProcessing()) {
+				factory.setAllowParallelProcessing(true, getMaxParallelWorkers());
+			}
 			rearranger.append(factory);
 		}
 
@@ -464,4 +496,39 @@ public abstract class AbstractRDKitCalculatorNodeModel extends AbstractRDKitNode
 		// Generate the output table and return it.
 		return new BufferedDataTable[] { exec.createColumnRearrangeTable(inData[0], rearranger, exec) };
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * This implementation calculates the new cells of every streamed row with the column
+	 * rearranger of output port 0. It is used by nodes, which enabled row streaming, because
+	 * they depend on pre-processing results that must not be calculated per partition.
+	 */
+	@Override
+	protected void processing(final RowInput input, final RowOutput[] arrOutputs,
+			final InputDataInfo[] arrInputDataInfo, final long lRowCount, final ExecutionContext exec)
+					throws Exception {
+		final StreamableFunction function = createColumnRearranger(0, input.getDataTableSpec())
+				.createStreamableFunction();
+		long lRowIndex = 0;
+		DataRow row;
+
+		function.init(exec);
+		try {
+			while ((row = input.poll()) != null) {
+				arrOutputs[0].push(function.compute(row));
+
+				// Every 20 iterations report progress and check for cancel
+				if (lRowIndex % 20 == 0) {
+					AbstractRDKitNodeModel.reportProgress(exec, lRowIndex, lRowCount, row, " - Calculating");
+				}
+
+				lRowIndex++;
+			}
+		}
+		finally {
+			function.finish();
+		}
+
+		exec.setProgress(1.0d, "Finished Calculating");
+	}
 }
@@ -56,9 +56,13 @@ import org.knime.core.data.DataRow;
 import org.knime.core.data.DataType;
 import org.knime.core.data.container.AbstractCellFactory;
 import org.knime.core.data.container.BlobSupportDataRow;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
 import org.knime.core.node.NodeLogger;
 import org.rdkit.knime.internals.ContextStatistics;
+import org.rdkit.knime.nodes.preferences.RDKitPerformancePreferencePage;
 import org.rdkit.knime.util.InputDataInfo;
+import org.rdkit.knime.util.RDKitCleanupScope;
 import org.rdkit.knime.util.RDKitObjectCleaner;
 import org.rdkit.knime.util.WarningConsolidator;
 
@@ -126,6 +130,9 @@ public abstract class AbstractRDKitCellFactory extends AbstractCellFactory {
 	 */
 	private ContextStatistics m_contextStatistics = null;
 
+	/** The client of the RDKit compute pool of the current execution. Resolved once on first use. */
+	private volatile RDKitComputePool.Client m_computeClient = null;
+
 	//
 	// Constructor
 	//
@@ -183,17 +190,39 @@ public abstract class AbstractRDKitCellFactory extends AbstractCellFactory {
 	 * Call this method to allow for this factory parallel processing.
 	 * This method exists only, because the method {@link #setParallelProcessing(boolean)}
 	 * does not make the parallel processing flag available anymore
-	 * and cannot be overridden. This method calls directly
-	 * {@link #setParallelProcessing(boolean)}.
+	 * and cannot be overridden. The number of threads is taken from
+	 * the RDKit performance preferences.
 	 * 
 	 * @param value Set to true to allow parallel processing.
 	 * 
 	 * @see #allowsParallelProcessing()
-	 * @see #setParallelProcessing(boolean)
+	 * @see #setAllowParallelProcessing(boolean, int)
 	 */
 	public void setAllowParallelProcessing(final boolean value) {
+		setAllowParallelProcessing(value, RDKitPerformancePreferencePage.getMaxParallelWorkers());
+	}
+
+	/**
+	 * Call this method to allow for this factory parallel processing with
+	 * a specific maximal number of threads, e.g. when a node overrides the
+	 * thread count of the preferences. This method calls directly
+	 * {@link #setParallelProcessing(boolean, int, int)}.
+	 * 
+	 * @param value Set to true to allow parallel processing.
+	 * @param iMaxParallelWorkers Maximal number of threads. If 0 or less,
+	 * 		the KNIME default will be used.
+	 * 
+	 * @see #allowsParallelProcessing()
+	 * @see #setParallelProcessing(boolean, int, int)
+	 */
+	public void setAllowParallelProcessing(final boolean value, final int iMaxParallelWorkers) {
 		m_bAllowParallelProcessing = value;
-		super.setParallelProcessing(value);
+		if (value && iMaxParallelWorkers > 0) {
+			super.setParallelProcessing(true, iMaxParallelWorkers, 10 * iMaxParallelWorkers);
+		}
+		else {
+			super.setParallelProcessing(value);
+		}
 	}
 
 	/**
@@ -282,6 +311,9 @@ public abstract class AbstractRDKitCellFactory extends AbstractCellFactory {
 		DataCell[] arrOutputCells = null;
 		
 		final long iUniqueWaveId = m_cleaner.createUniqueCleanupWaveId();
+		final RDKitCleanupScope scope = RDKitCleanupScope.open(iUniqueWaveId);
+		final RDKitComputePool pool = RDKitComputePool.getInstance();
+		final boolean bSlot = pool.acquire(getComputeClient());
 
 		try {
 		   // Count input rows for later consolidation of warnings
@@ -290,7 +322,7 @@ public abstract class AbstractRDKitCellFactory extends AbstractCellFactory {
 		      m_contextStatistics.countItem(contextToCount.getId());
 		   }
 		   
-			arrOutputCells = process(m_arrInputDataInfo, row, iUniqueWaveId);
+			arrOutputCells = process(m_arrInputDataInfo, row, scope);
 
 			// Check for null cells and replace them by missing cells
 			for (int i = 0; i < arrOutputCells.length; i++) {
@@ -330,12 +362,63 @@ public abstract class AbstractRDKitCellFactory extends AbstractCellFactory {
 			}
 		}
 		finally {
+			scope.close();
 			m_cleaner.cleanupMarkedObjects(iUniqueWaveId);
+			if (bSlot) {
+				pool.release();
+			}
 		}
 
 		return (arrOutputCells == null ? createEmptyCells(getColumnSpecs().length) : arrOutputCells);
 	}
 
+	/**
+	 * Gets called before the rows of a batch are processed one by one in the same thread
+	 * with {@link #getCells(DataRow)}. Factories can override it to calculate results for
+	 * all rows of the batch at once, e.g. in external processes, and pick them up when the
+	 * rows get processed. The default implementation does nothing.
+	 * 
+	 * @param arrRows Rows of the batch in processing order. Must not be null.
+	 * @param exec Execution monitor to check for cancellation. Must not be null.
+	 * 
+	 * @throws CanceledExecutionException Thrown, if the execution was cancelled.
+	 * 
+	 * @see #finishBatch()
+	 */
+	public void prepareBatch(final DataRow[] arrRows, final ExecutionMonitor exec)
+			throws CanceledExecutionException {
+		// Nothing to prepare by default
+	}
+
+	/**
+	 * Gets called in the same thread after all rows of a batch were processed, also if
+	 * preparing or processing the batch failed. Factories that override
+	 * {@link #prepareBatch(DataRow[], ExecutionMonitor)} free the prepared results here.
+	 * The default implementation does nothing.
+	 */
+	public void finishBatch() {
+		// Nothing to free by default
+	}
+
+	/**
+	 * Returns the client of the RDKit compute pool, which is used to limit concurrent
+	 * calculations of this factory. This is the client of the node model, if the
+	 * cleaner of this factory is an RDKit node model. It is resolved only once per
+	 * execution and not for every row. 
+	 * 
+	 * @return Compute pool client or null, if calculations shall not be limited.
+	 */
+	RDKitComputePool.Client getComputeClient() {
+		RDKitComputePool.Client client = m_computeClient;
+
+		if ((client == null || client.isClosed()) && m_cleaner instanceof AbstractRDKitNodeModel) {
+			client = ((AbstractRDKitNodeModel)m_cleaner).getComputeClient();
+			m_computeClient = client;
+		}
+
+		return client;
+	}
+
 	/**
 	 * Creates an array of n empty cells using the Missing Cell instance of KNIME.
 	 * 
@@ -411,4 +494,27 @@ public abstract class AbstractRDKitCellFactory extends AbstractCellFactory {
 	 * @throws Exception Thrown, if processing failed.
 	 */
 	public abstract DataCell[] process(InputDataInfo[] arrInputDataInfos, DataRow row, long iUniqueWaveId) throws Exception;
+
+	/**
+	 * Creates new data cells to be merged with the specified data row, if it is not null.
+	 * This method gets called from {@link #getCells(DataRow)} with a cleanup scope, which
+	 * is open while processing the row. RDKit objects can be registered directly in that scope
+	 * by calling {@link RDKitCleanupScope#add(Object)}. They will be freed in reverse order of
+	 * registration at the end of this call. Objects marked for cleanup with the wave id
+	 * of the scope ({@link RDKitCleanupScope#getWaveId()}) end up in the same scope.
+	 * The default implementation calls {@link #process(InputDataInfo[], DataRow, long)}
+	 * with the wave id of the scope.
+	 * 
+	 * @param arrInputDataInfos Array of all relevant input data.
+	 * @param row Complete data row of input table to be merged. Can be null, if merge is not required.
+	 * @param scope The cleanup scope of the current row. Must not be null.
+	 * 
+	 * @return The new data cells to be appended to the output table.
+	 * 
+	 * @throws Exception Thrown, if processing failed.
+	 */
+	public DataCell[] process(final InputDataInfo[] arrInputDataInfos, final DataRow row, 
+			final RDKitCleanupScope scope) throws Exception {
+		return process(arrInputDataInfos, row, scope.getWaveId());
+	}
 }
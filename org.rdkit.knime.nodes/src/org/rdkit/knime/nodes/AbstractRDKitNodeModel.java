@@ -52,18 +52,25 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataCellTypeConverter;
@@ -72,7 +79,6 @@ import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTable;
 import org.knime.core.data.DataTableSpec;
-import org.knime.core.data.DataType;
 import org.knime.core.data.MissingCell;
 import org.knime.core.data.RowIterator;
 import org.knime.core.data.RowKey;
@@ -82,7 +88,6 @@ import org.knime.core.data.container.CellFactory;
 import org.knime.core.data.container.CloseableRowIterator;
 import org.knime.core.data.container.ColumnRearranger;
 import org.knime.core.data.def.DefaultRow;
-import org.knime.core.data.def.IntCell;
 import org.knime.core.data.def.StringCell;
 import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
@@ -97,17 +102,34 @@ import org.knime.core.node.NodeSettings;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.node.defaultnodesettings.SettingsModel;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
 import org.knime.core.node.port.PortType;
 import org.knime.core.node.property.hilite.HiLiteHandler;
+import org.knime.core.node.streamable.BufferedDataTableRowOutput;
+import org.knime.core.node.streamable.DataTableRowInput;
 import org.knime.core.node.streamable.InputPortRole;
 import org.knime.core.node.streamable.OutputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortObjectInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableOperator;
 import org.knime.core.node.tableview.TableContentModel;
 import org.knime.core.util.MultiThreadWorker;
 import org.rdkit.knime.RDKitTypesPluginActivator;
 import org.rdkit.knime.nodes.AbstractRDKitCellFactory.RowFailurePolicy;
+import org.rdkit.knime.nodes.preferences.RDKitPerformancePreferencePage;
+import org.rdkit.knime.types.AvalonFingerprintWorkerPool;
+import org.rdkit.knime.types.RDKitMolDecodeCache;
+import org.rdkit.knime.types.RDKitTypeConverter;
 import org.rdkit.knime.util.FilterCondition;
 import org.rdkit.knime.util.InputDataInfo;
+import org.rdkit.knime.util.RDKitCleanupScope;
 import org.rdkit.knime.util.RDKitObjectCleaner;
+import org.rdkit.knime.util.RDKitObjectDeleter;
 import org.rdkit.knime.util.SettingsUtils;
 import org.rdkit.knime.util.SplitCondition;
 import org.rdkit.knime.util.WarningConsolidator;
@@ -132,6 +154,10 @@ import org.rdkit.knime.util.WarningConsolidator;
  * objects you may define a so-called "wave" identifier, and then just call
  * {@link #cleanupMarkedObjects(int)} with this wave identifier as parameter. This
  * will keep all other flagged objects alive.
+ * If a wave is handled by an open {@link RDKitCleanupScope} of the current thread
+ * (as it is the case for all rows processed by an {@link AbstractRDKitCellFactory}),
+ * objects marked for that wave are registered directly in the scope, which avoids
+ * any shared bookkeeping.
  *
  * @author Manuel Schwarze
  */
@@ -141,7 +167,13 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 	// Constants
 	//
 
-	/** Time in milliseconds we will wait until we cleanup RDKit Objects, which are marked for delayed cleanup. */
+	/**
+	 * Time in milliseconds we will wait until we cleanup RDKit Objects, which are marked for delayed cleanup.
+	 * 
+	 * @deprecated The delay is now configured in the performance preferences and applied by the
+	 * 		{@link RDKitQuarantineManager}. This constant is the default value only.
+	 */
+	@Deprecated
 	public static final long RDKIT_OBJECT_CLEANUP_DELAY_FOR_QUARANTINE = 60000; // 60 seconds
 
 	/** The logger instance. */
@@ -226,6 +258,9 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 	 * Timestamp when execution started.
 	 */
 	private long m_lExecutionStartTs;
+
+	/** The client of the RDKit compute pool used while executing. Created lazily. */
+	private volatile RDKitComputePool.Client m_computeClient;
    
    /** Defines input port roles to express distribution and streaming capabilities, if set. */
    private InputPortRole[] m_arrInputPortRoles = null;
@@ -233,6 +268,9 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
    /** Defines output port roles to express distribution and streaming capabilities, if set. */
    private OutputPortRole[] m_arrOutputPortRoles = null;   
 
+   /** Flag to tell, if the node processes rows of the first input table in streaming mode. */
+   private boolean m_bRowStreamingEnabled = false;
+
 	//
 	// Constructors
 	//
@@ -423,6 +461,22 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 	 * @return The same object that was passed in. Null, if null was passed in.
 	 */
 	public <T extends Object> T markForCleanup(final T rdkitObject, final long wave, final boolean bRemoveFromOtherWave) {
+		if (rdkitObject != null) {
+			if (bRemoveFromOtherWave) {
+				RDKitCleanupScope.removeFromOpenScopes(rdkitObject);
+			}
+
+			// Objects of a wave that is handled by an open cleanup scope of the current thread
+			// are registered directly in that scope
+			final RDKitCleanupScope scope = RDKitCleanupScope.getOpenScope(wave);
+			if (scope != null) {
+				if (bRemoveFromOtherWave) {
+					m_rdkitCleanupTracker.removeFromOtherWaves(rdkitObject, wave);
+				}
+				return scope.add(rdkitObject);
+			}
+		}
+
 		return m_rdkitCleanupTracker.markForCleanup(rdkitObject, wave, bRemoveFromOtherWave);
 	}
 
@@ -433,6 +487,7 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 	@Override
 	public void cleanupMarkedObjects() {
 		m_rdkitCleanupTracker.cleanupMarkedObjects();
+		RDKitMolDecodeCache.releaseEvicted();
 	}
 
 	/**
@@ -443,7 +498,14 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 	 */
 	@Override
 	public void cleanupMarkedObjects(final long wave) {
+		final RDKitCleanupScope scope = RDKitCleanupScope.getOpenScope(wave);
+		if (scope != null) {
+			scope.cleanup();
+		}
 		m_rdkitCleanupTracker.cleanupMarkedObjects(wave);
+
+		// Read-only molecules of the row are not needed anymore
+		RDKitMolDecodeCache.releaseEvicted();
 	}
 
 	/**
@@ -642,6 +704,20 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
       return m_arrOutputPortRoles == null ? super.getOutputPortRoles() : m_arrOutputPortRoles;
    }
    
+   /**
+    * This implementation returns an operator that processes the rows of the first input table
+    * with {@link #processing(RowInput, RowOutput[], InputDataInfo[], long, ExecutionContext)}, 
+    * if row streaming was enabled by calling {@link #enableRowStreaming()}. 
+    * Otherwise it returns the default from KNIME.
+    * {@inheritDoc}
+    */
+   @Override
+   public StreamableOperator createStreamableOperator(final PartitionInfo partitionInfo, 
+         final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+      return m_bRowStreamingEnabled ? createStreamableOperatorForRows(inSpecs) : 
+         super.createStreamableOperator(partitionInfo, inSpecs);
+   }
+   
 	//
 	// Protected Methods
 	//
@@ -669,6 +745,147 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
       m_arrInputPortRoles = arrInputPortRoles;
       m_arrOutputPortRoles = arrOutputPortRoles;
    }
+   
+   /**
+    * Enables streaming of the rows of the first input table. Other input tables
+    * are not streamed. All output tables are streamed. Call this method in the constructor of
+    * nodes, which implement {@link #processing(RowInput, RowOutput[], InputDataInfo[], long, ExecutionContext)}
+    * and which do not depend on the data of the first input table in their pre-processing and do 
+    * not perform any post-processing. 
+    * The rows are not distributed over several partitions, because execution state like
+    * encountered failures, warnings and RDKit objects to be cleaned up is held once per node model.
+    */
+   protected void enableRowStreaming() {
+      final InputPortRole[] arrInputPortRoles = new InputPortRole[getNrInPorts()];
+      Arrays.fill(arrInputPortRoles, InputPortRole.NONDISTRIBUTED_NONSTREAMABLE);
+      if (arrInputPortRoles.length > 0) {
+         arrInputPortRoles[0] = InputPortRole.NONDISTRIBUTED_STREAMABLE;
+      }
+      final OutputPortRole[] arrOutputPortRoles = new OutputPortRole[getNrOutPorts()];
+      Arrays.fill(arrOutputPortRoles, OutputPortRole.NONDISTRIBUTED);
+      setPortRoles(arrInputPortRoles, arrOutputPortRoles);
+      m_bRowStreamingEnabled = true;
+   }
+
+   /**
+    * Calls {@link #preProcessing(BufferedDataTable[], InputDataInfo[][], ExecutionContext)} when
+    * the node runs in streaming mode. The tables of all input ports, which are not streamed, are passed
+    * in after auto-converting them, if necessary. The table of the first input port, which is
+    * streamed, is null, as well as tables of unconnected optional input ports.
+    *
+    * @param inputs All inputs of the streamable operator. Must not be null.
+    * @param specFirst The table specification of the (converted) rows of the first input port.
+    * @param exec The execution context to be used for pre-processing. Track the progress from 0..1.
+    *
+    * @throws Exception Thrown, if pre-processing fails.
+    */
+   protected void preProcessingForStreaming(final PortInput[] inputs, final DataTableSpec specFirst,
+         final ExecutionContext exec) throws Exception {
+      final BufferedDataTable[] arrTables = new BufferedDataTable[inputs.length];
+      for (int i = 1; i < inputs.length; i++) {
+         if (inputs[i] instanceof PortObjectInput) {
+            final PortObject portObject = ((PortObjectInput)inputs[i]).getPortObject();
+            if (portObject instanceof BufferedDataTable) {
+               arrTables[i] = (BufferedDataTable)portObject;
+            }
+         }
+      }
+
+      final DataTableSpec[] arrSpecs = getInputTableSpecs(arrTables);
+      arrSpecs[0] = specFirst;
+      final BufferedDataTable[] arrConvertedTables = convertInputTables(arrTables, 
+            createInputDataInfos(arrSpecs), exec.createSubExecutionContext(0.5d));
+      final DataTableSpec[] arrConvertedSpecs = getInputTableSpecs(arrConvertedTables);
+      arrConvertedSpecs[0] = specFirst;
+      preProcessing(arrConvertedTables, createInputDataInfos(arrConvertedSpecs), exec.createSubExecutionContext(0.5d));
+   }
+
+   /**
+    * Creates the streamable operator for nodes, which enabled row streaming. It acts as director
+    * like {@link #execute(BufferedDataTable[], ExecutionContext)}: It auto-converts input columns 
+    * while streaming, performs pre-processing with {@link #preProcessingForStreaming(PortInput[], DataTableSpec, ExecutionContext)},
+    * processes all rows with 
+    * {@link #processing(RowInput, RowOutput[], InputDataInfo[], long, ExecutionContext)}, closes
+    * all outputs, generates warnings and cleans up RDKit resources at the end. 
+    * Post-processing is not supported.
+    *
+    * @param inSpecs The specifications of all input ports. Must not be null.
+    *
+    * @return Streamable operator. Never null.
+    *
+    * @throws InvalidSettingsException Thrown, if the settings are inconsistent with the input specs.
+    */
+   protected StreamableOperator createStreamableOperatorForRows(final PortObjectSpec[] inSpecs) 
+         throws InvalidSettingsException {
+      final DataTableSpec inSpec = (DataTableSpec)inSpecs[0];
+      final ColumnRearranger rearrangerConversion = createAutoConversionRearranger(inSpec, 
+            createInputDataInfos(0, inSpec));
+      final DataTableSpec specConverted = (rearrangerConversion == null ? 
+            inSpec : rearrangerConversion.createSpec());
+      final InputDataInfo[] arrInputDataInfo = createInputDataInfos(0, specConverted);
+      final AtomicLong lRowCount = new AtomicLong();
+
+      // Processes the (converted) rows of the first input port and closes all outputs
+      final StreamableOperator operatorRows = new StreamableOperator() {
+         @Override
+         public void runFinal(final PortInput[] inputs, final PortOutput[] outputs, 
+               final ExecutionContext exec) throws Exception {
+            final RowOutput[] arrOutputs = new RowOutput[outputs.length];
+            for (int i = 0; i < outputs.length; i++) {
+               arrOutputs[i] = (RowOutput)outputs[i];
+            }
+            processing(new CountingRowInput((RowInput)inputs[0], lRowCount), arrOutputs, 
+                  arrInputDataInfo, -1, exec);
+            for (final RowOutput output : arrOutputs) {
+               output.close();
+            }
+         }
+      };
+
+      return new StreamableOperator() {
+         @Override
+         public void runFinal(final PortInput[] inputs, final PortOutput[] outputs, 
+               final ExecutionContext exec) throws Exception {
+            m_lExecutionStartTs = System.currentTimeMillis();
+            RDKitMolDecodeCache.setCapacity(RDKitPerformancePreferencePage.getDecodeCacheSize());
+            AvalonFingerprintWorkerPool.setProcessCount(RDKitPerformancePreferencePage.getAvalonWorkerProcesses());
+            m_excEncountered = null;
+            lRowCount.set(0);
+
+            try {
+               // We use a nested try / catch block here as a trick to know about the
+               // exception in the finally block
+               try {
+                  // Reset warning and error tracker
+                  getWarningConsolidator().clear();
+
+                  // Pre-processing without the data of the streamed input table
+                  final double dPercPre = correctPercentage(getPreProcessingPercentage());
+                  preProcessingForStreaming(inputs, specConverted, exec.createSubExecutionContext(dPercPre));
+
+                  // Core-processing, auto-converting input columns on the fly if required
+                  final ExecutionContext execCore = exec.createSubExecutionContext(1.0d - dPercPre);
+                  if (rearrangerConversion == null) {
+                     operatorRows.runFinal(inputs, outputs, execCore);
+                  }
+                  else {
+                     ChainedStreamableFunction.runChained(rearrangerConversion.createStreamableFunction(),
+                           specConverted, operatorRows, inputs, outputs, execCore);
+                  }
+
+                  // Show a warning, if errors were encountered
+                  generateWarnings(createWarningContextOccurrencesMapForStreaming(lRowCount.get()));
+               }
+               catch (final Throwable exc) {
+                  m_excEncountered = exc;
+               }
+            }
+            finally {
+               finishExecution();
+            }
+         }
+      };
+   }
 
 
 	/**
@@ -799,6 +1016,8 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 	 */
 	@Override
 	protected void reset() {
+		closeComputeClient();
+
 		if (this instanceof BufferedDataTableHolder) {
 			// Reset input models to have empty content and no hiliting handler attached
 			for (int i = 0; i < m_arrInContModel.length; i++) {
@@ -872,6 +1091,8 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 	   }
 	   
 		m_lExecutionStartTs = System.currentTimeMillis();
+		RDKitMolDecodeCache.setCapacity(RDKitPerformancePreferencePage.getDecodeCacheSize());
+		AvalonFingerprintWorkerPool.setProcessCount(RDKitPerformancePreferencePage.getAvalonWorkerProcesses());
 		BufferedDataTable[] arrConvertedTables = null;
 		BufferedDataTable[] arrResultTables = null;
 		m_excEncountered = null;
@@ -984,7 +1205,10 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 	 * This method gets called from the method {@link #execute(BufferedDataTable[], ExecutionContext)}, before
 	 * the pre-processing starts. It converts adaptable column types into appropriate Adapter Cells and delivers
 	 * tables that should be used for further processing as if they were the original input tables. The only
-	 * changes are column types.
+	 * changes are column types. All columns of a table are converted together in a single pass by one
+	 * cell factory, which runs in parallel with the thread count of this node and competes for slots
+	 * of the RDKit compute pool with the same client as the node calculations. Only the converted
+	 * columns are stored, all other columns are taken over from the input table.
 	 *
 	 * @param inData The input tables of the node. Can be null.
 	 * @param arrInputDataInfo Information about all columns of the input tables.
@@ -1010,63 +1234,10 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 				arrConvertedTables[iTableIndex] = inData[iTableIndex];
 
 				// Conversion makes only sense, if we have an input table and input columns defined
-				if (inData[iTableIndex] != null && arrInputDataInfo != null && arrInputDataInfo.length > 0 &&
-						arrInputDataInfo[iTableIndex] != null && arrInputDataInfo[iTableIndex].length > 0) {
-
-					// Check, if an input column is compatible with an acceptable class that needs conversion
-					final List<InputDataInfo> listConversionColumns = new ArrayList<InputDataInfo>(5);
-
-					for (final InputDataInfo inputInfo : arrInputDataInfo[iTableIndex]) {
-						if (inputInfo != null && inputInfo.needsConversion()) {
-							listConversionColumns.add(inputInfo);
-						}
-					}
-
-					// Setup a column rearranger and run it for the input table, but only if changes are necessary
-					if (!listConversionColumns.isEmpty()) {
-						final int[] arrColumnIndex = new int[listConversionColumns.size()];
-						final DataTableSpec tableSpec = inData[iTableIndex].getDataTableSpec();
-						final ColumnRearranger rearranger = new ColumnRearranger(tableSpec);
-						int iCount = 0;
-						for (final InputDataInfo inputDataInfo : listConversionColumns) {
-							final DataCellTypeConverter converter = inputDataInfo.getConverter();
-							final int iColumnIndex = inputDataInfo.getColumnIndex();
-							arrColumnIndex[iCount++] = iColumnIndex;
-							rearranger.ensureColumnIsConverted(converter, iColumnIndex);
-						}
-
-						// Part 1 of workaround for a bug in ColumnRearranger - without adding new cells we get an
-						// error from internal hashmap: Illegal initial capacity: -2147483648
-						// Additionally, we use this factory to check the success of the auto conversion
-						// and to generate warnings in case that conversion failed.
-						rearranger.append(new AbstractCellFactory(true, new DataColumnSpecCreator(
-								SettingsUtils.makeColumnNameUnique("EmptyCells", tableSpec, null), IntCell.TYPE).createSpec()) {
-							private final DataCell[] EMPTY_CELLS = new DataCell[] { DataType.getMissingCell() };
-							@Override
-							public DataCell[] getCells(final DataRow row) {
-								if (row != null) {
-									for (int i = 0; i < arrColumnIndex.length; i++) {
-										final DataCell cellConverted = row.getCell(arrColumnIndex[i]);
-										if (cellConverted instanceof MissingCell) {
-											final String strError = ((MissingCell)cellConverted).getError();
-											if (strError != null) {
-												try {
-													generateAutoConversionError(listConversionColumns.get(i), 
-													      normalizeAutoConversionErrorMessage(strError));
-												}
-												catch (final Exception exc) {
-													LOGGER.error(exc);
-													// Ignore it as this would lead to a deadlock in KNIME's rearranger handling
-												}
-											}
-										}
-									}
-								}
-
-								return EMPTY_CELLS;
-							}
-						});
-
+				if (inData[iTableIndex] != null && arrInputDataInfo != null && arrInputDataInfo.length > 0) {
+					final ColumnRearranger rearranger = createAutoConversionRearranger(
+							inData[iTableIndex].getDataTableSpec(), arrInputDataInfo[iTableIndex]);
+					if (rearranger != null) {
 						mapColumnRearrangers.put(iTableIndex, rearranger);
 					}
 				}
@@ -1075,19 +1246,12 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 			final int iCountTablesToBeConverted = mapColumnRearrangers.size();
 			int iCount = 1;
 			for (int iTableIndex = 0; iTableIndex < inData.length; iTableIndex++) {
-				exec.setMessage("Converting input tables for processing (" + iCount + " of " + iCountTablesToBeConverted + ") ...");
 				final ColumnRearranger rearranger = mapColumnRearrangers.get(iTableIndex);
 				if (rearranger != null) {
+					exec.setMessage("Converting input tables for processing (" + iCount + " of " + iCountTablesToBeConverted + ") ...");
 					iCount++;
 					arrConvertedTables[iTableIndex] = exec.createColumnRearrangeTable(inData[iTableIndex],
-							rearranger, exec.createSubProgress(1.0d / iCountTablesToBeConverted / 2.0d));
-
-					// Part 2 of workaround from above: We need to remove the last column again
-					final DataTableSpec tableSpec = arrConvertedTables[iTableIndex].getDataTableSpec();
-					final ColumnRearranger rearrangerWorkaround = new ColumnRearranger(tableSpec);
-					rearrangerWorkaround.remove(tableSpec.getNumColumns() - 1);
-					arrConvertedTables[iTableIndex] = exec.createColumnRearrangeTable(arrConvertedTables[iTableIndex],
-							rearrangerWorkaround, exec.createSubProgress(1.0d / iCountTablesToBeConverted / 2.0d));
+							rearranger, exec.createSubProgress(1.0d / iCountTablesToBeConverted));
 				}
 			}
 		}
@@ -1096,6 +1260,47 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 		return arrConvertedTables;
 	}
 
+	/**
+	 * Creates a column rearranger that converts all columns of the specified table that need
+	 * to be converted into Adapter Cells in a single pass. The conversion runs in parallel
+	 * with the thread count of this node. Failed conversions result in missing cells
+	 * and are reported through {@link #generateAutoConversionError(InputDataInfo, String)}.
+	 * The spec of the rearranger is the same as delivered by
+	 * {@link #convertInputTables(DataTableSpec[], InputDataInfo[][])}. This rearranger can
+	 * also be used for streaming.
+	 *
+	 * @param inSpec Specification of the table to be converted. Must not be null.
+	 * @param arrInputDataInfo Information about all columns of the table. Can be null.
+	 *
+	 * @return Column rearranger or null, if no conversion is necessary.
+	 */
+	protected ColumnRearranger createAutoConversionRearranger(final DataTableSpec inSpec,
+			final InputDataInfo[] arrInputDataInfo) {
+		ColumnRearranger rearranger = null;
+
+		if (arrInputDataInfo != null) {
+			// Check, if an input column is compatible with an acceptable class that needs conversion
+			final List<InputDataInfo> listConversionColumns = new ArrayList<InputDataInfo>(5);
+
+			for (final InputDataInfo inputInfo : arrInputDataInfo) {
+				if (inputInfo != null && inputInfo.needsConversion()) {
+					listConversionColumns.add(inputInfo);
+				}
+			}
+
+			// Replace all columns to be converted by the results of a single conversion factory,
+			// but only if changes are necessary
+			if (!listConversionColumns.isEmpty()) {
+				final AutoConversionCellFactory factory = new AutoConversionCellFactory(inSpec,
+						listConversionColumns.toArray(new InputDataInfo[listConversionColumns.size()]));
+				rearranger = new ColumnRearranger(inSpec);
+				rearranger.replace(factory, factory.getColumnIndexes());
+			}
+		}
+
+		return rearranger;
+	}
+
 	/**
 	 * This method gets called when the auto conversion of a SMILES or SDF cell fails and no RDKit cell
 	 * could be generated. Overwriting this method gives a node the opportunity to handle the warning
@@ -1177,6 +1382,29 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 	protected abstract BufferedDataTable[] processing(final BufferedDataTable[] inData, InputDataInfo[][] arrInputDataInfo,
 			final ExecutionContext exec) throws Exception;
 
+	/**
+	 * This method gets called when the node runs in streaming mode, if the node enabled this
+	 * with {@link #enableRowStreaming()}. It processes all rows of the first input table, which
+	 * are delivered by the passed in row input, and pushes the results to the row outputs.
+	 * Nodes may call it also from {@link #processing(BufferedDataTable[], InputDataInfo[][], ExecutionContext)}
+	 * wrapping the input table and the output containers, so that both modes share the same logic.
+	 * Outputs do not need to be closed, this is done by the caller.
+	 * The default implementation throws an UnsupportedOperationException.
+	 *
+	 * @param input Delivers the rows of the first input table. Must not be null.
+	 * @param arrOutputs Receives the result rows for all output ports. Must not be null.
+	 * @param arrInputDataInfo Information about all columns of the first input table.
+	 * @param lRowCount Number of input rows, if known, or -1. Used for progress reporting only.
+	 * @param exec The execution context to report progress and to check for cancellation.
+	 *
+	 * @throws Exception Thrown, if processing fails.
+	 */
+	protected void processing(final RowInput input, final RowOutput[] arrOutputs,
+			final InputDataInfo[] arrInputDataInfo, final long lRowCount, final ExecutionContext exec)
+					throws Exception {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support streaming.");
+	}
+
 	/**
 	 * This method gets called from the method {@link #execute(BufferedDataTable[], ExecutionContext)}, after
 	 * the row-by-row processing has ended a new result table set has been created.
@@ -1221,6 +1449,8 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 	 * Nodes which override this method must call super to avoid memory leaks.
 	 */
 	protected void finishExecution() throws Exception {
+		closeComputeClient();
+
 		// Free all RDKit resources - but carefully consider different scenarios
 		try {
 			// 1. Everything went well - no exception was thrown. Everything should be ready for cleanup
@@ -1238,6 +1468,9 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 			LOGGER.debug("Cleanup up failure stacktrace", excCleanup);
 		}
 
+		// Free read-only molecules, which worker threads still hold in their decode caches
+		RDKitMolDecodeCache.invalidateAll();
+
 		// Cleanup all intermediate results
 		try {
 			cleanupIntermediateResults();
@@ -1335,6 +1568,26 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 		return mapContextOccurrences;
 	}
 
+	/**
+	 * Creates a map with information about occurrences of certain contexts like
+	 * {@link #createWarningContextOccurrencesMap(BufferedDataTable[], InputDataInfo[][], BufferedDataTable[])},
+	 * but after rows were processed in streaming mode, where the input tables are not available.
+	 * The default implementation delivers a map, which contains only the ROW_CONTEXT of
+	 * the consolidator with the number of streamed rows. Override this method for differing behavior.
+	 *
+	 * @param lRowCount Number of rows of the first input port, which were processed.
+	 *
+	 * @return Map with number of occurrences of different contexts.
+	 *
+	 * @see #createStreamableOperatorForRows(PortObjectSpec[])
+	 */
+	protected Map<String, Long> createWarningContextOccurrencesMapForStreaming(final long lRowCount) {
+		final Map<String, Long> mapContextOccurrences = new HashMap<String, Long>();
+		mapContextOccurrences.put(WarningConsolidator.ROW_CONTEXT.getId(), lRowCount);
+
+		return mapContextOccurrences;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * This method does not do anything in this implementation.
@@ -1564,6 +1817,7 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 			while (it.hasNext()) {
 				final DataRow row = it.next();
 				final long lUniqueWaveId = createUniqueCleanupWaveId();
+				final RDKitCleanupScope scope = RDKitCleanupScope.open(lUniqueWaveId);
 
 				try {
 					if (filter.include(0, lRowIndex, row, arrInputDataInfo, lUniqueWaveId)) {
@@ -1583,6 +1837,7 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 					}
 				}
 				finally {
+					scope.close();
 					cleanupMarkedObjects(lUniqueWaveId);
 				}
 
@@ -1630,24 +1885,68 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 		BufferedDataTable arrResultTable[] = null;
 
 		final int iTargetTableCount = splitter.getTargetTableCount();
-		final BufferedDataContainer arrPort[] = new BufferedDataContainer[iTargetTableCount];
+		final BufferedDataTableRowOutput arrPort[] = new BufferedDataTableRowOutput[iTargetTableCount];
 		for (int iPort = 0; iPort < iTargetTableCount; iPort++)
 		{
-			arrPort[iPort] = exec.createDataContainer(inData.getDataTableSpec());
+			arrPort[iPort] = new BufferedDataTableRowOutput(exec.createDataContainer(inData.getDataTableSpec()));
+		}
+
+		try {
+			splitRows(inPort, new DataTableRowInput(inData), arrPort, arrInputDataInfo, inData.size(), exec, splitter);
+
+			arrResultTable = new BufferedDataTable[iTargetTableCount];
+			for (int iPort = 0; iPort < iTargetTableCount; iPort++)
+			{
+				arrPort[iPort].close();
+				arrResultTable[iPort] = arrPort[iPort].getDataTable();
+			}
+		}
+		catch (final InterruptedException exc) {
+			// Buffered outputs do not block, hence this happens only when cancelling
+			Thread.currentThread().interrupt();
+			exec.checkCanceled();
+			throw new CanceledExecutionException("Splitting was interrupted.");
+		}
+
+		return arrResultTable;
+	}
+
+	/**
+	 * Splits the rows delivered by the passed in row input based on the specified split condition
+	 * and pushes them to the row outputs. This is used for splitting tables as well as for
+	 * splitting rows in streaming mode. Outputs are not closed.
+	 *
+	 * @param inPort The input port of the data in focus. This will be passed on to the splitter.
+	 * @param input Delivers the rows to be split. Must not be null.
+	 * @param arrOutputs Row outputs for all target tables of the splitter. Must not be null.
+	 * @param arrInputDataInfo Input data information about all important input columns of
+	 * 		the table at the input port. This will be passed on to the splitter.
+	 * @param lRowCount Number of input rows, if known, or -1. Used for progress reporting only.
+	 * @param exec Execution context to check for cancellation and to report progress. Must not be null.
+	 * @param splitter Split condition. Must not be null.
+	 *
+	 * @throws CanceledExecutionException Thrown, if the user cancelled the node execution.
+	 * @throws InterruptedException Thrown, if reading or pushing rows was interrupted.
+	 */
+	protected void splitRows(final int inPort, final RowInput input, final RowOutput[] arrOutputs,
+			final InputDataInfo[] arrInputDataInfo, final long lRowCount, final ExecutionContext exec,
+			final SplitCondition splitter) throws CanceledExecutionException, InterruptedException {
+		// Pre-check
+		if (splitter == null) {
+			throw new IllegalArgumentException("Split condition must not be null.");
 		}
 
-		final long lRowCount = inData.size();
 		long lRowIndex = 0;
-		final RowIterator it = inData.iterator();
+		DataRow row;
 
 		// Filter the rows
-		while (it.hasNext()) {
-			final DataRow row = it.next();
+		while ((row = input.poll()) != null) {
 			int iTargetTable = -1;
 			final long lUniqueWaveId = createUniqueCleanupWaveId();
+			final RDKitCleanupScope scope = RDKitCleanupScope.open(lUniqueWaveId);
 
 			try {
-				iTargetTable = splitter.determineTargetTable(0, lRowIndex, row,
+				iTargetTable = splitter.determineTargetTable(inPort, lRowIndex, row,
 						arrInputDataInfo, lUniqueWaveId);
 			}
 			catch (final InputDataInfo.EmptyCellException exc) {
@@ -1663,11 +1962,12 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 				}
 			}
 			finally {
+				scope.close();
 				cleanupMarkedObjects(lUniqueWaveId);
 			}
 
 			if (iTargetTable >= 0) {
-				arrPort[iTargetTable].addRowToTable(row);
+				arrOutputs[iTargetTable].push(row);
 			}
 
 			// Every 20 iterations report progress and check for cancel
@@ -1679,15 +1979,6 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 		}
 
 		exec.setProgress(1.0d, "Finished Splitting");
-
-		arrResultTable = new BufferedDataTable[iTargetTableCount];
-		for (int iPort = 0; iPort < iTargetTableCount; iPort++)
-		{
-			arrPort[iPort].close();
-			arrResultTable[iPort] = arrPort[iPort].getTable();
-		}
-
-		return arrResultTable;
 	}
 
 	/**
@@ -1770,6 +2061,117 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 		return m_warnings;
 	}
 
+	/**
+	 * Returns the maximal number of threads this node uses for parallel processing.
+	 * By default this is the number configured in the RDKit performance preferences.
+	 * Nodes may override this method to use a different thread count.
+	 *
+	 * @return Maximal number of parallel threads. Must be greater than 0.
+	 *
+	 * @see RDKitPerformancePreferencePage#getMaxParallelWorkers()
+	 */
+	protected int getMaxParallelWorkers() {
+		return RDKitPerformancePreferencePage.getMaxParallelWorkers();
+	}
+
+	/**
+	 * Returns the number of rows this node processes together as one parallel task
+	 * when using a {@link ParallelProcessor}. By default this is the number configured
+	 * in the RDKit performance preferences. Nodes may override this method, e.g.
+	 * to return 1 for expensive calculations, where batching would not pay off.
+	 *
+	 * @return Batch size. 0 to tune the batch size automatically, 1 to process
+	 * 		every row as separate task.
+	 *
+	 * @see RDKitPerformancePreferencePage#getBatchSize()
+	 */
+	protected int getParallelBatchSize() {
+		return RDKitPerformancePreferencePage.getBatchSize();
+	}
+
+	/**
+	 * Creates a parallel processor, which uses the thread count and batch size of this node.
+	 * Call {@link ParallelProcessor#execute(Iterable)} to process the input rows.
+	 *
+	 * @param factory The factory implementation to perform the calculations. Must not be null.
+	 * @param resultProcessor The result processor implementation. Must not be null.
+	 * @param lRowCount Row count of the input table. Used for progress reporting.
+	 * @param exec Execution context to check for user cancellation and to report progress. Must not be null.
+	 *
+	 * @return Parallel processor.
+	 */
+	protected ParallelProcessor createParallelProcessor(final AbstractRDKitCellFactory factory,
+			final ResultProcessor resultProcessor, final long lRowCount, final ExecutionContext exec) {
+		return createParallelProcessor(new AbstractRDKitCellFactory[] { factory },
+				resultProcessor, lRowCount, exec);
+	}
+
+	/**
+	 * Creates a parallel processor, which uses the thread count and batch size of this node.
+	 * Call {@link ParallelProcessor#execute(Iterable)} to process the input rows.
+	 *
+	 * @param arrFactory Multiple factory implementations to perform the calculations. Must not be null.
+	 * @param resultProcessor The result processor implementation. Must not be null.
+	 * @param lRowCount Row count of the input table. Used for progress reporting.
+	 * @param exec Execution context to check for user cancellation and to report progress. Must not be null.
+	 *
+	 * @return Parallel processor.
+	 */
+	protected ParallelProcessor createParallelProcessor(final AbstractRDKitCellFactory[] arrFactory,
+			final ResultProcessor resultProcessor, final long lRowCount, final ExecutionContext exec) {
+		return new ParallelProcessor(arrFactory, resultProcessor, lRowCount,
+				getWarningConsolidator(), exec, getMaxParallelWorkers(), getParallelBatchSize());
+	}
+
+	/**
+	 * Returns the weight of this node when competing with other nodes for slots
+	 * of the RDKit compute pool. The default is 1. Nodes may override this method.
+	 *
+	 * @return Weight of this node. Must be greater than 0.
+	 *
+	 * @see RDKitComputePool#register(String, int)
+	 */
+	protected int getComputeWeight() {
+		return 1;
+	}
+
+	/**
+	 * Returns the client of the RDKit compute pool for the current execution of this node.
+	 * All RDKit calculations of this node should acquire a slot for this client, which
+	 * happens automatically in cell factories, parallel processors and pooled workers.
+	 * The client is registered on first use and closed when the execution finishes.
+	 *
+	 * @return Compute pool client. Never null.
+	 *
+	 * @see PooledMultiThreadWorker
+	 */
+	protected RDKitComputePool.Client getComputeClient() {
+		RDKitComputePool.Client client = m_computeClient;
+
+		if (client == null) {
+			synchronized (this) {
+				client = m_computeClient;
+				if (client == null) {
+					client = RDKitComputePool.getInstance().register(
+							getClass().getSimpleName(), getComputeWeight());
+					m_computeClient = client;
+				}
+			}
+		}
+
+		return client;
+	}
+
+	/**
+	 * Closes the client of the RDKit compute pool, if one was registered.
+	 */
+	private synchronized void closeComputeClient() {
+		if (m_computeClient != null) {
+			m_computeClient.close();
+			m_computeClient = null;
+		}
+	}
+
 	/**
 	 * Returns a list of all table specifications from the passed in tables.
 	 *
@@ -2029,7 +2431,8 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 	 * @param exec Execution context to use for checks and reporting. Can be null
 	 * 		to do nothing.
 	 * @param lRowIndex Index of currently processed row.
-	 * @param lTotalRowCount Total number of rows to be processed.
+	 * @param lTotalRowCount Total number of rows to be processed. 0 or less, if unknown,
+	 * 		e.g. when streaming. In this case only the progress message gets updated.
 	 * @param row Currently processed row to get row key from. Can be null to
 	 * 		suppress this information.
 	 * @param textToAppend Additional text(s) to append directly at the end. Optional.
@@ -2041,8 +2444,10 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 		if (exec != null) {
 			exec.checkCanceled();
 
-			final StringBuilder m = new StringBuilder("Processed row ")
-			.append(lRowIndex).append('/').append(lTotalRowCount);
+			final StringBuilder m = new StringBuilder("Processed row ").append(lRowIndex);
+			if (lTotalRowCount > 0) {
+				m.append('/').append(lTotalRowCount);
+			}
 
 			if (row != null) {
 				m.append(" (\"").append(row.getKey()).append("\")");
@@ -2054,7 +2459,32 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 				}
 			}
 
-			exec.setProgress(lRowIndex / (double)lTotalRowCount, m.toString());
+			if (lTotalRowCount > 0) {
+				exec.setProgress(lRowIndex / (double)lTotalRowCount, m.toString());
+			}
+			else {
+				exec.setMessage(m.toString());
+			}
+		}
+	}
+
+	/**
+	 * Pushes a row into a row output. This can be called from result processors, which
+	 * cannot throw checked exceptions.
+	 *
+	 * @param output Row output, e.g. of a streamed output port. Must not be null.
+	 * @param row Row to be pushed. Must not be null.
+	 *
+	 * @throws RuntimeException Thrown, if the thread got interrupted while waiting for
+	 * 		the output to accept the row. The interrupt flag of the thread is restored.
+	 */
+	public static void pushRow(final RowOutput output, final DataRow row) {
+		try {
+			output.push(row);
+		}
+		catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Pushing row " + row.getKey() + " to output was interrupted.", exc);
 		}
 	}
 
@@ -2139,78 +2569,270 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 
 
 	//
-	// Static Classes
+	// Inner Classes
 	//
 
 	/**
-	 * This class provides a mechanism to update the node execution progress
-	 * automatically every x milliseconds using a mathematical function with
-	 * a limes of 1.0d.
+	 * A MultiThreadWorker that performs every computation in a slot of the
+	 * RDKit compute pool, using the compute pool client of this node. This
+	 * limits the number of concurrent RDKit calculations across all nodes.
+	 * Implement {@link #computeInPool(Object, long)} instead of compute(...).
+	 *
+	 * @param <In> Input type.
+	 * @param <Out> Output type.
 	 *
 	 * @author Manuel Schwarze
 	 */
-	static public class PseudoProgressUpdater {
-
-		//
-		// Members
-		//
-
-		/** Timer that provides the scheduling for the progress update. */
-		private final Timer m_progressUpdater;
-
-		//
-		// Constructor
-		//
+	protected abstract class PooledMultiThreadWorker<In, Out> extends MultiThreadWorker<In, Out> {
 
 		/**
-		 * Creates a pseudo progress updater, which increases progress in the specified
-		 * execution context every x milliseconds.
+		 * Creates a new pooled worker.
+		 *
+		 * @param maxQueueSize Maximal number of queued inputs.
+		 * @param maxActiveInstanceSize Maximal number of threads. The number of
+		 * 		concurrent calculations is also limited by the RDKit compute pool.
 		 */
-		public PseudoProgressUpdater(final ExecutionContext exec, final long updateDelayInMillis) {
-			m_progressUpdater = new Timer(true);
-			m_progressUpdater.schedule(new TimerTask() {
-				int m_iCounter = 0;
+		public PooledMultiThreadWorker(final int maxQueueSize, final int maxActiveInstanceSize) {
+			super(maxQueueSize, maxActiveInstanceSize);
+		}
 
-				@Override
-				public void run() {
-					exec.setProgress(1.0d - (10d / (10d + m_iCounter++)));
+		/**
+		 * Acquires a slot of the RDKit compute pool and calls {@link #computeInPool(Object, long)}.
+		 *
+		 * @param in Input.
+		 * @param index Index of the input.
+		 */
+		@Override
+		protected final Out compute(final In in, final long index) throws Exception {
+			final RDKitComputePool pool = RDKitComputePool.getInstance();
+			final boolean bSlot = pool.acquire(getComputeClient());
 
-					try {
-						exec.checkCanceled();
-					}
-					catch (final CanceledExecutionException exc) {
-						exec.setProgress("Cancellation in progress - Please wait ...");
-						cancel(); // Cancels progress update
-					}
+			try {
+				return computeInPool(in, index);
+			}
+			finally {
+				if (bSlot) {
+					pool.release();
 				}
-			}, 0, updateDelayInMillis); // Increase progress until we reach almost 100%
+			}
 		}
 
 		/**
-		 * Stops updating the progress update.
+		 * Computes the output for an input while holding a slot of the RDKit compute pool.
+		 *
+		 * @param in Input.
+		 * @param index Index of the input.
+		 *
+		 * @return Output.
+		 *
+		 * @throws Exception Thrown, if the computation failed.
 		 */
-		public void cancel() {
-			m_progressUpdater.cancel();
-		}
+		protected abstract Out computeInPool(In in, long index) throws Exception;
 	}
 
+	//
+	// Static Classes
+	//
+
 	/**
-	 * This interface implements the logic to process a result set and is passed into
-	 * a ParallelProcessor constructor. Normally the results will be added to
-	 * an output table. Often decisions are involved to determine, which output
-	 * table should receive the results.
-	 *
-	 * @author Manuel Schwarze
+	 * This cell factory performs the auto conversion of all columns of an input table
+	 * that need to be converted into RDKit compatible adapter cells. It runs in parallel
+	 * with the thread count of the node. Failed conversions result in missing cells
+	 * carrying the error message and are counted per column.
 	 */
-	static public interface ResultProcessor {
+	private class AutoConversionCellFactory extends AbstractRDKitCellFactory {
+
+		/** The input data infos of the columns to be converted. */
+		private final InputDataInfo[] m_arrConversionColumns;
+
+		/** The number of converted cells per column. */
+		private final LongAdder[] m_arrConvertedCounts;
+
+		/** The number of failed conversions per column. */
+		private final LongAdder[] m_arrErrorCounts;
 
 		/**
-		 * Contains the logic to process a result set. Normally it will be added to
-		 * an output table. Often decisions are involved to determine, which output
-		 * table should receive the results.
-		 *
-		 * @param rowIndex The index of the input row the result was calculated for.
-		 * @param row The input row.
+		 * Creates a new conversion factory for the specified columns.
+		 * 
+		 * @param tableSpec Specification of the table to be converted. Must not be null.
+		 * @param arrConversionColumns Input data infos of all columns to be converted. Must not be null.
+		 */
+		private AutoConversionCellFactory(final DataTableSpec tableSpec, final InputDataInfo[] arrConversionColumns) {
+			super(AbstractRDKitNodeModel.this, RowFailurePolicy.DeliverEmptyValues, getWarningConsolidator(), 
+					null, createConvertedColumnSpecs(tableSpec, arrConversionColumns));
+			m_arrConversionColumns = arrConversionColumns;
+			m_arrConvertedCounts = new LongAdder[arrConversionColumns.length];
+			m_arrErrorCounts = new LongAdder[arrConversionColumns.length];
+			for (int i = 0; i < arrConversionColumns.length; i++) {
+				m_arrConvertedCounts[i] = new LongAdder();
+				m_arrErrorCounts[i] = new LongAdder();
+			}
+			setAllowParallelProcessing(true, getMaxParallelWorkers());
+		}
+
+		/**
+		 * Returns the indexes of all columns that get converted by this factory.
+		 * 
+		 * @return Column indexes in the order of the delivered cells.
+		 */
+		private int[] getColumnIndexes() {
+			final int[] arrColumnIndexes = new int[m_arrConversionColumns.length];
+			for (int i = 0; i < arrColumnIndexes.length; i++) {
+				arrColumnIndexes[i] = m_arrConversionColumns[i].getColumnIndex();
+			}
+			return arrColumnIndexes;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * Converts all cells of the row that need conversion.
+		 */
+		@Override
+		public DataCell[] process(final InputDataInfo[] arrInputDataInfos, final DataRow row, final long iUniqueWaveId) 
+				throws Exception {
+			final DataCell[] arrResults = new DataCell[m_arrConversionColumns.length];
+
+			for (int i = 0; i < m_arrConversionColumns.length; i++) {
+				final InputDataInfo inputDataInfo = m_arrConversionColumns[i];
+				final DataCellTypeConverter converter = inputDataInfo.getConverter();
+				final DataCell source = row.getCell(inputDataInfo.getColumnIndex());
+
+				try {
+					arrResults[i] = converter.convert(source);
+					m_arrConvertedCounts[i].increment();
+				}
+				catch (final Exception exc) {
+					converter.onConvertException(source, exc);
+					m_arrErrorCounts[i].increment();
+					try {
+						generateAutoConversionError(inputDataInfo, normalizeAutoConversionErrorMessage(exc.getMessage()));
+					}
+					catch (final Exception excWarning) {
+						LOGGER.error(excWarning);
+					}
+					arrResults[i] = new MissingCell(exc.getMessage());
+				}
+			}
+
+			return arrResults;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * Logs the number of converted and failed cells per column, and the aggregated
+		 * errors with a few sample inputs per error class.
+		 */
+		@Override
+		public void afterProcessing() {
+			for (int i = 0; i < m_arrConversionColumns.length; i++) {
+				LOGGER.debug("Auto conversion of column '" + m_arrConversionColumns[i].getColumnSpec().getName() + 
+						"': " + m_arrConvertedCounts[i].sum() + " cells converted, " + 
+						m_arrErrorCounts[i].sum() + " failed.");
+				final DataCellTypeConverter converter = m_arrConversionColumns[i].getConverter();
+				if (converter instanceof RDKitTypeConverter) {
+					final String strErrorSummary = ((RDKitTypeConverter)converter).getErrorSummary();
+					if (strErrorSummary != null) {
+						LOGGER.debug("Auto conversion errors of column '" + 
+								m_arrConversionColumns[i].getColumnSpec().getName() + "':\n" + strErrorSummary);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates the column specifications of converted columns. They are exactly the same
+	 * as the ones KNIME creates when converting the columns with the converters directly.
+	 * 
+	 * @param tableSpec Specification of the table to be converted. Must not be null.
+	 * @param arrConversionColumns Input data infos of all columns to be converted. Must not be null.
+	 * 
+	 * @return Column specifications of the converted columns.
+	 */
+	private static DataColumnSpec[] createConvertedColumnSpecs(final DataTableSpec tableSpec, 
+			final InputDataInfo[] arrConversionColumns) {
+		final ColumnRearranger rearranger = new ColumnRearranger(tableSpec);
+		for (final InputDataInfo inputDataInfo : arrConversionColumns) {
+			rearranger.ensureColumnIsConverted(inputDataInfo.getConverter(), inputDataInfo.getColumnIndex());
+		}
+		final DataTableSpec convertedSpec = rearranger.createSpec();
+
+		final DataColumnSpec[] arrColumnSpecs = new DataColumnSpec[arrConversionColumns.length];
+		for (int i = 0; i < arrConversionColumns.length; i++) {
+			arrColumnSpecs[i] = convertedSpec.getColumnSpec(arrConversionColumns[i].getColumnIndex());
+		}
+		return arrColumnSpecs;
+	}
+
+	/**
+	 * This class provides a mechanism to update the node execution progress
+	 * automatically every x milliseconds using a mathematical function with
+	 * a limes of 1.0d.
+	 *
+	 * @author Manuel Schwarze
+	 */
+	static public class PseudoProgressUpdater {
+
+		//
+		// Members
+		//
+
+		/** Timer that provides the scheduling for the progress update. */
+		private final Timer m_progressUpdater;
+
+		//
+		// Constructor
+		//
+
+		/**
+		 * Creates a pseudo progress updater, which increases progress in the specified
+		 * execution context every x milliseconds.
+		 */
+		public PseudoProgressUpdater(final ExecutionContext exec, final long updateDelayInMillis) {
+			m_progressUpdater = new Timer(true);
+			m_progressUpdater.schedule(new TimerTask() {
+				int m_iCounter = 0;
+
+				@Override
+				public void run() {
+					exec.setProgress(1.0d - (10d / (10d + m_iCounter++)));
+
+					try {
+						exec.checkCanceled();
+					}
+					catch (final CanceledExecutionException exc) {
+						exec.setProgress("Cancellation in progress - Please wait ...");
+						cancel(); // Cancels progress update
+					}
+				}
+			}, 0, updateDelayInMillis); // Increase progress until we reach almost 100%
+		}
+
+		/**
+		 * Stops updating the progress update.
+		 */
+		public void cancel() {
+			m_progressUpdater.cancel();
+		}
+	}
+
+	/**
+	 * This interface implements the logic to process a result set and is passed into
+	 * a ParallelProcessor constructor. Normally the results will be added to
+	 * an output table. Often decisions are involved to determine, which output
+	 * table should receive the results.
+	 *
+	 * @author Manuel Schwarze
+	 */
+	static public interface ResultProcessor {
+
+		/**
+		 * Contains the logic to process a result set. Normally it will be added to
+		 * an output table. Often decisions are involved to determine, which output
+		 * table should receive the results.
+		 *
+		 * @param rowIndex The index of the input row the result was calculated for.
+		 * @param row The input row.
 		 * @param arrResults The calculated results. Can be null.
 		 */
 		void processResults(long rowIndex, DataRow row, DataCell[] arrResults);
@@ -2229,29 +2851,38 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 	 */
 	static public class ParallelProcessor extends MultiThreadWorker<DataRow, DataCell[]> {
 
-		/**
-		 * Determines the queue size considering also the currently available CPU count.
-		 *
-		 * @return Queue size to be used for parallel processing.
-		 */
-		private static int getQueueSize() {
-			return 10 * getMaxParallelWorkers();
-		}
+		//
+		// Constants
+		//
 
-		/**
-		 * Determines the CPU count to be used for parallel processing.
-		 *
-		 * @return Number of available processors + 50%. This calculation was found
-		 * 		in a MultiThreadWorker implementation of KNIME.
-		 */
-		private static int getMaxParallelWorkers() {
-			return (int)Math.ceil(1.5 * Runtime.getRuntime().availableProcessors());
-		}
+		/** The processing time a batch of rows should roughly take when tuning the batch size automatically. */
+		private static final long TARGET_BATCH_DURATION_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+		/** The size of the first batches before row processing times have been measured. */
+		private static final int INITIAL_BATCH_SIZE = 8;
+
+		/** The minimal number of batches per thread, which keeps all threads busy until the end. */
+		private static final int MIN_BATCHES_PER_WORKER = 4;
 
 		//
 		// Members
 		//
 
+		/** The maximal number of threads used for processing. */
+		private final int m_iMaxParallelWorkers;
+
+		/** The number of rows per task. 0 means automatic tuning, 1 means processing row by row. */
+		private final int m_iBatchSize;
+
+		/** The total number of nanoseconds measured for computing rows in batch mode. */
+		private final AtomicLong m_lMeasuredNanos = new AtomicLong();
+
+		/** The number of rows measured in batch mode. */
+		private final AtomicLong m_lMeasuredRows = new AtomicLong();
+
+		/** The worker used in batch mode, which needs to be cancelled together with this processor. */
+		private volatile MultiThreadWorker<RowBatch, DataCell[][]> m_batchWorker;
+
 		/**
 		 * The total number of rows that are subject of processing. This is used
 		 * for progress reporting.
@@ -2354,8 +2985,38 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 		public ParallelProcessor(final AbstractRDKitCellFactory[] arrFactory,
 				final ResultProcessor resultProcessor, final long lRowCount,
 				final WarningConsolidator warningConsolidator, final ExecutionContext exec) {
+			this(arrFactory, resultProcessor, lRowCount, warningConsolidator, exec,
+					RDKitPerformancePreferencePage.getMaxParallelWorkers(),
+					RDKitPerformancePreferencePage.getBatchSize());
+		}
+
+		/**
+		 * Creates a new parallel processor object to perform in several threads the work
+		 * that is to do with a specific thread count and batch size. See
+		 * {@link #ParallelProcessor(AbstractRDKitCellFactory[], ResultProcessor, long, WarningConsolidator, ExecutionContext)}
+		 * for details. The batch size is only taken into account when processing is started with
+		 * {@link #execute(Iterable)}.
+		 *
+		 * @param arrFactory Multiple factory implementations to perform the calculations. Must not be null.
+		 * @param resultProcessor The result processor implementation, which could distribute the results
+		 * 		to different tables, if desired. Must not be null.
+		 * @param lRowCount Row count of the input table in focus of this parallel processing. This
+		 * 		value is used to determine the correct progress percentage.
+		 * @param warningConsolidator Warning consolidator to be used to save warning messages and
+		 * 		its statistics (how often they occurred). Must not be null.
+		 * @param exec Execution context to check for user cancellation and to report progress. Must not be null.
+		 * @param iMaxParallelWorkers Maximal number of threads. If 0 or less, the number
+		 * 		configured in the preferences will be used.
+		 * @param iBatchSize Number of rows to be processed as one task. 0 to tune the
+		 * 		batch size automatically based on measured row processing times,
+		 * 		1 to process row by row.
+		 */
+		public ParallelProcessor(final AbstractRDKitCellFactory[] arrFactory,
+				final ResultProcessor resultProcessor, final long lRowCount,
+				final WarningConsolidator warningConsolidator, final ExecutionContext exec,
+				final int iMaxParallelWorkers, final int iBatchSize) {
 
-			super(getQueueSize(), getMaxParallelWorkers());
+			super(10 * getWorkerCount(iMaxParallelWorkers), getWorkerCount(iMaxParallelWorkers));
 
 			// Pre-checks
 			if (arrFactory == null || arrFactory.length == 0) {
@@ -2400,12 +3061,74 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 			m_bMultiFactory = m_arrFactory.length > 1;
 			m_iCellCount = iCellCount;
 			m_consolidatedRowFailurePolicy = rowFailurePolicy;
+			m_iMaxParallelWorkers = getWorkerCount(iMaxParallelWorkers);
+			m_iBatchSize = Math.max(0, Math.min(RDKitPerformancePreferencePage.MAX_BATCH_SIZE, iBatchSize));
 		}
 
 		//
 		// Public Methods
 		//
 
+		/**
+		 * Processes all passed in rows. Depending on the batch size of this processor
+		 * this happens row by row (same as {@link #run(Iterable)}) or in batches of rows,
+		 * which reduces the threading overhead for cheap calculations. In both cases
+		 * the results are passed to the result processor in the order of the input rows.
+		 *
+		 * @param rows Input rows to be processed. Must not be null.
+		 *
+		 * @throws InterruptedException Thrown, if processing was interrupted.
+		 * @throws ExecutionException Thrown, if processing failed.
+		 */
+		public void execute(final Iterable<DataRow> rows) throws InterruptedException, ExecutionException {
+			if (m_iBatchSize == 1) {
+				run(rows);
+			}
+			else {
+				new BatchWorker().run(new Iterable<RowBatch>() {
+					@Override
+					public Iterator<RowBatch> iterator() {
+						return new BatchIterator(rows.iterator());
+					}
+				});
+			}
+		}
+
+		/**
+		 * Processes all rows delivered by the passed in row input, e.g. when a node runs
+		 * in streaming mode, until the input is exhausted. See {@link #execute(Iterable)}.
+		 *
+		 * @param input Input rows to be processed. Must not be null.
+		 *
+		 * @throws InterruptedException Thrown, if processing or reading input rows was interrupted.
+		 * @throws ExecutionException Thrown, if processing failed.
+		 */
+		public void execute(final RowInput input) throws InterruptedException, ExecutionException {
+			final RowInputIterator iterator = new RowInputIterator(input);
+
+			execute(new Iterable<DataRow>() {
+				@Override
+				public Iterator<DataRow> iterator() {
+					return iterator;
+				}
+			});
+
+			if (iterator.m_excInterrupted != null) {
+				throw iterator.m_excInterrupted;
+			}
+		}
+
+		/**
+		 * Returns the average time in nanoseconds needed to process a single row.
+		 * This is only measured when processing rows in batches.
+		 *
+		 * @return Average processing time per row or -1, if nothing was measured yet.
+		 */
+		public long getAverageRowNanos() {
+			final long lRows = m_lMeasuredRows.get();
+			return (lRows == 0 ? -1 : m_lMeasuredNanos.get() / lRows);
+		}
+
 		/**
 		 * Creates a column rearranger, which works with this parallel processor.
 		 * Note: Since KNIME 2.5.1 a factory will automatically process results using parallel
@@ -2527,12 +3250,78 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 			final long rowIndex = task.getIndex();
 			final DataRow row = task.getInput();
 			DataCell[] arrCells = null;
+			Exception excFailure = null;
 
 			// Pick up results
 			try {
 				arrCells = task.get();
 			}
 			catch (final Exception e) {
+				excFailure = e;
+			}
+
+			processRowResult(rowIndex, row, arrCells, excFailure, getActiveCount(), getFinishedTaskCount());
+		}
+
+		//
+		// Private Methods
+		//
+
+		/**
+		 * Determines the number of threads to be used.
+		 *
+		 * @param iMaxParallelWorkers Requested number of threads. If 0 or less, the
+		 * 		number configured in the preferences will be used.
+		 *
+		 * @return Number of threads. Always greater than 0.
+		 */
+		private static int getWorkerCount(final int iMaxParallelWorkers) {
+			return (iMaxParallelWorkers > 0 ? iMaxParallelWorkers :
+				RDKitPerformancePreferencePage.getMaxParallelWorkers());
+		}
+
+		/**
+		 * Determines the number of rows for the next batch. If the batch size is tuned
+		 * automatically, it is derived from the average row processing time measured so far,
+		 * but limited to keep all threads busy until the end.
+		 *
+		 * @param lRowsLeft Number of rows that are not yet assigned to a batch or -1, if unknown.
+		 *
+		 * @return Number of rows for the next batch. Always greater than 0.
+		 */
+		private int getNextBatchSize(final long lRowsLeft) {
+			if (m_iBatchSize > 0) {
+				return m_iBatchSize;
+			}
+
+			final long lAverageRowNanos = getAverageRowNanos();
+			long lBatchSize = (lAverageRowNanos < 0 ? INITIAL_BATCH_SIZE :
+				TARGET_BATCH_DURATION_NANOS / Math.max(1, lAverageRowNanos));
+			if (lRowsLeft > 0) {
+				lBatchSize = Math.min(lBatchSize, lRowsLeft / (MIN_BATCHES_PER_WORKER * m_iMaxParallelWorkers));
+			}
+
+			return (int)Math.max(1, Math.min(RDKitPerformancePreferencePage.MAX_BATCH_SIZE, lBatchSize));
+		}
+
+		/**
+		 * Handles the result of a single row, which is either the result cells or a failure.
+		 * It handles exceptions based on the factory's exception handling policy, checks for
+		 * user cancellations, reports progress and calls the method processResults in the
+		 * Result Processor that was passed in to the constructor.
+		 *
+		 * @param rowIndex Index of the row.
+		 * @param row Input row.
+		 * @param arrResults Result cells. Ignored, if a failure is passed in.
+		 * @param excFailure Failure that occurred while computing the results or null.
+		 * @param iActive Number of active tasks for progress reporting.
+		 * @param iPending Number of pending tasks for progress reporting.
+		 */
+		private void processRowResult(final long rowIndex, final DataRow row, final DataCell[] arrResults,
+				final Exception excFailure, final int iActive, final int iPending) {
+			DataCell[] arrCells = arrResults;
+
+			if (excFailure != null) {
 				String strMessage = "Exception while getting result";
 
 				// Use empty cells
@@ -2540,14 +3329,14 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 					strMessage += " - Assigning missing cells.";
 					m_warningConsolidator.saveWarning(WarningConsolidator.ROW_CONTEXT.getId(),
 							strMessage);
-					AbstractRDKitNodeModel.LOGGER.warn(strMessage, e);
+					AbstractRDKitNodeModel.LOGGER.warn(strMessage, excFailure);
 					arrCells = AbstractRDKitCellFactory.createEmptyCells(1);
 				}
 				// Or fail
 				else {
 					strMessage += " - Giving up.";
-					AbstractRDKitNodeModel.LOGGER.error(strMessage, e);
-					throw new RuntimeException(strMessage, e);
+					AbstractRDKitNodeModel.LOGGER.error(strMessage, excFailure);
+					throw new RuntimeException(strMessage, excFailure);
 				}
 			}
 
@@ -2557,37 +3346,344 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 				try {
 					AbstractRDKitNodeModel.reportProgress(m_exec, (int)rowIndex,
 							m_lTotalRowCount, row,
-							new StringBuilder(" [").append(getActiveCount()).append(" active, ")
-							.append(getFinishedTaskCount()).append(" pending]").toString());
+							new StringBuilder(" [").append(iActive).append(" active, ")
+							.append(iPending).append(" pending]").toString());
 				}
 				catch (final CanceledExecutionException e) {
 					cancel(true);
+					if (m_batchWorker != null) {
+						m_batchWorker.cancel(true);
+					}
 				}
 			}
 
 			m_resultProcessor.processResults(rowIndex, row, arrCells);
-		};
+		}
+
+		//
+		// Inner Classes
+		//
+
+		/**
+		 * A batch of consecutive input rows, which gets processed as one task.
+		 * Results and failures are stored per row.
+		 */
+		private static final class RowBatch {
+
+			/** Index of the first row of the batch. */
+			private final long m_lFirstRowIndex;
+
+			/** The rows of the batch. */
+			private final DataRow[] m_arrRows;
+
+			/** Failures per row. Null, if no failure occurred. */
+			private Exception[] m_arrFailures;
+
+			/**
+			 * Creates a new batch of rows.
+			 *
+			 * @param lFirstRowIndex Index of the first row of the batch.
+			 * @param arrRows The rows of the batch.
+			 */
+			private RowBatch(final long lFirstRowIndex, final DataRow[] arrRows) {
+				m_lFirstRowIndex = lFirstRowIndex;
+				m_arrRows = arrRows;
+			}
+		}
+
+		/**
+		 * Iterates over the rows of a row input. As iterators cannot throw checked
+		 * exceptions, an interruption while waiting for the next row ends the iteration
+		 * and is remembered to be rethrown after processing.
+		 */
+		private static final class RowInputIterator implements Iterator<DataRow> {
+
+			/** The underlying row input. */
+			private final RowInput m_input;
+
+			/** The next row or null, if not polled yet. */
+			private DataRow m_rowNext;
+
+			/** Flag to tell that the row input is exhausted. */
+			private boolean m_bEnd = false;
+
+			/** The interruption that ended the iteration or null. */
+			private InterruptedException m_excInterrupted;
+
+			/**
+			 * Creates a new row input iterator.
+			 *
+			 * @param input The underlying row input.
+			 */
+			private RowInputIterator(final RowInput input) {
+				m_input = input;
+			}
+
+			@Override
+			public boolean hasNext() {
+				if (m_rowNext == null && !m_bEnd) {
+					try {
+						m_rowNext = m_input.poll();
+					}
+					catch (final InterruptedException exc) {
+						m_excInterrupted = exc;
+						Thread.currentThread().interrupt();
+					}
+					m_bEnd = (m_rowNext == null);
+				}
+
+				return m_rowNext != null;
+			}
+
+			@Override
+			public DataRow next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				final DataRow row = m_rowNext;
+				m_rowNext = null;
+
+				return row;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		}
+
+		/**
+		 * Iterates over input rows and groups them into batches. The size of every
+		 * batch is determined when it gets created, so automatic tuning takes
+		 * the latest measured row processing times into account.
+		 */
+		private final class BatchIterator implements Iterator<RowBatch> {
+
+			/** The underlying row iterator. */
+			private final Iterator<DataRow> m_iterator;
+
+			/** Index of the next row. */
+			private long m_lNextRowIndex = 0;
+
+			/**
+			 * Creates a new batch iterator.
+			 *
+			 * @param iterator The underlying row iterator.
+			 */
+			private BatchIterator(final Iterator<DataRow> iterator) {
+				m_iterator = iterator;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return m_iterator.hasNext();
+			}
+
+			@Override
+			public RowBatch next() {
+				if (!m_iterator.hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				final int iBatchSize = getNextBatchSize(m_lTotalRowCount > 0 ?
+						m_lTotalRowCount - m_lNextRowIndex : -1);
+				final List<DataRow> listRows = new ArrayList<DataRow>(iBatchSize);
+				while (listRows.size() < iBatchSize && m_iterator.hasNext()) {
+					listRows.add(m_iterator.next());
+				}
+
+				final RowBatch batch = new RowBatch(m_lNextRowIndex,
+						listRows.toArray(new DataRow[listRows.size()]));
+				m_lNextRowIndex += listRows.size();
+
+				return batch;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		}
+
+		/**
+		 * The worker that processes batches of rows in parallel. Results are delivered
+		 * row by row in the order of the input rows.
+		 */
+		private final class BatchWorker extends MultiThreadWorker<RowBatch, DataCell[][]> {
+
+			/**
+			 * Creates a new batch worker using the thread count of the parallel processor.
+			 */
+			private BatchWorker() {
+				super(2 * m_iMaxParallelWorkers, m_iMaxParallelWorkers);
+				m_batchWorker = this;
+			}
+
+			/**
+			 * Computes the result cells for all rows of the batch. Failures of single
+			 * rows are recorded in the batch and handled when the results are processed.
+			 * The factories get the chance to prepare results for the whole batch first.
+			 *
+			 * @param batch Batch of rows.
+			 * @param index Index of the batch. Not used in this implementation.
+			 */
+			@Override
+			protected DataCell[][] compute(final RowBatch batch, final long index) {
+				final DataRow[] arrRows = batch.m_arrRows;
+				final DataCell[][] arrResults = new DataCell[arrRows.length][];
+				final RDKitComputePool pool = RDKitComputePool.getInstance();
+				final boolean bSlot = pool.acquire(m_arrFactory[0].getComputeClient());
+				final long lStart = System.nanoTime();
+
+				try {
+					for (final AbstractRDKitCellFactory factory : m_arrFactory) {
+						factory.prepareBatch(arrRows, m_exec);
+					}
+
+					for (int i = 0; i < arrRows.length; i++) {
+						try {
+							arrResults[i] = ParallelProcessor.this.compute(arrRows[i], batch.m_lFirstRowIndex + i);
+						}
+						catch (final Exception exc) {
+							if (batch.m_arrFailures == null) {
+								batch.m_arrFailures = new Exception[arrRows.length];
+							}
+							batch.m_arrFailures[i] = exc;
+						}
+					}
+				}
+				catch (final CanceledExecutionException exc) {
+					// Stops processing the same way as a cancellation detected when reporting progress
+					ParallelProcessor.this.cancel(true);
+					cancel(true);
+					batch.m_arrFailures = new Exception[arrRows.length];
+					Arrays.fill(batch.m_arrFailures, exc);
+				}
+				finally {
+					for (final AbstractRDKitCellFactory factory : m_arrFactory) {
+						factory.finishBatch();
+					}
+					if (bSlot) {
+						pool.release();
+					}
+				}
+
+				m_lMeasuredNanos.addAndGet(System.nanoTime() - lStart);
+				m_lMeasuredRows.addAndGet(arrRows.length);
+
+				return arrResults;
+			}
+
+			/**
+			 * Processes the results of a batch row by row.
+			 *
+			 * @param task The computation task from the MultiThreadWorker. Must not be null.
+			 */
+			@Override
+			protected void processFinished(final ComputationTask task) {
+				// Pre-check
+				if (task == null) {
+					throw new IllegalArgumentException("Computation task must not be null.");
+				}
+
+				final RowBatch batch = task.getInput();
+				DataCell[][] arrResults = null;
+				Exception excBatchFailure = null;
+
+				try {
+					arrResults = task.get();
+				}
+				catch (final Exception e) {
+					excBatchFailure = e;
+				}
+
+				for (int i = 0; i < batch.m_arrRows.length; i++) {
+					final Exception excFailure = (excBatchFailure != null ? excBatchFailure :
+						batch.m_arrFailures != null ? batch.m_arrFailures[i] : null);
+					processRowResult(batch.m_lFirstRowIndex + i, batch.m_arrRows[i],
+							arrResults == null ? null : arrResults[i], excFailure,
+									getActiveCount(), getFinishedTaskCount());
+				}
+			}
+		}
+	}
+
+	/**
+	 * A row input that counts all delivered rows, e.g. to generate warnings
+	 * with the number of processed rows when streaming.
+	 */
+	private static class CountingRowInput extends RowInput {
+
+		/** The underlying row input. */
+		private final RowInput m_input;
+
+		/** The counter to be increased for every delivered row. */
+		private final AtomicLong m_lRowCount;
+
+		/**
+		 * Creates a new counting row input.
+		 *
+		 * @param input The underlying row input. Must not be null.
+		 * @param lRowCount The counter to be increased for every delivered row. Must not be null.
+		 */
+		private CountingRowInput(final RowInput input, final AtomicLong lRowCount) {
+			m_input = input;
+			m_lRowCount = lRowCount;
+		}
+
+		@Override
+		public DataTableSpec getDataTableSpec() {
+			return m_input.getDataTableSpec();
+		}
+
+		@Override
+		public DataRow poll() throws InterruptedException {
+			final DataRow row = m_input.poll();
+			if (row != null) {
+				m_lRowCount.incrementAndGet();
+			}
+			return row;
+		}
+
+		@Override
+		public void close() {
+			m_input.close();
+		}
 	}
 
 	/**
 	 * This class keeps track of RDKit objects which require cleanup when not needed
-	 * anymore.
+	 * anymore. Objects are registered in waves. Every wave has its own small registry
+	 * with its own lock, which is in practice only used by a single thread (the thread that
+	 * processes a row). Waves are found in a concurrent map, hence registering and
+	 * cleaning up objects from multiple worker threads does not require a global monitor.
 	 *
 	 * @author Manuel Schwarze
 	 */
-	static class RDKitCleanupTracker extends HashMap<Long, List<Object>> {
+	static class RDKitCleanupTracker {
 
 		//
 		// Constants
 		//
 
-		/** Serial number. */
-		private static final long serialVersionUID = 270959635380434185L;
-
 		/** The logger instance. */
 		protected static final NodeLogger LOGGER = NodeLogger
 				.getLogger(RDKitCleanupTracker.class);
 
+		/** The wave used for objects marked without a wave, which live until the end of execution. */
+		private static final long DEFAULT_WAVE = 0;
+
+		//
+		// Members
+		//
+
+		/** Registry of objects marked without a wave. Kept separately for fast access. */
+		private final AtomicReference<Wave> m_waveDefault = new AtomicReference<Wave>();
+
+		/** Maps wave ids (except the default wave) to the registries of objects marked for cleanup. */
+		private final ConcurrentHashMap<Long, Wave> m_mapWaves;
+
 		//
 		// Constructors
 		//
@@ -2596,35 +3692,17 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 		 * Creates a new RDKitCleanup tracker.
 		 */
 		public RDKitCleanupTracker() {
-			super();
+			this(16);
 		}
 
 		/**
 		 * Creates a new RDKitCleanup tracker.
 		 *
-		 * @param initialCapacity
-		 * @param loadFactor
-		 */
-		public RDKitCleanupTracker(final int initialCapacity, final float loadFactor) {
-			super(initialCapacity, loadFactor);
-		}
-
-		/**
-		 * Creates a new RDKitCleanup tracker.
-		 *
-		 * @param initialCapacity
+		 * @param initialCapacity Initial capacity of wave registries.
 		 */
 		public RDKitCleanupTracker(final int initialCapacity) {
-			super(initialCapacity);
-		}
-
-		/**
-		 * Creates a copy of an existing RDKitCleanupTracker object.
-		 *
-		 * @param existing The existing object. Must not be null.
-		 */
-		private RDKitCleanupTracker(final RDKitCleanupTracker existing) {
-			super(existing);
+			m_mapWaves = new ConcurrentHashMap<Long, Wave>(initialCapacity, 0.75f,
+					Runtime.getRuntime().availableProcessors());
 		}
 
 		//
@@ -2654,50 +3732,58 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 		 *
 		 * @return The same object that was passed in. Null, if null was passed in.
 		 */
-		public synchronized <T extends Object> T markForCleanup(final T rdkitObject, final long wave, final boolean bRemoveFromOtherWave) {
+		public <T extends Object> T markForCleanup(final T rdkitObject, final long wave, final boolean bRemoveFromOtherWave) {
 			if (rdkitObject != null)  {
 
 				// Remove object from any other list, if desired (cost performance!)
 				if (bRemoveFromOtherWave) {
-
-					// Loop through all waves to find the rdkitObject - we create a copy here, because
-					// we may remove empty wave lists which may blow up out iterator
-					for (final long waveExisting : new HashSet<Long>(keySet())) {
-						final List<Object> list = get(waveExisting);
-						if (list.remove(rdkitObject) && list.isEmpty()) {
-							remove(waveExisting);
-						}
-					}
+					removeFromOtherWaves(rdkitObject, wave);
 				}
 
-				// Get the list of the target wave
-				List<Object> list = get(wave);
+				// The native size is estimated now, while the object is known to be alive,
+				// as it may be quarantined later when it could have been freed already
+				final long lEstimatedBytes = RDKitQuarantineManager.estimateNativeSize(rdkitObject);
 
-				// Create a wave list, if not found yet
-				if (list == null) {
-					list = new ArrayList<Object>();
-					put(wave, list);
-				}
-
-				// Add the object only once
-				if (!list.contains(rdkitObject)) {
-					list.add(rdkitObject);
+				// Add the object to the target wave - if the wave got closed concurrently
+				// (cleaned up by another thread) we just start a new wave with the same id
+				while (!getOrCreateWave(wave).add(rdkitObject, lEstimatedBytes)) {
+					// Retry
 				}
 			}
 
 			return rdkitObject;
 		}
 
+		/**
+		 * Removes the specified object from all waves except the specified one
+		 * without freeing its resources.
+		 *
+		 * @param rdkitObject An RDKit related object. Can be null.
+		 * @param wave A number that identifies the wave to keep the object in.
+		 */
+		public void removeFromOtherWaves(final Object rdkitObject, final long wave) {
+			if (rdkitObject != null) {
+				final Wave waveDefault = m_waveDefault.get();
+				if (waveDefault != null && wave != DEFAULT_WAVE) {
+					waveDefault.remove(rdkitObject);
+				}
+				for (final Wave waveExisting : m_mapWaves.values()) {
+					if (waveExisting.getId() != wave) {
+						waveExisting.remove(rdkitObject);
+					}
+				}
+			}
+		}
+
 		/**
 		 * Frees resources for all objects that have been registered prior to this last
 		 * call using the method {@link #cleanupMarkedObjects()}.
 		 */
-		public synchronized void cleanupMarkedObjects() {
-			// Loop through all waves for cleanup - we create a copy here, because
-			// the cleanupMarkedObjects method will remove items from our map
-			for (final long wave : new HashSet<Long>(keySet())) {
+		public void cleanupMarkedObjects() {
+			for (final Long wave : m_mapWaves.keySet()) {
 				cleanupMarkedObjects(wave);
 			}
+			cleanupMarkedObjects(DEFAULT_WAVE);
 		}
 
 		/**
@@ -2706,41 +3792,20 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 		 *
 		 * @param wave A number that identifies objects registered for a certain "wave".
 		 */
-		public synchronized void cleanupMarkedObjects(final long wave) {
-			// Find the right wave list, if not found yet
-			final List<Object> list = get(wave);
-
-			// If wave list was found, free all objects in it
-			if (list != null) {
-				for (final Object objForCleanup : list) {
-					Class<?> clazz = null;
+		public void cleanupMarkedObjects(final long wave) {
+			final Wave waveToCleanup;
 
-					try {
-						clazz = objForCleanup.getClass();
-						final Method method = clazz.getMethod("delete");
-						method.invoke(objForCleanup);
-					}
-					catch (final NoSuchMethodException excNoSuchMethod) {
-						LOGGER.error("An object had been registered for cleanup (delete() call), " +
-								"which does not provide a delete() method." +
-								(clazz == null ? "" : " It's of class " + clazz.getName() + "."),
-								excNoSuchMethod.getCause());
-					}
-					catch (final SecurityException excSecurity) {
-						LOGGER.error("An object had been registered for cleanup (delete() call), " +
-								"which is not accessible for security reasons." +
-								(clazz == null ? "" : " It's of class " + clazz.getName() + "."),
-								excSecurity.getCause());
-					}
-					catch (final Exception exc) {
-						LOGGER.error("Cleaning up a registered object (via delete() call) failed." +
-								(clazz == null ? "" : " It's of class " + clazz.getName() + "."),
-								exc.getCause());
-					}
-				}
+			if (wave == DEFAULT_WAVE) {
+				waveToCleanup = m_waveDefault.getAndSet(null);
+			}
+			else {
+				// Avoids boxing of the wave id in the common case that all waves are handled by cleanup scopes
+				waveToCleanup = (m_mapWaves.isEmpty() ? null : m_mapWaves.remove(wave));
+			}
 
-				list.clear();
-				remove(wave);
+			// If wave was found, free all objects in it
+			if (waveToCleanup != null) {
+				waveToCleanup.closeAndCleanup();
 			}
 		}
 
@@ -2749,28 +3814,277 @@ public abstract class AbstractRDKitNodeModel extends NodeModel implements RDKitO
 		 * call using the method {@link #cleanupMarkedObjects()}, but delays the cleanup
 		 * process. It basically moves the objects of interest into quarantine.
 		 */
-		public synchronized void quarantineAndCleanupMarkedObjects() {
-			final RDKitCleanupTracker quarantineRDKitObjects = new RDKitCleanupTracker(this);
-			clear();
+		public void quarantineAndCleanupMarkedObjects() {
+			final List<Object> listQuarantine = new ArrayList<Object>();
+			long lEstimatedBytes = 0;
+
+			final Wave waveDefault = m_waveDefault.getAndSet(null);
+			if (waveDefault != null) {
+				lEstimatedBytes += waveDefault.closeAndDrainTo(listQuarantine);
+			}
+
+			for (final Long wave : m_mapWaves.keySet()) {
+				final Wave waveToQuarantine = m_mapWaves.remove(wave);
+				if (waveToQuarantine != null) {
+					lEstimatedBytes += waveToQuarantine.closeAndDrainTo(listQuarantine);
+				}
+			}
+
+			// Hand over the objects to the shared quarantine, which frees them later
+			if (!listQuarantine.isEmpty()) {
+				RDKitQuarantineManager.getInstance().quarantine(listQuarantine.toArray(), lEstimatedBytes);
+			}
+		}
+
+		/**
+		 * Determines, if there are currently no objects registered for cleanup.
+		 *
+		 * @return True, if no wave is registered. False otherwise.
+		 */
+		public boolean isEmpty() {
+			return m_waveDefault.get() == null && m_mapWaves.isEmpty();
+		}
 
-			if (!quarantineRDKitObjects.isEmpty()) {
-				// Create the future cleanup task
-				final TimerTask futureCleanupTask = new TimerTask() {
+		//
+		// Private Methods
+		//
 
-					/**
-					 * Cleans up all marked objects, which are put into quarantine for now.
-					 */
-					@Override
-					public void run() {
-						quarantineRDKitObjects.cleanupMarkedObjects();
+		/**
+		 * Returns the registry for the specified wave and creates it, if it does not exist yet.
+		 *
+		 * @param wave A number that identifies objects registered for a certain "wave".
+		 *
+		 * @return Wave registry. Never null.
+		 */
+		private Wave getOrCreateWave(final long wave) {
+			if (wave == DEFAULT_WAVE) {
+				Wave waveDefault = m_waveDefault.get();
+				while (waveDefault == null) {
+					m_waveDefault.compareAndSet(null, new Wave(DEFAULT_WAVE));
+					waveDefault = m_waveDefault.get();
+				}
+				return waveDefault;
+			}
+
+			final Long key = wave;
+			Wave waveRegistry = m_mapWaves.get(key);
+
+			if (waveRegistry == null) {
+				final Wave waveNew = new Wave(wave);
+				waveRegistry = m_mapWaves.putIfAbsent(key, waveNew);
+				if (waveRegistry == null) {
+					waveRegistry = waveNew;
+				}
+			}
+
+			return waveRegistry;
+		}
+	}
+
+	/**
+	 * A registry of RDKit objects marked for cleanup within a single wave. Objects
+	 * are kept in a plain array in order of registration. Duplicates are detected by
+	 * identity, for small waves by a linear scan, for large waves by an identity set.
+	 * A wave gets closed when it is cleaned up. Afterwards no objects can be added anymore.
+	 *
+	 * @author Manuel Schwarze
+	 */
+	static final class Wave {
+
+		//
+		// Constants
+		//
+
+		/** Up to this number of objects duplicates are detected by linear scan. */
+		private static final int LINEAR_SCAN_LIMIT = 16;
+
+		//
+		// Members
+		//
+
+		/** The wave id. */
+		private final long m_lId;
+
+		/** Registered objects. */
+		private Object[] m_arrObjects;
+
+		/** Estimated native sizes of the registered objects in bytes, in the same order. */
+		private long[] m_arrEstimatedBytes;
+
+		/** Number of registered objects. */
+		private int m_iSize;
+
+		/** Identity set of registered objects. Only used for large waves. */
+		private Set<Object> m_setObjects;
+
+		/** Flag to tell that the wave was cleaned up already. */
+		private boolean m_bClosed;
+
+		//
+		// Constructor
+		//
+
+		/**
+		 * Creates a new wave registry.
+		 *
+		 * @param lId The wave id.
+		 */
+		Wave(final long lId) {
+			m_lId = lId;
+			m_arrObjects = new Object[8];
+			m_arrEstimatedBytes = new long[8];
+			m_iSize = 0;
+			m_setObjects = null;
+			m_bClosed = false;
+		}
+
+		//
+		// Public Methods
+		//
+
+		/**
+		 * Returns the wave id.
+		 *
+		 * @return Wave id.
+		 */
+		long getId() {
+			return m_lId;
+		}
+
+		/**
+		 * Adds the specified object to this wave, if it was not added before.
+		 *
+		 * @param rdkitObject Object to be added. Must not be null.
+		 * @param lEstimatedBytes Estimated native size of the object.
+		 *
+		 * @return False, if the wave was closed already and the object was not added.
+		 * 		True otherwise.
+		 */
+		synchronized boolean add(final Object rdkitObject, final long lEstimatedBytes) {
+			if (m_bClosed) {
+				return false;
+			}
+
+			if (!contains(rdkitObject)) {
+				if (m_iSize == m_arrObjects.length) {
+					m_arrObjects = Arrays.copyOf(m_arrObjects, m_iSize * 2);
+					m_arrEstimatedBytes = Arrays.copyOf(m_arrEstimatedBytes, m_iSize * 2);
+				}
+				m_arrEstimatedBytes[m_iSize] = lEstimatedBytes;
+				m_arrObjects[m_iSize++] = rdkitObject;
+
+				if (m_setObjects != null) {
+					m_setObjects.add(rdkitObject);
+				}
+				else if (m_iSize > LINEAR_SCAN_LIMIT) {
+					m_setObjects = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>(m_iSize * 2));
+					for (int i = 0; i < m_iSize; i++) {
+						m_setObjects.add(m_arrObjects[i]);
 					}
-				};
+				}
+			}
 
-				// Schedule the cleanup task for later
-				final Timer timer = new Timer("Quarantine RDKit Object Cleanup", false);
-				timer.schedule(futureCleanupTask, RDKIT_OBJECT_CLEANUP_DELAY_FOR_QUARANTINE);
+			return true;
+		}
+
+		/**
+		 * Removes the specified object from this wave without freeing its resources.
+		 *
+		 * @param rdkitObject Object to be removed. Must not be null.
+		 */
+		synchronized void remove(final Object rdkitObject) {
+			if (!m_bClosed && contains(rdkitObject)) {
+				for (int i = 0; i < m_iSize; i++) {
+					if (m_arrObjects[i] == rdkitObject) {
+						System.arraycopy(m_arrObjects, i + 1, m_arrObjects, i, m_iSize - i - 1);
+						System.arraycopy(m_arrEstimatedBytes, i + 1, m_arrEstimatedBytes, i, m_iSize - i - 1);
+						m_arrObjects[--m_iSize] = null;
+						break;
+					}
+				}
+				if (m_setObjects != null) {
+					m_setObjects.remove(rdkitObject);
+				}
 			}
 		}
+
+		/**
+		 * Closes this wave and frees the resources of all registered objects by
+		 * calling their delete() methods. The deletion itself happens outside the lock.
+		 */
+		void closeAndCleanup() {
+			final Object[] arrObjects;
+			final int iSize;
+
+			synchronized (this) {
+				if (m_bClosed) {
+					return;
+				}
+				m_bClosed = true;
+				arrObjects = m_arrObjects;
+				iSize = m_iSize;
+				m_arrObjects = null;
+				m_arrEstimatedBytes = null;
+				m_setObjects = null;
+				m_iSize = 0;
+			}
+
+			for (int i = 0; i < iSize; i++) {
+				RDKitObjectDeleter.delete(arrObjects[i]);
+			}
+		}
+
+		/**
+		 * Closes this wave and moves all registered objects into the specified list
+		 * without freeing them.
+		 *
+		 * @param listTarget List to receive the objects. Must not be null.
+		 *
+		 * @return Estimated native size of the moved objects, as estimated when they were added.
+		 */
+		synchronized long closeAndDrainTo(final List<Object> listTarget) {
+			long lEstimatedBytes = 0;
+
+			if (!m_bClosed) {
+				m_bClosed = true;
+				for (int i = 0; i < m_iSize; i++) {
+					listTarget.add(m_arrObjects[i]);
+					lEstimatedBytes += m_arrEstimatedBytes[i];
+				}
+				m_arrObjects = null;
+				m_arrEstimatedBytes = null;
+				m_setObjects = null;
+				m_iSize = 0;
+			}
+
+			return lEstimatedBytes;
+		}
+
+		//
+		// Private Methods
+		//
+
+		/**
+		 * Checks by identity, if the specified object is registered in this wave.
+		 * Must be called while holding the lock of this wave.
+		 *
+		 * @param rdkitObject Object to check. Must not be null.
+		 *
+		 * @return True, if registered. False otherwise.
+		 */
+		private boolean contains(final Object rdkitObject) {
+			if (m_setObjects != null) {
+				return m_setObjects.contains(rdkitObject);
+			}
+
+			for (int i = 0; i < m_iSize; i++) {
+				if (m_arrObjects[i] == rdkitObject) {
+					return true;
+				}
+			}
+
+			return false;
+		}
 	}
 }
 
@@ -54,6 +54,8 @@ import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.port.PortType;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
 import org.rdkit.knime.util.InputDataInfo;
 import org.rdkit.knime.util.SplitCondition;
 
@@ -63,7 +65,9 @@ import org.rdkit.knime.util.SplitCondition;
  * out rows completely based on certain criteria. It does not perform any
  * further calculations or additions of rows in this basic implementation.
  * For more complex splitting operations derive a class directly from
- * {@link AbstractRDKitNodeModel}.
+ * {@link AbstractRDKitNodeModel}. Splitters, which decide about every row
+ * independently of other rows, can call {@link #enableRowStreaming()} in their
+ * constructor to split rows also in streaming mode.
  * 
  * @author Manuel Schwarze
  * 
@@ -123,6 +127,18 @@ public abstract class AbstractRDKitSplitterNodeModel extends AbstractRDKitNodeMo
 				"- Splitting", this);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * This method implements the generic splitting of rows of input table at port 0
+	 * in streaming mode.
+	 */
+	@Override
+	protected void processing(final RowInput input, final RowOutput[] arrOutputs,
+			final InputDataInfo[] arrInputDataInfo, final long lRowCount, final ExecutionContext exec)
+					throws Exception {
+		splitRows(0, input, arrOutputs, arrInputDataInfo, lRowCount, exec, this);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * This implementation returns by default the number of out ports.
@@ -0,0 +1,579 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.nodes;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.KNIMEConstants;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableFunction;
+import org.knime.core.node.streamable.StreamableOperator;
+import org.knime.core.node.streamable.StreamableOperatorInternals;
+import org.knime.core.util.ThreadPool;
+import org.knime.core.util.ThreadUtils;
+
+/**
+ * A streamable function that chains two streamable functions. Every input row is processed
+ * by the first function and its result row by the second function, e.g. to auto-convert
+ * input columns before performing the calculations of a node, without creating an
+ * intermediate table. When running as part of a streaming or distributed execution both
+ * functions run concurrently in a pipeline, connected by a bounded row queue, so that
+ * each of them can make use of its own parallel processing. The internals of this
+ * function are the internals of the second function. The same pipeline can also be used
+ * to feed a function into an arbitrary operator, see
+ * {@link #runChained(StreamableFunction, DataTableSpec, StreamableOperator, PortInput[], PortOutput[], ExecutionContext)}.
+ * 
+ * @author Manuel Schwarze
+ */
+public class ChainedStreamableFunction extends StreamableFunction {
+
+	//
+	// Constants
+	//
+
+	/** The logger instance. */
+	private static final NodeLogger LOGGER = NodeLogger
+			.getLogger(ChainedStreamableFunction.class);
+
+	/** The maximal number of rows buffered between the two functions. */
+	private static final int QUEUE_SIZE = 1024;
+
+	/** The time in milliseconds to wait for free space in the queue before checking for cancellation. */
+	private static final long QUEUE_OFFER_TIMEOUT = 100;
+
+	/** Marker row that signals the end of the rows delivered by the first function. */
+	private static final DataRow END_OF_ROWS = new DefaultRow("END_OF_ROWS", new DataCell[0]);
+
+	//
+	// Members
+	//
+
+	/** The first function, which receives the input rows. */
+	private final StreamableFunction m_firstFunction;
+
+	/** The table specification of the rows delivered by the first function. */
+	private final DataTableSpec m_intermediateSpec;
+
+	/** The second function, which delivers the output rows. */
+	private final StreamableFunction m_secondFunction;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Creates a new chained streamable function.
+	 * 
+	 * @param firstFunction The first function, which receives the input rows. Must not be null.
+	 * @param intermediateSpec The table specification of the rows delivered by the first function.
+	 * 		Must not be null.
+	 * @param secondFunction The second function, which delivers the output rows. Must not be null.
+	 */
+	public ChainedStreamableFunction(final StreamableFunction firstFunction,
+			final DataTableSpec intermediateSpec, final StreamableFunction secondFunction) {
+		if (firstFunction == null || secondFunction == null) {
+			throw new IllegalArgumentException("Streamable functions must not be null.");
+		}
+		if (intermediateSpec == null) {
+			throw new IllegalArgumentException("Intermediate table specification must not be null.");
+		}
+
+		m_firstFunction = firstFunction;
+		m_intermediateSpec = intermediateSpec;
+		m_secondFunction = secondFunction;
+	}
+
+	//
+	// Public Methods
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void init(final ExecutionContext ctx) throws Exception {
+		m_firstFunction.init(ctx);
+		m_secondFunction.init(ctx);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Processes the row with both functions one after the other.
+	 */
+	@Override
+	public DataRow compute(final DataRow input) throws Exception {
+		return m_secondFunction.compute(m_firstFunction.compute(input));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void finish() {
+		try {
+			m_firstFunction.finish();
+		}
+		finally {
+			m_secondFunction.finish();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Runs the first function in a task of the KNIME thread pool, which feeds its result rows
+	 * through a bounded queue into the second function running in the calling thread.
+	 */
+	@Override
+	public void runFinal(final PortInput[] inputs, final PortOutput[] outputs,
+			final ExecutionContext exec) throws Exception {
+		runChained(m_firstFunction, m_intermediateSpec, m_secondFunction, inputs, outputs, exec);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StreamableOperatorInternals saveInternals() {
+		return m_secondFunction.saveInternals();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void loadInternals(final StreamableOperatorInternals internals) {
+		m_secondFunction.loadInternals(internals);
+	}
+
+	//
+	// Static Package Methods
+	//
+
+	/**
+	 * Runs the specified function in a task of the KNIME thread pool on the first input port and feeds
+	 * its result rows through a bounded queue as first input into the specified operator,
+	 * which runs in the calling thread. All other inputs are passed to the operator as they are.
+	 * While the operator runs, the calling thread is invisible to the KNIME thread pool it belongs to,
+	 * if any, so that the pool can start the task even if all its threads are in use.
+	 * If the operator fails or stops early, the task gets stopped and this method waits for it.
+	 * 
+	 * @param firstFunction The function, which receives the rows of the first input port. Must not be null.
+	 * @param intermediateSpec The table specification of the rows delivered by the function.
+	 * 		Must not be null.
+	 * @param secondOperator The operator, which receives the rows delivered by the function
+	 * 		and writes the outputs. Must not be null.
+	 * @param inputs All inputs. The first input must be a row input.
+	 * @param outputs All outputs, which are passed to the operator.
+	 * @param exec Execution context. Must not be null.
+	 * 
+	 * @throws Exception Thrown, if the function or the operator failed.
+	 */
+	static void runChained(final StreamableFunction firstFunction, final DataTableSpec intermediateSpec,
+			final StreamableOperator secondOperator, final PortInput[] inputs, final PortOutput[] outputs,
+			final ExecutionContext exec) throws Exception {
+		final BlockingQueue<DataRow> queue = new ArrayBlockingQueue<DataRow>(QUEUE_SIZE);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final ExecutionContext execFirst = exec.createSilentSubExecutionContext(0.0d);
+		final QueueRowOutput output = new QueueRowOutput(queue);
+		final QueueRowInput input = new QueueRowInput(queue, intermediateSpec);
+		final FirstStage stageFirst = new FirstStage(firstFunction, inputs[0], output, execFirst, failure);
+
+		KNIMEConstants.GLOBAL_THREAD_POOL.enqueue(ThreadUtils.runnableWithContext(stageFirst));
+
+		final PortInput[] arrSecondInputs = inputs.clone();
+		arrSecondInputs[0] = input;
+
+		final Callable<Void> callSecond = new Callable<Void>() {
+			@Override
+			public Void call() throws InterruptedException {
+				try {
+					secondOperator.runFinal(arrSecondInputs, outputs, exec);
+				}
+				catch (final Exception exc) {
+					failure.compareAndSet(null, exc);
+				}
+				finally {
+					// If the second operator stopped before it took all rows (failure, cancellation
+					// or it did not need all of them) the first function would block forever
+					// on the full queue - stop it
+					if (!input.isExhausted()) {
+						output.cancel();
+						stageFirst.stop();
+						while (!stageFirst.awaitTermination(QUEUE_OFFER_TIMEOUT)) {
+							queue.clear();
+						}
+					}
+					stageFirst.awaitTermination(0);
+				}
+				return null;
+			}
+		};
+
+		final ThreadPool pool = ThreadPool.currentPool();
+		if (pool != null) {
+			try {
+				pool.runInvisible(callSecond);
+			}
+			catch (final ExecutionException exc) {
+				failure.compareAndSet(null, exc.getCause());
+			}
+		}
+		else {
+			callSecond.call();
+		}
+
+		final Throwable exc = failure.get();
+		if (exc instanceof Exception) {
+			throw (Exception)exc;
+		}
+		else if (exc instanceof Error) {
+			throw (Error)exc;
+		}
+	}
+
+	//
+	// Inner Classes
+	//
+
+	/**
+	 * Task that runs the first function in a thread of the KNIME thread pool. It can be
+	 * stopped before or while it runs. The thread is only interrupted while it runs the
+	 * function, so that a pool thread is never interrupted in a later task.
+	 */
+	private static class FirstStage implements Runnable {
+
+		/** The function to run. */
+		private final StreamableFunction m_function;
+
+		/** The input of the function. */
+		private final PortInput m_input;
+
+		/** The output of the function. */
+		private final QueueRowOutput m_output;
+
+		/** The execution context of the function. */
+		private final ExecutionContext m_exec;
+
+		/** Receives the failure of the function. */
+		private final AtomicReference<Throwable> m_failure;
+
+		/** Counted down when the task is done or when it was stopped before it started. */
+		private final CountDownLatch m_latchDone;
+
+		/** The thread running the function. Null, if not running. Guarded by this. */
+		private Thread m_thread;
+
+		/** Flag to tell that the task was stopped. Guarded by this. */
+		private boolean m_bStopped;
+
+		/**
+		 * Creates a new task.
+		 * 
+		 * @param function The function to run. Must not be null.
+		 * @param input The input of the function. Must not be null.
+		 * @param output The output of the function. Must not be null.
+		 * @param exec The execution context of the function. Must not be null.
+		 * @param failure Receives the failure of the function. Must not be null.
+		 */
+		private FirstStage(final StreamableFunction function, final PortInput input,
+				final QueueRowOutput output, final ExecutionContext exec,
+				final AtomicReference<Throwable> failure) {
+			m_function = function;
+			m_input = input;
+			m_output = output;
+			m_exec = exec;
+			m_failure = failure;
+			m_latchDone = new CountDownLatch(1);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run() {
+			synchronized (this) {
+				if (m_bStopped) {
+					m_latchDone.countDown();
+					return;
+				}
+				m_thread = Thread.currentThread();
+			}
+
+			try {
+				m_function.runFinal(new PortInput[] { m_input }, new PortOutput[] { m_output }, m_exec);
+			}
+			catch (final Throwable exc) {
+				// Failures caused by stopping the function on purpose are not of interest
+				if (!m_output.isCancelled()) {
+					m_failure.compareAndSet(null, exc);
+				}
+			}
+			finally {
+				// Ensures that the second operator terminates also after a failure
+				m_output.signalEnd();
+
+				synchronized (this) {
+					m_thread = null;
+				}
+
+				// Do not pass an interruption caused by stopping on to the next task of the pool thread
+				Thread.interrupted();
+				m_latchDone.countDown();
+			}
+		}
+
+		/**
+		 * Stops the task. If it did not start yet, it will not run the function at all.
+		 * If it is running, its thread gets interrupted.
+		 */
+		private synchronized void stop() {
+			m_bStopped = true;
+			if (m_thread != null) {
+				m_thread.interrupt();
+			}
+			else {
+				// Not started yet or done already - nobody needs to wait for it
+				m_latchDone.countDown();
+			}
+		}
+
+		/**
+		 * Waits until the task is done.
+		 * 
+		 * @param lTimeout Maximal time to wait in milliseconds. 0 to wait without limit.
+		 * 
+		 * @return True, if the task is done. False, if the timeout elapsed.
+		 * 
+		 * @throws InterruptedException Thrown, if interrupted while waiting.
+		 */
+		private boolean awaitTermination(final long lTimeout) throws InterruptedException {
+			if (lTimeout <= 0) {
+				m_latchDone.await();
+				return true;
+			}
+			return m_latchDone.await(lTimeout, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Row output that puts all rows into a blocking queue.
+	 */
+	private static class QueueRowOutput extends RowOutput {
+
+		/** The queue to put rows into. */
+		private final BlockingQueue<DataRow> m_queue;
+
+		/** Flag to remember that the end marker was put into the queue already. */
+		private boolean m_bEndSignaled = false;
+
+		/** Flag to tell that the consumer is gone and no rows shall be put into the queue anymore. */
+		private volatile boolean m_bCancelled = false;
+
+		/**
+		 * Creates a new row output for the specified queue.
+		 * 
+		 * @param queue Queue to put rows into. Must not be null.
+		 */
+		private QueueRowOutput(final BlockingQueue<DataRow> queue) {
+			m_queue = queue;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void push(final DataRow row) throws InterruptedException {
+			put(row);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() throws InterruptedException {
+			if (!m_bEndSignaled && !m_bCancelled) {
+				put(END_OF_ROWS);
+				m_bEndSignaled = true;
+			}
+		}
+
+		/**
+		 * Stops accepting rows, because the consumer does not take any rows anymore.
+		 * Blocked and further push calls fail with an InterruptedException.
+		 */
+		private void cancel() {
+			m_bCancelled = true;
+		}
+
+		/**
+		 * Determines, if this output was cancelled.
+		 * 
+		 * @return True, if cancelled. False otherwise.
+		 */
+		private boolean isCancelled() {
+			return m_bCancelled;
+		}
+
+		/**
+		 * Puts the passed in row into the queue, waiting for free space. Checks regularly
+		 * for cancellation, also if the producer swallows interruptions.
+		 * 
+		 * @param row Row to put into the queue. Must not be null.
+		 * 
+		 * @throws InterruptedException Thrown, if interrupted or cancelled while waiting.
+		 */
+		private void put(final DataRow row) throws InterruptedException {
+			while (!m_queue.offer(row, QUEUE_OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+				if (m_bCancelled) {
+					throw new InterruptedException("Consumer of chained streamable function stopped.");
+				}
+			}
+		}
+
+		/**
+		 * Puts the end marker into the queue, if this did not happen yet. Does
+		 * not throw an exception if interrupted, as the consumer is gone then.
+		 */
+		private void signalEnd() {
+			try {
+				close();
+			}
+			catch (final InterruptedException exc) {
+				LOGGER.debug("Chained streamable function was interrupted.");
+			}
+		}
+	}
+
+	/**
+	 * Row input that takes all rows from a blocking queue until the end marker is found.
+	 */
+	private static class QueueRowInput extends RowInput {
+
+		/** The queue to take rows from. */
+		private final BlockingQueue<DataRow> m_queue;
+
+		/** The table specification of the rows. */
+		private final DataTableSpec m_spec;
+
+		/** Flag to remember that the end marker was taken from the queue already. */
+		private volatile boolean m_bEndReached = false;
+
+		/** Flag to remember that the consumer closed this input. */
+		private boolean m_bClosed = false;
+
+		/**
+		 * Creates a new row input for the specified queue.
+		 * 
+		 * @param queue Queue to take rows from. Must not be null.
+		 * @param spec Table specification of the rows. Must not be null.
+		 */
+		private QueueRowInput(final BlockingQueue<DataRow> queue, final DataTableSpec spec) {
+			m_queue = queue;
+			m_spec = spec;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public DataTableSpec getDataTableSpec() {
+			return m_spec;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public DataRow poll() throws InterruptedException {
+			DataRow row = null;
+
+			if (!m_bEndReached && !m_bClosed) {
+				row = m_queue.take();
+				if (row == END_OF_ROWS) {
+					m_bEndReached = true;
+					row = null;
+				}
+			}
+
+			return row;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() {
+			m_bClosed = true;
+		}
+
+		/**
+		 * Determines, if all rows including the end marker were taken from the queue.
+		 * 
+		 * @return True, if the producer finished and all its rows were consumed.
+		 */
+		private boolean isExhausted() {
+			return m_bEndReached;
+		}
+	}
+}
@@ -0,0 +1,745 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.nodes;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.knime.core.node.NodeLogger;
+import org.rdkit.knime.nodes.preferences.RDKitPerformancePreferencePage;
+
+/**
+ * The compute pool bounds the number of RDKit calculations running at the same time
+ * across all concurrently executing RDKit nodes. Without it every node would use
+ * its own threads sized to the CPU count, which oversubscribes the CPUs as soon as
+ * several RDKit branches of a workflow run in parallel.
+ * Every node execution registers as a client with a weight. Before a thread performs
+ * a calculation it acquires a slot of the pool for its client. If all slots are in use,
+ * waiting threads are queued per client and freed slots are handed out by stride
+ * scheduling, so that every client gets a share of the slots proportional to its weight.
+ * As long as no thread waits, slots are taken and returned lock-free by updating the
+ * number of free slots atomically. The lock is only used when a thread has to wait.
+ * Calculations run in the calling threads, which are still owned by KNIME's thread pools.
+ * This keeps thread local resources like cleanup scopes intact. Acquiring a slot
+ * is reentrant: a thread that holds a slot already does not acquire another one.
+ * There is only one pool per plug-in, which offers utilization metrics.
+ *
+ * @author Manuel Schwarze
+ */
+public final class RDKitComputePool {
+
+	//
+	// Constants
+	//
+
+	/** The logger instance. */
+	private static final NodeLogger LOGGER = NodeLogger
+			.getLogger(RDKitComputePool.class);
+
+	/** The stride of a client with weight 1. Clients with higher weights advance slower. */
+	private static final long STRIDE = 1L << 20;
+
+	//
+	// Globals
+	//
+
+	/** The singleton instance. Created lazily. */
+	private static RDKitComputePool g_instance;
+
+	//
+	// Members
+	//
+
+	/** The lock that guards all scheduling state of waiting threads. */
+	private final ReentrantLock m_lock;
+
+	/** All registered clients. Guarded by the lock. */
+	private final List<Client> m_listClients;
+
+	/** The slot held by the current thread, if any. */
+	private final ThreadLocal<Slot> m_tlSlot;
+
+	/** The maximal number of concurrent calculations. Changed only while holding the lock. */
+	private volatile int m_iCapacity;
+
+	/**
+	 * The number of free slots. Slots are taken and returned lock-free. It can become
+	 * negative, if the capacity was reduced while slots were in use.
+	 */
+	private final AtomicInteger m_iFreeSlots;
+
+	/**
+	 * The number of threads waiting for a slot. Changed only while holding the lock,
+	 * but read without it to decide, if the lock-free fast path can be taken.
+	 */
+	private volatile int m_iWaiting;
+
+	/** The pass of the client that was served last. Idle clients start from here. Guarded by the lock. */
+	private long m_lVirtualTime;
+
+	/** Flag to tell that the pool was shut down. All slot requests are granted without limit then. */
+	private volatile boolean m_bShutdown;
+
+	/** The time when this pool was created. Used to calculate the utilization. */
+	private final long m_lStartNanos;
+
+	/** Number of calculations that have been performed in a slot. */
+	private final AtomicLong m_lCompletedTasks;
+
+	/** Total time of all calculations performed in a slot. */
+	private final AtomicLong m_lBusyNanos;
+
+	/** Total time threads had to wait for a slot. */
+	private final AtomicLong m_lWaitNanos;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Creates a new compute pool with the capacity configured in the preferences.
+	 */
+	private RDKitComputePool() {
+		m_lock = new ReentrantLock();
+		m_listClients = new ArrayList<Client>();
+		m_tlSlot = new ThreadLocal<Slot>() {
+			@Override
+			protected Slot initialValue() {
+				return new Slot();
+			}
+		};
+		m_iCapacity = RDKitPerformancePreferencePage.getComputePoolSize();
+		m_iFreeSlots = new AtomicInteger(m_iCapacity);
+		m_lStartNanos = System.nanoTime();
+		m_lCompletedTasks = new AtomicLong();
+		m_lBusyNanos = new AtomicLong();
+		m_lWaitNanos = new AtomicLong();
+	}
+
+	//
+	// Public Methods
+	//
+
+	/**
+	 * Registers a new client, usually a node execution. The client should be closed
+	 * when the execution is done. The capacity of the pool gets refreshed from
+	 * the preferences with every registration.
+	 *
+	 * @param strName Name of the client for logging purposes.
+	 * @param iWeight Weight of the client. Clients with a higher weight get more slots
+	 * 		when competing with other clients. Values smaller than 1 are treated as 1.
+	 *
+	 * @return Registered client. Never null.
+	 */
+	public Client register(final String strName, final int iWeight) {
+		final Client client = new Client(this, strName, Math.max(1, iWeight));
+
+		m_lock.lock();
+		try {
+			final int iCapacity = RDKitPerformancePreferencePage.getComputePoolSize();
+			m_iFreeSlots.addAndGet(iCapacity - m_iCapacity);
+			m_iCapacity = iCapacity;
+			client.m_lPass = m_lVirtualTime;
+			m_listClients.add(client);
+			dispatch();
+		}
+		finally {
+			m_lock.unlock();
+		}
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Registered " + client + " - " + this);
+		}
+
+		return client;
+	}
+
+	/**
+	 * Acquires a slot for the specified client. Blocks until a slot is available.
+	 * If the current thread holds a slot already, this method returns immediately.
+	 * A successful call must be followed by a call to {@link #release()} in a finally block.
+	 * If the thread gets interrupted while waiting, the interrupt flag is restored and
+	 * the calculation may run without a slot.
+	 *
+	 * @param client Client the calculation belongs to. Can be null to not limit the calculation.
+	 *
+	 * @return True, if a slot was acquired and needs to be released. False otherwise.
+	 */
+	public boolean acquire(final Client client) {
+		final Slot slot = m_tlSlot.get();
+
+		if (client == null || slot.m_client != null) {
+			return false;
+		}
+
+		if (m_bShutdown) {
+			return false;
+		}
+
+		final long lStart = System.nanoTime();
+		boolean bGranted = false;
+
+		// Fast path without lock - a slot is free and nobody is waiting
+		if (m_iWaiting == 0 && tryTakeSlot()) {
+			client.m_iActive.incrementAndGet();
+			bGranted = true;
+		}
+		else {
+			bGranted = await(client);
+		}
+
+		if (bGranted) {
+			final long lNow = System.nanoTime();
+			final long lWait = lNow - lStart;
+			m_lWaitNanos.addAndGet(lWait);
+			client.m_lWaitNanos.addAndGet(lWait);
+			slot.m_client = client;
+			slot.m_lGrantedNanos = lNow;
+		}
+
+		return bGranted;
+	}
+
+	/**
+	 * Releases the slot held by the current thread and hands it to the next waiting thread.
+	 * Must only be called, if {@link #acquire(Client)} returned true before.
+	 */
+	public void release() {
+		final Slot slot = m_tlSlot.get();
+		final Client client = slot.m_client;
+
+		if (client == null) {
+			throw new IllegalStateException("The current thread does not hold a slot of the RDKit compute pool.");
+		}
+
+		final long lBusy = System.nanoTime() - slot.m_lGrantedNanos;
+		slot.m_client = null;
+		m_lBusyNanos.addAndGet(lBusy);
+		m_lCompletedTasks.incrementAndGet();
+		client.m_lBusyNanos.addAndGet(lBusy);
+		client.m_lCompletedTasks.incrementAndGet();
+		client.m_iActive.decrementAndGet();
+		m_iFreeSlots.incrementAndGet();
+
+		// Only if threads are waiting the lock is needed to hand the slot over. A thread
+		// that starts waiting concurrently dispatches itself after incrementing the
+		// waiting count, so it either sees the returned slot or we see it waiting.
+		if (m_iWaiting > 0) {
+			m_lock.lock();
+			try {
+				dispatch();
+			}
+			finally {
+				m_lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Performs the specified calculation in a slot of the specified client.
+	 *
+	 * @param client Client the calculation belongs to. Can be null to not limit the calculation.
+	 * @param task Calculation to be performed. Must not be null.
+	 *
+	 * @return Result of the calculation.
+	 *
+	 * @throws Exception Thrown, if the calculation failed.
+	 */
+	public <T> T call(final Client client, final Callable<T> task) throws Exception {
+		final boolean bSlot = acquire(client);
+
+		try {
+			return task.call();
+		}
+		finally {
+			if (bSlot) {
+				release();
+			}
+		}
+	}
+
+	/**
+	 * Returns the maximal number of concurrent calculations.
+	 *
+	 * @return Capacity.
+	 */
+	public int getCapacity() {
+		return m_iCapacity;
+	}
+
+	/**
+	 * Returns the number of calculations currently running in a slot.
+	 *
+	 * @return Active calculations.
+	 */
+	public int getActiveCount() {
+		return Math.max(0, m_iCapacity - m_iFreeSlots.get());
+	}
+
+	/**
+	 * Returns the number of threads currently waiting for a slot.
+	 *
+	 * @return Waiting threads.
+	 */
+	public int getWaitingCount() {
+		return m_iWaiting;
+	}
+
+	/**
+	 * Returns the number of registered clients.
+	 *
+	 * @return Client count.
+	 */
+	public int getClientCount() {
+		m_lock.lock();
+		try {
+			return m_listClients.size();
+		}
+		finally {
+			m_lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the total number of calculations performed in a slot.
+	 *
+	 * @return Completed calculations.
+	 */
+	public long getCompletedTaskCount() {
+		return m_lCompletedTasks.get();
+	}
+
+	/**
+	 * Returns the total time threads had to wait for a slot.
+	 *
+	 * @return Wait time in milliseconds.
+	 */
+	public long getTotalWaitTime() {
+		return TimeUnit.NANOSECONDS.toMillis(m_lWaitNanos.get());
+	}
+
+	/**
+	 * Returns the utilization of the pool since its creation, which is the
+	 * time spent in calculations divided by the available slot time.
+	 *
+	 * @return Utilization between 0.0 and 1.0.
+	 */
+	public double getUtilization() {
+		final long lElapsed = System.nanoTime() - m_lStartNanos;
+		final int iCapacity = getCapacity();
+		return (lElapsed <= 0 || iCapacity <= 0 ? 0.0d :
+			Math.min(1.0d, (double)m_lBusyNanos.get() / ((double)lElapsed * iCapacity)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder("RDKit Compute Pool [capacity=").append(getCapacity())
+				.append(", active=").append(getActiveCount())
+				.append(", waiting=").append(getWaitingCount())
+				.append(", clients=").append(getClientCount())
+				.append(", completed=").append(getCompletedTaskCount())
+				.append(", utilization=").append(Math.round(getUtilization() * 100)).append("%]")
+				.toString();
+	}
+
+	//
+	// Static Public Methods
+	//
+
+	/**
+	 * Returns the compute pool of the RDKit Nodes Plug-In.
+	 *
+	 * @return The singleton instance. Never null.
+	 */
+	public static synchronized RDKitComputePool getInstance() {
+		if (g_instance == null) {
+			g_instance = new RDKitComputePool();
+		}
+
+		return g_instance;
+	}
+
+	/**
+	 * Shuts down the compute pool. All waiting threads continue without a slot.
+	 * This is called when the plug-in gets stopped.
+	 */
+	public static synchronized void shutdown() {
+		if (g_instance != null) {
+			final RDKitComputePool pool = g_instance;
+			g_instance = null;
+
+			pool.m_lock.lock();
+			try {
+				pool.m_bShutdown = true;
+				for (final Client client : pool.m_listClients) {
+					for (final Waiter waiter : client.m_queueWaiters) {
+						waiter.m_condition.signal();
+					}
+				}
+			}
+			finally {
+				pool.m_lock.unlock();
+			}
+		}
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Queues the current thread as waiter of the specified client and blocks until
+	 * a slot was handed over to it, the pool was shut down or the thread was interrupted.
+	 *
+	 * @param client Client the calculation belongs to. Must not be null.
+	 *
+	 * @return True, if a slot was granted. False otherwise.
+	 */
+	private boolean await(final Client client) {
+		boolean bGranted = false;
+
+		m_lock.lock();
+		try {
+			if (!m_bShutdown) {
+				final Waiter waiter = new Waiter(m_lock.newCondition());
+				if (client.m_queueWaiters.isEmpty() && client.m_iActive.get() == 0) {
+					client.m_lPass = Math.max(client.m_lPass, m_lVirtualTime);
+				}
+				client.m_queueWaiters.add(waiter);
+				m_iWaiting++;
+				dispatch();
+
+				try {
+					while (!waiter.m_bGranted && !m_bShutdown) {
+						waiter.m_condition.await();
+					}
+				}
+				catch (final InterruptedException exc) {
+					Thread.currentThread().interrupt();
+				}
+
+				if (waiter.m_bGranted) {
+					bGranted = true;
+				}
+				else {
+					client.m_queueWaiters.remove(waiter);
+					m_iWaiting--;
+				}
+			}
+		}
+		finally {
+			m_lock.unlock();
+		}
+
+		return bGranted;
+	}
+
+	/**
+	 * Hands out free slots to waiting threads. The client with the smallest pass
+	 * gets served first. Closed clients without waiting threads are removed.
+	 * Must be called while holding the lock.
+	 */
+	private void dispatch() {
+		while (m_iWaiting > 0 && tryTakeSlot()) {
+			Client clientNext = null;
+			for (final Client client : m_listClients) {
+				if (!client.m_queueWaiters.isEmpty() &&
+						(clientNext == null || client.m_lPass < clientNext.m_lPass)) {
+					clientNext = client;
+				}
+			}
+
+			if (clientNext == null) {
+				m_iFreeSlots.incrementAndGet();
+				break;
+			}
+
+			final Waiter waiter = clientNext.m_queueWaiters.poll();
+			m_iWaiting--;
+			m_lVirtualTime = clientNext.m_lPass;
+			grant(clientNext);
+			waiter.m_bGranted = true;
+			waiter.m_condition.signal();
+		}
+
+		for (final Iterator<Client> i = m_listClients.iterator(); i.hasNext(); ) {
+			final Client client = i.next();
+			if (client.m_bClosed && client.m_queueWaiters.isEmpty()) {
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Assigns a slot, which was taken already, to the specified client and advances its pass.
+	 * Must be called while holding the lock.
+	 *
+	 * @param client Client that gets a slot.
+	 */
+	private void grant(final Client client) {
+		client.m_iActive.incrementAndGet();
+		client.m_lPass += STRIDE / client.m_iWeight;
+	}
+
+	/**
+	 * Takes a free slot without locking.
+	 *
+	 * @return True, if a slot was taken. False, if no slot is free.
+	 */
+	private boolean tryTakeSlot() {
+		while (true) {
+			final int iFree = m_iFreeSlots.get();
+			if (iFree <= 0) {
+				return false;
+			}
+			if (m_iFreeSlots.compareAndSet(iFree, iFree - 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Marks the specified client as closed. It gets removed as soon as no thread
+	 * waits for a slot on its behalf anymore.
+	 *
+	 * @param client Client to be closed.
+	 */
+	private void close(final Client client) {
+		m_lock.lock();
+		try {
+			client.m_bClosed = true;
+			dispatch();
+		}
+		finally {
+			m_lock.unlock();
+		}
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Closed " + client + " - " + this);
+		}
+	}
+
+	//
+	// Inner Classes
+	//
+
+	/**
+	 * A client of the compute pool, usually a single node execution, which
+	 * has its own queue of waiting threads and its own weight.
+	 */
+	public static final class Client implements AutoCloseable {
+
+		/** The pool the client is registered with. */
+		private final RDKitComputePool m_pool;
+
+		/** Name of the client. */
+		private final String m_strName;
+
+		/** Weight of the client. */
+		private final int m_iWeight;
+
+		/** Threads waiting for a slot on behalf of this client. Guarded by the pool lock. */
+		private final ArrayDeque<Waiter> m_queueWaiters;
+
+		/** The pass used for stride scheduling. Guarded by the pool lock. */
+		private long m_lPass;
+
+		/** Number of slots held by this client. */
+		private final AtomicInteger m_iActive;
+
+		/** Flag to tell that the client was closed. Changed only while holding the pool lock. */
+		private volatile boolean m_bClosed;
+
+		/** Number of calculations performed for this client. */
+		private final AtomicLong m_lCompletedTasks;
+
+		/** Total time of calculations performed for this client. */
+		private final AtomicLong m_lBusyNanos;
+
+		/** Total time threads of this client had to wait for a slot. */
+		private final AtomicLong m_lWaitNanos;
+
+		/**
+		 * Creates a new client.
+		 *
+		 * @param pool The pool the client is registered with.
+		 * @param strName Name of the client.
+		 * @param iWeight Weight of the client.
+		 */
+		private Client(final RDKitComputePool pool, final String strName, final int iWeight) {
+			m_pool = pool;
+			m_strName = strName;
+			m_iWeight = iWeight;
+			m_queueWaiters = new ArrayDeque<Waiter>();
+			m_iActive = new AtomicInteger();
+			m_lCompletedTasks = new AtomicLong();
+			m_lBusyNanos = new AtomicLong();
+			m_lWaitNanos = new AtomicLong();
+		}
+
+		/**
+		 * Returns the name of the client.
+		 *
+		 * @return Name.
+		 */
+		public String getName() {
+			return m_strName;
+		}
+
+		/**
+		 * Returns the weight of the client.
+		 *
+		 * @return Weight.
+		 */
+		public int getWeight() {
+			return m_iWeight;
+		}
+
+		/**
+		 * Returns the number of calculations performed for this client.
+		 *
+		 * @return Completed calculations.
+		 */
+		public long getCompletedTaskCount() {
+			return m_lCompletedTasks.get();
+		}
+
+		/**
+		 * Returns the total time of calculations performed for this client.
+		 *
+		 * @return Busy time in milliseconds.
+		 */
+		public long getTotalBusyTime() {
+			return TimeUnit.NANOSECONDS.toMillis(m_lBusyNanos.get());
+		}
+
+		/**
+		 * Returns the total time threads of this client had to wait for a slot.
+		 *
+		 * @return Wait time in milliseconds.
+		 */
+		public long getTotalWaitTime() {
+			return TimeUnit.NANOSECONDS.toMillis(m_lWaitNanos.get());
+		}
+
+		/**
+		 * Tells, if this client was closed already.
+		 *
+		 * @return True, if closed. False otherwise.
+		 */
+		public boolean isClosed() {
+			return m_bClosed;
+		}
+
+		/**
+		 * Closes this client. Calculations that are still running finish normally.
+		 */
+		@Override
+		public void close() {
+			m_pool.close(this);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			return new StringBuilder("Client ").append(m_strName)
+					.append(" [weight=").append(m_iWeight)
+					.append(", completed=").append(getCompletedTaskCount())
+					.append(", busy=").append(getTotalBusyTime()).append("ms")
+					.append(", waiting=").append(getTotalWaitTime()).append("ms]")
+					.toString();
+		}
+	}
+
+	/**
+	 * A thread waiting for a slot.
+	 */
+	private static final class Waiter {
+
+		/** The condition the thread is waiting on. */
+		private final Condition m_condition;
+
+		/** Flag to tell that a slot was assigned to the thread. Guarded by the pool lock. */
+		private boolean m_bGranted;
+
+		/**
+		 * Creates a new waiter.
+		 *
+		 * @param condition The condition the thread is waiting on.
+		 */
+		private Waiter(final Condition condition) {
+			m_condition = condition;
+		}
+	}
+
+	/**
+	 * The slot held by a thread. There is one instance per thread, which gets reused.
+	 */
+	private static final class Slot {
+
+		/** The client the slot is held for. Null, if the thread does not hold a slot. */
+		private Client m_client;
+
+		/** The time when the slot was granted. */
+		private long m_lGrantedNanos;
+	}
+}
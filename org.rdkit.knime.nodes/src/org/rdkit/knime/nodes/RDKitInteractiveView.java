@@ -50,6 +50,8 @@ package org.rdkit.knime.nodes;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Frame;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.beans.PropertyChangeEvent;
@@ -57,6 +59,12 @@ import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.JLabel;
 import javax.swing.JMenu;
@@ -65,6 +73,9 @@ import javax.swing.JOptionPane;
 import javax.swing.JViewport;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.table.JTableHeader;
@@ -77,6 +88,7 @@ import org.knime.base.node.preproc.filter.row.RowFilterTable;
 import org.knime.base.node.preproc.filter.row.rowfilter.AbstractRowFilter;
 import org.knime.base.node.preproc.filter.row.rowfilter.EndOfTableException;
 import org.knime.base.node.preproc.filter.row.rowfilter.IncludeFromNowOn;
+import org.knime.core.data.AdapterValue;
 import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTable;
@@ -100,6 +112,9 @@ import org.rdkit.knime.headers.AdditionalHeaderInfoRenderer;
 import org.rdkit.knime.headers.HeaderProperty;
 import org.rdkit.knime.headers.HeaderPropertyHandler;
 import org.rdkit.knime.headers.HeaderPropertyHandlerRegistry;
+import org.rdkit.knime.types.RDKitMolDepictionCache;
+import org.rdkit.knime.types.RDKitMolValue;
+import org.rdkit.knime.types.RDKitMolValueRenderer;
 
 /**
  * Table view on a {@link org.knime.core.data.DataTable} with the capability
@@ -115,6 +130,28 @@ import org.rdkit.knime.headers.HeaderPropertyHandlerRegistry;
  */
 public class RDKitInteractiveView<T extends NodeModel> extends NodeView<T> {
 
+	/** Milliseconds after the last scroll event before depictions of adjacent pages get prefetched. */
+	private static final int PREFETCH_DELAY = 150;
+
+	/**
+	 * Requests depictions of adjacent pages outside the event dispatch thread, because even
+	 * hashing the molecules of two pages of all columns would make scrolling stutter.
+	 */
+	private static final ThreadPoolExecutor PREFETCH_EXECUTOR = new ThreadPoolExecutor(1, 1,
+			30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "RDKit Depiction Prefetcher");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+			return thread;
+		}
+	});
+
+	static {
+		PREFETCH_EXECUTOR.allowCoreThreadTimeOut(true);
+	}
+
 	/** The Component displaying the table. */
 	private final TableView m_tableView;
 
@@ -124,6 +161,12 @@ public class RDKitInteractiveView<T extends NodeModel> extends NodeView<T> {
 	/** The index of the port of the table to be shown. */
 	private final int m_iIndex;
 
+	/** Prefetches depictions of the adjacent pages when scrolling stopped for a moment. */
+	private final Timer m_timerPrefetch;
+
+	/** Incremented with every prefetch request, so that outdated requests get dropped. */
+	private volatile int m_iPrefetchGeneration;
+
 	/**
 	 * Starts a new <code>TableNodeView</code> displaying "&lt;no data&gt;".
 	 * The content comes up when the super class {@link NodeView} calls the
@@ -227,6 +270,20 @@ public class RDKitInteractiveView<T extends NodeModel> extends NodeView<T> {
 			}
 		});
 
+		m_timerPrefetch = new Timer(PREFETCH_DELAY, new ActionListener() {
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				prefetchAdjacentPages();
+			}
+		});
+		m_timerPrefetch.setRepeats(false);
+		m_tableView.getViewport().addChangeListener(new ChangeListener() {
+			@Override
+			public void stateChanged(final ChangeEvent e) {
+				m_timerPrefetch.restart();
+			}
+		});
+
 		getJMenuBar().add(m_tableView.createHiLiteMenu());
 		getJMenuBar().add(m_tableView.createNavigationMenu());
 		getJMenuBar().add(m_tableView.createViewMenu());
@@ -512,6 +569,8 @@ public class RDKitInteractiveView<T extends NodeModel> extends NodeView<T> {
 	protected void onClose() {
 		// unregister from hilite handler
 		m_tableView.cancelRowCountingInBackground();
+		m_timerPrefetch.stop();
+		m_iPrefetchGeneration++;
 	}
 
 	/**
@@ -535,6 +594,96 @@ public class RDKitInteractiveView<T extends NodeModel> extends NodeView<T> {
 		}
 	}
 
+	/**
+	 * Requests the depictions of the rows of the next and the previous page
+	 * in the background, so that they can be painted from raster tiles when
+	 * the user continues scrolling. Only rows that the content model has seen
+	 * already are considered. The molecule values and cell sizes are collected
+	 * here in the event dispatch thread, the depictions are requested from the
+	 * {@link RDKitMolDepictionCache} in the background without involving renderers.
+	 */
+	private void prefetchAdjacentPages() {
+		final int iGeneration = ++m_iPrefetchGeneration;
+		if (!hasData()) {
+			return;
+		}
+
+		final TableContentView table = m_tableView.getContentTable();
+		final Rectangle rectVisible = m_tableView.getViewport().getViewRect();
+		final int iFirstRow = table.rowAtPoint(new Point(0, rectVisible.y));
+		int iLastRow = table.rowAtPoint(new Point(0, rectVisible.y + rectVisible.height - 1));
+		if (iFirstRow < 0) {
+			return;
+		}
+		if (iLastRow < 0) {
+			iLastRow = table.getRowCount() - 1;
+		}
+
+		final int iPageSize = iLastRow - iFirstRow + 1;
+		final int iRowCount = Math.min(table.getRowCount(), table.getContentModel().getRowCount());
+		final int iNextEnd = Math.min(iRowCount, iLastRow + 1 + iPageSize);
+		final int iPreviousStart = Math.max(0, iFirstRow - iPageSize);
+		final List<PrefetchRequest> listRequests = new ArrayList<PrefetchRequest>();
+
+		for (int iCol = 0; iCol < table.getColumnCount(); iCol++) {
+			// The renderer of the first visible row was prepared already for painting
+			if (!(table.prepareRenderer(table.getCellRenderer(iFirstRow, iCol), iFirstRow, iCol)
+					instanceof RDKitMolValueRenderer)) {
+				continue;
+			}
+
+			// Next page first, as scrolling down is more likely
+			for (int iRow = iLastRow + 1; iRow < iNextEnd; iRow++) {
+				addPrefetchRequest(table, iRow, iCol, listRequests);
+			}
+			for (int iRow = iFirstRow - 1; iRow >= iPreviousStart; iRow--) {
+				addPrefetchRequest(table, iRow, iCol, listRequests);
+			}
+		}
+
+		if (!listRequests.isEmpty()) {
+			PREFETCH_EXECUTOR.execute(new Runnable() {
+				@Override
+				public void run() {
+					for (final PrefetchRequest request : listRequests) {
+						if (iGeneration != m_iPrefetchGeneration) {
+							break;
+						}
+						RDKitMolDepictionCache.getTile(request.m_molValue,
+								request.m_iWidth, request.m_iHeight, null);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Adds a prefetch request for a single cell, if it holds an RDKit molecule.
+	 * The value is taken from the content model without preparing a renderer.
+	 *
+	 * @param table The table. Must not be null.
+	 * @param iRow Row index.
+	 * @param iCol Column index in view coordinates.
+	 * @param listRequests List to add the request to. Must not be null.
+	 */
+	private void addPrefetchRequest(final TableContentView table, final int iRow, final int iCol,
+			final List<PrefetchRequest> listRequests) {
+		final Object value = table.getContentModel().getValueAt(iRow, table.convertColumnIndexToModel(iCol));
+		RDKitMolValue molValue = null;
+
+		if (value instanceof RDKitMolValue) {
+			molValue = (RDKitMolValue)value;
+		}
+		else if (value instanceof AdapterValue && ((AdapterValue)value).isAdaptable(RDKitMolValue.class)) {
+			molValue = ((AdapterValue)value).getAdapter(RDKitMolValue.class);
+		}
+
+		if (molValue != null) {
+			final Rectangle rectCell = table.getCellRect(iRow, iCol, false);
+			listRequests.add(new PrefetchRequest(molValue, rectCell.width, rectCell.height));
+		}
+	}
+
 	/* A JMenu that has one entry "Write to CSV file". */
 	private JMenu createWriteCSVMenu() {
 		final JMenu menu = new JMenu("Output");
@@ -711,4 +860,32 @@ public class RDKitInteractiveView<T extends NodeModel> extends NodeView<T> {
 			return m_filter.matches(m_handler.isHiLit(row.getKey()));
 		}
 	}
+
+	/**
+	 * A depiction to be prefetched: molecule value and cell size.
+	 */
+	private static final class PrefetchRequest {
+
+		/** Molecule value. */
+		private final RDKitMolValue m_molValue;
+
+		/** Width of the cell. */
+		private final int m_iWidth;
+
+		/** Height of the cell. */
+		private final int m_iHeight;
+
+		/**
+		 * Creates a new prefetch request.
+		 *
+		 * @param molValue Molecule value. Must not be null.
+		 * @param iWidth Width of the cell.
+		 * @param iHeight Height of the cell.
+		 */
+		private PrefetchRequest(final RDKitMolValue molValue, final int iWidth, final int iHeight) {
+			m_molValue = molValue;
+			m_iWidth = iWidth;
+			m_iHeight = iHeight;
+		}
+	}
 }
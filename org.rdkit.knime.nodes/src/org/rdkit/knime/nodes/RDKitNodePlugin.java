@@ -53,6 +53,7 @@ import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 import org.rdkit.knime.extensions.aggregration.RDKitMcsAggregationPreferenceInitializer;
 import org.rdkit.knime.nodes.preferences.RDKitNodesPreferenceInitializer;
+import org.rdkit.knime.nodes.preferences.RDKitPerformancePreferenceInitializer;
 
 /**
  * This is the eclipse bundle activator for the RDKit Nodes Plugin.
@@ -117,6 +118,8 @@ public class RDKitNodePlugin extends AbstractUIPlugin {
 	 */
 	@Override
 	public void stop(final BundleContext context) throws Exception {
+		RDKitComputePool.shutdown();
+		RDKitQuarantineManager.shutdown();
 		super.stop(context);
 		g_instance = null;
 	}
@@ -147,6 +150,7 @@ public class RDKitNodePlugin extends AbstractUIPlugin {
 				// Call all initializer here manually
 				new RDKitNodesPreferenceInitializer().initializeDefaultPreferences();
 				new RDKitMcsAggregationPreferenceInitializer().initializeDefaultPreferences();
+				new RDKitPerformancePreferenceInitializer().initializeDefaultPreferences();
 			}
 		}
 
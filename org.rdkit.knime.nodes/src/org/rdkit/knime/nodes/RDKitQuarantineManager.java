@@ -0,0 +1,402 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.nodes;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.RDKit.ExplicitBitVect;
+import org.RDKit.Int_Vect;
+import org.RDKit.ROMol;
+import org.knime.core.node.NodeLogger;
+import org.rdkit.knime.nodes.preferences.RDKitPerformancePreferencePage;
+import org.rdkit.knime.util.RDKitObjectDeleter;
+
+/**
+ * The quarantine manager frees RDKit objects with a delay. This is used when
+ * a node execution failed or was cancelled, because worker threads could still
+ * be using RDKit objects, which have been registered for cleanup.
+ * There is only one manager per plug-in, which uses a single daemon thread for all
+ * scheduled cleanups. The estimated native memory held by quarantined objects is
+ * bounded by a configurable budget. If the budget is exceeded, the oldest quarantined
+ * objects are freed early. The manager offers metrics about pending objects and bytes.
+ *
+ * @author Manuel Schwarze
+ */
+public final class RDKitQuarantineManager {
+
+	//
+	// Constants
+	//
+
+	/** The logger instance. */
+	private static final NodeLogger LOGGER = NodeLogger
+			.getLogger(RDKitQuarantineManager.class);
+
+	/** Estimated number of bytes of an RDKit object of unknown size. */
+	private static final long DEFAULT_OBJECT_SIZE = 256;
+
+	/** Estimated number of bytes of an empty molecule. */
+	private static final long MOLECULE_BASE_SIZE = 1024;
+
+	/** Estimated number of bytes per atom of a molecule (including bonds and properties). */
+	private static final long MOLECULE_ATOM_SIZE = 512;
+
+	//
+	// Globals
+	//
+
+	/** The singleton instance. Created lazily. */
+	private static RDKitQuarantineManager g_instance;
+
+	//
+	// Members
+	//
+
+	/** The scheduler that runs all delayed cleanups. */
+	private final ScheduledExecutorService m_scheduler;
+
+	/** All quarantined batches in order of quarantining (oldest first). */
+	private final ConcurrentLinkedQueue<QuarantineBatch> m_queueBatches;
+
+	/** Number of objects waiting to be freed. */
+	private final AtomicLong m_lPendingObjects;
+
+	/** Estimated number of native bytes waiting to be freed. */
+	private final AtomicLong m_lPendingBytes;
+
+	/** Number of objects, which have been freed before their quarantine time was over. */
+	private final AtomicLong m_lEarlyReleasedObjects;
+
+	/** Total number of objects, which have been quarantined. */
+	private final AtomicLong m_lTotalQuarantinedObjects;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Creates a new quarantine manager with its own scheduler thread.
+	 */
+	private RDKitQuarantineManager() {
+		m_scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "Quarantine RDKit Object Cleanup");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		m_queueBatches = new ConcurrentLinkedQueue<QuarantineBatch>();
+		m_lPendingObjects = new AtomicLong();
+		m_lPendingBytes = new AtomicLong();
+		m_lEarlyReleasedObjects = new AtomicLong();
+		m_lTotalQuarantinedObjects = new AtomicLong();
+	}
+
+	//
+	// Public Methods
+	//
+
+	/**
+	 * Puts the specified RDKit objects into quarantine. They will be freed after the
+	 * configured quarantine delay, or earlier, if the quarantine budget is exceeded.
+	 * The objects are not accessed before they get freed, because other threads may
+	 * still use them or may have freed them already. Therefore their native size must
+	 * be estimated by the caller with {@link #estimateNativeSize(Object)} at a time
+	 * they were known to be alive.
+	 *
+	 * @param arrObjects RDKit objects to be freed later. Can be null. Null elements are ignored.
+	 * @param lBytes Estimated native size of all objects.
+	 */
+	public void quarantine(final Object[] arrObjects, final long lBytes) {
+		if (arrObjects == null || arrObjects.length == 0) {
+			return;
+		}
+
+		final QuarantineBatch batch = new QuarantineBatch(arrObjects, lBytes);
+		m_queueBatches.add(batch);
+		m_lPendingObjects.addAndGet(arrObjects.length);
+		m_lPendingBytes.addAndGet(lBytes);
+		m_lTotalQuarantinedObjects.addAndGet(arrObjects.length);
+
+		try {
+			batch.m_future = m_scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					release(batch, false);
+				}
+			}, RDKitPerformancePreferencePage.getQuarantineDelay(), TimeUnit.SECONDS);
+		}
+		catch (final Exception exc) {
+			// Scheduler is not available anymore (plug-in stopped) - free immediately
+			LOGGER.debug("Scheduling quarantine cleanup failed - Freeing RDKit objects immediately.", exc);
+			release(batch, false);
+		}
+
+		enforceBudget();
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Quarantined " + arrObjects.length + " RDKit objects - " + this);
+		}
+	}
+
+	/**
+	 * Returns the number of objects waiting to be freed.
+	 *
+	 * @return Pending objects.
+	 */
+	public long getPendingObjectCount() {
+		return m_lPendingObjects.get();
+	}
+
+	/**
+	 * Returns the estimated number of native bytes waiting to be freed.
+	 *
+	 * @return Pending bytes (estimation).
+	 */
+	public long getPendingBytes() {
+		return m_lPendingBytes.get();
+	}
+
+	/**
+	 * Returns the number of objects, which have been freed before their
+	 * quarantine time was over, because the budget was exceeded.
+	 *
+	 * @return Early released objects.
+	 */
+	public long getEarlyReleasedObjectCount() {
+		return m_lEarlyReleasedObjects.get();
+	}
+
+	/**
+	 * Returns the total number of objects, which have been quarantined so far.
+	 *
+	 * @return Total quarantined objects.
+	 */
+	public long getTotalQuarantinedObjectCount() {
+		return m_lTotalQuarantinedObjects.get();
+	}
+
+	/**
+	 * Frees all quarantined objects immediately.
+	 */
+	public void releaseAll() {
+		for (final Iterator<QuarantineBatch> i = m_queueBatches.iterator(); i.hasNext(); ) {
+			release(i.next(), false);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RDKit Quarantine [pending objects=" + getPendingObjectCount() +
+				", pending bytes (estimated)=" + getPendingBytes() +
+				", early released objects=" + getEarlyReleasedObjectCount() +
+				", total quarantined objects=" + getTotalQuarantinedObjectCount() + "]";
+	}
+
+	//
+	// Static Public Methods
+	//
+
+	/**
+	 * Returns the quarantine manager of the plug-in and creates it, if necessary.
+	 *
+	 * @return Quarantine manager. Never null.
+	 */
+	public static synchronized RDKitQuarantineManager getInstance() {
+		if (g_instance == null) {
+			g_instance = new RDKitQuarantineManager();
+		}
+
+		return g_instance;
+	}
+
+	/**
+	 * Frees all quarantined objects and stops the scheduler thread. This is called
+	 * when the plug-in gets stopped.
+	 */
+	public static synchronized void shutdown() {
+		if (g_instance != null) {
+			g_instance.m_scheduler.shutdownNow();
+			g_instance.releaseAll();
+			g_instance = null;
+		}
+	}
+
+	/**
+	 * Estimates the native memory held by the specified RDKit object. This is a
+	 * rough estimation only. Molecules are estimated based on their atom count,
+	 * bit vectors based on their size. All other objects get a fixed size.
+	 * The object must not have been freed yet, as this calls into native code.
+	 *
+	 * @param obj RDKit object. Can be null.
+	 *
+	 * @return Estimated number of bytes. 0, if null.
+	 */
+	public static long estimateNativeSize(final Object obj) {
+		long lSize = 0;
+
+		if (obj != null) {
+			try {
+				if (obj instanceof ROMol) {
+					lSize = MOLECULE_BASE_SIZE + MOLECULE_ATOM_SIZE * ((ROMol)obj).getNumAtoms();
+				}
+				else if (obj instanceof ExplicitBitVect) {
+					lSize = DEFAULT_OBJECT_SIZE + ((ExplicitBitVect)obj).getNumBits() / 8;
+				}
+				else if (obj instanceof Int_Vect) {
+					lSize = DEFAULT_OBJECT_SIZE + ((Int_Vect)obj).size() * 4;
+				}
+				else {
+					lSize = DEFAULT_OBJECT_SIZE;
+				}
+			}
+			catch (final Exception exc) {
+				lSize = DEFAULT_OBJECT_SIZE;
+			}
+		}
+
+		return lSize;
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Frees the oldest quarantined batches early until the estimated pending
+	 * bytes are within the configured budget again.
+	 */
+	private void enforceBudget() {
+		final long lBudget = RDKitPerformancePreferencePage.getQuarantineBudget() * 1024L * 1024L;
+
+		for (final Iterator<QuarantineBatch> i = m_queueBatches.iterator();
+				m_lPendingBytes.get() > lBudget && i.hasNext(); ) {
+			final QuarantineBatch batch = i.next();
+			if (release(batch, true)) {
+				LOGGER.debug("Quarantine budget of " + (lBudget / 1024 / 1024) +
+						" MB exceeded - Freed " + batch.m_arrObjects.length + " RDKit objects early.");
+			}
+		}
+	}
+
+	/**
+	 * Frees the objects of the specified batch, if this did not happen yet.
+	 *
+	 * @param batch Batch to be freed. Must not be null.
+	 * @param bEarly Set to true, if the quarantine time of the batch is not over yet.
+	 *
+	 * @return True, if the batch was freed by this call. False, if it was freed already before.
+	 */
+	private boolean release(final QuarantineBatch batch, final boolean bEarly) {
+		boolean bReleased = false;
+
+		if (batch.m_bReleased.compareAndSet(false, true)) {
+			m_queueBatches.remove(batch);
+			final ScheduledFuture<?> future = batch.m_future;
+			if (future != null && bEarly) {
+				future.cancel(false);
+			}
+
+			for (final Object obj : batch.m_arrObjects) {
+				RDKitObjectDeleter.delete(obj);
+			}
+
+			m_lPendingObjects.addAndGet(-batch.m_arrObjects.length);
+			m_lPendingBytes.addAndGet(-batch.m_lBytes);
+			if (bEarly) {
+				m_lEarlyReleasedObjects.addAndGet(batch.m_arrObjects.length);
+			}
+			bReleased = true;
+		}
+
+		return bReleased;
+	}
+
+	//
+	// Inner Classes
+	//
+
+	/**
+	 * A set of RDKit objects, which were put into quarantine together.
+	 */
+	private static final class QuarantineBatch {
+
+		/** The quarantined objects. */
+		private final Object[] m_arrObjects;
+
+		/** Estimated native size of all objects. */
+		private final long m_lBytes;
+
+		/** Flag to ensure that objects are freed only once. */
+		private final AtomicBoolean m_bReleased = new AtomicBoolean(false);
+
+		/** The scheduled cleanup. Null, if not scheduled (yet). */
+		private volatile ScheduledFuture<?> m_future;
+
+		/**
+		 * Creates a new batch.
+		 *
+		 * @param arrObjects Quarantined objects. Must not be null.
+		 * @param lBytes Estimated native size of all objects.
+		 */
+		private QuarantineBatch(final Object[] arrObjects, final long lBytes) {
+			m_arrObjects = arrObjects;
+			m_lBytes = lBytes;
+		}
+	}
+}
@@ -81,7 +81,6 @@ import org.knime.core.node.defaultnodesettings.SettingsModelDouble;
 import org.knime.core.node.defaultnodesettings.SettingsModelDoubleBounded;
 import org.knime.core.node.defaultnodesettings.SettingsModelInteger;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
-import org.knime.core.util.MultiThreadWorker;
 import org.rdkit.knime.nodes.AbstractRDKitNodeModel;
 import org.rdkit.knime.types.RDKitAdapterCell;
 import org.rdkit.knime.types.RDKitMolCellFactory;
@@ -354,12 +353,12 @@ public class RDKitAddConformersNodeModel extends AbstractRDKitNodeModel {
 
       if (lTotalRowCount > 0) {
          // Get settings and define data specific behavior
-         final int iMaxParallelWorkers = (int)Math.ceil(1.5 * Runtime.getRuntime().availableProcessors());
+         final int iMaxParallelWorkers = getMaxParallelWorkers();
          final int iQueueSize = 10 * iMaxParallelWorkers;
          final AtomicLong rowOutputIndex = new AtomicLong(0);
          
          // Calculate conformers
-         new MultiThreadWorker<DataRow, DataRow[]>(iQueueSize, iMaxParallelWorkers) {
+         new PooledMultiThreadWorker<DataRow, DataRow[]>(iQueueSize, iMaxParallelWorkers) {
 
             /**
              * Computes the conformers.
@@ -372,7 +371,7 @@ public class RDKitAddConformersNodeModel extends AbstractRDKitNodeModel {
              *       we have a valid conformer to be added to the result table.
              */
             @Override
-            protected DataRow[] compute(final DataRow row, final long index) throws Exception {
+            protected DataRow[] computeInPool(final DataRow row, final long index) throws Exception {
                List<DataRow> listNewRows = null;
 
                // Get a unique wave id to mark RDKit Objects for cleanup
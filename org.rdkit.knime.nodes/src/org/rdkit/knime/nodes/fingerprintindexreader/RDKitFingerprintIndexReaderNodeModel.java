@@ -0,0 +1,280 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.nodes.fingerprintindexreader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.RowKey;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.data.vector.bitvector.DenseBitVector;
+import org.knime.core.data.vector.bitvector.DenseBitVectorCell;
+import org.knime.core.data.vector.bitvector.DenseBitVectorCellFactory;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.rdkit.knime.nodes.AbstractRDKitNodeModel;
+import org.rdkit.knime.nodes.similaritysearch.FingerprintIndex;
+import org.rdkit.knime.util.FileUtils;
+import org.rdkit.knime.util.InputDataInfo;
+import org.rdkit.knime.util.WarningConsolidator;
+
+/**
+ * This class implements the node model of the RDKitFingerprintIndexReader node, which
+ * reads all fingerprints of a fingerprint index file back into a table. The fingerprints
+ * are returned in the order they were written in, not in the popcount order of the file.
+ * 
+ * @author Manuel Schwarze
+ */
+public class RDKitFingerprintIndexReaderNodeModel extends AbstractRDKitNodeModel {
+
+	//
+	// Constants
+	//
+
+	/** The logger instance. */
+	protected static final NodeLogger LOGGER = NodeLogger
+			.getLogger(RDKitFingerprintIndexReaderNodeModel.class);
+
+	/** Warning context for fingerprints. */
+	protected static final WarningConsolidator.Context FP_CONTEXT =
+			new WarningConsolidator.Context("Fingerprint", "fingerprint", "fingerprints", true);
+
+	//
+	// Members
+	//
+
+	/** Settings model for the input file. */
+	private final SettingsModelString m_modelInputFile =
+			registerSettings(RDKitFingerprintIndexReaderNodeDialog.createInputFileModel());
+
+	/** Settings model for the option to use IDs read from the fingerprint index file as row IDs. */
+	private final SettingsModelBoolean m_modelUseIdsFromFileAsRowIds =
+			registerSettings(RDKitFingerprintIndexReaderNodeDialog.createUseIdsFromFileAsRowIdsModel());
+
+	//
+	// Internals
+	//
+
+	private long m_lReadFingerprints = 0;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Create new node model with no data in- and one out-port.
+	 */
+	RDKitFingerprintIndexReaderNodeModel() {
+		super(0, 1);
+
+		getWarningConsolidator().registerContext(FP_CONTEXT);
+	}
+
+	//
+	// Protected Methods
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
+			throws InvalidSettingsException {
+		// Reset warnings and check RDKit library readiness
+		super.configure(inSpecs);
+
+		// Perform checks on the specified input file
+		FileUtils.convertToFile(m_modelInputFile.getStringValue(), true, false);
+
+		// Consolidate all warnings and make them available to the user
+		generateWarnings();
+
+		// Generate output specs
+		return getOutputTableSpecs(inSpecs);
+	}
+
+	/**
+	 * This implementation returns always null as we do not have any input tables.
+	 * {@inheritDoc}
+	 * @return Always null.
+	 */
+	@Override
+	protected InputDataInfo[] createInputDataInfos(final int inPort, final DataTableSpec inSpec)
+			throws InvalidSettingsException {
+		return null;
+	}
+
+	/**
+	 * Returns the output table specification of the specified out port.
+	 * 
+	 * @param outPort Index of output port in focus. Zero-based.
+	 * @param inSpecs All input table specifications.
+	 * 
+	 * @return The specification of all output tables.
+	 * 
+	 * @throws InvalidSettingsException Thrown, if the settings are inconsistent with
+	 * 		given DataTableSpec elements.
+	 */
+	@Override
+	protected DataTableSpec getOutputTableSpec(final int outPort,
+			final DataTableSpec[] inSpecs) throws InvalidSettingsException {
+		DataTableSpec spec = null;
+		List<DataColumnSpec> listSpecs;
+
+		switch (outPort) {
+
+		case 0:
+			// Define output table
+			listSpecs = new ArrayList<DataColumnSpec>();
+			listSpecs.add(new DataColumnSpecCreator("Fingerprint", DenseBitVectorCell.TYPE).createSpec());
+			listSpecs.add(new DataColumnSpecCreator("Identifier", StringCell.TYPE).createSpec());
+
+			spec = new DataTableSpec("Fingerprints", listSpecs.toArray(new DataColumnSpec[listSpecs.size()]));
+			break;
+		}
+
+		return spec;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected BufferedDataTable[] processing(final BufferedDataTable[] inData, final InputDataInfo[][] arrInputDataInfo,
+			final ExecutionContext exec) throws Exception {
+		final DataTableSpec[] arrOutSpecs = getOutputTableSpecs(inData);
+
+		// Contains the rows with the result column
+		final BufferedDataContainer newTableData = exec.createDataContainer(arrOutSpecs[0]);
+
+		// Prepare all settings and pre-requisites
+		final File fileIndex = FileUtils.convertToFile(m_modelInputFile.getStringValue(), true, false);
+		final boolean bUseFileIds = m_modelUseIdsFromFileAsRowIds.getBooleanValue();
+
+		// Map the index file - this validates the header and the layout as well
+		final FingerprintIndex index = FingerprintIndex.open(fileIndex);
+		try {
+			final int iCount = index.size();
+			final int iNumBits = index.getNumBits();
+			int iAddedFingerprints = 0;
+			m_lReadFingerprints = 0;
+
+			for (int i = 0; i < iCount; i++) {
+				m_lReadFingerprints++;
+				final String strId = index.getId(i);
+				final DenseBitVector dbvFingerprint = new DenseBitVector(index.getFingerprint(i), iNumBits);
+
+				// Create row id
+				final RowKey rowKey = (bUseFileIds ?
+						new RowKey(strId) :
+							new RowKey("Row" + iAddedFingerprints));
+
+				final DataRow row = new DefaultRow(rowKey,
+						new DenseBitVectorCellFactory(dbvFingerprint).createDataCell(),
+						new StringCell(strId));
+
+				try {
+					newTableData.addRowToTable(row);
+					iAddedFingerprints++;
+				}
+				catch (final Exception exc) {
+					// If the unique row id exists already it will fail here
+					LOGGER.warn("Fingerprint " + i + " has a duplicated identifier - skipping it.");
+					getWarningConsolidator().saveWarning(FP_CONTEXT.getId(),
+							"Skipped fingerprint with duplicated identifier. Consider turning off the option to use it as row ID.");
+				}
+
+				// Check, if user cancelled and report progress every 20 fingerprints
+				if (i % 20 == 0) {
+					AbstractRDKitNodeModel.reportProgress(exec, i, iCount, row, " - Reading fingerprints");
+				}
+			}
+		}
+		finally {
+			// Release the mapping right away, which would keep the file locked on Windows
+			index.close();
+		}
+
+		exec.checkCanceled();
+		exec.setProgress(1.0, "Finished Processing");
+
+		newTableData.close();
+
+		return new BufferedDataTable[] { newTableData.getTable() };
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * This implementation considers the number of processed fingerprints.
+	 */
+	@Override
+	protected Map<String, Long> createWarningContextOccurrencesMap(
+			final BufferedDataTable[] inData, final InputDataInfo[][] arrInputDataInfo,
+			final BufferedDataTable[] resultData) {
+		// We do not call super here, because it would fail due to missing
+		// input tables in this node
+		final Map<String, Long> map =  new HashMap<String, Long>();
+		map.put(FP_CONTEXT.getId(), m_lReadFingerprints);
+
+		return map;
+	}
+}
@@ -0,0 +1,401 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.nodes.fingerprintindexwriter;
+
+import java.io.File;
+
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.StringValue;
+import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.data.vector.bitvector.BitVectorValue;
+import org.knime.core.data.vector.bitvector.DenseBitVector;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelColumnName;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.rdkit.knime.nodes.AbstractRDKitNodeModel;
+import org.rdkit.knime.nodes.similaritysearch.FingerprintIndexWriter;
+import org.rdkit.knime.util.FileUtils;
+import org.rdkit.knime.util.InputDataInfo;
+import org.rdkit.knime.util.SettingsUtils;
+import org.rdkit.knime.util.WarningConsolidator;
+
+/**
+ * This class implements the node model of the RDKitFingerprintIndexWriter node, which
+ * writes fingerprints into a binary, popcount sorted fingerprint index file that can be
+ * memory mapped for similarity searches. The input table is read twice: The first pass
+ * determines the file layout, the second pass writes the fingerprints directly at their
+ * sorted positions. This way the fingerprints never need to fit onto the heap.
+ * 
+ * @author Manuel Schwarze
+ */
+public class RDKitFingerprintIndexWriterNodeModel extends AbstractRDKitNodeModel {
+
+	//
+	// Constants
+	//
+
+	/** The logger instance. */
+	protected static final NodeLogger LOGGER = NodeLogger
+			.getLogger(RDKitFingerprintIndexWriterNodeModel.class);
+
+	/** Input data info index for Fingerprint value. */
+	protected static final int INPUT_COLUMN_FPS = 0;
+
+	/** Input data info index for ID value. */
+	protected static final int INPUT_COLUMN_ID = 1;
+
+	//
+	// Members
+	//
+
+	/** Settings model for the column name of the input column. */
+	private final SettingsModelString m_modelFingerprintColumnName =
+			registerSettings(RDKitFingerprintIndexWriterNodeDialog.createFingerprintColumnNameModel());
+
+	/** Settings model for the column name of the ID column. */
+	private final SettingsModelColumnName m_modelIdColumnName =
+			registerSettings(RDKitFingerprintIndexWriterNodeDialog.createIdColumnNameModel());
+
+	/** Settings model for the output file. */
+	private final SettingsModelString m_modelOutputFile =
+			registerSettings(RDKitFingerprintIndexWriterNodeDialog.createOutputFileModel());
+
+	/** Settings model for the option to overwrite an existing output file. */
+	private final SettingsModelBoolean m_modelOverwriteOption =
+			registerSettings(RDKitFingerprintIndexWriterNodeDialog.createOverwriteOptionModel());
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Create new node model with one data in- and no out-port.
+	 */
+	RDKitFingerprintIndexWriterNodeModel() {
+		super(1, 0);
+	}
+
+	//
+	// Protected Methods
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
+			throws InvalidSettingsException {
+		// Reset warnings and check RDKit library readiness
+		super.configure(inSpecs);
+
+		// Fingerprint column checks
+		// Auto guess the fingerprint column if not set - fails if no compatible column found
+		SettingsUtils.autoGuessColumn(inSpecs[0], m_modelFingerprintColumnName, BitVectorValue.class, 0,
+				"Auto guessing: Using column %COLUMN_NAME%.",
+				"No BitVectorValue compatible column in input table.", getWarningConsolidator());
+
+		// Determines, if the fingerprint column exists - fails if it does not
+		SettingsUtils.checkColumnExistence(inSpecs[0], m_modelFingerprintColumnName, BitVectorValue.class,
+				"Fingerprint column has not been specified yet.",
+				"Fingerprint column %COLUMN_NAME% does not exist. Has the input table changed?");
+
+		// ID column checks
+		// Auto guess the input column if not set - fails if no compatible column found
+		final boolean bIdColumnFound = SettingsUtils.autoGuessColumn(inSpecs[0], m_modelIdColumnName, StringValue.class, 0,
+				"Auto guessing: Using column %COLUMN_NAME% as ID column.",
+				null, getWarningConsolidator()); // Do not fail, if we don't find a string column
+		// If no string column was found we will use the row id
+		if (!bIdColumnFound) {
+			m_modelIdColumnName.setSelection(m_modelIdColumnName.getColumnName(), true);
+		}
+
+		// Determines, if the input column exists - fails if it does not
+		SettingsUtils.checkColumnExistence(inSpecs[0], m_modelIdColumnName, StringValue.class,
+				"ID column has not been specified yet.",
+				"ID column %COLUMN_NAME% does not exist. Has the input table changed?");
+
+		// Perform checks on the specified output file
+		final File fileOutput = FileUtils.convertToFile(m_modelOutputFile.getStringValue(), false, true);
+		if (fileOutput.exists()) {
+			if (m_modelOverwriteOption.getBooleanValue()) {
+				getWarningConsolidator().saveWarning("The specified output file exists and will be overwritten.");
+			}
+			else {
+				throw new InvalidSettingsException("The specified output file exists already. " +
+						"You may remove the file or switch on the Overwrite option to grant execution.");
+			}
+		}
+		else {
+			final File dirOutput = fileOutput.getParentFile();
+			if (dirOutput == null) {
+				throw new InvalidSettingsException("Cannot determine parent " +
+						"directory of the output file.");
+			}
+			else if (!dirOutput.exists()) {
+				getWarningConsolidator().saveWarning(
+						"Directory of specified output file does not exist " +
+						"and will be created.");
+			}
+		}
+
+		// Consolidate all warnings and make them available to the user
+		generateWarnings();
+
+		// Generate output specs
+		return getOutputTableSpecs(inSpecs);
+	}
+
+	/**
+	 * This implementation generates input data info objects for the fingerprint and
+	 * ID columns and connects them with the information coming from the appropriate setting models.
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected InputDataInfo[] createInputDataInfos(final int inPort, final DataTableSpec inSpec)
+			throws InvalidSettingsException {
+
+		InputDataInfo[] arrDataInfo = null;
+
+		// Specify input of table 1
+		if (inPort == 0) {
+			arrDataInfo = new InputDataInfo[2]; // We have two input column
+			arrDataInfo[INPUT_COLUMN_FPS] = new InputDataInfo(inSpec, null, m_modelFingerprintColumnName, "fingerprint",
+					InputDataInfo.EmptyCellPolicy.TreatAsNull, null,
+					BitVectorValue.class);
+
+			// If the row key is used as column we cannot use the InputDataInfo object
+			if (m_modelIdColumnName.useRowID()) {
+				arrDataInfo[INPUT_COLUMN_ID] = null;
+			}
+			else {
+				arrDataInfo[INPUT_COLUMN_ID] = new InputDataInfo(inSpec, null, m_modelIdColumnName, "id",
+						InputDataInfo.EmptyCellPolicy.TreatAsNull, null,
+						StringValue.class);
+			}
+		}
+
+		return (arrDataInfo == null ? new InputDataInfo[0] : arrDataInfo);
+	}
+
+	/**
+	 * In this implementation it returns always null as we don't have any output table.
+	 * {@inheritDoc}
+	 * 
+	 * @return Always null.
+	 */
+	@Override
+	protected DataTableSpec getOutputTableSpec(final int outPort,
+			final DataTableSpec[] inSpecs) throws InvalidSettingsException {
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected BufferedDataTable[] processing(final BufferedDataTable[] inData, final InputDataInfo[][] arrInputDataInfo,
+			final ExecutionContext exec) throws Exception {
+
+		// Prepare all settings and pre-requisites
+		final File fileOutput = FileUtils.convertToFile(m_modelOutputFile.getStringValue(), false, true);
+		final long lTotalRowCount = inData[0].size();
+
+		// Create missing directories
+		final File dirOutput = fileOutput.getParentFile();
+		FileUtils.prepareDirectory(dirOutput); // Throws an exception, if not successful
+
+		// Last override check (has been checked already in configure() method)
+		if (fileOutput.exists() && m_modelOverwriteOption.getBooleanValue() == false) {
+			throw new InvalidSettingsException("The specified output file exists already. " +
+					"You may remove the file or switch on the Overwrite option to grant execution.");
+		}
+
+		// First pass: Determine the fingerprint length and the layout of the file
+		final ExecutionContext execPrepare = exec.createSubExecutionContext(0.3d);
+		FingerprintIndexWriter writer = null;
+		long rowIndex = 0;
+
+		for (final CloseableRowIterator i = inData[0].iterator(); i.hasNext(); rowIndex++) {
+			final DataRow row = i.next();
+			final DenseBitVector dbvFingerprint = getFingerprint(arrInputDataInfo[0], row, writer, true);
+
+			if (dbvFingerprint != null) {
+				// Determine fingerprint length from the first valid fingerprint
+				if (writer == null) {
+					writer = new FingerprintIndexWriter(fileOutput, (int)dbvFingerprint.length());
+				}
+				writer.prepare(dbvFingerprint.getAllBits(), getId(arrInputDataInfo[0], row, rowIndex, true));
+			}
+
+			// Every 20 iterations check cancellation status and report progress
+			if (rowIndex % 20 == 0) {
+				AbstractRDKitNodeModel.reportProgress(execPrepare, rowIndex, lTotalRowCount, row, " - Preparing fingerprint index");
+			}
+		}
+
+		if (writer == null) {
+			throw new InvalidSettingsException("The input table does not contain any valid fingerprints.");
+		}
+
+		// Second pass: Write fingerprints at their sorted positions
+		final ExecutionContext execWrite = exec.createSubExecutionContext(0.7d);
+		long lWrittenFingerprints = 0;
+
+		try {
+			writer.startWriting();
+			rowIndex = 0;
+
+			for (final CloseableRowIterator i = inData[0].iterator(); i.hasNext(); rowIndex++) {
+				final DataRow row = i.next();
+				final DenseBitVector dbvFingerprint = getFingerprint(arrInputDataInfo[0], row, writer, false);
+
+				if (dbvFingerprint != null) {
+					writer.write(dbvFingerprint.getAllBits(), getId(arrInputDataInfo[0], row, rowIndex, false));
+					lWrittenFingerprints++;
+				}
+
+				// Every 20 iterations check cancellation status and report progress
+				if (rowIndex % 20 == 0) {
+					AbstractRDKitNodeModel.reportProgress(execWrite, rowIndex, lTotalRowCount, row, " - Writing fingerprint index");
+				}
+			}
+
+			writer.finish();
+		}
+		finally {
+			writer.close();
+		}
+
+		LOGGER.info("Wrote " + lWrittenFingerprints + " fingerprints into index file " + fileOutput + ".");
+
+		exec.checkCanceled();
+		exec.setProgress(1.0, "Finished Processing");
+
+		return new BufferedDataTable[0];
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Reads the fingerprint of the specified row. Both passes must come to the same decisions,
+	 * therefore warnings are only generated in the first pass.
+	 * 
+	 * @param arrInputDataInfo Input data infos of the input table.
+	 * @param row Row to read from.
+	 * @param writer The writer, which determines the expected fingerprint length.
+	 * 		Null, if there was no valid fingerprint so far.
+	 * @param bFirstPass True, if called in the first pass.
+	 * 
+	 * @return Fingerprint or null, if the fingerprint is empty or has an invalid length.
+	 * 
+	 * @throws Exception Thrown, if the fingerprint could not be read.
+	 */
+	private DenseBitVector getFingerprint(final InputDataInfo[] arrInputDataInfo, final DataRow row,
+			final FingerprintIndexWriter writer, final boolean bFirstPass) throws Exception {
+		final DenseBitVector dbvFingerprint = arrInputDataInfo[INPUT_COLUMN_FPS].getDenseBitVector(row);
+		DenseBitVector dbvResult = null;
+
+		if (dbvFingerprint == null) {
+			if (bFirstPass) {
+				getWarningConsolidator().saveWarning(WarningConsolidator.ROW_CONTEXT.getId(),
+						"Encountered empty fingerprint, which will be ignored.");
+			}
+		}
+		else if (dbvFingerprint.length() <= 0 || dbvFingerprint.length() > Integer.MAX_VALUE ||
+				(writer != null && dbvFingerprint.length() != writer.getNumBits())) {
+			if (bFirstPass) {
+				LOGGER.warn("Invalid fingerprint size encountered in row '" + row.getKey() + "'.");
+				getWarningConsolidator().saveWarning(WarningConsolidator.ROW_CONTEXT.getId(),
+						"Encountered an invalid fingerprint size. Skipping this fingerprint.");
+			}
+		}
+		else {
+			dbvResult = dbvFingerprint;
+		}
+
+		return dbvResult;
+	}
+
+	/**
+	 * Reads the ID of the specified row. If it is missing, an artificial ID gets generated.
+	 * 
+	 * @param arrInputDataInfo Input data infos of the input table.
+	 * @param row Row to read from.
+	 * @param lRowIndex Index of the row.
+	 * @param bFirstPass True, if called in the first pass. Only then a warning is generated.
+	 * 
+	 * @return ID. Never null.
+	 * 
+	 * @throws Exception Thrown, if the ID could not be read.
+	 */
+	private String getId(final InputDataInfo[] arrInputDataInfo, final DataRow row,
+			final long lRowIndex, final boolean bFirstPass) throws Exception {
+		String strId = (m_modelIdColumnName.useRowID() ?
+				row.getKey().getString() :
+					arrInputDataInfo[INPUT_COLUMN_ID].getString(row));
+
+		// Assign an artificial ID, if missing cell was encountered
+		if (strId == null) {
+			if (bFirstPass) {
+				getWarningConsolidator().saveWarning(WarningConsolidator.ROW_CONTEXT.getId(),
+						"Encountered empty ID. Generated unique ID (MissingIdXXX) on the fly.");
+			}
+			strId = "MissingId" + lRowIndex;
+		}
+
+		return strId;
+	}
+}
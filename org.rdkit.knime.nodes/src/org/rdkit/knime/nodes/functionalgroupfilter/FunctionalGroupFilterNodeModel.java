@@ -74,6 +74,10 @@ import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeLogger;
 import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.streamable.BufferedDataTableRowOutput;
+import org.knime.core.node.streamable.DataTableRowInput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
 import org.rdkit.knime.nodes.AbstractRDKitCellFactory;
 import org.rdkit.knime.nodes.AbstractRDKitNodeModel;
 import org.rdkit.knime.nodes.functionalgroupfilter.SettingsModelFunctionalGroupConditions.FunctionalGroupCondition;
@@ -193,6 +197,7 @@ public class FunctionalGroupFilterNodeModel extends AbstractRDKitNodeModel {
 	 */
 	FunctionalGroupFilterNodeModel() {
 		super(1, 2);
+		enableRowStreaming();
 	}
 
 	//
@@ -438,7 +443,7 @@ public class FunctionalGroupFilterNodeModel extends AbstractRDKitNodeModel {
 	 * process(InputDataInfo[], DataRow) in the factory or
 	 * {@link #postProcessing(BufferedDataTable[], BufferedDataTable[], ExecutionContext)} in the model.
 	 *
-	 * @param inData The input tables of the node.
+	 * @param inData The input tables of the node. Not used.
 	 * @param arrInputDataInfo Information about all columns of the input tables.
 	 * @param exec The execution context, which was derived as sub-execution context based on the percentage
 	 * 		setting of #getPreProcessingPercentage(). Track the progress from 0..1.
@@ -484,9 +489,6 @@ public class FunctionalGroupFilterNodeModel extends AbstractRDKitNodeModel {
 		BufferedDataTable[] arrResultTables = null;
 
 		final DataTableSpec[] arrOutSpecs = getOutputTableSpecs(inData);
-		final DataCell missingCell = DataType.getMissingCell();
-		final DataCell errorCell = new StringCell("Processing Error");
-		final boolean bAdd = m_modelRecordFailedPatternOption.getBooleanValue();
 
 		if (m_arrActivatedConditions == null || m_arrActivatedConditions.length == 0) {
 			getWarningConsolidator().saveWarning(
@@ -498,16 +500,54 @@ public class FunctionalGroupFilterNodeModel extends AbstractRDKitNodeModel {
 		}
 		else {
 			// Contains the rows with the matching molecules
-			final BufferedDataContainer tableMatch = exec.createDataContainer(arrOutSpecs[0]);
+			final BufferedDataTableRowOutput tableMatch = new BufferedDataTableRowOutput(
+					exec.createDataContainer(arrOutSpecs[0]));
 
 			// Contains the rows with non-matching molecules
-			final BufferedDataContainer tableNoMatch = exec.createDataContainer(arrOutSpecs[1]);
+			final BufferedDataTableRowOutput tableNoMatch = new BufferedDataTableRowOutput(
+					exec.createDataContainer(arrOutSpecs[1]));
+
+			processing(new DataTableRowInput(inData[0]), new RowOutput[] { tableMatch, tableNoMatch },
+					arrInputDataInfo[0], inData[0].size(), exec);
+
+			tableMatch.close();
+			tableNoMatch.close();
+
+			arrResultTables = new BufferedDataTable[] { tableMatch.getDataTable(), tableNoMatch.getDataTable() };
+		}
+		return arrResultTables;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * This implementation is used for streaming as well as for processing complete tables.
+	 * If there are no active filter conditions, all rows are passed on to the first output.
+	 */
+	@Override
+	protected void processing(final RowInput input, final RowOutput[] arrOutputs,
+			final InputDataInfo[] arrInputDataInfo, final long lRowCount, final ExecutionContext exec)
+					throws Exception {
+		final RowOutput tableMatch = arrOutputs[0];
+		final RowOutput tableNoMatch = arrOutputs[1];
+
+		if (m_arrActivatedConditions == null || m_arrActivatedConditions.length == 0) {
+			getWarningConsolidator().saveWarning(
+					"No active filter conditions found. No filter was applied on molecules.");
+			DataRow row;
+			while ((row = input.poll()) != null) {
+				tableMatch.push(row);
+			}
+		}
+		else {
+			final DataCell missingCell = DataType.getMissingCell();
+			final DataCell errorCell = new StringCell("Processing Error");
+			final boolean bAdd = m_modelRecordFailedPatternOption.getBooleanValue();
 
 			// Reset the "communication medium" for multi-threading
 			m_mapNonMatches.clear();
 
 			// Setup main factory
-			final AbstractRDKitCellFactory factory = createOutputFactory(arrInputDataInfo[0]);
+			final AbstractRDKitCellFactory factory = createOutputFactory(arrInputDataInfo);
 			final AbstractRDKitNodeModel.ResultProcessor resultProcessor =
 					new AbstractRDKitNodeModel.ResultProcessor() {
 
@@ -528,7 +568,7 @@ public class FunctionalGroupFilterNodeModel extends AbstractRDKitNodeModel {
 
 					// Add the row to the matching table
 					if (strNonMatchingPattern == null) {
-						tableMatch.addRowToTable(row);
+						pushRow(tableMatch, row);
 					}
 					else {
 						// We really care about references in the following comparisons
@@ -555,11 +595,11 @@ public class FunctionalGroupFilterNodeModel extends AbstractRDKitNodeModel {
 
 						// Add the row to the non-matching table
 						if (bAdd) {
-							tableNoMatch.addRowToTable(AbstractRDKitCellFactory.mergeDataCells(row,
+							pushRow(tableNoMatch, AbstractRDKitCellFactory.mergeDataCells(row,
 									new DataCell[] { newCell }, -1));
 						}
 						else {
-							tableNoMatch.addRowToTable(row);
+							pushRow(tableNoMatch, row);
 						}
 					}
 				}
@@ -567,20 +607,13 @@ public class FunctionalGroupFilterNodeModel extends AbstractRDKitNodeModel {
 
 			// Runs the multiple threads to do the work
 			try {
-				new AbstractRDKitNodeModel.ParallelProcessor(factory, resultProcessor, inData[0].size(),
-						getWarningConsolidator(), exec).run(inData[0]);
+				createParallelProcessor(factory, resultProcessor, lRowCount, exec).execute(input);
 			}
 			catch (final Exception e) {
 				exec.checkCanceled();
 				throw e;
 			}
-
-			tableMatch.close();
-			tableNoMatch.close();
-
-			arrResultTables = new BufferedDataTable[] { tableMatch.getTable(), tableNoMatch.getTable() };
 		}
-		return arrResultTables;
 	}
 
 	/**
@@ -64,13 +64,16 @@ import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.DataType;
 import org.knime.core.data.DataValue;
 import org.knime.core.data.def.StringCell;
-import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeLogger;
 import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.streamable.BufferedDataTableRowOutput;
+import org.knime.core.node.streamable.DataTableRowInput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
 import org.knime.core.node.util.ButtonGroupEnumInterface;
 import org.rdkit.knime.nodes.AbstractRDKitCellFactory;
 import org.rdkit.knime.nodes.AbstractRDKitNodeModel;
@@ -273,10 +276,11 @@ public class Molecule2RDKitConverterNodeModel extends AbstractRDKitNodeModel {
 	//
 
 	/**
-	 * Create new node model with one data in- and two out-ports.
+	 * Create new node model with one data in- and two out-ports, which can be streamed.
 	 */
 	Molecule2RDKitConverterNodeModel() {
 		super(1, 2);
+		enableRowStreaming();
 	}
 
 	//
@@ -677,17 +681,40 @@ public class Molecule2RDKitConverterNodeModel extends AbstractRDKitNodeModel {
 	@Override
 	protected BufferedDataTable[] processing(final BufferedDataTable[] inData, final InputDataInfo[][] arrInputDataInfo,
 			final ExecutionContext exec) throws Exception {
-		final DataTableSpec inSpec = inData[0].getDataTableSpec();
 		final DataTableSpec[] arrOutSpecs = getOutputTableSpecs(inData);
 
 		// Contains the rows with the result column
-		final BufferedDataContainer port0 = exec.createDataContainer(arrOutSpecs[0]);
+		final BufferedDataTableRowOutput port0 = new BufferedDataTableRowOutput(
+				exec.createDataContainer(arrOutSpecs[0]));
 
 		// Contains the input rows if result computation fails
-		final BufferedDataContainer port1 = exec.createDataContainer(arrOutSpecs[1]);
+		final BufferedDataTableRowOutput port1 = new BufferedDataTableRowOutput(
+				exec.createDataContainer(arrOutSpecs[1]));
+
+		processing(new DataTableRowInput(inData[0]), new RowOutput[] { port0, port1 },
+				arrInputDataInfo[0], inData[0].size(), exec);
+
+		port0.close();
+		port1.close();
+
+		return new BufferedDataTable[] { port0.getDataTable(), port1.getDataTable() };
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * This implementation is used for streaming as well as for processing complete tables,
+	 * hence all conversion options behave the same in both modes.
+	 */
+	@Override
+	protected void processing(final RowInput input, final RowOutput[] arrOutputs,
+			final InputDataInfo[] arrInputDataInfo, final long lRowCount, final ExecutionContext exec)
+					throws Exception {
+		final DataTableSpec inSpec = input.getDataTableSpec();
+		final RowOutput port0 = arrOutputs[0];
+		final RowOutput port1 = arrOutputs[1];
 
 		// Get settings and define data specific behavior
-		final int iInputIndex = arrInputDataInfo[0][INPUT_COLUMN_MOL].getColumnIndex();
+		final int iInputIndex = arrInputDataInfo[INPUT_COLUMN_MOL].getColumnIndex();
 		final DataType type = inSpec.getColumnSpec(iInputIndex).getType();
 		final boolean bInludeErrorInfo = m_modelGenerateErrorInformation.getBooleanValue();
 
@@ -731,10 +758,9 @@ public class Molecule2RDKitConverterNodeModel extends AbstractRDKitNodeModel {
 
 		final boolean bSplitBadRowsToPort1 = ParseErrorPolicy.SPLIT_ROWS.getActionCommand()
 				.equals(m_modelSeparateFails.getStringValue());
-		final long lTotalRowCount = inData[0].size();
 
 		// Setup main factory
-		final AbstractRDKitCellFactory factory = createOutputFactory(arrInputDataInfo[0]);
+		final AbstractRDKitCellFactory factory = createOutputFactory(arrInputDataInfo);
 
 		final AbstractRDKitNodeModel.ResultProcessor resultProcessor =
 				new AbstractRDKitNodeModel.ResultProcessor() {
@@ -754,22 +780,22 @@ public class Molecule2RDKitConverterNodeModel extends AbstractRDKitNodeModel {
 					if (bSplitBadRowsToPort1) {
 						if (bInludeErrorInfo) {
 							// Include only the error information cell
-							port1.addRowToTable(AbstractRDKitCellFactory.mergeDataCells(row,
+							pushRow(port1, AbstractRDKitCellFactory.mergeDataCells(row,
 									new DataCell[] { arrResults[1] }, -1));
 						}
 						else {
-							port1.addRowToTable(row);
+							pushRow(port1, row);
 						}
 					}
 					// Move the row into the first table
 					else {
 						if (bInludeErrorInfo) {
-							port0.addRowToTable(AbstractRDKitCellFactory.mergeDataCells(row, arrResults,
+							pushRow(port0, AbstractRDKitCellFactory.mergeDataCells(row, arrResults,
 									m_modelRemoveSourceColumns.getBooleanValue() ? iInputIndex : -1));
 						}
 						else {
 							// Include only the result cell
-							port0.addRowToTable(AbstractRDKitCellFactory.mergeDataCells(row,
+							pushRow(port0, AbstractRDKitCellFactory.mergeDataCells(row,
 									new DataCell[] { arrResults[0] },
 									m_modelRemoveSourceColumns.getBooleanValue() ? iInputIndex : -1));
 						}
@@ -780,13 +806,13 @@ public class Molecule2RDKitConverterNodeModel extends AbstractRDKitNodeModel {
 				else {
 					// Include also empty error information if we have only one output table
 					if (!bSplitBadRowsToPort1 && bInludeErrorInfo) {
-						port0.addRowToTable(AbstractRDKitCellFactory.mergeDataCells(row, arrResults,
+						pushRow(port0, AbstractRDKitCellFactory.mergeDataCells(row, arrResults,
 								m_modelRemoveSourceColumns.getBooleanValue() ? iInputIndex : -1));
 					}
 
 					// Include only the result cell, if we have two output tables or no error logging
 					else {
-						port0.addRowToTable(AbstractRDKitCellFactory.mergeDataCells(row,
+						pushRow(port0, AbstractRDKitCellFactory.mergeDataCells(row,
 								new DataCell[] { arrResults[0] },
 								m_modelRemoveSourceColumns.getBooleanValue() ? iInputIndex : -1));
 					}
@@ -796,17 +822,11 @@ public class Molecule2RDKitConverterNodeModel extends AbstractRDKitNodeModel {
 
 		// Runs the multiple threads to do the work
 		try {
-			new AbstractRDKitNodeModel.ParallelProcessor(factory, resultProcessor, lTotalRowCount,
-					getWarningConsolidator(), exec).run(inData[0]);
+			createParallelProcessor(factory, resultProcessor, lRowCount, exec).execute(input);
 		}
 		catch (final Exception e) {
 			exec.checkCanceled();
 			throw e;
 		}
-
-		port0.close();
-		port1.close();
-
-		return new BufferedDataTable[] { port0.getTable(), port1.getTable() };
 	}
 }
@@ -73,12 +73,15 @@ import org.knime.core.data.collection.CollectionCellFactory;
 import org.knime.core.data.collection.ListCell;
 import org.knime.core.data.def.IntCell;
 import org.knime.core.data.def.StringCell;
-import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeLogger;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.streamable.BufferedDataTableRowOutput;
+import org.knime.core.node.streamable.DataTableRowInput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
 import org.rdkit.knime.nodes.AbstractRDKitCellFactory;
 import org.rdkit.knime.nodes.AbstractRDKitNodeModel;
 import org.rdkit.knime.types.RDKitMolValue;
@@ -161,6 +164,7 @@ public class RDKitMoleculeCatalogFilterNodeModel extends AbstractRDKitNodeModel
      */
     RDKitMoleculeCatalogFilterNodeModel() {
     	super(1, 2);
+    	enableRowStreaming();
     }
 
     //
@@ -468,16 +472,33 @@ public class RDKitMoleculeCatalogFilterNodeModel extends AbstractRDKitNodeModel
         final DataTableSpec[] arrOutSpecs = getOutputTableSpecs(inData);
         
         // Contains the rows with the result column
-        final BufferedDataContainer port0 = exec.createDataContainer(arrOutSpecs[0]);
+        final BufferedDataTableRowOutput port0 = new BufferedDataTableRowOutput(exec.createDataContainer(arrOutSpecs[0]));
         
         // Contains the input rows if result computation fails
-        final BufferedDataContainer port1 = exec.createDataContainer(arrOutSpecs[1]);
+        final BufferedDataTableRowOutput port1 = new BufferedDataTableRowOutput(exec.createDataContainer(arrOutSpecs[1]));
                 
-        // Get settings and define data specific behavior
-        final long iTotalRowCount = inData[0].size();
+        processing(new DataTableRowInput(inData[0]), new RowOutput[] { port0, port1 }, 
+        		arrInputDataInfo[0], inData[0].size(), exec);
+
+		port0.close();
+        port1.close();
+        
+        return new BufferedDataTable[] { port0.getDataTable(), port1.getDataTable() };
+    }	
+    
+    /**
+     * {@inheritDoc}
+     * This implementation is used for streaming as well as for processing complete tables.
+     */
+    @Override
+    protected void processing(final RowInput input, final RowOutput[] arrOutputs, 
+    		final InputDataInfo[] arrInputDataInfo, final long lRowCount, final ExecutionContext exec) 
+    				throws Exception {
+        final RowOutput port0 = arrOutputs[0];
+        final RowOutput port1 = arrOutputs[1];
         
         // Setup main factory
-        final AbstractRDKitCellFactory factory = createOutputFactory(arrInputDataInfo[0]);
+        final AbstractRDKitCellFactory factory = createOutputFactory(arrInputDataInfo);
         final AbstractRDKitNodeModel.ResultProcessor resultProcessor = 
         	new AbstractRDKitNodeModel.ResultProcessor() {
 			
@@ -491,28 +512,22 @@ public class RDKitMoleculeCatalogFilterNodeModel extends AbstractRDKitNodeModel
 			@Override
 			public void processResults(long rowIndex, DataRow row, DataCell[] arrResults) {      
 		        if (!arrResults[0].isMissing() && ((IntCell)arrResults[0]).getIntValue() == 0) {
-		            port0.addRowToTable(row);
+		            pushRow(port0, row);
 		        } 
 		        else {
-		        	port1.addRowToTable(AbstractRDKitCellFactory.mergeDataCells(row, arrResults, -1));
+		        	pushRow(port1, AbstractRDKitCellFactory.mergeDataCells(row, arrResults, -1));
 		        }
 			}
 		};
 		
         // Runs the multiple threads to do the work
         try {
-        	new AbstractRDKitNodeModel.ParallelProcessor(factory, resultProcessor, iTotalRowCount, 
-       			getWarningConsolidator(), exec).run(inData[0]);
+        	createParallelProcessor(factory, resultProcessor, lRowCount, exec).execute(input);
         } 
         catch (Exception e) {
             exec.checkCanceled();
             throw e;
         }
-
-		port0.close();
-        port1.close();
-        
-        return new BufferedDataTable[] { port0.getTable(), port1.getTable() };
     }	
     
     /**
@@ -475,7 +475,7 @@ public class RDKitMoleculeSubstructFilterNodeModel extends AbstractRDKitNodeMode
 							// Get the molecule only if we really need it (this saves execution time)
 							// Note, that this will throw an exception for empty cells, which will be handled by the factory
 							if (mol == null) {
-								mol = markForCleanup(arrInputDataInfo[INPUT_COLUMN_MOL].getROMol(row), lUniqueWaveId);
+								mol = arrInputDataInfo[INPUT_COLUMN_MOL].getReadOnlyROMol(row);
 							}
 
 							if (mol.hasSubstructMatch(molPattern)) {
@@ -661,7 +661,7 @@ public class RDKitMoleculeSubstructFilterNodeModel extends AbstractRDKitNodeMode
 				@Override
 				public DataCell[] process(final InputDataInfo[] arrInputDataInfos, final DataRow row,
 						final long lUniqueWaveId) throws Exception {
-					final ROMol mol = markForCleanup(arrInputDataInfos[INPUT_COLUMN_MOL].getROMol(row), lUniqueWaveId);
+					final ROMol mol = arrInputDataInfos[INPUT_COLUMN_MOL].getReadOnlyROMol(row);
 					return new DataCell[] { new DenseBitVectorCellFactory(createFingerprint(mol)).createDataCell() };
 				}
 
@@ -746,8 +746,7 @@ public class RDKitMoleculeSubstructFilterNodeModel extends AbstractRDKitNodeMode
 
 		// Runs the multiple threads to do the work
 		try {
-			new AbstractRDKitNodeModel.ParallelProcessor(factory, resultProcessor, inData[0].size(),
-					getWarningConsolidator(), exec).run(inData[0]);
+			createParallelProcessor(factory, resultProcessor, inData[0].size(), exec).execute(inData[0]);
 		}
 		catch (final Exception e) {
 			exec.checkCanceled();
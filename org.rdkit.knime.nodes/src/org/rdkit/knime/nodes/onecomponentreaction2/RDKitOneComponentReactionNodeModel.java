@@ -70,7 +70,6 @@ import org.knime.core.node.NodeLogger;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.core.node.port.PortType;
 import org.knime.core.node.port.PortTypeRegistry;
-import org.knime.core.util.MultiThreadWorker;
 import org.rdkit.knime.nodes.AbstractRDKitNodeModel;
 import org.rdkit.knime.types.RDKitAdapterCell;
 import org.rdkit.knime.types.RDKitMolValue;
@@ -265,7 +264,7 @@ public class RDKitOneComponentReactionNodeModel extends AbstractRDKitReactionNod
 		}
 		else {
 			// Get settings and define data specific behavior
-			final int iMaxParallelWorkers = (int)Math.ceil(1.5 * Runtime.getRuntime().availableProcessors());
+			final int iMaxParallelWorkers = getMaxParallelWorkers();
 			final int iQueueSize = 10 * iMaxParallelWorkers;
 
 			// Create the chemical reaction to be applied as safe guarded resource to avoid corruption
@@ -274,7 +273,7 @@ public class RDKitOneComponentReactionNodeModel extends AbstractRDKitReactionNod
 					createSafeGuardedReactionResource(inData, arrInputDataInfo);
 
 			// Calculate one component reactions
-			new MultiThreadWorker<DataRow, DataRow[]>(iQueueSize, iMaxParallelWorkers) {
+			new PooledMultiThreadWorker<DataRow, DataRow[]>(iQueueSize, iMaxParallelWorkers) {
 
 				/**
 				 * Computes the one component reactions.
@@ -287,7 +286,7 @@ public class RDKitOneComponentReactionNodeModel extends AbstractRDKitReactionNod
 				 * 		we have a valid reaction to be added to the result table.
 				 */
 				@Override
-				protected DataRow[] compute(final DataRow row, final long index) throws Exception {
+				protected DataRow[] computeInPool(final DataRow row, final long index) throws Exception {
 					List<DataRow> listNewRows = null;
 					final boolean bIncluded = isReactionIncluded(index);
 
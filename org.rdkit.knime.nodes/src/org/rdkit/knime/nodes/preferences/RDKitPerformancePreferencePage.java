@@ -0,0 +1,398 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.nodes.preferences;
+
+import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.preference.IntegerFieldEditor;
+import org.eclipse.jface.resource.ImageDescriptor;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPreferencePage;
+import org.knime.core.node.NodeLogger;
+import org.rdkit.knime.nodes.RDKitNodePlugin;
+import org.rdkit.knime.types.AvalonFingerprintWorkerPool;
+import org.rdkit.knime.types.RDKitMolDecodeCache;
+import org.rdkit.knime.util.EclipseUtils;
+
+/**
+ * This is the preference page for performance related settings of the RDKit Nodes,
+ * e.g. how RDKit objects are cleaned up after a failed or cancelled node execution.
+ *
+ * @author Manuel Schwarze
+ */
+public class RDKitPerformancePreferencePage extends FieldEditorPreferencePage
+implements IWorkbenchPreferencePage {
+
+	//
+	// Constants
+	//
+
+	/** The logger instance. */
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(
+			RDKitPerformancePreferencePage.class);
+
+	/** The id of this preference page. */
+	public static final String ID = "org.rdkit.knime.nodes.preferences.performance";
+
+	public static final String PREFIX = "performance.";
+
+	/** The preference key for the delay in seconds before quarantined RDKit objects get freed. */
+	public static final String PREF_KEY_QUARANTINE_DELAY = PREFIX + "quarantineDelay";
+
+	/** The preference key for the maximal estimated native memory in MB held by quarantined RDKit objects. */
+	public static final String PREF_KEY_QUARANTINE_BUDGET = PREFIX + "quarantineBudget";
+
+	/** The preference key for the maximal number of threads used by parallel processing (0 = automatic). */
+	public static final String PREF_KEY_MAX_PARALLEL_WORKERS = PREFIX + "maxParallelWorkers";
+
+	/** The preference key for the number of rows processed as one task by parallel processing (0 = automatic). */
+	public static final String PREF_KEY_BATCH_SIZE = PREFIX + "batchSize";
+
+	/** The preference key for the maximal number of concurrent RDKit calculations across all nodes (0 = automatic). */
+	public static final String PREF_KEY_COMPUTE_POOL_SIZE = PREFIX + "computePoolSize";
+
+	/** The preference key for the number of decoded read-only molecules cached per thread (0 = disabled). */
+	public static final String PREF_KEY_DECODE_CACHE_SIZE = PREFIX + "decodeCacheSize";
+
+	/** The preference key for the number of processes calculating Avalon fingerprints (0 = in-process). */
+	public static final String PREF_KEY_AVALON_WORKER_PROCESSES = PREFIX + "avalonWorkerProcesses";
+
+	/** The default delay in seconds before quarantined RDKit objects get freed. */
+	public static final int DEFAULT_QUARANTINE_DELAY = 60;
+
+	/** The default maximal estimated native memory in MB held by quarantined RDKit objects. */
+	public static final int DEFAULT_QUARANTINE_BUDGET = 512;
+
+	/** The default maximal number of threads used by parallel processing. 0 means that it gets derived from the CPU count. */
+	public static final int DEFAULT_MAX_PARALLEL_WORKERS = 0;
+
+	/** The default number of rows processed as one task. 0 means that it gets tuned based on measured row processing time. */
+	public static final int DEFAULT_BATCH_SIZE = 0;
+
+	/** The default maximal number of concurrent RDKit calculations across all nodes. 0 means that it equals the CPU count. */
+	public static final int DEFAULT_COMPUTE_POOL_SIZE = 0;
+
+	/** The default number of decoded read-only molecules cached per thread. */
+	public static final int DEFAULT_DECODE_CACHE_SIZE = RDKitMolDecodeCache.DEFAULT_CAPACITY;
+
+	/** The default number of processes calculating Avalon fingerprints. 0 means that they are calculated in-process. */
+	public static final int DEFAULT_AVALON_WORKER_PROCESSES = AvalonFingerprintWorkerPool.DEFAULT_PROCESS_COUNT;
+
+	/** The upper limit for the number of rows processed as one task. */
+	public static final int MAX_BATCH_SIZE = 10000;
+
+	//
+	// Globals
+	//
+
+	/**
+	 * Flag to determine, that defaults have been initialized already to avoid double init
+	 * after such default may have been overridden from the outside.
+	 */
+	private static boolean g_bDefaultInitializationDone = false;
+
+	//
+	// Members
+	//
+
+	/** The editor for the quarantine delay. */
+	private IntegerFieldEditor m_editorQuarantineDelay;
+
+	/** The editor for the quarantine budget. */
+	private IntegerFieldEditor m_editorQuarantineBudget;
+
+	/** The editor for the maximal number of parallel threads. */
+	private IntegerFieldEditor m_editorMaxParallelWorkers;
+
+	/** The editor for the batch size of parallel processing. */
+	private IntegerFieldEditor m_editorBatchSize;
+
+	/** The editor for the size of the RDKit compute pool. */
+	private IntegerFieldEditor m_editorComputePoolSize;
+
+	/** The editor for the size of the molecule decode cache. */
+	private IntegerFieldEditor m_editorDecodeCacheSize;
+
+	/** The editor for the number of Avalon fingerprint worker processes. */
+	private IntegerFieldEditor m_editorAvalonWorkerProcesses;
+
+	//
+	// Constructors
+	//
+
+	/**
+	 * Creates a new preference page.
+	 */
+	public RDKitPerformancePreferencePage() {
+		super(GRID);
+
+		setImageDescriptor(new ImageDescriptor() {
+
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public ImageData getImageData() {
+				return EclipseUtils.loadImageData(RDKitPerformancePreferencePage.class,
+						"/icons/category_rdkit.png");
+			}
+		});
+
+		// We use the pref store of the UI plugin
+		setPreferenceStore(RDKitNodePlugin.getDefault().getPreferenceStore());
+		setDescription("The section defines performance related preferences for RDKit Nodes.");
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void createFieldEditors() {
+		m_editorQuarantineDelay = new IntegerFieldEditor(PREF_KEY_QUARANTINE_DELAY,
+				"Delay before freeing RDKit objects of failed executions (in seconds): ", getFieldEditorParent());
+		m_editorQuarantineDelay.setValidRange(0, 3600);
+		addField(m_editorQuarantineDelay);
+
+		m_editorQuarantineBudget = new IntegerFieldEditor(PREF_KEY_QUARANTINE_BUDGET,
+				"Maximal memory held by RDKit objects waiting to be freed (in MB): ", getFieldEditorParent());
+		m_editorQuarantineBudget.setValidRange(1, Integer.MAX_VALUE);
+		addField(m_editorQuarantineBudget);
+
+		m_editorMaxParallelWorkers = new IntegerFieldEditor(PREF_KEY_MAX_PARALLEL_WORKERS,
+				"Maximal number of parallel threads per node (0 = automatic): ", getFieldEditorParent());
+		m_editorMaxParallelWorkers.setValidRange(0, 1024);
+		addField(m_editorMaxParallelWorkers);
+
+		m_editorBatchSize = new IntegerFieldEditor(PREF_KEY_BATCH_SIZE,
+				"Rows processed together as one parallel task (0 = automatic, 1 = no batching): ", getFieldEditorParent());
+		m_editorBatchSize.setValidRange(0, MAX_BATCH_SIZE);
+		addField(m_editorBatchSize);
+
+		m_editorComputePoolSize = new IntegerFieldEditor(PREF_KEY_COMPUTE_POOL_SIZE,
+				"Maximal number of concurrent RDKit calculations across all nodes (0 = automatic): ", getFieldEditorParent());
+		m_editorComputePoolSize.setValidRange(0, 1024);
+		addField(m_editorComputePoolSize);
+
+		m_editorDecodeCacheSize = new IntegerFieldEditor(PREF_KEY_DECODE_CACHE_SIZE,
+				"Decoded molecules cached per thread for repeated reads (0 = disabled): ", getFieldEditorParent());
+		m_editorDecodeCacheSize.setValidRange(0, 1024);
+		addField(m_editorDecodeCacheSize);
+
+		m_editorAvalonWorkerProcesses = new IntegerFieldEditor(PREF_KEY_AVALON_WORKER_PROCESSES,
+				"Processes calculating Avalon fingerprints in parallel (0 = in-process, serialized): ", getFieldEditorParent());
+		m_editorAvalonWorkerProcesses.setValidRange(0, 64);
+		addField(m_editorAvalonWorkerProcesses);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void init(final IWorkbench workbench) {
+		// We initialize here the preference store of the RDKit Nodes plugin
+		final RDKitNodePlugin plugin = RDKitNodePlugin.getDefault();
+
+		if (plugin == null) {
+			setErrorMessage("The RDKit Nodes Plug-In could not be loaded.");
+		}
+		else {
+			// Set the preference store
+			final IPreferenceStore prefStore = plugin.getPreferenceStore();
+			setPreferenceStore(prefStore);
+		}
+	}
+
+	/**
+	 * Gets the appropriate preference store and initializes its default values.
+	 * This method must be called from the subclass of AbstractPreferenceInitializer,
+	 * which needs to be configured in the plugin.xml file as extension point.
+	 * 
+	 * @see org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer#initializeDefaultPreferences()
+	 */
+	public static synchronized void initializeDefaultPreferences() {
+		if (!g_bDefaultInitializationDone) {
+			g_bDefaultInitializationDone = true;
+
+			try {
+				// We use the preference store that is defined in the UI plug-in
+				final RDKitNodePlugin plugin = RDKitNodePlugin.getDefault();
+
+				if (plugin != null) {
+					final IPreferenceStore prefStore = plugin.getPreferenceStore();
+
+					// Define plug-in default values
+					prefStore.setDefault(PREF_KEY_QUARANTINE_DELAY, DEFAULT_QUARANTINE_DELAY);
+					prefStore.setDefault(PREF_KEY_QUARANTINE_BUDGET, DEFAULT_QUARANTINE_BUDGET);
+					prefStore.setDefault(PREF_KEY_MAX_PARALLEL_WORKERS, DEFAULT_MAX_PARALLEL_WORKERS);
+					prefStore.setDefault(PREF_KEY_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+					prefStore.setDefault(PREF_KEY_COMPUTE_POOL_SIZE, DEFAULT_COMPUTE_POOL_SIZE);
+					prefStore.setDefault(PREF_KEY_DECODE_CACHE_SIZE, DEFAULT_DECODE_CACHE_SIZE);
+					prefStore.setDefault(PREF_KEY_AVALON_WORKER_PROCESSES, DEFAULT_AVALON_WORKER_PROCESSES);
+				}
+			}
+			catch (final Exception exc) {
+				LOGGER.error("Default values could not be set for the RDKit Performance preferences. Plug-In or Preference Store not found.");
+			}
+		}
+	}
+
+	//
+	// Static Public Methods
+	//
+
+	/**
+	 * Returns the delay before quarantined RDKit objects get freed, which gets retrieved
+	 * from the preferences. If not found it will return a default value.
+	 * 
+	 * @return Delay in seconds.
+	 */
+	public static int getQuarantineDelay() {
+		return getInt(PREF_KEY_QUARANTINE_DELAY, DEFAULT_QUARANTINE_DELAY);
+	}
+
+	/**
+	 * Returns the maximal estimated native memory held by quarantined RDKit objects,
+	 * which gets retrieved from the preferences. If not found it will return a default value.
+	 * 
+	 * @return Budget in MB.
+	 */
+	public static int getQuarantineBudget() {
+		return getInt(PREF_KEY_QUARANTINE_BUDGET, DEFAULT_QUARANTINE_BUDGET);
+	}
+
+	/**
+	 * Returns the maximal number of threads a node shall use for parallel processing,
+	 * which gets retrieved from the preferences. If not set (0) or not found it will
+	 * be derived from the number of available processors (+50%).
+	 * 
+	 * @return Maximal number of parallel threads. Always greater than 0.
+	 */
+	public static int getMaxParallelWorkers() {
+		final int iWorkers = getInt(PREF_KEY_MAX_PARALLEL_WORKERS, DEFAULT_MAX_PARALLEL_WORKERS);
+		return (iWorkers > 0 ? iWorkers :
+			(int)Math.ceil(1.5 * Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Returns the number of rows to be processed together as one parallel task,
+	 * which gets retrieved from the preferences. If not found it will return a default value.
+	 * 
+	 * @return Batch size. 0 means that the batch size shall be tuned automatically,
+	 * 		1 means that every row is processed as separate task.
+	 */
+	public static int getBatchSize() {
+		return Math.max(0, Math.min(MAX_BATCH_SIZE, getInt(PREF_KEY_BATCH_SIZE, DEFAULT_BATCH_SIZE)));
+	}
+
+	/**
+	 * Returns the maximal number of RDKit calculations running at the same time
+	 * across all nodes, which gets retrieved from the preferences. If not set (0)
+	 * or not found it will be the number of available processors.
+	 * 
+	 * @return Size of the RDKit compute pool. Always greater than 0.
+	 * 
+	 * @see org.rdkit.knime.nodes.RDKitComputePool
+	 */
+	public static int getComputePoolSize() {
+		final int iSize = getInt(PREF_KEY_COMPUTE_POOL_SIZE, DEFAULT_COMPUTE_POOL_SIZE);
+		return (iSize > 0 ? iSize : Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Returns the number of decoded read-only molecules cached per thread,
+	 * which gets retrieved from the preferences. If not found it will return a default value.
+	 * 
+	 * @return Cache size. 0, if caching is disabled.
+	 * 
+	 * @see RDKitMolDecodeCache
+	 */
+	public static int getDecodeCacheSize() {
+		return Math.max(0, getInt(PREF_KEY_DECODE_CACHE_SIZE, DEFAULT_DECODE_CACHE_SIZE));
+	}
+
+	/**
+	 * Returns the number of child processes calculating Avalon fingerprints in parallel,
+	 * which gets retrieved from the preferences. If not found it will return a default value.
+	 * 
+	 * @return Number of worker processes. 0, if Avalon fingerprints are calculated in-process.
+	 * 
+	 * @see AvalonFingerprintWorkerPool
+	 */
+	public static int getAvalonWorkerProcesses() {
+		return Math.max(0, getInt(PREF_KEY_AVALON_WORKER_PROCESSES, DEFAULT_AVALON_WORKER_PROCESSES));
+	}
+
+	//
+	// Static Private Methods
+	//
+
+	/**
+	 * Retrieves an integer preference. Falls back to the default, if the plug-in
+	 * is not available (e.g. when running outside of an OSGi container).
+	 * 
+	 * @param strKey Preference key.
+	 * @param iDefault Default value.
+	 * 
+	 * @return Preference value or default value.
+	 */
+	private static int getInt(final String strKey, final int iDefault) {
+		int iValue = iDefault;
+
+		try {
+			final RDKitNodePlugin plugin = RDKitNodePlugin.getDefault();
+			if (plugin != null) {
+				iValue = plugin.getPreferenceStore().getInt(strKey);
+			}
+		}
+		catch (final Exception exc) {
+			LOGGER.error("Unable to retrieve preference " + strKey + ". Using default.", exc);
+		}
+
+		return iValue;
+	}
+}
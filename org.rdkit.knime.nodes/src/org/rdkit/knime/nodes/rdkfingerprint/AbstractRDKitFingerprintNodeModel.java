@@ -60,6 +60,10 @@ import org.knime.core.data.DataType;
 import org.knime.core.data.IntValue;
 import org.knime.core.data.collection.CollectionDataValue;
 import org.knime.core.data.container.ColumnRearranger;
+import org.knime.core.data.vector.bitvector.DenseBitVector;
+import org.knime.core.data.vector.bitvector.DenseBitVectorCellFactory;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeLogger;
 import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
@@ -306,6 +310,12 @@ public abstract class AbstractRDKitFingerprintNodeModel extends AbstractRDKitCal
 				public DataCell[] process(final InputDataInfo[] arrInputDataInfo, final DataRow row, final long lUniqueWaveId) throws Exception {
 					DataCell outputCell = null;
 
+					// Use the fingerprint calculated in advance for the whole batch, if available
+					final DenseBitVector bitVectorPrepared = AvalonFingerprintBatch.take(row);
+					if (bitVectorPrepared != null) {
+						return new DataCell[] { new DenseBitVectorCellFactory(bitVectorPrepared).createDataCell() };
+					}
+
 					// Calculate the new cells
 					final ROMol mol = markForCleanup(arrInputDataInfo[INPUT_COLUMN_MOL].getROMol(row), lUniqueWaveId);
 
@@ -368,6 +378,25 @@ public abstract class AbstractRDKitFingerprintNodeModel extends AbstractRDKitCal
 
 					return new DataCell[] { outputCell };
 				}
+
+				/**
+				 * {@inheritDoc}
+				 * Calculates Avalon fingerprints of all rows in a worker process, if enabled.
+				 * Fingerprints with chirality are excluded, as stereochemistry gets assigned
+				 * to the molecule of each row before calculating the fingerprint.
+				 */
+				@Override
+				public void prepareBatch(final DataRow[] arrRows, final ExecutionMonitor exec)
+						throws CanceledExecutionException {
+					if (fpType == FingerprintType.avalon && !bIsRooted && !m_modelUseChirality.getBooleanValue()) {
+						AvalonFingerprintBatch.prepare(getInputDataInfos()[INPUT_COLUMN_MOL], arrRows, settings, exec);
+					}
+				}
+
+				@Override
+				public void finishBatch() {
+					AvalonFingerprintBatch.finish();
+				}
 			};
 
 			// Enable this factory to allow parallel processing
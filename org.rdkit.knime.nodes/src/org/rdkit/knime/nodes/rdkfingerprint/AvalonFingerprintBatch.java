@@ -0,0 +1,183 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+package org.rdkit.knime.nodes.rdkfingerprint;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.knime.core.data.AdapterValue;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.vector.bitvector.DenseBitVector;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.rdkit.knime.types.AvalonFingerprintWorkerPool;
+import org.rdkit.knime.types.RDKitMolValue;
+import org.rdkit.knime.util.BitVectorUtils;
+import org.rdkit.knime.util.InputDataInfo;
+
+/**
+ * Avalon fingerprints that were calculated in advance for a batch of rows by the
+ * {@link AvalonFingerprintWorkerPool}. Sending all molecules of a batch at once to a worker
+ * process avoids a round trip per row, and the pickles stored in the molecule cells are
+ * sent as they are. A batch belongs to the thread that prepared it, which is the thread
+ * that processes the rows of the batch afterwards.
+ *
+ * @author Manuel Schwarze
+ */
+final class AvalonFingerprintBatch {
+
+	//
+	// Globals
+	//
+
+	/** The batch of the current thread. */
+	private static final ThreadLocal<AvalonFingerprintBatch> g_batch = new ThreadLocal<AvalonFingerprintBatch>();
+
+	//
+	// Members
+	//
+
+	/** Maps the rows of the batch to the index of their fingerprints. */
+	private final Map<DataRow, Integer> m_mapRowIndexes;
+
+	/** Pickled fingerprints. Null elements for rows without molecule or with failed calculation. */
+	private final byte[][] m_arrFingerprints;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Creates a new batch of calculated fingerprints.
+	 * 
+	 * @param arrRows Rows of the batch. Must not be null.
+	 * @param arrFingerprints Pickled fingerprints at the same indexes. Must not be null.
+	 */
+	private AvalonFingerprintBatch(final DataRow[] arrRows, final byte[][] arrFingerprints) {
+		m_mapRowIndexes = new IdentityHashMap<DataRow, Integer>(arrRows.length * 2);
+		for (int i = 0; i < arrRows.length; i++) {
+			m_mapRowIndexes.put(arrRows[i], i);
+		}
+		m_arrFingerprints = arrFingerprints;
+	}
+
+	//
+	// Static Package Methods
+	//
+
+	/**
+	 * Calculates the Avalon fingerprints of all molecules of the passed in rows in a worker
+	 * process for the current thread. Nothing happens, if worker processes are disabled.
+	 * 
+	 * @param inputMol Input data info of the molecule column. Must not be null.
+	 * @param arrRows Rows of the batch. Must not be null.
+	 * @param settings Avalon fingerprint settings. Must not be null.
+	 * @param exec Execution monitor to check for cancellation. Must not be null.
+	 * 
+	 * @throws CanceledExecutionException Thrown, if the execution was cancelled.
+	 */
+	static void prepare(final InputDataInfo inputMol, final DataRow[] arrRows,
+			final FingerprintSettings settings, final ExecutionMonitor exec) throws CanceledExecutionException {
+		g_batch.remove();
+
+		if (!AvalonFingerprintWorkerPool.isEnabled()) {
+			return;
+		}
+
+		final RDKitMolValue[] arrMols = new RDKitMolValue[arrRows.length];
+		for (int i = 0; i < arrRows.length; i++) {
+			final DataCell cell = inputMol.getOriginalCell(arrRows[i]);
+			if (cell instanceof RDKitMolValue) {
+				arrMols[i] = (RDKitMolValue)cell;
+			}
+			else if (cell instanceof AdapterValue && ((AdapterValue)cell).isAdaptable(RDKitMolValue.class)) {
+				arrMols[i] = ((AdapterValue)cell).getAdapter(RDKitMolValue.class);
+			}
+		}
+
+		byte[][] arrFingerprints = null;
+		try {
+			arrFingerprints = AvalonFingerprintWorkerPool.calculate(arrMols,
+					settings.getNumBits(), settings.getSimilarityBits(), null, exec);
+		}
+		catch (final RuntimeException exc) {
+			// Ignored - the rows get calculated one by one, which reports the error per row
+		}
+
+		if (arrFingerprints != null) {
+			g_batch.set(new AvalonFingerprintBatch(arrRows, arrFingerprints));
+		}
+	}
+
+	/**
+	 * Returns the fingerprint that was calculated in advance for the passed in row
+	 * by the current thread.
+	 * 
+	 * @param row Row of the current batch. Must not be null.
+	 * 
+	 * @return Fingerprint or null, if it was not calculated in advance or if the calculation
+	 * 		failed. The caller calculates it for the single row then.
+	 */
+	static DenseBitVector take(final DataRow row) {
+		final AvalonFingerprintBatch batch = g_batch.get();
+		if (batch == null) {
+			return null;
+		}
+
+		final Integer index = batch.m_mapRowIndexes.get(row);
+		return (index == null ? null : BitVectorUtils.toDenseBitVector(batch.m_arrFingerprints[index]));
+	}
+
+	/**
+	 * Frees the batch of the current thread.
+	 */
+	static void finish() {
+		g_batch.remove();
+	}
+}
@@ -20,6 +20,8 @@ import org.knime.core.data.IntValue;
 import org.knime.core.data.vector.bitvector.DenseBitVector;
 import org.knime.core.data.vector.bytevector.DenseByteVector;
 import org.knime.core.node.InvalidSettingsException;
+import org.rdkit.knime.types.AvalonFingerprintWorkerPool;
+import org.rdkit.knime.util.BitVectorUtils;
 import org.rdkit.knime.util.ChemUtils;
 import org.rdkit.knime.util.SettingsUtils;
 import org.rdkit.knime.util.StringUtils;
@@ -630,6 +632,16 @@ public enum FingerprintType {
 		@Override
 		public ExplicitBitVect calculate(final ROMol mol, final FingerprintSettings settings) {
 			final int bitNumber = settings.getNumBits();
+
+			// Worker processes calculate Avalon fingerprints in parallel without the lock, if enabled
+			if (AvalonFingerprintWorkerPool.isEnabled()) {
+				final ExplicitBitVect fingerprint = AvalonFingerprintWorkerPool.calculate(
+						mol, bitNumber, settings.getSimilarityBits());
+				if (fingerprint != null) {
+					return fingerprint;
+				}
+			}
+
 			final ExplicitBitVect fingerprint = new ExplicitBitVect(bitNumber);
 			synchronized (AVALON_FP_LOCK) {
 				RDKFuncs.getAvalonFP(mol, fingerprint, bitNumber, false, false, settings.getSimilarityBits());
@@ -809,7 +821,10 @@ public enum FingerprintType {
 	 * This lock prevents two calls at the same time into the Avalon Fingerprint functionality,
 	 * which has caused crashes under Windows 7 before.
 	 * Once there is a fix implemented in the RDKit (or somewhere else?) we can
-	 * remove this lock again.
+	 * remove this lock again. To calculate Avalon fingerprints in parallel anyway,
+	 * worker processes can be enabled in the preferences.
+	 * 
+	 * @see AvalonFingerprintWorkerPool
 	 */
 	public static final Object AVALON_FP_LOCK = new Object();
 
@@ -1155,7 +1170,8 @@ public enum FingerprintType {
 
 	/**
 	 * Converts the passed in RDKit object into a KNIME fingerprint. Afterwards
-	 * it will be disposed (unless null was passed in).
+	 * it will be disposed (unless null was passed in). The bits are transferred
+	 * in bulk, see {@link BitVectorUtils#toDenseBitVector(ExplicitBitVect)}.
 	 * 
 	 * @param fpRdkit RDKit object. Can be null.
 	 * 
@@ -1166,13 +1182,7 @@ public enum FingerprintType {
 
 		if (fpRdkit != null) {
 			try {
-				final int iCount = (int)fpRdkit.getNumBits();
-				fp = new DenseBitVector(iCount);
-				for (int i = 0; i < iCount; i++) {
-					if (fpRdkit.getBit(i)) {
-						fp.set(i);
-					}
-				}
+				fp = BitVectorUtils.toDenseBitVector(fpRdkit);
 			}
 			finally {
 				fpRdkit.delete();
@@ -0,0 +1,131 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+package org.rdkit.knime.nodes.rdkfingerprint;
+
+import java.util.Arrays;
+
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumberEdit;
+import org.rdkit.knime.types.RDKitMolValue;
+import org.rdkit.knime.util.DialogComponentColumnNameSelection;
+import org.rdkit.knime.util.DialogComponentEnumFilterPanel;
+import org.rdkit.knime.util.SettingsModelEnumerationArray;
+
+/**
+ * The dialog to configure the RDKit Multi Fingerprint node. The fingerprint settings
+ * are shared by all selected fingerprint types. Every type uses only the settings
+ * it supports.
+ *
+ * @author Manuel Schwarze
+ */
+public class RDKitMultiFingerprintNodeDialog extends DefaultNodeSettingsPane {
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Create a new dialog pane with some default components.
+	 */
+	RDKitMultiFingerprintNodeDialog() {
+		super.addDialogComponent(new DialogComponentColumnNameSelection(
+				AbstractRDKitFingerprintNodeDialog.createSmilesColumnModel(), "RDKit Mol column: ", 0,
+				RDKitMolValue.class));
+		super.addDialogComponent(new DialogComponentEnumFilterPanel<FingerprintType>(
+				createFPTypesModel(), "Fingerprint types to calculate:",
+				Arrays.asList(RDKitFingerprintNodeModel.getBitBasedFingerprintTypes()), false));
+		super.addDialogComponent(new DialogComponentBoolean(
+				AbstractRDKitFingerprintNodeDialog.createRemoveSourceColumnOptionModel(), "Remove source column"));
+
+		createNewTab(AbstractRDKitFingerprintNodeDialog.ADVANCED_TAB_NAME);
+		createNewGroup("Fingerprint Settings");
+		setHorizontalPlacement(true);
+		super.addDialogComponent(new DialogComponentNumberEdit(
+				AbstractRDKitFingerprintNodeDialog.createNumBitsModel(), "Num Bits: ", 4));
+		super.addDialogComponent(new DialogComponentNumber(
+				AbstractRDKitFingerprintNodeDialog.createRadiusModel(), "Radius (Morgan): ", 1));
+		super.addDialogComponent(new DialogComponentNumberEdit(
+				AbstractRDKitFingerprintNodeDialog.createLayerFlagsModel(), "Layer Flags (Layered): ", 8));
+		setHorizontalPlacement(false);
+		super.addDialogComponent(new DialogComponentNumber(
+				AbstractRDKitFingerprintNodeDialog.createTorsionPathLengthModel(), "Path Length (Torsion): ", 1, 2));
+		setHorizontalPlacement(true);
+		super.addDialogComponent(new DialogComponentNumber(
+				AbstractRDKitFingerprintNodeDialog.createMinPathModel(), "Min Path Length (RDKit, Layered): ", 1, 2));
+		super.addDialogComponent(new DialogComponentNumber(
+				AbstractRDKitFingerprintNodeDialog.createMaxPathModel(), "Max Path Length: ", 1, 2));
+		setHorizontalPlacement(false);
+		setHorizontalPlacement(true);
+		super.addDialogComponent(new DialogComponentNumber(
+				AbstractRDKitFingerprintNodeDialog.createAtomPairMinPathModel(), "Min Path Length (AtomPair): ", 1, 2));
+		super.addDialogComponent(new DialogComponentNumber(
+				AbstractRDKitFingerprintNodeDialog.createAtomPairMaxPathModel(), "Max Path Length: ", 1, 2));
+		setHorizontalPlacement(false);
+		super.addDialogComponent(new DialogComponentBoolean(
+				AbstractRDKitFingerprintNodeDialog.createUseChiralityModel(), "Use Chirality"));
+	}
+
+	//
+	// Static Methods
+	//
+
+	/**
+	 * Creates the settings model to be used for the selected fingerprint types.
+	 * The fingerprint types that are commonly calculated together are selected by default.
+	 * 
+	 * @return Settings model for selected fingerprint types.
+	 */
+	static final SettingsModelEnumerationArray<FingerprintType> createFPTypesModel() {
+		return new SettingsModelEnumerationArray<FingerprintType>(FingerprintType.class,
+				"fp_types", new FingerprintType[] {
+						FingerprintType.morgan, FingerprintType.featmorgan, FingerprintType.atompair,
+						FingerprintType.torsion, FingerprintType.maccs, FingerprintType.pattern });
+	}
+}
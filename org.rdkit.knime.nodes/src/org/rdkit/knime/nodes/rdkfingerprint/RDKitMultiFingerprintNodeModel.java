@@ -0,0 +1,434 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+package org.rdkit.knime.nodes.rdkfingerprint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.RDKit.RDKFuncs;
+import org.RDKit.ROMol;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.container.ColumnRearranger;
+import org.knime.core.data.vector.bitvector.DenseBitVector;
+import org.knime.core.data.vector.bitvector.DenseBitVectorCell;
+import org.knime.core.data.vector.bitvector.DenseBitVectorCellFactory;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.StreamableOperator;
+import org.rdkit.knime.nodes.AbstractRDKitCalculatorNodeModel;
+import org.rdkit.knime.nodes.AbstractRDKitCellFactory;
+import org.rdkit.knime.properties.FingerprintSettingsHeaderProperty;
+import org.rdkit.knime.types.RDKitMolValue;
+import org.rdkit.knime.util.InputDataInfo;
+import org.rdkit.knime.util.SettingsModelEnumerationArray;
+import org.rdkit.knime.util.SettingsUtils;
+import org.rdkit.knime.util.StringUtils;
+import org.rdkit.knime.util.WarningConsolidator;
+
+/**
+ * This class implements the node model of the "RDKitMultiFingerprint" node
+ * providing calculations based on the open source RDKit library.
+ * It calculates several bit-based fingerprint types in one pass. Every molecule
+ * gets unpickled only once and all selected fingerprints are calculated from
+ * the same molecule object, which shares also derived information like ring
+ * perception between the fingerprint types. Every fingerprint type goes into its
+ * own output column.
+ * 
+ * @author Manuel Schwarze
+ */
+public class RDKitMultiFingerprintNodeModel extends AbstractRDKitCalculatorNodeModel {
+
+	//
+	// Constants
+	//
+
+	/** The logger instance. */
+	private static final NodeLogger LOGGER = NodeLogger
+			.getLogger(RDKitMultiFingerprintNodeModel.class);
+
+	/** Input data info index for Mol value. */
+	protected static final int INPUT_COLUMN_MOL = 0;
+
+	//
+	// Members
+	//
+
+	/** Model for the molecule input column. */
+	private final SettingsModelString m_modelInputColumnName =
+			registerSettings(AbstractRDKitFingerprintNodeDialog.createSmilesColumnModel(), true);
+
+	/** Model for the fingerprint types to calculate. */
+	private final SettingsModelEnumerationArray<FingerprintType> m_modelFingerprintTypes =
+			registerSettings(RDKitMultiFingerprintNodeDialog.createFPTypesModel());
+
+	/** Model for the option to remove the input column. */
+	private final SettingsModelBoolean m_modelRemoveSourceColumns =
+			registerSettings(AbstractRDKitFingerprintNodeDialog.createRemoveSourceColumnOptionModel(), true);
+
+	/** Model for the Torsion path length to be used for calculations. */
+	private final SettingsModelIntegerBounded m_modelTorsionPathLength =
+			registerSettings(AbstractRDKitFingerprintNodeDialog.createTorsionPathLengthModel(), true);
+
+	/** Model for the minimum path length to be used for calculations. */
+	private final SettingsModelIntegerBounded m_modelMinPath =
+			registerSettings(AbstractRDKitFingerprintNodeDialog.createMinPathModel(), true);
+
+	/** Model for the maximum path length to be used for calculations. */
+	private final SettingsModelIntegerBounded m_modelMaxPath =
+			registerSettings(AbstractRDKitFingerprintNodeDialog.createMaxPathModel(), true);
+
+	/** Model for the AtomPair minimum path length to be used for calculations. */
+	private final SettingsModelIntegerBounded m_modelAtomPairMinPath =
+			registerSettings(AbstractRDKitFingerprintNodeDialog.createAtomPairMinPathModel(), true);
+
+	/** Model for the AtomPair maximum path length to be used for calculations. */
+	private final SettingsModelIntegerBounded m_modelAtomPairMaxPath =
+			registerSettings(AbstractRDKitFingerprintNodeDialog.createAtomPairMaxPathModel(), true);
+
+	/** Model for the number of fingerprint bits to be used for calculations. */
+	private final SettingsModelIntegerBounded m_modelNumBits =
+			registerSettings(AbstractRDKitFingerprintNodeDialog.createNumBitsModel(), true);
+
+	/** Model for the radius to be used for calculations. */
+	private final SettingsModelIntegerBounded m_modelRadius =
+			registerSettings(AbstractRDKitFingerprintNodeDialog.createRadiusModel(), true);
+
+	/** Model for the layer flags to be used for calculations. */
+	private final SettingsModelIntegerBounded m_modelLayerFlags =
+			registerSettings(AbstractRDKitFingerprintNodeDialog.createLayerFlagsModel(), true);
+
+	/** Model for the flag to use chirality. */
+	private final SettingsModelBoolean m_modelUseChirality =
+			registerSettings(AbstractRDKitFingerprintNodeDialog.createUseChiralityModel(), true);
+
+	//
+	// Constructors
+	//
+
+	/**
+	 * Create new node model with one data in- and one outport.
+	 */
+	RDKitMultiFingerprintNodeModel() {
+		super(1, 1);
+	}
+
+	//
+	// Protected Methods
+	//
+
+   /**
+    * Enable distribution and streaming for this node.
+    * {@inheritDoc}
+    */
+   @Override
+   public StreamableOperator createStreamableOperator(PartitionInfo partitionInfo, PortObjectSpec[] inSpecs)
+         throws InvalidSettingsException {
+      return createStreamableOperatorForCalculator(partitionInfo, inSpecs);
+   }
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
+			throws InvalidSettingsException {
+		// Reset warnings and check RDKit library readiness
+		super.configure(inSpecs);
+
+		// Auto guess the input column if not set - fails if no compatible column found
+		SettingsUtils.autoGuessColumn(inSpecs[0], m_modelInputColumnName, RDKitMolValue.class, 0,
+				"Auto guessing: Using column %COLUMN_NAME%.",
+				"No RDKit Mol, SMILES or SDF compatible column in input table. Use the \"RDKit from Molecule\" " +
+						"node to convert SMARTS.", getWarningConsolidator());
+
+		// Determines, if the input column exists - fails if it does not
+		SettingsUtils.checkColumnExistence(inSpecs[0], m_modelInputColumnName, RDKitMolValue.class,
+				"Input column has not been specified yet.",
+				"Input column %COLUMN_NAME% does not exist. Has the input table changed?");
+
+		// Check fingerprint settings of all selected types
+		final FingerprintType[] arrFingerprintTypes = getFingerprintTypes();
+		if (arrFingerprintTypes.length == 0) {
+			throw new InvalidSettingsException("No fingerprint type selected yet.");
+		}
+		for (final FingerprintType fpType : arrFingerprintTypes) {
+			fpType.validateSpecification(createFingerprintSettings(fpType), inSpecs[0]);
+		}
+
+		// Consolidate all warnings and make them available to the user
+		generateWarnings();
+
+		// Generate output specs
+		return getOutputTableSpecs(inSpecs);
+	}
+
+	/**
+	 * This implementation generates input data info object for the input mol column
+	 * and connects it with the information coming from the appropriate setting model.
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected InputDataInfo[] createInputDataInfos(final int inPort, final DataTableSpec inSpec)
+			throws InvalidSettingsException {
+
+		InputDataInfo[] arrDataInfo = null;
+
+		// Specify input of table 1
+		if (inPort == 0) {
+			arrDataInfo = new InputDataInfo[1]; // We have only one input column
+			arrDataInfo[INPUT_COLUMN_MOL] = new InputDataInfo(inSpec, m_modelInputColumnName,
+					InputDataInfo.EmptyCellPolicy.DeliverEmptyRow, null,
+					RDKitMolValue.class);
+		}
+
+		return (arrDataInfo == null ? new InputDataInfo[0] : arrDataInfo);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected AbstractRDKitCellFactory[] createOutputFactories(final int outPort, final DataTableSpec inSpec)
+			throws InvalidSettingsException {
+
+		AbstractRDKitCellFactory[] arrOutputFactories = null;
+
+		// Specify output of table 1
+		if (outPort == 0) {
+			// Allocate space for all factories (usually we have only one)
+			arrOutputFactories = new AbstractRDKitCellFactory[1];
+
+			// Factory 1:
+			// ==========
+			// Generate fingerprint settings and one column spec per fingerprint type
+			final FingerprintType[] arrFingerprintTypes = getFingerprintTypes();
+			final FingerprintSettings[] arrSettings = new FingerprintSettings[arrFingerprintTypes.length];
+			final DataColumnSpec[] arrOutputSpec = new DataColumnSpec[arrFingerprintTypes.length];
+			final List<String> listNewNames = new ArrayList<String>();
+			final String strInputColumnName = m_modelInputColumnName.getStringValue();
+
+			for (int i = 0; i < arrFingerprintTypes.length; i++) {
+				arrSettings[i] = createFingerprintSettings(arrFingerprintTypes[i]);
+
+				final String strColumnName = SettingsUtils.makeColumnNameUnique(
+						strInputColumnName + " (" + arrFingerprintTypes[i] + ")", inSpec, listNewNames);
+				listNewNames.add(strColumnName);
+
+				final DataColumnSpecCreator creator = new DataColumnSpecCreator(strColumnName, DenseBitVectorCell.TYPE);
+				new FingerprintSettingsHeaderProperty(arrSettings[i]).writeToColumnSpec(creator);
+				arrOutputSpec[i] = creator.createSpec();
+			}
+
+			final boolean bUseChirality = m_modelUseChirality.getBooleanValue();
+			final WarningConsolidator warnings = getWarningConsolidator();
+
+			// Generate factory
+			arrOutputFactories[0] = new AbstractRDKitCellFactory(this, AbstractRDKitCellFactory.RowFailurePolicy.DeliverEmptyValues,
+					getWarningConsolidator(), null, arrOutputSpec) {
+
+				@Override
+				/**
+				 * This method implements the calculation logic to generate the new cells based on
+				 * the input made available in the first (and second) parameter.
+				 * {@inheritDoc}
+				 */
+				public DataCell[] process(final InputDataInfo[] arrInputDataInfo, final DataRow row, final long lUniqueWaveId) throws Exception {
+					final DataCell[] arrOutputCells = new DataCell[arrFingerprintTypes.length];
+
+					// Unpickle the molecule once for all fingerprint types
+					final ROMol mol = markForCleanup(arrInputDataInfo[INPUT_COLUMN_MOL].getROMol(row), lUniqueWaveId);
+
+					// We need to make sure stereochemistry is assigned if we're
+					// using chirality in the fingerprints
+					if (bUseChirality) {
+						RDKFuncs.assignStereochemistry(mol);
+					}
+
+					for (int i = 0; i < arrFingerprintTypes.length; i++) {
+						DataCell outputCell = null;
+
+						try {
+							// Use the Avalon fingerprint calculated in advance for the whole batch, if available
+							DenseBitVector bitVector = (arrFingerprintTypes[i] == FingerprintType.avalon ?
+									AvalonFingerprintBatch.take(row) : null);
+							if (bitVector == null) {
+								bitVector = arrFingerprintTypes[i].calculateBitBased(mol, arrSettings[i]);
+							}
+							if (bitVector != null) {
+								outputCell = new DenseBitVectorCellFactory(bitVector).createDataCell();
+							}
+						}
+						catch (final Exception exc) {
+							// A failing fingerprint type shall not affect the other types of the same row
+							final String strError = exc.getMessage();
+							LOGGER.debug("Fingerprint Type '" + arrFingerprintTypes[i] + "' could not be calculated for row '" +
+									row.getKey() + "': " + (StringUtils.isEmptyAfterTrimming(strError) ?
+											"An unknown error occurred." : strError));
+						}
+
+						if (outputCell == null) {
+							warnings.saveWarning(WarningConsolidator.ROW_CONTEXT.getId(),
+									"Error computing " + arrFingerprintTypes[i] + " fingerprint - Setting value as missing cell.");
+							outputCell = DataType.getMissingCell();
+						}
+
+						arrOutputCells[i] = outputCell;
+					}
+
+					return arrOutputCells;
+				}
+
+				/**
+				 * {@inheritDoc}
+				 * Calculates Avalon fingerprints of all rows in a worker process, if enabled.
+				 * Fingerprints with chirality are excluded, as stereochemistry gets assigned
+				 * to the molecule of each row before calculating the fingerprints.
+				 */
+				@Override
+				public void prepareBatch(final DataRow[] arrRows, final ExecutionMonitor exec)
+						throws CanceledExecutionException {
+					if (!bUseChirality) {
+						for (int i = 0; i < arrFingerprintTypes.length; i++) {
+							if (arrFingerprintTypes[i] == FingerprintType.avalon) {
+								AvalonFingerprintBatch.prepare(getInputDataInfos()[INPUT_COLUMN_MOL],
+										arrRows, arrSettings[i], exec);
+							}
+						}
+					}
+				}
+
+				@Override
+				public void finishBatch() {
+					AvalonFingerprintBatch.finish();
+				}
+			};
+
+			// Enable this factory to allow parallel processing
+			arrOutputFactories[0].setAllowParallelProcessing(true);
+		}
+
+		return (arrOutputFactories == null ? new AbstractRDKitCellFactory[0] : arrOutputFactories);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * This implementation removes additionally the compound source column, if specified in the settings.
+	 */
+	@Override
+	protected ColumnRearranger createColumnRearranger(final int outPort,
+			final DataTableSpec inSpec) throws InvalidSettingsException {
+		// Perform normal work
+		final ColumnRearranger result = super.createColumnRearranger(outPort, inSpec);
+
+		// Remove the input column, if desired
+		if (m_modelRemoveSourceColumns.getBooleanValue()) {
+			result.remove(createInputDataInfos(0, inSpec)[INPUT_COLUMN_MOL].getColumnIndex());
+		}
+
+		return result;
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Returns the selected fingerprint types without flow variable placeholders.
+	 * 
+	 * @return Array of selected fingerprint types. Can be empty, but never null.
+	 */
+	private FingerprintType[] getFingerprintTypes() {
+		final List<FingerprintType> listTypes = new ArrayList<FingerprintType>();
+		final FingerprintType[] arrTypes = m_modelFingerprintTypes.getValues();
+
+		if (arrTypes != null) {
+			for (final FingerprintType fpType : arrTypes) {
+				if (fpType != null && !listTypes.contains(fpType)) {
+					listTypes.add(fpType);
+				}
+			}
+		}
+
+		return listTypes.toArray(new FingerprintType[listTypes.size()]);
+	}
+
+	/**
+	 * Creates based on the node's settings models the fingerprint settings for
+	 * the specified fingerprint type. Parameters that are not used by the type
+	 * are not included.
+	 * 
+	 * @param fpType Fingerprint type. Must not be null.
+	 * 
+	 * @return Fingerprint settings. Never null.
+	 */
+	private FingerprintSettings createFingerprintSettings(final FingerprintType fpType) {
+		return fpType.getSpecification(
+				m_modelTorsionPathLength.getIntValue(),
+				m_modelMinPath.getIntValue(),
+				m_modelMaxPath.getIntValue(),
+				m_modelAtomPairMinPath.getIntValue(),
+				m_modelAtomPairMaxPath.getIntValue(),
+				m_modelNumBits.getIntValue(),
+				m_modelRadius.getIntValue(),
+				m_modelLayerFlags.getIntValue(),
+				m_modelUseChirality.getBooleanValue(),
+				false, null, false, false);
+	}
+}
@@ -176,6 +176,10 @@ public class RDKitSaltStripperNodeModel extends AbstractRDKitCalculatorNodeModel
 						PortTypeRegistry.getInstance().getPortType(BufferedDataTable.TYPE.getPortObjectClass(), false) });
 
 		getWarningConsolidator().registerContext(SALT_CONTEXT);
+
+		// Molecules are streamed, the optional salt table is read completely in pre-processing.
+		// Rows are not distributed, because the salts are prepared only once per execution
+		enableRowStreaming();
 	}
 
 	//
@@ -460,7 +464,7 @@ public class RDKitSaltStripperNodeModel extends AbstractRDKitCalculatorNodeModel
 	 * process(InputDataInfo[], DataRow) in the factory or
 	 * {@link #postProcessing(BufferedDataTable[], BufferedDataTable[], ExecutionContext)} in the model.
 	 * 
-	 * @param inData The input tables of the node.
+	 * @param inData The input tables of the node. When streaming the first table is null.
 	 * @param arrInputDataInfo Information about all columns of the input tables.
 	 * @param exec The execution context, which was derived as sub-execution context based on the percentage
 	 * 		setting of #getPreProcessingPercentage(). Track the progress from 0..1.
@@ -535,6 +539,18 @@ public class RDKitSaltStripperNodeModel extends AbstractRDKitCalculatorNodeModel
 		return map;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * This implementation considers the number of processed salts.
+	 */
+	@Override
+	protected Map<String, Long> createWarningContextOccurrencesMapForStreaming(final long lRowCount) {
+		final Map<String, Long> map = super.createWarningContextOccurrencesMapForStreaming(lRowCount);
+		map.put(SALT_CONTEXT.getId(), (long)m_iProcessedSaltCount);
+
+		return map;
+	}
+
 	//
 	// Private Methods
 	//
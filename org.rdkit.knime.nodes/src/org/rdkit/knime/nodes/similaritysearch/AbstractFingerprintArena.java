@@ -0,0 +1,468 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.nodes.similaritysearch;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Base class of fingerprint arenas, which hold fingerprints with the same number of bits
+ * sorted by their number of on bits (popcount) and which are prepared for fast
+ * similarity searches. A search only looks at popcounts that can still reach the
+ * requested similarity (BitBound pruning, Swamidass and Baldi, J. Chem. Inf. Model.,
+ * 47 (2007), 302-317). It starts with the popcount of the query and expands to lower
+ * and higher popcounts, always continuing on the side with the better similarity bound.
+ * In top-k mode the bound gets raised as soon as k hits have been found.<br />
+ * Concrete arenas define only where the sorted fingerprints are stored. They must be
+ * immutable, so that they can be searched from multiple threads.
+ * 
+ * @author Manuel Schwarze
+ */
+public abstract class AbstractFingerprintArena {
+
+	//
+	// Constants
+	//
+
+	/** Tolerance for comparing similarities with thresholds to compensate rounding errors. */
+	private static final double EPSILON = 1.0E-10d;
+
+	//
+	// Inner Classes
+	//
+
+	/**
+	 * The result of a search, which contains the indexes of the found fingerprints
+	 * and their similarities, ordered by descending similarity.
+	 */
+	public static final class Hits {
+
+		/** Indexes of found fingerprints. */
+		private final int[] m_arrIndexes;
+
+		/** Similarities of found fingerprints. */
+		private final double[] m_arrSimilarities;
+
+		/** Number of fingerprints that were compared with the query. */
+		private final long m_lComparisons;
+
+		/**
+		 * Creates a new search result.
+		 * 
+		 * @param arrIndexes Indexes of found fingerprints.
+		 * @param arrSimilarities Similarities of found fingerprints.
+		 * @param lComparisons Number of fingerprints that were compared with the query.
+		 */
+		private Hits(final int[] arrIndexes, final double[] arrSimilarities, final long lComparisons) {
+			m_arrIndexes = arrIndexes;
+			m_arrSimilarities = arrSimilarities;
+			m_lComparisons = lComparisons;
+		}
+
+		/**
+		 * Returns the number of hits.
+		 * 
+		 * @return Number of hits.
+		 */
+		public int size() {
+			return m_arrIndexes.length;
+		}
+
+		/**
+		 * Returns the index of a hit, which is the index the fingerprint was added with.
+		 * 
+		 * @param iHit Hit number. Must be between 0 and {@link #size()} - 1.
+		 * 
+		 * @return Fingerprint index.
+		 */
+		public int getIndex(final int iHit) {
+			return m_arrIndexes[iHit];
+		}
+
+		/**
+		 * Returns the similarity of a hit to the query.
+		 * 
+		 * @param iHit Hit number. Must be between 0 and {@link #size()} - 1.
+		 * 
+		 * @return Similarity.
+		 */
+		public double getSimilarity(final int iHit) {
+			return m_arrSimilarities[iHit];
+		}
+
+		/**
+		 * Returns the number of fingerprints that were actually compared with the query.
+		 * All other fingerprints of the arena were pruned based on their popcount.
+		 * 
+		 * @return Number of comparisons.
+		 */
+		public long getComparisons() {
+			return m_lComparisons;
+		}
+	}
+
+	//
+	// Public Methods
+	//
+
+	/**
+	 * Returns the number of bits of each fingerprint in this arena.
+	 * 
+	 * @return Number of bits.
+	 */
+	public abstract int getNumBits();
+
+	/**
+	 * Returns the number of fingerprints in this arena.
+	 * 
+	 * @return Number of fingerprints.
+	 */
+	public abstract int size();
+
+	/**
+	 * Searches for the fingerprints most similar to the specified query.
+	 * 
+	 * @param arrQuery Query fingerprint as 64-bit words. Must not be null and must
+	 * 		have the same number of words as the fingerprints of this arena.
+	 * @param metric Similarity metric. Must not be null.
+	 * @param dThreshold Minimal similarity of hits. Use 0.0 to accept all fingerprints.
+	 * @param iTopK Maximal number of hits to be returned. Use 0 or a negative value to return
+	 * 		all fingerprints that reach the threshold.
+	 * 
+	 * @return Found fingerprints, ordered by descending similarity. Fingerprints with
+	 * 		equal similarity are ordered by their index. Never null.
+	 */
+	public Hits search(final long[] arrQuery, final SimilarityMetric metric,
+			final double dThreshold, final int iTopK) {
+		final int iNumBits = getNumBits();
+		if (arrQuery.length != (iNumBits + 63) >>> 6) {
+			throw new IllegalArgumentException("Query fingerprint has " + (arrQuery.length * 64) +
+					" bits instead of " + iNumBits + " bits.");
+		}
+
+		int iQueryOnBits = 0;
+		for (final long lWord : arrQuery) {
+			iQueryOnBits += Long.bitCount(lWord);
+		}
+
+		final HitCollector collector = (iTopK > 0 ? new TopKCollector(Math.max(1, Math.min(iTopK, size()))) : new ThresholdCollector());
+		final double dMinimum = dThreshold - EPSILON;
+		long lComparisons = 0;
+
+		// Expand from the popcount of the query to both sides, taking always the more promising one
+		int iLower = Math.min(iQueryOnBits, iNumBits);
+		int iUpper = iLower + 1;
+		while (true) {
+			final double dLowerBound = (iLower >= 0 ?
+					metric.calculateMaximum(iQueryOnBits, iLower) : -1.0d);
+			final double dUpperBound = (iUpper <= iNumBits ?
+					metric.calculateMaximum(iQueryOnBits, iUpper) : -1.0d);
+			final boolean bLower = (dLowerBound >= dUpperBound);
+			final double dBound = (bLower ? dLowerBound : dUpperBound);
+
+			// No popcount left that could deliver a (better) hit
+			if (dBound < dMinimum || dBound < collector.getMinimum() - EPSILON) {
+				break;
+			}
+
+			final int iOnBits = (bLower ? iLower-- : iUpper++);
+			final int iStart = getBucketStart(iOnBits);
+			final int iEnd = getBucketStart(iOnBits + 1);
+			for (int iPos = iStart; iPos < iEnd; iPos++) {
+				final double dSimilarity = metric.calculate(
+						countCommonBits(iPos, arrQuery), iQueryOnBits, iOnBits);
+				if (dSimilarity >= dMinimum) {
+					collector.add(getIndex(iPos), dSimilarity);
+				}
+			}
+			lComparisons += iEnd - iStart;
+		}
+
+		return collector.createHits(lComparisons);
+	}
+
+	//
+	// Protected Methods
+	//
+
+	/**
+	 * Returns the position of the first fingerprint with the specified popcount
+	 * in the sorted order.
+	 * 
+	 * @param iOnBits Popcount between 0 and {@link #getNumBits()} + 1. For the latter
+	 * 		the total number of fingerprints must be returned.
+	 * 
+	 * @return Position of the first fingerprint with this popcount. If there is none,
+	 * 		it is the position of the first fingerprint with a higher popcount.
+	 */
+	protected abstract int getBucketStart(int iOnBits);
+
+	/**
+	 * Counts the on bits the fingerprint at the specified position has in common with the query.
+	 * 
+	 * @param iPosition Position of a fingerprint in the sorted order.
+	 * @param arrQuery Query fingerprint as 64-bit words.
+	 * 
+	 * @return Number of common on bits.
+	 */
+	protected abstract int countCommonBits(int iPosition, long[] arrQuery);
+
+	/**
+	 * Returns the original index of the fingerprint at the specified position.
+	 * 
+	 * @param iPosition Position of a fingerprint in the sorted order.
+	 * 
+	 * @return Index of the fingerprint.
+	 */
+	protected abstract int getIndex(int iPosition);
+
+	//
+	// Private Classes
+	//
+
+	/**
+	 * Collects hits during a search.
+	 */
+	private interface HitCollector {
+
+		/**
+		 * Adds a hit.
+		 * 
+		 * @param iIndex Fingerprint index.
+		 * @param dSimilarity Similarity to the query.
+		 */
+		void add(int iIndex, double dSimilarity);
+
+		/**
+		 * Returns the similarity a new hit must have at least to be of interest.
+		 * 
+		 * @return Minimal similarity.
+		 */
+		double getMinimum();
+
+		/**
+		 * Creates the final search result.
+		 * 
+		 * @param lComparisons Number of comparisons done.
+		 * 
+		 * @return Search result.
+		 */
+		Hits createHits(long lComparisons);
+	}
+
+	/**
+	 * Collects all hits above the threshold.
+	 */
+	private static final class ThresholdCollector implements HitCollector {
+
+		/** Indexes of found fingerprints. */
+		private int[] m_arrIndexes = new int[16];
+
+		/** Similarities of found fingerprints. */
+		private double[] m_arrSimilarities = new double[16];
+
+		/** Number of hits. */
+		private int m_iSize = 0;
+
+		@Override
+		public void add(final int iIndex, final double dSimilarity) {
+			if (m_iSize == m_arrIndexes.length) {
+				m_arrIndexes = Arrays.copyOf(m_arrIndexes, m_iSize * 2);
+				m_arrSimilarities = Arrays.copyOf(m_arrSimilarities, m_iSize * 2);
+			}
+			m_arrIndexes[m_iSize] = iIndex;
+			m_arrSimilarities[m_iSize] = dSimilarity;
+			m_iSize++;
+		}
+
+		@Override
+		public double getMinimum() {
+			return Double.NEGATIVE_INFINITY;
+		}
+
+		@Override
+		public Hits createHits(final long lComparisons) {
+			final Integer[] arrOrder = new Integer[m_iSize];
+			for (int i = 0; i < m_iSize; i++) {
+				arrOrder[i] = i;
+			}
+			Arrays.sort(arrOrder, new Comparator<Integer>() {
+				@Override
+				public int compare(final Integer i1, final Integer i2) {
+					final int iResult = Double.compare(m_arrSimilarities[i2], m_arrSimilarities[i1]);
+					return (iResult != 0 ? iResult : Integer.compare(m_arrIndexes[i1], m_arrIndexes[i2]));
+				}
+			});
+
+			final int[] arrIndexes = new int[m_iSize];
+			final double[] arrSimilarities = new double[m_iSize];
+			for (int i = 0; i < m_iSize; i++) {
+				arrIndexes[i] = m_arrIndexes[arrOrder[i]];
+				arrSimilarities[i] = m_arrSimilarities[arrOrder[i]];
+			}
+
+			return new Hits(arrIndexes, arrSimilarities, lComparisons);
+		}
+	}
+
+	/**
+	 * Collects the k best hits in a binary min-heap, which has the worst hit at its root.
+	 */
+	private static final class TopKCollector implements HitCollector {
+
+		/** Indexes of found fingerprints in heap order. */
+		private final int[] m_arrIndexes;
+
+		/** Similarities of found fingerprints in heap order. */
+		private final double[] m_arrSimilarities;
+
+		/** Number of hits. */
+		private int m_iSize = 0;
+
+		/**
+		 * Creates a new collector for the k best hits.
+		 * 
+		 * @param iTopK Maximal number of hits. Must be positive.
+		 */
+		private TopKCollector(final int iTopK) {
+			m_arrIndexes = new int[iTopK];
+			m_arrSimilarities = new double[iTopK];
+		}
+
+		@Override
+		public void add(final int iIndex, final double dSimilarity) {
+			if (m_iSize < m_arrIndexes.length) {
+				// Sift the new hit up from the end
+				int iPos = m_iSize++;
+				while (iPos > 0) {
+					final int iParent = (iPos - 1) >>> 1;
+					if (!isWorse(iIndex, dSimilarity, m_arrIndexes[iParent], m_arrSimilarities[iParent])) {
+						break;
+					}
+					m_arrIndexes[iPos] = m_arrIndexes[iParent];
+					m_arrSimilarities[iPos] = m_arrSimilarities[iParent];
+					iPos = iParent;
+				}
+				m_arrIndexes[iPos] = iIndex;
+				m_arrSimilarities[iPos] = dSimilarity;
+			}
+			else if (isWorse(m_arrIndexes[0], m_arrSimilarities[0], iIndex, dSimilarity)) {
+				// Replace the worst hit and sift the new hit down
+				siftDown(iIndex, dSimilarity, m_iSize);
+			}
+		}
+
+		@Override
+		public double getMinimum() {
+			return (m_iSize < m_arrIndexes.length ? Double.NEGATIVE_INFINITY : m_arrSimilarities[0]);
+		}
+
+		@Override
+		public Hits createHits(final long lComparisons) {
+			final int[] arrIndexes = new int[m_iSize];
+			final double[] arrSimilarities = new double[m_iSize];
+
+			// Remove the worst hit repeatedly and fill the result from the end
+			for (int i = m_iSize - 1; i >= 0; i--) {
+				arrIndexes[i] = m_arrIndexes[0];
+				arrSimilarities[i] = m_arrSimilarities[0];
+				siftDown(m_arrIndexes[i], m_arrSimilarities[i], i);
+			}
+			m_iSize = 0;
+
+			return new Hits(arrIndexes, arrSimilarities, lComparisons);
+		}
+
+		/**
+		 * Places the specified hit at the root and sifts it down into the heap.
+		 * 
+		 * @param iIndex Fingerprint index.
+		 * @param dSimilarity Similarity.
+		 * @param iSize Number of hits in the heap.
+		 */
+		private void siftDown(final int iIndex, final double dSimilarity, final int iSize) {
+			int iPos = 0;
+			while (true) {
+				int iChild = 2 * iPos + 1;
+				if (iChild >= iSize) {
+					break;
+				}
+				if (iChild + 1 < iSize && isWorse(m_arrIndexes[iChild + 1], m_arrSimilarities[iChild + 1],
+						m_arrIndexes[iChild], m_arrSimilarities[iChild])) {
+					iChild++;
+				}
+				if (!isWorse(m_arrIndexes[iChild], m_arrSimilarities[iChild], iIndex, dSimilarity)) {
+					break;
+				}
+				m_arrIndexes[iPos] = m_arrIndexes[iChild];
+				m_arrSimilarities[iPos] = m_arrSimilarities[iChild];
+				iPos = iChild;
+			}
+			if (iSize > 0) {
+				m_arrIndexes[iPos] = iIndex;
+				m_arrSimilarities[iPos] = dSimilarity;
+			}
+		}
+
+		/**
+		 * Determines, if the first hit is worse than the second one. A hit is worse, if it
+		 * has a lower similarity or the same similarity and a higher index.
+		 * 
+		 * @param iIndex1 Fingerprint index of first hit.
+		 * @param dSimilarity1 Similarity of first hit.
+		 * @param iIndex2 Fingerprint index of second hit.
+		 * @param dSimilarity2 Similarity of second hit.
+		 * 
+		 * @return True, if the first hit is worse.
+		 */
+		private static boolean isWorse(final int iIndex1, final double dSimilarity1,
+				final int iIndex2, final double dSimilarity2) {
+			return (dSimilarity1 < dSimilarity2 || (dSimilarity1 == dSimilarity2 && iIndex1 > iIndex2));
+		}
+	}
+}
@@ -0,0 +1,296 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.nodes.similaritysearch;
+import java.util.Arrays;
+
+/**
+ * An in-memory arena of fingerprints with the same number of bits, prepared for fast
+ * similarity searches. All fingerprints are packed one after another into a single
+ * long array, sorted by their precomputed number of on bits (popcount).
+ * Once built, an arena is immutable and can be searched from multiple threads.
+ * 
+ * @author Manuel Schwarze
+ */
+public final class FingerprintArena extends AbstractFingerprintArena {
+
+	//
+	// Inner Classes
+	//
+
+	/**
+	 * Collects fingerprints one by one and builds an arena from them.
+	 */
+	public static final class Builder {
+
+		/** Number of bits of each fingerprint. */
+		private final int m_iNumBits;
+
+		/** Number of 64-bit words of each fingerprint. */
+		private final int m_iWordsPerFingerprint;
+
+		/** Packed words of all fingerprints in the order they were added. */
+		private long[] m_arrWords;
+
+		/** Number of on bits of all fingerprints in the order they were added. */
+		private int[] m_arrOnBits;
+
+		/** Number of added fingerprints. */
+		private int m_iSize;
+
+		/**
+		 * Creates a new builder for fingerprints with the specified number of bits.
+		 * 
+		 * @param iNumBits Number of bits. Must be positive.
+		 */
+		public Builder(final int iNumBits) {
+			if (iNumBits <= 0) {
+				throw new IllegalArgumentException("Number of bits must be positive.");
+			}
+			m_iNumBits = iNumBits;
+			m_iWordsPerFingerprint = (iNumBits + 63) >>> 6;
+			m_arrWords = new long[m_iWordsPerFingerprint * 1024];
+			m_arrOnBits = new int[1024];
+			m_iSize = 0;
+		}
+
+		/**
+		 * Adds the next fingerprint. Fingerprints are numbered in the order they are added,
+		 * starting with 0.
+		 * 
+		 * @param arrWords Fingerprint as 64-bit words. Must not be null and must
+		 * 		have {@link #getWordsPerFingerprint()} words.
+		 * 
+		 * @return The index of the added fingerprint.
+		 */
+		public int add(final long[] arrWords) {
+			if (arrWords.length != m_iWordsPerFingerprint) {
+				throw new IllegalArgumentException("Fingerprint has " + (arrWords.length * 64) +
+						" bits instead of " + m_iNumBits + " bits.");
+			}
+
+			if (m_iSize == m_arrOnBits.length) {
+				final int iCapacity = (int)Math.min(Integer.MAX_VALUE - 8,
+						Math.max(m_iSize * 3L / 2L, m_iSize + 1L));
+				if ((long)iCapacity * m_iWordsPerFingerprint > Integer.MAX_VALUE - 8) {
+					throw new IllegalStateException("Too many fingerprints for an in-memory arena.");
+				}
+				m_arrOnBits = Arrays.copyOf(m_arrOnBits, iCapacity);
+				m_arrWords = Arrays.copyOf(m_arrWords, iCapacity * m_iWordsPerFingerprint);
+			}
+
+			int iOnBits = 0;
+			final int iOffset = m_iSize * m_iWordsPerFingerprint;
+			for (int i = 0; i < m_iWordsPerFingerprint; i++) {
+				m_arrWords[iOffset + i] = arrWords[i];
+				iOnBits += Long.bitCount(arrWords[i]);
+			}
+			m_arrOnBits[m_iSize] = iOnBits;
+
+			return m_iSize++;
+		}
+
+		/**
+		 * Returns the number of bits of each fingerprint.
+		 * 
+		 * @return Number of bits.
+		 */
+		public int getNumBits() {
+			return m_iNumBits;
+		}
+
+		/**
+		 * Returns the number of 64-bit words each fingerprint consists of.
+		 * 
+		 * @return Number of words.
+		 */
+		public int getWordsPerFingerprint() {
+			return m_iWordsPerFingerprint;
+		}
+
+		/**
+		 * Returns the number of fingerprints added so far.
+		 * 
+		 * @return Number of fingerprints.
+		 */
+		public int size() {
+			return m_iSize;
+		}
+
+		/**
+		 * Builds the arena from all added fingerprints by sorting them by their popcount.
+		 * The builder should not be used anymore afterwards.
+		 * 
+		 * @return The arena. Never null.
+		 */
+		public FingerprintArena build() {
+			// Counting sort by popcount, which keeps the order of fingerprints with equal popcount
+			final int[] arrBucketStarts = new int[m_iNumBits + 2];
+			for (int i = 0; i < m_iSize; i++) {
+				arrBucketStarts[m_arrOnBits[i] + 1]++;
+			}
+			for (int i = 1; i < arrBucketStarts.length; i++) {
+				arrBucketStarts[i] += arrBucketStarts[i - 1];
+			}
+
+			final int[] arrNext = Arrays.copyOf(arrBucketStarts, arrBucketStarts.length);
+			final long[] arrSortedWords = new long[m_iSize * m_iWordsPerFingerprint];
+			final int[] arrIndexes = new int[m_iSize];
+			for (int i = 0; i < m_iSize; i++) {
+				final int iPos = arrNext[m_arrOnBits[i]]++;
+				System.arraycopy(m_arrWords, i * m_iWordsPerFingerprint,
+						arrSortedWords, iPos * m_iWordsPerFingerprint, m_iWordsPerFingerprint);
+				arrIndexes[iPos] = i;
+			}
+
+			// Help the garbage collector
+			m_arrWords = null;
+			m_arrOnBits = null;
+
+			return new FingerprintArena(m_iNumBits, arrSortedWords, arrIndexes, arrBucketStarts);
+		}
+	}
+
+	//
+	// Members
+	//
+
+	/** Number of bits of each fingerprint. */
+	private final int m_iNumBits;
+
+	/** Number of 64-bit words of each fingerprint. */
+	private final int m_iWordsPerFingerprint;
+
+	/** Packed words of all fingerprints, sorted by popcount. */
+	private final long[] m_arrWords;
+
+	/** Original index of all fingerprints in the sorted order. */
+	private final int[] m_arrIndexes;
+
+	/**
+	 * Start positions of the fingerprints with a certain popcount. Fingerprints with
+	 * popcount n are found between m_arrBucketStarts[n] (inclusive) and
+	 * m_arrBucketStarts[n + 1] (exclusive).
+	 */
+	private final int[] m_arrBucketStarts;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Creates a new arena from already sorted data. Use the {@link Builder} to create
+	 * an arena from unsorted fingerprints.
+	 * 
+	 * @param iNumBits Number of bits of each fingerprint.
+	 * @param arrWords Packed words of all fingerprints, sorted by popcount.
+	 * @param arrIndexes Original index of all fingerprints in the sorted order.
+	 * @param arrBucketStarts Start positions of popcounts 0 to iNumBits + 1.
+	 */
+	private FingerprintArena(final int iNumBits, final long[] arrWords,
+			final int[] arrIndexes, final int[] arrBucketStarts) {
+		m_iNumBits = iNumBits;
+		m_iWordsPerFingerprint = (iNumBits + 63) >>> 6;
+		m_arrWords = arrWords;
+		m_arrIndexes = arrIndexes;
+		m_arrBucketStarts = arrBucketStarts;
+	}
+
+	//
+	// Public Methods
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNumBits() {
+		return m_iNumBits;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return m_arrIndexes.length;
+	}
+
+	//
+	// Protected Methods
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int getBucketStart(final int iOnBits) {
+		return m_arrBucketStarts[iOnBits];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int countCommonBits(final int iPosition, final long[] arrQuery) {
+		final int iOffset = iPosition * m_iWordsPerFingerprint;
+		int iCommon = 0;
+		for (int i = 0; i < m_iWordsPerFingerprint; i++) {
+			iCommon += Long.bitCount(m_arrWords[iOffset + i] & arrQuery[i]);
+		}
+		return iCommon;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int getIndex(final int iPosition) {
+		return m_arrIndexes[iPosition];
+	}
+}
@@ -0,0 +1,476 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.nodes.similaritysearch;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A fingerprint arena, which is stored in a binary fingerprint index file and memory mapped
+ * instead of being loaded onto the heap. Opening an index takes only milliseconds independent
+ * of its size, and the operating system keeps the pages of the file cached between
+ * executions. The file format follows the idea of the FPB format of chemfp: Fingerprints
+ * are stored sorted by popcount, so that searches can use BitBound pruning directly on the
+ * mapped file. Index files are written with the {@link FingerprintIndexWriter}.<br />
+ * All numbers are stored in little endian byte order and all sections start at a multiple
+ * of 8 bytes. The file consists of:
+ * <ol>
+ * <li>A header of {@link #HEADER_SIZE} bytes: the magic bytes "RDKitFPB", the format version (int),
+ * 		the number of bits (int), the number of fingerprints (long), the offsets of all following
+ * 		sections (longs) in the order listed here and the size of the ID data section (long).</li>
+ * <li>Popcount table: For popcounts 0 to number of bits + 1 the position of the first fingerprint with
+ * 		this popcount (ints).</li>
+ * <li>Fingerprints sorted by popcount, each as (number of bits + 63) / 64 words (longs).</li>
+ * <li>Indexes: The original index of each fingerprint in sorted order (ints).</li>
+ * <li>Positions: The sorted position of each fingerprint in original order (ints).</li>
+ * <li>ID offsets: For each fingerprint in original order plus one the start offset
+ * 		of its ID in the ID data section (longs).</li>
+ * <li>ID data: The UTF-8 encoded IDs of all fingerprints in original order.</li>
+ * </ol>
+ * The header is written last, so that an incompletely written file cannot be opened.
+ * An opened index is immutable and can be searched from multiple threads. It must be
+ * closed when it is not needed anymore to release the memory mapping of the file,
+ * which otherwise keeps the file locked on Windows until the index gets garbage collected.
+ * 
+ * @author Manuel Schwarze
+ */
+public final class FingerprintIndex extends AbstractFingerprintArena implements Closeable {
+
+	//
+	// Constants
+	//
+
+	/** The magic bytes at the beginning of a fingerprint index file. */
+	static final byte[] MAGIC = "RDKitFPB".getBytes(StandardCharsets.US_ASCII);
+
+	/** The version of the file format. */
+	static final int VERSION = 1;
+
+	/** The size of the file header in bytes. */
+	static final int HEADER_SIZE = 80;
+
+	/** The recommended file extension of fingerprint index files. */
+	public static final String FILE_EXTENSION = ".fpi";
+
+	//
+	// Members
+	//
+
+	/** Number of bits of each fingerprint. */
+	private final int m_iNumBits;
+
+	/** Number of fingerprints. */
+	private final int m_iSize;
+
+	/** Number of 64-bit words of each fingerprint. */
+	private final int m_iWordsPerFingerprint;
+
+	/** Number of bytes of each fingerprint. */
+	private final int m_iBytesPerFingerprint;
+
+	/** Number of fingerprints in each chunk of the fingerprint region. */
+	private final int m_iFingerprintsPerChunk;
+
+	/** Start positions of the fingerprints with a certain popcount, read from the popcount table. */
+	private final int[] m_arrBucketStarts;
+
+	/** The mapped fingerprint section. Its chunks contain only complete fingerprints. */
+	private final MappedRegion m_fingerprints;
+
+	/** The complete mapped file for access to all other sections. */
+	private final MappedRegion m_file;
+
+	/** Offset of the index section. */
+	private final long m_lIndexesOffset;
+
+	/** Offset of the position section. */
+	private final long m_lPositionsOffset;
+
+	/** Offset of the ID offset section. */
+	private final long m_lIdOffsetsOffset;
+
+	/** Offset of the ID data section. */
+	private final long m_lIdDataOffset;
+
+	/**
+	 * Lock to access the mapping. All accesses hold the read lock, closing holds the write lock,
+	 * as accessing a released mapping would crash the JVM.
+	 */
+	private final ReadWriteLock m_lockMapping = new ReentrantReadWriteLock();
+
+	/** Flag to tell that the index has been closed. Guarded by {@link #m_lockMapping}. */
+	private boolean m_bClosed = false;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Maps the specified fingerprint index file.
+	 * 
+	 * @param channel Channel of the file. Must not be null.
+	 * 
+	 * @throws IOException Thrown, if the file could not be mapped or is not a valid index file.
+	 */
+	private FingerprintIndex(final FileChannel channel) throws IOException {
+		final long lFileSize = channel.size();
+		if (lFileSize < HEADER_SIZE) {
+			throw new IOException("The file is too small to be a fingerprint index file.");
+		}
+
+		m_file = new MappedRegion(channel, FileChannel.MapMode.READ_ONLY, 0, lFileSize,
+				MappedRegion.DEFAULT_CHUNK_SIZE);
+
+		// Release the mapping right away, if the file is invalid
+		boolean bSuccess = false;
+		try {
+			// Read and check header
+			final byte[] arrMagic = new byte[MAGIC.length];
+			m_file.get(0, arrMagic);
+			if (!Arrays.equals(arrMagic, MAGIC)) {
+				throw new IOException("The file is not a fingerprint index file or has not been written completely.");
+			}
+			final int iVersion = m_file.getInt(8);
+			if (iVersion != VERSION) {
+				throw new IOException("The fingerprint index file has the unsupported version " + iVersion + ".");
+			}
+
+			m_iNumBits = m_file.getInt(12);
+			final long lSize = m_file.getLong(16);
+			final long lPopcountsOffset = m_file.getLong(24);
+			final long lFingerprintsOffset = m_file.getLong(32);
+			m_lIndexesOffset = m_file.getLong(40);
+			m_lPositionsOffset = m_file.getLong(48);
+			m_lIdOffsetsOffset = m_file.getLong(56);
+			m_lIdDataOffset = m_file.getLong(64);
+			final long lIdDataSize = m_file.getLong(72);
+
+			if (m_iNumBits <= 0 || lSize < 0 || lSize > Integer.MAX_VALUE - 8) {
+				throw new IOException("The fingerprint index file has an invalid header.");
+			}
+			m_iSize = (int)lSize;
+			m_iWordsPerFingerprint = (m_iNumBits + 63) >>> 6;
+			m_iBytesPerFingerprint = m_iWordsPerFingerprint * 8;
+
+			// Check the layout to fail early on truncated files
+			final long[] arrExpectedLayout = calculateLayout(m_iNumBits, lSize, lIdDataSize);
+			if (lPopcountsOffset != arrExpectedLayout[0] || lFingerprintsOffset != arrExpectedLayout[1] ||
+					m_lIndexesOffset != arrExpectedLayout[2] || m_lPositionsOffset != arrExpectedLayout[3] ||
+					m_lIdOffsetsOffset != arrExpectedLayout[4] || m_lIdDataOffset != arrExpectedLayout[5] ||
+					lFileSize < arrExpectedLayout[6]) {
+				throw new IOException("The fingerprint index file is inconsistent or truncated.");
+			}
+
+			// The small popcount table is kept on the heap
+			m_arrBucketStarts = new int[m_iNumBits + 2];
+			for (int i = 0; i < m_arrBucketStarts.length; i++) {
+				m_arrBucketStarts[i] = m_file.getInt(lPopcountsOffset + 4L * i);
+			}
+			if (m_arrBucketStarts[0] != 0 || m_arrBucketStarts[m_iNumBits + 1] != m_iSize) {
+				throw new IOException("The fingerprint index file has an invalid popcount table.");
+			}
+
+			// Map fingerprints separately with chunks that end at fingerprint boundaries
+			m_iFingerprintsPerChunk = Math.max(1, (MappedRegion.DEFAULT_CHUNK_SIZE / m_iBytesPerFingerprint));
+			m_fingerprints = new MappedRegion(channel, FileChannel.MapMode.READ_ONLY, lFingerprintsOffset,
+					lSize * m_iBytesPerFingerprint, m_iFingerprintsPerChunk * m_iBytesPerFingerprint);
+			bSuccess = true;
+		}
+		finally {
+			if (!bSuccess) {
+				m_file.unmap();
+			}
+		}
+	}
+
+	//
+	// Public Methods
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNumBits() {
+		return m_iNumBits;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return m_iSize;
+	}
+
+	/**
+	 * Returns the ID of the specified fingerprint.
+	 * 
+	 * @param iIndex Index of the fingerprint, which is the order it was written in.
+	 * 
+	 * @return ID. Never null.
+	 */
+	public String getId(final int iIndex) {
+		checkIndex(iIndex);
+		final Lock lock = lockMapping();
+		try {
+			final long lStart = m_file.getLong(m_lIdOffsetsOffset + 8L * iIndex);
+			final long lEnd = m_file.getLong(m_lIdOffsetsOffset + 8L * (iIndex + 1));
+			final byte[] arrId = new byte[(int)(lEnd - lStart)];
+			m_file.get(m_lIdDataOffset + lStart, arrId);
+			return new String(arrId, StandardCharsets.UTF_8);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the specified fingerprint.
+	 * 
+	 * @param iIndex Index of the fingerprint, which is the order it was written in.
+	 * 
+	 * @return Fingerprint as 64-bit words. Never null.
+	 */
+	public long[] getFingerprint(final int iIndex) {
+		checkIndex(iIndex);
+		final Lock lock = lockMapping();
+		try {
+			final int iPosition = m_file.getInt(m_lPositionsOffset + 4L * iIndex);
+			final ByteBuffer chunk = m_fingerprints.getChunk(iPosition / m_iFingerprintsPerChunk);
+			int iOffset = (iPosition % m_iFingerprintsPerChunk) * m_iBytesPerFingerprint;
+			final long[] arrWords = new long[m_iWordsPerFingerprint];
+			for (int i = 0; i < m_iWordsPerFingerprint; i++, iOffset += 8) {
+				arrWords[i] = chunk.getLong(iOffset);
+			}
+			return arrWords;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * This implementation prevents that the index gets closed while searching.
+	 * 
+	 * @throws IllegalStateException Thrown, if the index has been closed already.
+	 */
+	@Override
+	public Hits search(final long[] arrQuery, final SimilarityMetric metric,
+			final double dThreshold, final int iTopK) {
+		final Lock lock = lockMapping();
+		try {
+			return super.search(arrQuery, metric, dThreshold, iTopK);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Releases the memory mapping of the index file, so that the file can be overwritten
+	 * or deleted right away also on Windows. Waits for running searches to finish.
+	 * Afterwards the index cannot be used anymore. Calling this method again has no effect.
+	 */
+	@Override
+	public void close() {
+		m_lockMapping.writeLock().lock();
+		try {
+			if (!m_bClosed) {
+				m_bClosed = true;
+				m_fingerprints.unmap();
+				m_file.unmap();
+			}
+		}
+		finally {
+			m_lockMapping.writeLock().unlock();
+		}
+	}
+
+	//
+	// Protected Methods
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int getBucketStart(final int iOnBits) {
+		return m_arrBucketStarts[iOnBits];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int countCommonBits(final int iPosition, final long[] arrQuery) {
+		final ByteBuffer chunk = m_fingerprints.getChunk(iPosition / m_iFingerprintsPerChunk);
+		int iOffset = (iPosition % m_iFingerprintsPerChunk) * m_iBytesPerFingerprint;
+		int iCommon = 0;
+		for (int i = 0; i < m_iWordsPerFingerprint; i++, iOffset += 8) {
+			iCommon += Long.bitCount(chunk.getLong(iOffset) & arrQuery[i]);
+		}
+		return iCommon;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int getIndex(final int iPosition) {
+		return m_file.getInt(m_lIndexesOffset + 4L * iPosition);
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Acquires the read lock of the mapping. It must be unlocked by the caller.
+	 * 
+	 * @return The acquired lock. Never null.
+	 * 
+	 * @throws IllegalStateException Thrown, if the index has been closed already.
+	 */
+	private Lock lockMapping() {
+		final Lock lock = m_lockMapping.readLock();
+		lock.lock();
+		if (m_bClosed) {
+			lock.unlock();
+			throw new IllegalStateException("The fingerprint index has been closed already.");
+		}
+		return lock;
+	}
+
+	/**
+	 * Checks the specified fingerprint index.
+	 * 
+	 * @param iIndex Index of a fingerprint.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is invalid.
+	 */
+	private void checkIndex(final int iIndex) {
+		if (iIndex < 0 || iIndex >= m_iSize) {
+			throw new IndexOutOfBoundsException("Invalid fingerprint index " + iIndex + ".");
+		}
+	}
+
+	//
+	// Static Public Methods
+	//
+
+	/**
+	 * Opens the specified fingerprint index file by memory mapping it. The file
+	 * itself is closed again right away, the mapping stays valid until the returned
+	 * index gets closed.
+	 * 
+	 * @param file Fingerprint index file. Must not be null.
+	 * 
+	 * @return The opened index. Never null.
+	 * 
+	 * @throws IOException Thrown, if the file could not be opened or is not a valid
+	 * 		fingerprint index file.
+	 */
+	public static FingerprintIndex open(final File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			return new FingerprintIndex(raf.getChannel());
+		}
+	}
+
+	//
+	// Static Package Methods
+	//
+
+	/**
+	 * Calculates the offsets of all sections of an index file.
+	 * 
+	 * @param iNumBits Number of bits of each fingerprint.
+	 * @param lSize Number of fingerprints.
+	 * @param lIdDataSize Number of bytes of all UTF-8 encoded IDs.
+	 * 
+	 * @return Offsets of the popcount table, fingerprints, indexes, positions, ID offsets
+	 * 		and ID data sections followed by the total file size.
+	 */
+	static long[] calculateLayout(final int iNumBits, final long lSize, final long lIdDataSize) {
+		final long[] arrLayout = new long[7];
+		arrLayout[0] = HEADER_SIZE;
+		arrLayout[1] = align(arrLayout[0] + 4L * (iNumBits + 2));
+		arrLayout[2] = arrLayout[1] + lSize * 8L * ((iNumBits + 63) >>> 6);
+		arrLayout[3] = align(arrLayout[2] + 4L * lSize);
+		arrLayout[4] = align(arrLayout[3] + 4L * lSize);
+		arrLayout[5] = arrLayout[4] + 8L * (lSize + 1);
+		arrLayout[6] = arrLayout[5] + lIdDataSize;
+		return arrLayout;
+	}
+
+	//
+	// Static Private Methods
+	//
+
+	/**
+	 * Rounds the specified offset up to the next multiple of 8.
+	 * 
+	 * @param lOffset Offset.
+	 * 
+	 * @return Aligned offset.
+	 */
+	private static long align(final long lOffset) {
+		return (lOffset + 7) & ~7L;
+	}
+}
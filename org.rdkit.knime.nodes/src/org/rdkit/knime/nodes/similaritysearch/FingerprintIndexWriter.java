@@ -0,0 +1,345 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.nodes.similaritysearch;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a {@link FingerprintIndex} file. Sorting fingerprints by popcount normally requires
+ * holding them all in memory. To avoid this the writer works in two passes over the same
+ * fingerprints: In the first pass all fingerprints and IDs are passed to {@link #prepare(long[], String)},
+ * which only counts popcounts and ID sizes. Based on this the file layout is calculated
+ * and the file gets memory mapped in {@link #startWriting()}. In the second pass the same
+ * fingerprints and IDs are passed in the same order to {@link #write(long[], String)},
+ * which puts each fingerprint directly at its sorted position. Finally {@link #finish()}
+ * writes the header, which makes the file valid. The heap usage is independent of the
+ * number of fingerprints.
+ * 
+ * @author Manuel Schwarze
+ */
+public final class FingerprintIndexWriter implements Closeable {
+
+	//
+	// Members
+	//
+
+	/** The file to be written. */
+	private final File m_file;
+
+	/** Number of bits of each fingerprint. */
+	private final int m_iNumBits;
+
+	/** Number of 64-bit words of each fingerprint. */
+	private final int m_iWordsPerFingerprint;
+
+	/** Number of fingerprints per popcount, counted in the first pass. */
+	private final long[] m_arrPopcountCounts;
+
+	/** Number of fingerprints prepared in the first pass. */
+	private long m_lPreparedCount = 0;
+
+	/** Number of bytes of all UTF-8 encoded IDs prepared in the first pass. */
+	private long m_lPreparedIdDataSize = 0;
+
+	/** Offsets of all file sections. Calculated when writing starts. */
+	private long[] m_arrLayout;
+
+	/** Start positions of the fingerprints with a certain popcount. Calculated when writing starts. */
+	private int[] m_arrBucketStarts;
+
+	/** Next free sorted position per popcount. Used in the second pass. */
+	private int[] m_arrNextPositions;
+
+	/** Access to the opened file. Set when writing starts. */
+	private RandomAccessFile m_raf;
+
+	/** The complete mapped file. */
+	private MappedRegion m_region;
+
+	/** The mapped fingerprint section with chunks that end at fingerprint boundaries. */
+	private MappedRegion m_fingerprints;
+
+	/** Number of fingerprints per chunk of the fingerprint section. */
+	private int m_iFingerprintsPerChunk;
+
+	/** Number of fingerprints written in the second pass. */
+	private int m_iWrittenCount = 0;
+
+	/** Number of bytes of all IDs written in the second pass. */
+	private long m_lWrittenIdDataSize = 0;
+
+	/** Flag to tell that the file has been written completely. */
+	private boolean m_bFinished = false;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Creates a new writer for the specified file. The file is not touched before
+	 * {@link #startWriting()} is called.
+	 * 
+	 * @param file File to be written. An existing file will be overwritten. Must not be null.
+	 * @param iNumBits Number of bits of all fingerprints. Must be positive.
+	 */
+	public FingerprintIndexWriter(final File file, final int iNumBits) {
+		if (iNumBits <= 0) {
+			throw new IllegalArgumentException("Number of bits must be positive.");
+		}
+		m_file = file;
+		m_iNumBits = iNumBits;
+		m_iWordsPerFingerprint = (iNumBits + 63) >>> 6;
+		m_arrPopcountCounts = new long[iNumBits + 1];
+	}
+
+	//
+	// Public Methods
+	//
+
+	/**
+	 * Returns the number of bits of each fingerprint.
+	 * 
+	 * @return Number of bits.
+	 */
+	public int getNumBits() {
+		return m_iNumBits;
+	}
+
+	/**
+	 * Registers a fingerprint in the first pass.
+	 * 
+	 * @param arrWords Fingerprint as 64-bit words. Must not be null.
+	 * @param strId ID of the fingerprint. Must not be null.
+	 */
+	public void prepare(final long[] arrWords, final String strId) {
+		if (m_arrLayout != null) {
+			throw new IllegalStateException("Writing has been started already.");
+		}
+		if (m_lPreparedCount >= Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("Too many fingerprints for an index file.");
+		}
+		m_arrPopcountCounts[countOnBits(arrWords)]++;
+		m_lPreparedIdDataSize += strId.getBytes(StandardCharsets.UTF_8).length;
+		m_lPreparedCount++;
+	}
+
+	/**
+	 * Ends the first pass, creates the file with its final size and maps it into memory.
+	 * 
+	 * @throws IOException Thrown, if the file could not be created.
+	 */
+	public void startWriting() throws IOException {
+		if (m_arrLayout != null) {
+			throw new IllegalStateException("Writing has been started already.");
+		}
+
+		m_arrLayout = FingerprintIndex.calculateLayout(m_iNumBits, m_lPreparedCount, m_lPreparedIdDataSize);
+		m_raf = new RandomAccessFile(m_file, "rw");
+		m_raf.setLength(0); // Ensures that an old header is gone
+		m_raf.setLength(m_arrLayout[6]);
+
+		final FileChannel channel = m_raf.getChannel();
+		final int iBytesPerFingerprint = m_iWordsPerFingerprint * 8;
+		m_iFingerprintsPerChunk = Math.max(1, MappedRegion.DEFAULT_CHUNK_SIZE / iBytesPerFingerprint);
+		m_region = new MappedRegion(channel, FileChannel.MapMode.READ_WRITE, 0, m_arrLayout[6],
+				MappedRegion.DEFAULT_CHUNK_SIZE);
+		m_fingerprints = new MappedRegion(channel, FileChannel.MapMode.READ_WRITE, m_arrLayout[1],
+				m_lPreparedCount * iBytesPerFingerprint, m_iFingerprintsPerChunk * iBytesPerFingerprint);
+
+		// Write popcount table and remember the next free position of each popcount
+		m_arrBucketStarts = new int[m_iNumBits + 2];
+		for (int i = 1; i <= m_iNumBits + 1; i++) {
+			m_arrBucketStarts[i] = m_arrBucketStarts[i - 1] + (int)m_arrPopcountCounts[i - 1];
+		}
+		for (int i = 0; i <= m_iNumBits + 1; i++) {
+			m_region.putInt(m_arrLayout[0] + 4L * i, m_arrBucketStarts[i]);
+		}
+		m_arrNextPositions = m_arrBucketStarts.clone();
+	}
+
+	/**
+	 * Writes a fingerprint in the second pass. Fingerprints must be written in the same
+	 * order as they were prepared.
+	 * 
+	 * @param arrWords Fingerprint as 64-bit words. Must not be null.
+	 * @param strId ID of the fingerprint. Must not be null.
+	 * 
+	 * @throws IllegalStateException Thrown, if the fingerprints differ from the prepared ones.
+	 */
+	public void write(final long[] arrWords, final String strId) {
+		if (m_arrLayout == null || m_bFinished) {
+			throw new IllegalStateException("Writing has not been started or has been finished already.");
+		}
+		if (arrWords.length != m_iWordsPerFingerprint) {
+			throw new IllegalArgumentException("Fingerprint has " + (arrWords.length * 64) +
+					" bits instead of " + m_iNumBits + " bits.");
+		}
+
+		final int iOnBits = countOnBits(arrWords);
+		final byte[] arrId = strId.getBytes(StandardCharsets.UTF_8);
+		final int iPosition = m_arrNextPositions[iOnBits];
+		if (iPosition >= m_arrBucketStarts[iOnBits + 1] ||
+				m_lWrittenIdDataSize + arrId.length > m_lPreparedIdDataSize) {
+			throw new IllegalStateException("The written fingerprints differ from the prepared ones.");
+		}
+		m_arrNextPositions[iOnBits]++;
+
+		// Put the fingerprint at its sorted position
+		final ByteBuffer chunk = m_fingerprints.getChunk(iPosition / m_iFingerprintsPerChunk);
+		int iOffset = (iPosition % m_iFingerprintsPerChunk) * m_iWordsPerFingerprint * 8;
+		for (int i = 0; i < m_iWordsPerFingerprint; i++, iOffset += 8) {
+			chunk.putLong(iOffset, arrWords[i]);
+		}
+
+		// Connect original index and sorted position in both directions
+		m_region.putInt(m_arrLayout[2] + 4L * iPosition, m_iWrittenCount);
+		m_region.putInt(m_arrLayout[3] + 4L * m_iWrittenCount, iPosition);
+
+		// Append the ID
+		m_region.putLong(m_arrLayout[4] + 8L * m_iWrittenCount, m_lWrittenIdDataSize);
+		m_region.put(m_arrLayout[5] + m_lWrittenIdDataSize, arrId);
+		m_lWrittenIdDataSize += arrId.length;
+		m_iWrittenCount++;
+	}
+
+	/**
+	 * Completes the file after all fingerprints have been written by writing the header.
+	 * 
+	 * @throws IOException Thrown, if the file could not be written.
+	 * @throws IllegalStateException Thrown, if not all prepared fingerprints have been written.
+	 */
+	public void finish() throws IOException {
+		if (m_arrLayout == null || m_bFinished) {
+			throw new IllegalStateException("Writing has not been started or has been finished already.");
+		}
+		if (m_iWrittenCount != m_lPreparedCount || m_lWrittenIdDataSize != m_lPreparedIdDataSize) {
+			throw new IllegalStateException("Only " + m_iWrittenCount + " of " + m_lPreparedCount +
+					" prepared fingerprints have been written.");
+		}
+
+		// The end offset of the last ID
+		m_region.putLong(m_arrLayout[4] + 8L * m_iWrittenCount, m_lWrittenIdDataSize);
+
+		// Write all data before the header to ensure that a valid header means a complete file
+		m_fingerprints.force();
+		m_region.force();
+
+		m_region.putInt(8, FingerprintIndex.VERSION);
+		m_region.putInt(12, m_iNumBits);
+		m_region.putLong(16, m_iWrittenCount);
+		for (int i = 0; i < 6; i++) {
+			m_region.putLong(24 + 8L * i, m_arrLayout[i]);
+		}
+		m_region.putLong(72, m_lWrittenIdDataSize);
+		m_region.put(0, FingerprintIndex.MAGIC);
+		m_region.force();
+
+		m_bFinished = true;
+	}
+
+	/**
+	 * Closes the file and releases its memory mapping. If it has not been finished,
+	 * it is incomplete and cannot be opened as index.
+	 * 
+	 * @throws IOException Thrown, if closing failed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (m_fingerprints != null) {
+			m_fingerprints.unmap();
+			m_fingerprints = null;
+		}
+		if (m_region != null) {
+			m_region.unmap();
+			m_region = null;
+		}
+		if (m_raf != null) {
+			m_raf.close();
+			m_raf = null;
+		}
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Counts the on bits of a fingerprint.
+	 * 
+	 * @param arrWords Fingerprint as 64-bit words. Must not be null and must have
+	 * 		the correct number of words.
+	 * 
+	 * @return Number of on bits.
+	 */
+	private int countOnBits(final long[] arrWords) {
+		if (arrWords.length != m_iWordsPerFingerprint) {
+			throw new IllegalArgumentException("Fingerprint has " + (arrWords.length * 64) +
+					" bits instead of " + m_iNumBits + " bits.");
+		}
+
+		int iOnBits = 0;
+		for (final long lWord : arrWords) {
+			iOnBits += Long.bitCount(lWord);
+		}
+
+		// Bits beyond the fingerprint length would corrupt the popcount table
+		if (iOnBits > m_iNumBits || (m_iNumBits & 63) != 0 &&
+				(arrWords[m_iWordsPerFingerprint - 1] >>> (m_iNumBits & 63)) != 0) {
+			throw new IllegalArgumentException("Fingerprint has bits set beyond its length.");
+		}
+
+		return iOnBits;
+	}
+}
@@ -0,0 +1,334 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.nodes.similaritysearch;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.knime.core.node.NodeLogger;
+
+/**
+ * A region of a file, which is memory mapped in chunks, as a single mapping
+ * is limited to 2 GB. All numbers are stored in little endian byte order.
+ * Numbers must be read and written at positions that are a multiple of their size,
+ * so that they never span two chunks. Byte arrays may span chunks.<br />
+ * The mapping stays valid after the file channel has been closed. It is released
+ * by {@link #unmap()} or otherwise when the region gets garbage collected.
+ * 
+ * @author Manuel Schwarze
+ */
+final class MappedRegion {
+
+	//
+	// Constants
+	//
+
+	/** The logger instance. */
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(MappedRegion.class);
+
+	/** The default chunk size of 1 GB. */
+	static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+	/** The Unsafe instance to release mappings with Java 9 and later. Null with Java 8. */
+	private static final Object UNSAFE = findUnsafe();
+
+	/** The method Unsafe.invokeCleaner(ByteBuffer) of Java 9 and later. Null with Java 8. */
+	private static final Method INVOKE_CLEANER = (UNSAFE == null ? null : findInvokeCleaner(UNSAFE.getClass()));
+
+	//
+	// Members
+	//
+
+	/** The mapped chunks. */
+	private final MappedByteBuffer[] m_arrChunks;
+
+	/** The size of each chunk except for the last one. */
+	private final int m_iChunkSize;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Maps a region of the specified file.
+	 * 
+	 * @param channel File channel. Must not be null. It can be closed after mapping.
+	 * @param mode Map mode.
+	 * @param lOffset Start of the region in the file.
+	 * @param lSize Size of the region in bytes.
+	 * @param iChunkSize Size of a chunk in bytes. Must be a positive multiple of 8.
+	 * 
+	 * @throws IOException Thrown, if mapping failed.
+	 */
+	MappedRegion(final FileChannel channel, final FileChannel.MapMode mode, final long lOffset,
+			final long lSize, final int iChunkSize) throws IOException {
+		if (iChunkSize <= 0 || iChunkSize % 8 != 0) {
+			throw new IllegalArgumentException("Chunk size must be a positive multiple of 8.");
+		}
+
+		final long lChunkCount = (lSize + iChunkSize - 1) / iChunkSize;
+		if (lChunkCount > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Region is too large to be mapped.");
+		}
+
+		m_iChunkSize = iChunkSize;
+		m_arrChunks = new MappedByteBuffer[(int)lChunkCount];
+		for (int i = 0; i < m_arrChunks.length; i++) {
+			final long lChunkOffset = (long)i * iChunkSize;
+			m_arrChunks[i] = channel.map(mode, lOffset + lChunkOffset, Math.min(iChunkSize, lSize - lChunkOffset));
+			m_arrChunks[i].order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+
+	//
+	// Methods
+	//
+
+	/**
+	 * Returns the size of each chunk except for the last one.
+	 * 
+	 * @return Chunk size in bytes.
+	 */
+	int getChunkSize() {
+		return m_iChunkSize;
+	}
+
+	/**
+	 * Returns a chunk for direct access. Only absolute get and put methods may be
+	 * used on it, as the chunks are shared between threads.
+	 * 
+	 * @param iChunk Chunk number.
+	 * 
+	 * @return Chunk in little endian byte order.
+	 */
+	ByteBuffer getChunk(final int iChunk) {
+		return m_arrChunks[iChunk];
+	}
+
+	/**
+	 * Reads an integer.
+	 * 
+	 * @param lPos Position in the region. Must be a multiple of 4.
+	 * 
+	 * @return Value.
+	 */
+	int getInt(final long lPos) {
+		return m_arrChunks[(int)(lPos / m_iChunkSize)].getInt((int)(lPos % m_iChunkSize));
+	}
+
+	/**
+	 * Writes an integer.
+	 * 
+	 * @param lPos Position in the region. Must be a multiple of 4.
+	 * @param iValue Value.
+	 */
+	void putInt(final long lPos, final int iValue) {
+		m_arrChunks[(int)(lPos / m_iChunkSize)].putInt((int)(lPos % m_iChunkSize), iValue);
+	}
+
+	/**
+	 * Reads a long.
+	 * 
+	 * @param lPos Position in the region. Must be a multiple of 8.
+	 * 
+	 * @return Value.
+	 */
+	long getLong(final long lPos) {
+		return m_arrChunks[(int)(lPos / m_iChunkSize)].getLong((int)(lPos % m_iChunkSize));
+	}
+
+	/**
+	 * Writes a long.
+	 * 
+	 * @param lPos Position in the region. Must be a multiple of 8.
+	 * @param lValue Value.
+	 */
+	void putLong(final long lPos, final long lValue) {
+		m_arrChunks[(int)(lPos / m_iChunkSize)].putLong((int)(lPos % m_iChunkSize), lValue);
+	}
+
+	/**
+	 * Reads bytes.
+	 * 
+	 * @param lPos Position in the region.
+	 * @param arrBytes Array to be filled completely. Must not be null.
+	 */
+	void get(final long lPos, final byte[] arrBytes) {
+		int iDone = 0;
+		while (iDone < arrBytes.length) {
+			final long lCurrent = lPos + iDone;
+			// Duplicate the chunk to keep its position untouched for other threads
+			final ByteBuffer buffer = m_arrChunks[(int)(lCurrent / m_iChunkSize)].duplicate();
+			buffer.position((int)(lCurrent % m_iChunkSize));
+			final int iLength = Math.min(arrBytes.length - iDone, buffer.remaining());
+			buffer.get(arrBytes, iDone, iLength);
+			iDone += iLength;
+		}
+	}
+
+	/**
+	 * Writes bytes.
+	 * 
+	 * @param lPos Position in the region.
+	 * @param arrBytes Array to be written completely. Must not be null.
+	 */
+	void put(final long lPos, final byte[] arrBytes) {
+		int iDone = 0;
+		while (iDone < arrBytes.length) {
+			final long lCurrent = lPos + iDone;
+			final ByteBuffer buffer = m_arrChunks[(int)(lCurrent / m_iChunkSize)].duplicate();
+			buffer.position((int)(lCurrent % m_iChunkSize));
+			final int iLength = Math.min(arrBytes.length - iDone, buffer.remaining());
+			buffer.put(arrBytes, iDone, iLength);
+			iDone += iLength;
+		}
+	}
+
+	/**
+	 * Forces all changes to be written to the storage device.
+	 */
+	void force() {
+		for (final MappedByteBuffer chunk : m_arrChunks) {
+			chunk.force();
+		}
+	}
+
+	/**
+	 * Releases the mapping of all chunks right away instead of waiting for the garbage
+	 * collector. On Windows a file cannot be deleted or overwritten as long as it is mapped.
+	 * The region must not be accessed anymore afterwards, also not from other threads,
+	 * as accessing a released mapping crashes the JVM. If the Java runtime does not
+	 * support releasing mappings, the chunks are only dereferenced.
+	 */
+	void unmap() {
+		for (int i = 0; i < m_arrChunks.length; i++) {
+			final MappedByteBuffer chunk = m_arrChunks[i];
+			m_arrChunks[i] = null;
+			if (chunk != null) {
+				release(chunk);
+			}
+		}
+	}
+
+	//
+	// Static Private Methods
+	//
+
+	/**
+	 * Releases the mapping of the specified buffer by running its cleaner.
+	 * Failures are only logged, the mapping gets released then by the garbage collector.
+	 * 
+	 * @param buffer Mapped buffer. Must not be null.
+	 */
+	private static void release(final MappedByteBuffer buffer) {
+		try {
+			if (INVOKE_CLEANER != null) {
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+			}
+			else {
+				// Java 8: The buffer has a sun.misc.Cleaner
+				final Method methodCleaner = buffer.getClass().getMethod("cleaner");
+				methodCleaner.setAccessible(true);
+				final Object cleaner = methodCleaner.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		}
+		catch (final Exception exc) {
+			LOGGER.debug("Memory mapping could not be released explicitly. " +
+					"It will be released by the garbage collector.", exc);
+		}
+	}
+
+	/**
+	 * Looks up the Unsafe instance, if the Java runtime offers Unsafe.invokeCleaner(ByteBuffer),
+	 * which is the case since Java 9.
+	 * 
+	 * @return Unsafe instance or null.
+	 */
+	private static Object findUnsafe() {
+		Object unsafe = null;
+
+		try {
+			final Class<?> clsUnsafe = Class.forName("sun.misc.Unsafe");
+			if (findInvokeCleaner(clsUnsafe) != null) {
+				final Field fieldUnsafe = clsUnsafe.getDeclaredField("theUnsafe");
+				fieldUnsafe.setAccessible(true);
+				unsafe = fieldUnsafe.get(null);
+			}
+		}
+		catch (final Exception exc) {
+			LOGGER.debug("Unsafe is not accessible - releasing memory mappings depends on the Java 8 cleaner.", exc);
+		}
+
+		return unsafe;
+	}
+
+	/**
+	 * Looks up the method Unsafe.invokeCleaner(ByteBuffer).
+	 * 
+	 * @param clsUnsafe The Unsafe class. Must not be null.
+	 * 
+	 * @return Method or null, if not available (Java 8).
+	 */
+	private static Method findInvokeCleaner(final Class<?> clsUnsafe) {
+		try {
+			return clsUnsafe.getMethod("invokeCleaner", ByteBuffer.class);
+		}
+		catch (final NoSuchMethodException exc) {
+			return null;
+		}
+	}
+}
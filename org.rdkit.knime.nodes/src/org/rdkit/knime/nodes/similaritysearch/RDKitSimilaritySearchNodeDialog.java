@@ -0,0 +1,254 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.nodes.similaritysearch;
+
+import javax.swing.JFileChooser;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import org.knime.core.data.vector.bitvector.BitVectorValue;
+import org.knime.core.node.NotConfigurableException;
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
+import org.knime.core.node.defaultnodesettings.DialogComponentFileChooser;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+import org.knime.core.node.defaultnodesettings.DialogComponentString;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelDoubleBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObjectSpec;
+import org.rdkit.knime.util.DialogComponentColumnNameSelection;
+import org.rdkit.knime.util.DialogComponentEnumSelection;
+import org.rdkit.knime.util.LayoutUtils;
+import org.rdkit.knime.util.SettingsModelEnumeration;
+
+/**
+ * <code>NodeDialog</code> for the "RDKitSimilaritySearch" Node.
+ * 
+ * This node dialog derives from {@link DefaultNodeSettingsPane} which allows
+ * creation of a simple dialog with standard components. If you need a more
+ * complex dialog please derive directly from {@link org.knime.core.node.NodeDialogPane}.
+ * 
+ * @author Manuel Schwarze
+ */
+public class RDKitSimilaritySearchNodeDialog extends DefaultNodeSettingsPane {
+
+	//
+	// Constants
+	//
+
+	/** The default similarity metric to be used. */
+	public static final SimilarityMetric DEFAULT_METRIC = SimilarityMetric.Tanimoto;
+
+	/** The default similarity threshold to be used. */
+	public static final double DEFAULT_THRESHOLD = 0.7d;
+
+	/** The default maximal number of hits per query. */
+	public static final int DEFAULT_TOP_K = 10;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Create a new dialog pane with default components to configure the query and
+	 * reference fingerprint columns or the fingerprint index file, the search parameters
+	 * and the names of the new columns, which will contain the hits.
+	 */
+	RDKitSimilaritySearchNodeDialog() {
+		createNewGroup("Input");
+		super.addDialogComponent(new DialogComponentColumnNameSelection(
+				createQueryColumnNameModel(), "Query fingerprint column (table 1): ", 0,
+				BitVectorValue.class));
+		super.addDialogComponent(new DialogComponentColumnNameSelection(
+				createReferenceColumnNameModel(), "Reference fingerprint column (table 2): ", 1, false, true,
+				BitVectorValue.class) {
+
+			/**
+			 * Checks the second input table only if it is connected.
+			 */
+			@Override
+			protected void checkConfigurabilityBeforeLoad(
+					final PortObjectSpec[] specs)
+							throws NotConfigurableException {
+				if (RDKitSimilaritySearchNodeModel.hasReferenceTable(specs)) {
+					super.checkConfigurabilityBeforeLoad(specs);
+				}
+			}
+		});
+		final SettingsModelBoolean modelUseIndexFileOption = createUseIndexFileOptionModel();
+		super.addDialogComponent(new DialogComponentBoolean(
+				modelUseIndexFileOption, "Search in fingerprint index file instead of table 2"));
+		super.addDialogComponent(new DialogComponentFileChooser(
+				createIndexFileModel(modelUseIndexFileOption), "FpiReaderHistory",
+				JFileChooser.OPEN_DIALOG, FingerprintIndex.FILE_EXTENSION));
+
+		createNewGroup("Search");
+		super.addDialogComponent(new DialogComponentEnumSelection<SimilarityMetric>(
+				createMetricModel(), "Similarity metric: "));
+		super.addDialogComponent(new DialogComponentNumber(createThresholdModel(),
+				"Minimal similarity: ", new Double(0.05d), 5));
+		super.addDialogComponent(new DialogComponentNumber(createTopKModel(),
+				"Maximal number of hits per query (0 = all): ", 1, 8));
+
+		createNewGroup("Output");
+		super.addDialogComponent(new DialogComponentString(
+				createHitsColumnNameModel(), "New column name for hits: ", false, 25));
+		super.addDialogComponent(new DialogComponentString(
+				createSimilaritiesColumnNameModel(), "New column name for similarities: ", false, 25));
+
+		LayoutUtils.correctKnimeDialogBorders(getPanel());
+	}
+
+	//
+	// Static Methods
+	//
+
+	/**
+	 * Creates the settings model to be used for the query fingerprint column.
+	 * 
+	 * @return Settings model for query column selection.
+	 */
+	static final SettingsModelString createQueryColumnNameModel() {
+		return new SettingsModelString("query_column", null);
+	}
+
+	/**
+	 * Creates the settings model to be used for the reference fingerprint column.
+	 * 
+	 * @return Settings model for reference column selection.
+	 */
+	static final SettingsModelString createReferenceColumnNameModel() {
+		return new SettingsModelString("reference_column", null);
+	}
+
+	/**
+	 * Creates the settings model to be used for the option to search in a
+	 * fingerprint index file instead of the second input table.
+	 * 
+	 * @return Settings model for the index file option.
+	 */
+	static final SettingsModelBoolean createUseIndexFileOptionModel() {
+		return new SettingsModelBoolean("use_index_file", false);
+	}
+
+	/**
+	 * Creates the settings model to be used for the fingerprint index file.
+	 * 
+	 * @param modelUseIndexFileOption Model that determines, if the index file is used.
+	 * 
+	 * @return Settings model for the index file selection.
+	 */
+	static final SettingsModelString createIndexFileModel(final SettingsModelBoolean modelUseIndexFileOption) {
+		final SettingsModelString modelWithDependency = new SettingsModelString("index_file", "");
+
+		// React on any changes
+		modelUseIndexFileOption.addChangeListener(new ChangeListener() {
+
+			@Override
+			public void stateChanged(final ChangeEvent e) {
+				// Enable or disable the model
+				modelWithDependency.setEnabled(modelUseIndexFileOption.getBooleanValue());
+			}
+		});
+
+		// Enable this model based on the dependent model's state
+		modelWithDependency.setEnabled(modelUseIndexFileOption.getBooleanValue());
+
+		return modelWithDependency;
+	}
+
+	/**
+	 * Creates the settings model to be used for the similarity metric.
+	 * 
+	 * @return Settings model for the similarity metric.
+	 */
+	static final SettingsModelEnumeration<SimilarityMetric> createMetricModel() {
+		return new SettingsModelEnumeration<SimilarityMetric>(SimilarityMetric.class,
+				"metric", DEFAULT_METRIC);
+	}
+
+	/**
+	 * Creates the settings model to be used for the minimal similarity of hits.
+	 * 
+	 * @return Settings model for the similarity threshold.
+	 */
+	static final SettingsModelDoubleBounded createThresholdModel() {
+		return new SettingsModelDoubleBounded("threshold", DEFAULT_THRESHOLD, 0.0d, 1.0d);
+	}
+
+	/**
+	 * Creates the settings model to be used for the maximal number of hits per query.
+	 * 0 means that all hits above the threshold are delivered.
+	 * 
+	 * @return Settings model for the maximal number of hits.
+	 */
+	static final SettingsModelIntegerBounded createTopKModel() {
+		return new SettingsModelIntegerBounded("top_k", DEFAULT_TOP_K, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates the settings model to be used to specify the new column name for hits.
+	 * 
+	 * @return Settings model for the hits column name.
+	 */
+	static final SettingsModelString createHitsColumnNameModel() {
+		return new SettingsModelString("hits_column_name", null);
+	}
+
+	/**
+	 * Creates the settings model to be used to specify the new column name for similarities.
+	 * 
+	 * @return Settings model for the similarities column name.
+	 */
+	static final SettingsModelString createSimilaritiesColumnNameModel() {
+		return new SettingsModelString("similarities_column_name", null);
+	}
+}
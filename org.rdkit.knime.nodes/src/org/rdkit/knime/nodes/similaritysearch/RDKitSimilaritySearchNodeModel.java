@@ -0,0 +1,582 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.nodes.similaritysearch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.collection.CollectionCellFactory;
+import org.knime.core.data.collection.ListCell;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.data.vector.bitvector.BitVectorValue;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelDoubleBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.knime.core.node.port.PortTypeRegistry;
+import org.rdkit.knime.nodes.AbstractRDKitCalculatorNodeModel;
+import org.rdkit.knime.nodes.AbstractRDKitCellFactory;
+import org.rdkit.knime.nodes.AbstractRDKitNodeModel;
+import org.rdkit.knime.util.BitVectorUtils;
+import org.rdkit.knime.util.FileUtils;
+import org.rdkit.knime.util.InputDataInfo;
+import org.rdkit.knime.util.SettingsModelEnumeration;
+import org.rdkit.knime.util.SettingsUtils;
+import org.rdkit.knime.util.WarningConsolidator;
+import org.rdkit.knime.util.WarningConsolidator.Context;
+
+/**
+ * This class implements the node model of the RDKitSimilaritySearch node. It loads all
+ * fingerprints of the second input table (reference table) into a {@link FingerprintArena}
+ * or opens a {@link FingerprintIndex} file instead, and searches for every fingerprint of
+ * the first input table (query table) the most similar reference fingerprints. Queries are
+ * processed in parallel. The row keys of the found reference rows (or the IDs stored in
+ * the index file) and their similarities are added as list columns to the query table.
+ * 
+ * @author Manuel Schwarze
+ */
+public class RDKitSimilaritySearchNodeModel extends AbstractRDKitCalculatorNodeModel {
+
+	//
+	// Constants
+	//
+
+	/** The logger instance. */
+	protected static final NodeLogger LOGGER = NodeLogger
+			.getLogger(RDKitSimilaritySearchNodeModel.class);
+
+	/** Input data info index for the query fingerprint (first table). */
+	protected static final int INPUT_COLUMN_QUERY = 0;
+
+	/** Input data info index for the reference fingerprint (second table). */
+	protected static final int INPUT_COLUMN_REFERENCE = 0;
+
+	/** Default value for the hits column. */
+	protected static final String DEFAULT_HITS_COLUMN = "Hits";
+
+	/** Default value for the similarities column. */
+	protected static final String DEFAULT_SIMILARITIES_COLUMN = "Similarities";
+
+	/** Row context for generating warnings, if something is incorrect in table 2. */
+	protected static final WarningConsolidator.Context ROW_CONTEXT_TABLE_2 = new Context("rowTable2", "row", "rows", true);
+
+	//
+	// Members
+	//
+
+	/** Settings model for the column name of the query fingerprint column. */
+	private final SettingsModelString m_modelQueryColumnName =
+			registerSettings(RDKitSimilaritySearchNodeDialog.createQueryColumnNameModel());
+
+	/** Settings model for the option to search in a fingerprint index file instead of table 2. */
+	private final SettingsModelBoolean m_modelUseIndexFileOption =
+			registerSettings(RDKitSimilaritySearchNodeDialog.createUseIndexFileOptionModel());
+
+	/** Settings model for the fingerprint index file. */
+	private final SettingsModelString m_modelIndexFile =
+			registerSettings(RDKitSimilaritySearchNodeDialog.createIndexFileModel(m_modelUseIndexFileOption));
+
+	/** Settings model for the column name of the reference fingerprint column. */
+	private final SettingsModelString m_modelReferenceColumnName =
+			registerSettings(RDKitSimilaritySearchNodeDialog.createReferenceColumnNameModel());
+
+	/** Settings model for the similarity metric. */
+	private final SettingsModelEnumeration<SimilarityMetric> m_modelMetric =
+			registerSettings(RDKitSimilaritySearchNodeDialog.createMetricModel());
+
+	/** Settings model for the minimal similarity of hits. */
+	private final SettingsModelDoubleBounded m_modelThreshold =
+			registerSettings(RDKitSimilaritySearchNodeDialog.createThresholdModel());
+
+	/** Settings model for the maximal number of hits per query. */
+	private final SettingsModelIntegerBounded m_modelTopK =
+			registerSettings(RDKitSimilaritySearchNodeDialog.createTopKModel());
+
+	/** Settings model for the new column name of the hits column. */
+	private final SettingsModelString m_modelHitsColumnName =
+			registerSettings(RDKitSimilaritySearchNodeDialog.createHitsColumnNameModel());
+
+	/** Settings model for the new column name of the similarities column. */
+	private final SettingsModelString m_modelSimilaritiesColumnName =
+			registerSettings(RDKitSimilaritySearchNodeDialog.createSimilaritiesColumnNameModel());
+
+	//
+	// Intermediate Results
+	//
+
+	/** Percentage for pre-processing. Set when execution starts up. */
+	private double m_dPreProcessingShare;
+
+	/** Arena with all reference fingerprints. Result of pre-processing. */
+	private AbstractFingerprintArena m_arena;
+
+	/**
+	 * Row keys of all reference fingerprints in arena index order. Result of pre-processing.
+	 * Null, if a fingerprint index file is searched.
+	 */
+	private StringCell[] m_arrReferenceRowKeys;
+
+	/** The opened fingerprint index file, if used instead of table 2. Result of pre-processing. */
+	private FingerprintIndex m_index;
+
+	/** Timestamp when the search of queries started. Set at the end of pre-processing. */
+	private long m_lSearchStartTs;
+
+	/** Number of queries searched so far. */
+	private final AtomicLong m_lQueryCount = new AtomicLong();
+
+	/** Number of fingerprint comparisons done so far. */
+	private final AtomicLong m_lComparisonCount = new AtomicLong();
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Create new node model with two data in-ports, the second one being optional,
+	 * and one out-port.
+	 */
+	RDKitSimilaritySearchNodeModel() {
+		super(new PortType[] {
+				// Input ports (2nd port is optional)
+				PortTypeRegistry.getInstance().getPortType(BufferedDataTable.TYPE.getPortObjectClass(), false),
+				PortTypeRegistry.getInstance().getPortType(BufferedDataTable.TYPE.getPortObjectClass(), true) },
+				new PortType[] {
+				// Output ports
+						PortTypeRegistry.getInstance().getPortType(BufferedDataTable.TYPE.getPortObjectClass(), false)
+				});
+
+		registerInputTablesWithSizeLimits(1); // Reference table is held in memory
+		getWarningConsolidator().registerContext(ROW_CONTEXT_TABLE_2);
+	}
+
+	//
+	// Protected Methods
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
+			throws InvalidSettingsException {
+		// Reset warnings and check RDKit library readiness
+		super.configure(inSpecs);
+
+		// Auto guess the query fingerprint column if not set - fails if no compatible column found
+		SettingsUtils.autoGuessColumn(inSpecs[0], m_modelQueryColumnName, BitVectorValue.class, 0,
+				"Auto guessing: Using column %COLUMN_NAME% as query fingerprint column.",
+				"No fingerprint compatible column in query table. Use the \"RDKit Fingerprint\" " +
+						"node to calculate fingerprints.", getWarningConsolidator());
+
+		// Determines, if the query fingerprint column exists - fails if it does not
+		SettingsUtils.checkColumnExistence(inSpecs[0], m_modelQueryColumnName, BitVectorValue.class,
+				"Query fingerprint column has not been specified yet.",
+				"Query fingerprint column %COLUMN_NAME% does not exist. Has the first input table changed?");
+
+		if (m_modelUseIndexFileOption.getBooleanValue()) {
+			// Perform checks on the specified index file
+			FileUtils.convertToFile(m_modelIndexFile.getStringValue(), true, false);
+
+			if (hasReferenceTable(inSpecs)) {
+				getWarningConsolidator().saveWarning("The fingerprint index file is searched - the second input table will be ignored.");
+			}
+		}
+		else if (!hasReferenceTable(inSpecs)) {
+			throw new InvalidSettingsException("Please connect a reference table or select a fingerprint index file.");
+		}
+		else {
+			// Auto guess the reference fingerprint column if not set - fails if no compatible column found
+			SettingsUtils.autoGuessColumn(inSpecs[1], m_modelReferenceColumnName, BitVectorValue.class, 0,
+					"Auto guessing: Using column %COLUMN_NAME% as reference fingerprint column.",
+					"No fingerprint compatible column in reference table. Use the \"RDKit Fingerprint\" " +
+							"node to calculate fingerprints.", getWarningConsolidator());
+
+			// Determines, if the reference fingerprint column exists - fails if it does not
+			SettingsUtils.checkColumnExistence(inSpecs[1], m_modelReferenceColumnName, BitVectorValue.class,
+					"Reference fingerprint column has not been specified yet.",
+					"Reference fingerprint column %COLUMN_NAME% does not exist. Has the second input table changed?");
+		}
+
+		// Auto guess the new column names and make them unique
+		SettingsUtils.autoGuessColumnName(inSpecs[0], null, null,
+				m_modelHitsColumnName, DEFAULT_HITS_COLUMN);
+		SettingsUtils.autoGuessColumnName(inSpecs[0],
+				new String[] { m_modelHitsColumnName.getStringValue() }, null,
+				m_modelSimilaritiesColumnName, DEFAULT_SIMILARITIES_COLUMN);
+
+		// Determine, if the new column names have been set and if they are really unique
+		SettingsUtils.checkColumnNameUniqueness(inSpecs[0], null, null,
+				m_modelHitsColumnName,
+				"Column name for hits has not been specified yet.",
+				"The name %COLUMN_NAME% of the new hits column exists already in the input.");
+		SettingsUtils.checkColumnNameUniqueness(inSpecs[0],
+				new String[] { m_modelHitsColumnName.getStringValue() }, null,
+				m_modelSimilaritiesColumnName,
+				"Column name for similarities has not been specified yet.",
+				"The name %COLUMN_NAME% of the new similarities column exists already in the input.");
+
+		// Consolidate all warnings and make them available to the user
+		generateWarnings();
+
+		// Generate output specs
+		return getOutputTableSpecs(inSpecs);
+	}
+
+	/**
+	 * This implementation generates input data info objects for the query
+	 * and reference fingerprint columns and connects them with the information coming
+	 * from the appropriate setting models.
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected InputDataInfo[] createInputDataInfos(final int inPort, final DataTableSpec inSpec)
+			throws InvalidSettingsException {
+
+		InputDataInfo[] arrDataInfo = null;
+
+		switch (inPort) {
+		case 0: // First table with query fingerprint column
+			arrDataInfo = new InputDataInfo[1];
+			arrDataInfo[INPUT_COLUMN_QUERY] = (inSpec == null ? null : new InputDataInfo(inSpec, m_modelQueryColumnName,
+					InputDataInfo.EmptyCellPolicy.DeliverEmptyRow, null,
+					BitVectorValue.class));
+			break;
+
+		case 1: // Second table with reference fingerprint column (not used with an index file)
+			if (m_modelUseIndexFileOption.getBooleanValue()) {
+				break;
+			}
+			arrDataInfo = new InputDataInfo[1];
+			arrDataInfo[INPUT_COLUMN_REFERENCE] = (inSpec == null ? null : new InputDataInfo(inSpec, m_modelReferenceColumnName,
+					InputDataInfo.EmptyCellPolicy.TreatAsNull, null,
+					BitVectorValue.class));
+			break;
+		}
+
+		return (arrDataInfo == null ? new InputDataInfo[0] : arrDataInfo);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Calculates additionally to the normal execution procedure the pre-processing
+	 * percentage.
+	 */
+	@Override
+	protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
+			final ExecutionContext exec) throws Exception {
+		// Calculate pre-processing share based on overall rows - opening an index file is negligible
+		final long lReferenceRowCount = (m_modelUseIndexFileOption.getBooleanValue() || inData[1] == null ?
+				0 : inData[1].size());
+		m_dPreProcessingShare = lReferenceRowCount /
+				(inData[0].size() + lReferenceRowCount + 1.0d);
+
+		// Perform normalized execution
+		return super.execute(inData, exec);
+	}
+
+	/**
+	 * This implementation generates the factory, which searches the reference fingerprints
+	 * for each query fingerprint.
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected AbstractRDKitCellFactory[] createOutputFactories(final int outPort, final DataTableSpec inSpec)
+			throws InvalidSettingsException {
+
+		AbstractRDKitCellFactory[] arrOutputFactories = null;
+
+		// Specify output of table 1
+		if (outPort == 0) {
+			// Allocate space for all factories (usually we have only one)
+			arrOutputFactories = new AbstractRDKitCellFactory[1];
+
+			// Factory 1:
+			// ==========
+			// Generate column specs for the output table columns produced by this factory
+			final DataColumnSpec[] arrOutputSpec = new DataColumnSpec[] {
+					new DataColumnSpecCreator(m_modelHitsColumnName.getStringValue(),
+							ListCell.getCollectionType(StringCell.TYPE)).createSpec(),
+					new DataColumnSpecCreator(m_modelSimilaritiesColumnName.getStringValue(),
+							ListCell.getCollectionType(DoubleCell.TYPE)).createSpec()
+			};
+
+			final SimilarityMetric metric = m_modelMetric.getValue();
+			final double dThreshold = m_modelThreshold.getDoubleValue();
+			final int iTopK = m_modelTopK.getIntValue();
+			final WarningConsolidator warnings = getWarningConsolidator();
+
+			// Generate factory
+			arrOutputFactories[0] = new AbstractRDKitCellFactory(this, AbstractRDKitCellFactory.RowFailurePolicy.DeliverEmptyValues,
+					warnings, null, arrOutputSpec) {
+
+				@Override
+				/**
+				 * This method implements the calculation logic to generate the new cells based on
+				 * the input made available in the first (and second) parameter.
+				 * {@inheritDoc}
+				 */
+				public DataCell[] process(final InputDataInfo[] arrInputDataInfo, final DataRow row, final long lUniqueWaveId) throws Exception {
+					final BitVectorValue fp = (BitVectorValue)arrInputDataInfo[INPUT_COLUMN_QUERY].getCell(row);
+
+					if (fp.length() != m_arena.getNumBits()) {
+						warnings.saveWarning(WarningConsolidator.ROW_CONTEXT.getId(),
+								"Encountered query fingerprint with invalid length (" + fp.length() +
+								" instead of " + m_arena.getNumBits() + " bits) - no search possible.");
+						return createEmptyCells(2);
+					}
+
+					final AbstractFingerprintArena.Hits hits = m_arena.search(
+							BitVectorUtils.toWords(fp), metric, dThreshold, iTopK);
+					m_lQueryCount.incrementAndGet();
+					m_lComparisonCount.addAndGet(hits.getComparisons());
+
+					final int iHitCount = hits.size();
+					final List<StringCell> listRowKeys = new ArrayList<StringCell>(iHitCount);
+					final List<DoubleCell> listSimilarities = new ArrayList<DoubleCell>(iHitCount);
+					for (int i = 0; i < iHitCount; i++) {
+						listRowKeys.add(m_arrReferenceRowKeys != null ? m_arrReferenceRowKeys[hits.getIndex(i)] :
+							new StringCell(m_index.getId(hits.getIndex(i))));
+						listSimilarities.add(new DoubleCell(hits.getSimilarity(i)));
+					}
+
+					return new DataCell[] {
+							CollectionCellFactory.createListCell(listRowKeys),
+							CollectionCellFactory.createListCell(listSimilarities)
+					};
+				}
+			};
+
+			// Enable or disable this factory to allow parallel processing
+			arrOutputFactories[0].setAllowParallelProcessing(true);
+		}
+
+		return (arrOutputFactories == null ? new AbstractRDKitCellFactory[0] : arrOutputFactories);
+	}
+
+	/**
+	 * Returns the percentage of pre-processing activities from the total execution.
+	 *
+	 * @return Percentage of pre-processing.
+	 */
+	@Override
+	protected double getPreProcessingPercentage() {
+		return m_dPreProcessingShare;
+	}
+
+	/**
+	 * Loads all reference fingerprints of the second input table into a fingerprint arena.
+	 * The first valid fingerprint determines the fingerprint length. Empty cells and
+	 * fingerprints of a different length are ignored with a warning. If a fingerprint
+	 * index file shall be searched instead, it just gets opened.
+	 * 
+	 * @param inData The input tables of the node.
+	 * @param arrInputDataInfo Information about all columns of the input tables.
+	 * @param exec The execution context, which was derived as sub-execution context based on the percentage
+	 * 		setting of #getPreProcessingPercentage(). Track the progress from 0..1.
+	 *
+	 * @throws Exception Thrown, if pre-processing fails.
+	 * 
+	 * @see #m_arena
+	 * @see #m_arrReferenceRowKeys
+	 */
+	@Override
+	protected void preProcessing(final BufferedDataTable[] inData, final InputDataInfo[][] arrInputDataInfo,
+			final ExecutionContext exec) throws Exception {
+		m_lQueryCount.set(0);
+		m_lComparisonCount.set(0);
+
+		if (m_modelUseIndexFileOption.getBooleanValue()) {
+			final File fileIndex = FileUtils.convertToFile(m_modelIndexFile.getStringValue(), true, false);
+			final long lStart = System.currentTimeMillis();
+			m_index = FingerprintIndex.open(fileIndex);
+			m_arena = m_index;
+			LOGGER.info("Opening fingerprint index file " + fileIndex + " with " + m_index.size() +
+					" fingerprints took " + (System.currentTimeMillis() - lStart) + "ms.");
+			m_lSearchStartTs = System.currentTimeMillis();
+			exec.setProgress(1.0d);
+			return;
+		}
+
+		final WarningConsolidator warnings = getWarningConsolidator();
+		final long lReferenceRowCount = inData[1].size();
+		final List<StringCell> listRowKeys = new ArrayList<StringCell>((int)lReferenceRowCount);
+		FingerprintArena.Builder builder = null;
+		long lRowIndex = 0;
+
+		for (final DataRow row : inData[1]) {
+			final BitVectorValue fp = (BitVectorValue)arrInputDataInfo[1][INPUT_COLUMN_REFERENCE].getCell(row);
+
+			if (fp == null) {
+				warnings.saveWarning(ROW_CONTEXT_TABLE_2.getId(), "Encountered empty fingerprint cell in table 2 - ignored it.");
+			}
+			else {
+				if (builder == null && fp.length() > 0 && fp.length() <= Integer.MAX_VALUE) {
+					builder = new FingerprintArena.Builder((int)fp.length());
+				}
+
+				if (builder != null && fp.length() == builder.getNumBits()) {
+					builder.add(BitVectorUtils.toWords(fp));
+					listRowKeys.add(new StringCell(row.getKey().getString()));
+				}
+				else {
+					warnings.saveWarning(ROW_CONTEXT_TABLE_2.getId(),
+							"Encountered fingerprint with invalid length (" + fp.length() + " instead of " +
+							(builder == null ? "a positive number of" : builder.getNumBits()) + " bits) in table 2 - ignoring it.");
+				}
+			}
+
+			// Every 20 iterations report progress and check for cancel
+			if (++lRowIndex % 20 == 0) {
+				AbstractRDKitNodeModel.reportProgress(exec, lRowIndex, lReferenceRowCount, row, " - Loading reference fingerprints");
+			}
+		}
+
+		if (builder == null) {
+			throw new InvalidSettingsException("The reference table does not contain any valid fingerprints.");
+		}
+
+		m_arena = builder.build();
+		m_arrReferenceRowKeys = listRowKeys.toArray(new StringCell[listRowKeys.size()]);
+
+		// Show the warnings already immediately
+		generateWarnings();
+
+		m_lSearchStartTs = System.currentTimeMillis();
+
+		exec.setProgress(1.0d);
+	}
+
+	/**
+	 * Logs the throughput of the similarity search.
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected BufferedDataTable[] postProcessing(final BufferedDataTable[] inData, final InputDataInfo[][] arrInputDataInfo,
+			final BufferedDataTable[] processingResult, final ExecutionContext exec) throws Exception {
+		final long lDuration = Math.max(1, System.currentTimeMillis() - m_lSearchStartTs);
+		final long lQueries = m_lQueryCount.get();
+		final long lComparisons = m_lComparisonCount.get();
+		final double dPossibleComparisons = (double)lQueries * m_arena.size();
+
+		LOGGER.info("Similarity search of " + lQueries + " queries against " + m_arena.size() +
+				" reference fingerprints took " + lDuration + "ms (" +
+				String.format("%.1f", lQueries * 1000.0d / lDuration) + " queries/s, " +
+				String.format("%.1f", dPossibleComparisons > 0 ? 100.0d * (1.0d - lComparisons / dPossibleComparisons) : 0.0d) +
+				"% of comparisons pruned).");
+
+		return super.postProcessing(inData, arrInputDataInfo, processingResult, exec);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * This implementation considers the number of rows of the second table, if used.
+	 */
+	@Override
+	protected Map<String, Long> createWarningContextOccurrencesMap(
+			final BufferedDataTable[] inData, final InputDataInfo[][] arrInputDataInfo,
+			final BufferedDataTable[] resultData) {
+
+		final Map<String, Long> mapContextOccurrences = super.createWarningContextOccurrencesMap(inData, arrInputDataInfo,
+				resultData);
+
+		if (!m_modelUseIndexFileOption.getBooleanValue() && hasReferenceTable(getInputTableSpecs(inData))) {
+			mapContextOccurrences.put(ROW_CONTEXT_TABLE_2.getId(), inData[1].size());
+		}
+
+		return mapContextOccurrences;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void cleanupIntermediateResults() {
+		m_arena = null;
+		if (m_index != null) {
+			// Releases the mapping, which would keep the file locked on Windows
+			m_index.close();
+			m_index = null;
+		}
+		m_arrReferenceRowKeys = null;
+		m_dPreProcessingShare = 0;
+	}
+
+	//
+	// Static Public Methods
+	//
+
+	/**
+	 * Determines, if the optional reference table is connected.
+	 * 
+	 * @param inSpecs Port specifications.
+	 * 
+	 * @return True, if there is a second table connected. False otherwise.
+	 */
+	public static boolean hasReferenceTable(final PortObjectSpec[] inSpecs) {
+		return (inSpecs != null && inSpecs.length >= 2 &&
+				inSpecs[1] instanceof DataTableSpec &&
+				((DataTableSpec)inSpecs[1]).getNumColumns() > 0);
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.nodes.similaritysearch;
+
+/**
+ * This enumeration lists the similarity metrics supported by the similarity search.
+ * Both metrics are calculated only from the number of on bits of two fingerprints and
+ * the number of on bits they have in common. Two empty fingerprints are considered
+ * identical.
+ * 
+ * @author Manuel Schwarze
+ */
+public enum SimilarityMetric {
+
+	Tanimoto {
+		@Override
+		public double calculate(final int iCommon, final int iOnBits1, final int iOnBits2) {
+			final int iUnion = iOnBits1 + iOnBits2 - iCommon;
+			return (iUnion == 0 ? 1.0d : (double)iCommon / iUnion);
+		}
+
+		@Override
+		public double calculateMaximum(final int iOnBits1, final int iOnBits2) {
+			final int iMax = Math.max(iOnBits1, iOnBits2);
+			return (iMax == 0 ? 1.0d : (double)Math.min(iOnBits1, iOnBits2) / iMax);
+		}
+	},
+
+	Dice {
+		@Override
+		public double calculate(final int iCommon, final int iOnBits1, final int iOnBits2) {
+			final int iTotal = iOnBits1 + iOnBits2;
+			return (iTotal == 0 ? 1.0d : 2.0d * iCommon / iTotal);
+		}
+
+		@Override
+		public double calculateMaximum(final int iOnBits1, final int iOnBits2) {
+			final int iTotal = iOnBits1 + iOnBits2;
+			return (iTotal == 0 ? 1.0d : 2.0d * Math.min(iOnBits1, iOnBits2) / iTotal);
+		}
+	};
+
+	/**
+	 * Calculates the similarity of two fingerprints.
+	 * 
+	 * @param iCommon Number of on bits both fingerprints have in common.
+	 * @param iOnBits1 Number of on bits of the first fingerprint.
+	 * @param iOnBits2 Number of on bits of the second fingerprint.
+	 * 
+	 * @return Similarity between 0.0 and 1.0.
+	 */
+	public abstract double calculate(int iCommon, int iOnBits1, int iOnBits2);
+
+	/**
+	 * Calculates the highest similarity two fingerprints with the specified numbers of
+	 * on bits could possibly have. This is the bound used to skip fingerprints without
+	 * comparing them. It decreases the more the two numbers of on bits differ.
+	 * 
+	 * @param iOnBits1 Number of on bits of the first fingerprint.
+	 * @param iOnBits2 Number of on bits of the second fingerprint.
+	 * 
+	 * @return Maximal similarity between 0.0 and 1.0.
+	 */
+	public abstract double calculateMaximum(int iOnBits1, int iOnBits2);
+}
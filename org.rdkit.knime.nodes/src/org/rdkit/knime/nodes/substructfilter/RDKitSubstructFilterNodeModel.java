@@ -64,13 +64,16 @@ import org.knime.core.data.DataType;
 import org.knime.core.data.collection.CollectionCellFactory;
 import org.knime.core.data.collection.ListCell;
 import org.knime.core.data.def.IntCell;
-import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeLogger;
 import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.streamable.BufferedDataTableRowOutput;
+import org.knime.core.node.streamable.DataTableRowInput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
 import org.rdkit.knime.nodes.AbstractRDKitCellFactory;
 import org.rdkit.knime.nodes.AbstractRDKitNodeModel;
 import org.rdkit.knime.types.RDKitMolValue;
@@ -166,10 +169,11 @@ public class RDKitSubstructFilterNodeModel extends AbstractRDKitNodeModel {
 	//
 
 	/**
-	 * Create new node model with one data in- and one out-port.
+	 * Create new node model with one data in- and two out-ports, which can be streamed.
 	 */
 	RDKitSubstructFilterNodeModel() {
 		super(1, 2);
+		enableRowStreaming();
 	}
 
 	//
@@ -431,13 +435,34 @@ public class RDKitSubstructFilterNodeModel extends AbstractRDKitNodeModel {
 		final DataTableSpec[] arrOutSpecs = getOutputTableSpecs(inData);
 
 		// Contains the rows with the result column
-		final BufferedDataContainer matchTable = exec.createDataContainer(arrOutSpecs[0]);
+		final BufferedDataTableRowOutput matchTable = new BufferedDataTableRowOutput(
+				exec.createDataContainer(arrOutSpecs[0]));
 
 		// Contains the input rows if result computation fails
-		final BufferedDataContainer mismatchTable = exec.createDataContainer(arrOutSpecs[1]);
+		final BufferedDataTableRowOutput mismatchTable = new BufferedDataTableRowOutput(
+				exec.createDataContainer(arrOutSpecs[1]));
+
+		processing(new DataTableRowInput(inData[0]), new RowOutput[] { matchTable, mismatchTable },
+				arrInputDataInfo[0], inData[0].size(), exec);
+
+		matchTable.close();
+		mismatchTable.close();
+
+		return new BufferedDataTable[] { matchTable.getDataTable(), mismatchTable.getDataTable() };
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * This implementation is used for streaming as well as for processing complete tables.
+	 */
+	@Override
+	protected void processing(final RowInput input, final RowOutput[] arrOutputs,
+			final InputDataInfo[] arrInputDataInfo, final long lRowCount, final ExecutionContext exec)
+					throws Exception {
+		final RowOutput matchTable = arrOutputs[0];
+		final RowOutput mismatchTable = arrOutputs[1];
 
 		// Get settings and define data specific behavior
-		final long lTotalRowCount = inData[0].size();
 		final MatchHandling matchHandling = m_modelMatchHandling.getValue();
 
 		// Construct an RDKit molecule from the SMARTS pattern - make it available as member variable
@@ -453,7 +478,7 @@ public class RDKitSubstructFilterNodeModel extends AbstractRDKitNodeModel {
 		m_bDebug = LOGGER.isDebugEnabled();
 
 		// Setup main factory
-		final AbstractRDKitCellFactory factory = createOutputFactory(arrInputDataInfo[0]);
+		final AbstractRDKitCellFactory factory = createOutputFactory(arrInputDataInfo);
 		final AbstractRDKitNodeModel.ResultProcessor resultProcessor =
 				new AbstractRDKitNodeModel.ResultProcessor() {
 
@@ -467,14 +492,14 @@ public class RDKitSubstructFilterNodeModel extends AbstractRDKitNodeModel {
 			@Override
 			public void processResults(final long rowIndex, final DataRow row, final DataCell[] arrResults) {
 				if (arrResults[0].isMissing()) {
-					mismatchTable.addRowToTable(row);
+					pushRow(mismatchTable, row);
 				}
 				else {
 					if (matchHandling == MatchHandling.DoNotAddMatchColumn) {
-						matchTable.addRowToTable(row);
+						pushRow(matchTable, row);
 					}
 					else { // Add also details column
-						matchTable.addRowToTable(AbstractRDKitCellFactory.mergeDataCells(row, arrResults, -1));
+						pushRow(matchTable, AbstractRDKitCellFactory.mergeDataCells(row, arrResults, -1));
 					}
 				}
 			}
@@ -482,18 +507,12 @@ public class RDKitSubstructFilterNodeModel extends AbstractRDKitNodeModel {
 
 		// Runs the multiple threads to do the work
 		try {
-			new AbstractRDKitNodeModel.ParallelProcessor(factory, resultProcessor, lTotalRowCount,
-					getWarningConsolidator(), exec).run(inData[0]);
+			createParallelProcessor(factory, resultProcessor, lRowCount, exec).execute(input);
 		}
 		catch (final Exception e) {
 			exec.checkCanceled();
 			throw e;
 		}
-
-		matchTable.close();
-		mismatchTable.close();
-
-		return new BufferedDataTable[] { matchTable.getTable(), mismatchTable.getTable() };
 	}
 
 	/**
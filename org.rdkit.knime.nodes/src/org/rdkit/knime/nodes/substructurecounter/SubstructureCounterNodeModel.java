@@ -532,8 +532,7 @@ public class SubstructureCounterNodeModel extends AbstractRDKitCalculatorNodeMod
 					final DataCell[] arrOutputCells = createEmptyCells(iTotalColumnCount);
 
 					// Calculate the new cells
-					final ROMol mol = markForCleanup(arrInputDataInfo[INPUT_COLUMN_MOL].getROMol(row),
-							lUniqueWaveId);
+					final ROMol mol = arrInputDataInfo[INPUT_COLUMN_MOL].getReadOnlyROMol(row);
 
 					final List<StringCell> listTags = (bTrackQueryTags ? new ArrayList<StringCell>() : null);
 					int iTotalHitsCount = 0;
@@ -312,7 +312,7 @@ public class RDKitTwoComponentReactionNodeModel extends AbstractRDKitReactionNod
 		else {
 			// Get settings and define data specific behavior
 			final boolean bMatrixExpansion = m_modelDoMatrixExpansion.getBooleanValue();
-			final int iMaxParallelWorkers = (int)Math.ceil(1.5 * Runtime.getRuntime().availableProcessors());
+			final int iMaxParallelWorkers = getMaxParallelWorkers();
 			final int iQueueSize = 10 * iMaxParallelWorkers;
 			final AtomicInteger aiReactionCounter = new AtomicInteger();
 			final AtomicBoolean abEarlyDone = new AtomicBoolean(false);
@@ -350,7 +350,7 @@ public class RDKitTwoComponentReactionNodeModel extends AbstractRDKitReactionNod
 
 			// Calculate two component reactions
 			final MultiThreadWorker<DataRow, List<DataRow>> multiWorker =
-					new MultiThreadWorker<DataRow, List<DataRow>>(iQueueSize, iMaxParallelWorkers) {
+					new PooledMultiThreadWorker<DataRow, List<DataRow>>(iQueueSize, iMaxParallelWorkers) {
 
 				/**
 				 * Computes the two component reactions.
@@ -364,7 +364,7 @@ public class RDKitTwoComponentReactionNodeModel extends AbstractRDKitReactionNod
 				 * 		a missing reactant 1.
 				 */
 				@Override
-				protected List<DataRow> compute(final DataRow row, final long index) throws Exception {
+				protected List<DataRow> computeInPool(final DataRow row, final long index) throws Exception {
 					final long uniqueWaveId = createUniqueCleanupWaveId();
 					List<DataRow> listNewRows = null;
 
@@ -0,0 +1,366 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.util;
+
+import java.util.Arrays;
+
+/**
+ * A cleanup scope is a lightweight arena for RDKit objects, which are only used while
+ * processing a single row (or another small unit of work). Objects registered with
+ * {@link #add(Object)} are kept in a small array and freed in reverse order of
+ * registration (LIFO) when the scope gets closed. Scopes are bound to the thread
+ * that opened them and are pooled per thread, hence opening and closing a scope
+ * does not create garbage and does not involve any locking.
+ * Every scope is associated with a cleanup wave id. This makes it possible to use
+ * scopes transparently behind the {@link RDKitObjectCleaner} contract: An object
+ * marked for cleanup with a wave id of a scope, which is active in the current thread,
+ * gets registered in that scope.
+ * Use a scope always in a try-with-resources block or close it in a finally block.
+ * 
+ * @author Manuel Schwarze
+ */
+public final class RDKitCleanupScope implements AutoCloseable {
+
+	//
+	// Constants
+	//
+
+	/** Initial capacity of the object array of a scope. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Maximal capacity of an object array that is kept when a scope is returned into the pool. */
+	private static final int MAX_POOLED_CAPACITY = 1024;
+
+	/** Pools of scopes per thread. */
+	private static final ThreadLocal<Pool> POOLS = new ThreadLocal<Pool>() {
+		@Override
+		protected Pool initialValue() {
+			return new Pool();
+		}
+	};
+
+	//
+	// Members
+	//
+
+	/** The pool this scope belongs to. */
+	private final Pool m_pool;
+
+	/** Wave id associated with this scope. */
+	private long m_lWaveId;
+
+	/** Registered RDKit objects in order of registration. */
+	private Object[] m_arrObjects;
+
+	/** Number of registered RDKit objects. */
+	private int m_iSize;
+
+	/** The scope that was active before this scope was opened. Null, if none. */
+	private RDKitCleanupScope m_parent;
+
+	/** Flag to tell that this scope is currently open. */
+	private boolean m_bOpen;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Creates a new scope that belongs to the specified pool.
+	 * 
+	 * @param pool Thread specific pool. Must not be null.
+	 */
+	private RDKitCleanupScope(final Pool pool) {
+		m_pool = pool;
+		m_arrObjects = new Object[INITIAL_CAPACITY];
+		m_iSize = 0;
+		m_bOpen = false;
+	}
+
+	//
+	// Public Methods
+	//
+
+	/**
+	 * Returns the wave id associated with this scope.
+	 * 
+	 * @return Wave id.
+	 */
+	public long getWaveId() {
+		return m_lWaveId;
+	}
+
+	/**
+	 * Returns the number of currently registered objects.
+	 * 
+	 * @return Number of objects to be freed when closing the scope.
+	 */
+	public int size() {
+		return m_iSize;
+	}
+
+	/**
+	 * Registers an RDKit based object, which must have a delete() method implemented.
+	 * It will be freed when this scope gets closed. Registering the same object twice
+	 * in the same scope has no effect.
+	 * 
+	 * @param <T> Any class that implements a delete() method to be called to free up resources.
+	 * @param rdkitObject An RDKit related object that should free resources when not
+	 * 		used anymore. Can be null.
+	 * 
+	 * @return The same object that was passed in. Null, if null was passed in.
+	 * 
+	 * @throws IllegalStateException Thrown, if the scope is not open anymore.
+	 */
+	public <T extends Object> T add(final T rdkitObject) {
+		if (!m_bOpen) {
+			throw new IllegalStateException("Cleanup scope is closed.");
+		}
+
+		if (rdkitObject != null && !contains(rdkitObject)) {
+			if (m_iSize == m_arrObjects.length) {
+				m_arrObjects = Arrays.copyOf(m_arrObjects, m_iSize * 2);
+			}
+			m_arrObjects[m_iSize++] = rdkitObject;
+		}
+
+		return rdkitObject;
+	}
+
+	/**
+	 * Removes the specified object from this scope without freeing it. This is useful
+	 * if an object needs to live longer than the scope.
+	 * 
+	 * @param rdkitObject An RDKit related object. Can be null.
+	 * 
+	 * @return True, if the object was registered in this scope and has been removed. False otherwise.
+	 */
+	public boolean remove(final Object rdkitObject) {
+		if (rdkitObject != null) {
+			for (int i = m_iSize - 1; i >= 0; i--) {
+				if (m_arrObjects[i] == rdkitObject) {
+					System.arraycopy(m_arrObjects, i + 1, m_arrObjects, i, m_iSize - i - 1);
+					m_arrObjects[--m_iSize] = null;
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Frees all objects registered so far in reverse order of registration. The scope
+	 * stays open and can be used further.
+	 */
+	public void cleanup() {
+		// Objects are taken out one by one, so that a failure cannot lead to a double delete
+		while (m_iSize > 0) {
+			final Object rdkitObject = m_arrObjects[--m_iSize];
+			m_arrObjects[m_iSize] = null;
+			RDKitObjectDeleter.delete(rdkitObject);
+		}
+	}
+
+	/**
+	 * Frees all registered objects in reverse order of registration, makes the
+	 * previously active scope of the thread active again and returns this scope
+	 * into the pool. Closing a scope that is not open has no effect.
+	 * 
+	 * @throws IllegalStateException Thrown, if this scope is not the innermost open scope
+	 * 		of the current thread.
+	 */
+	@Override
+	public void close() {
+		if (m_bOpen) {
+			if (m_pool.m_active != this) {
+				throw new IllegalStateException("Cleanup scopes must be closed in reverse order of opening " +
+						"and from the thread that opened them.");
+			}
+
+			try {
+				cleanup();
+			}
+			finally {
+				m_bOpen = false;
+				m_pool.m_active = m_parent;
+				m_parent = null;
+				if (m_arrObjects.length > MAX_POOLED_CAPACITY) {
+					m_arrObjects = new Object[INITIAL_CAPACITY];
+				}
+				m_pool.release(this);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RDKitCleanupScope [wave=" + m_lWaveId + ", objects=" + m_iSize + "]";
+	}
+
+	//
+	// Static Public Methods
+	//
+
+	/**
+	 * Opens a new scope for the current thread and associates it with the specified wave id.
+	 * The new scope becomes the active scope of the current thread until it gets closed.
+	 * 
+	 * @param lWaveId Wave id the scope shall be associated with. Should be unique, e.g.
+	 * 		created with {@link RDKitObjectCleaner#createUniqueCleanupWaveId()}.
+	 * 
+	 * @return Open scope. Never null.
+	 */
+	public static RDKitCleanupScope open(final long lWaveId) {
+		final Pool pool = POOLS.get();
+		final RDKitCleanupScope scope = pool.acquire();
+		scope.m_lWaveId = lWaveId;
+		scope.m_parent = pool.m_active;
+		scope.m_bOpen = true;
+		pool.m_active = scope;
+
+		return scope;
+	}
+
+	/**
+	 * Returns the open scope of the current thread, which is associated with the specified
+	 * wave id. Nested (outer) scopes are considered as well.
+	 * 
+	 * @param lWaveId Wave id of interest.
+	 * 
+	 * @return Scope or null, if there is no such scope open in the current thread.
+	 */
+	public static RDKitCleanupScope getOpenScope(final long lWaveId) {
+		RDKitCleanupScope scope = POOLS.get().m_active;
+
+		while (scope != null && scope.m_lWaveId != lWaveId) {
+			scope = scope.m_parent;
+		}
+
+		return scope;
+	}
+
+	/**
+	 * Removes the specified object from all open scopes of the current thread without
+	 * freeing it.
+	 * 
+	 * @param rdkitObject An RDKit related object. Can be null.
+	 */
+	public static void removeFromOpenScopes(final Object rdkitObject) {
+		if (rdkitObject != null) {
+			for (RDKitCleanupScope scope = POOLS.get().m_active; scope != null; scope = scope.m_parent) {
+				scope.remove(rdkitObject);
+			}
+		}
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Checks by identity, if the specified object is registered in this scope.
+	 * As scopes are meant to be small a linear scan is performed.
+	 * 
+	 * @param rdkitObject Object to check. Must not be null.
+	 * 
+	 * @return True, if registered. False otherwise.
+	 */
+	private boolean contains(final Object rdkitObject) {
+		for (int i = m_iSize - 1; i >= 0; i--) {
+			if (m_arrObjects[i] == rdkitObject) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	//
+	// Inner Classes
+	//
+
+	/**
+	 * Thread specific pool of scopes, which keeps also track of the active scope.
+	 */
+	private static final class Pool {
+
+		/** Maximal number of scopes kept in the pool. */
+		private static final int MAX_POOL_SIZE = 8;
+
+		/** Scopes ready for reuse. */
+		private final RDKitCleanupScope[] m_arrFree = new RDKitCleanupScope[MAX_POOL_SIZE];
+
+		/** Number of scopes ready for reuse. */
+		private int m_iFree = 0;
+
+		/** The currently active (innermost open) scope of the thread. Null, if none. */
+		private RDKitCleanupScope m_active = null;
+
+		/**
+		 * Takes a scope from the pool or creates a new one, if the pool is empty.
+		 * 
+		 * @return Closed scope ready to be opened.
+		 */
+		private RDKitCleanupScope acquire() {
+			return (m_iFree > 0 ? m_arrFree[--m_iFree] : new RDKitCleanupScope(this));
+		}
+
+		/**
+		 * Returns the specified scope into the pool, if there is space.
+		 * 
+		 * @param scope Closed scope. Must not be null.
+		 */
+		private void release(final RDKitCleanupScope scope) {
+			if (m_iFree < MAX_POOL_SIZE) {
+				m_arrFree[m_iFree++] = scope;
+			}
+		}
+	}
+}
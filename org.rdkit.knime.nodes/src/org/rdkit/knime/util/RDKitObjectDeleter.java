@@ -0,0 +1,161 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import org.knime.core.node.NodeLogger;
+
+/**
+ * This class frees resources of RDKit based objects by calling their delete() method.
+ * Instead of looking up the delete() method via reflection for every single object,
+ * a method handle is determined only once per class and cached afterwards. This makes
+ * freeing up large numbers of objects (e.g. several per processed row) cheap and
+ * does not involve any locking.
+ * 
+ * @author Manuel Schwarze
+ */
+public final class RDKitObjectDeleter {
+
+	//
+	// Constants
+	//
+
+	/** The logger instance. */
+	private static final NodeLogger LOGGER = NodeLogger
+			.getLogger(RDKitObjectDeleter.class);
+
+	/** Method type of a delete() method as it is generated by SWIG for all RDKit classes. */
+	private static final MethodType DELETE_METHOD_TYPE = MethodType.methodType(void.class);
+
+	/**
+	 * Caches for every encountered class the method handle to call its delete() method.
+	 * The cached value is null for classes that do not provide an accessible delete() method.
+	 */
+	private static final ClassValue<MethodHandle> DELETE_HANDLES = new ClassValue<MethodHandle>() {
+		@Override
+		protected MethodHandle computeValue(final Class<?> clazz) {
+			MethodHandle handle = null;
+
+			try {
+				handle = MethodHandles.publicLookup().findVirtual(clazz, "delete", DELETE_METHOD_TYPE)
+						.asType(MethodType.methodType(void.class, Object.class));
+			}
+			catch (final NoSuchMethodException excNoSuchMethod) {
+				LOGGER.error("An object had been registered for cleanup (delete() call), " +
+						"which does not provide a delete() method. It's of class " + clazz.getName() + ".");
+			}
+			catch (final IllegalAccessException | SecurityException excSecurity) {
+				LOGGER.error("An object had been registered for cleanup (delete() call), " +
+						"which is not accessible for security reasons. It's of class " + clazz.getName() + ".",
+						excSecurity);
+			}
+
+			return handle;
+		}
+	};
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * This constructor serves only the purpose to avoid instantiation of this class.
+	 */
+	private RDKitObjectDeleter() {
+		// To avoid instantiation of this class.
+	}
+
+	//
+	// Static Public Methods
+	//
+
+	/**
+	 * Determines, if the specified object can be freed by this deleter, which means
+	 * that its class provides a public delete() method.
+	 * 
+	 * @param rdkitObject An RDKit related object. Can be null.
+	 * 
+	 * @return True, if the object provides a delete() method. False otherwise or if null.
+	 */
+	public static boolean isDeletable(final Object rdkitObject) {
+		return rdkitObject != null && DELETE_HANDLES.get(rdkitObject.getClass()) != null;
+	}
+
+	/**
+	 * Frees the resources of the specified RDKit object by calling its delete() method.
+	 * Failures are logged, but never thrown.
+	 * 
+	 * @param rdkitObject An RDKit related object that shall free its resources. Can be null.
+	 * 
+	 * @return True, if the delete() method was called successfully. False otherwise.
+	 */
+	public static boolean delete(final Object rdkitObject) {
+		boolean bSuccess = false;
+
+		if (rdkitObject != null) {
+			final MethodHandle handle = DELETE_HANDLES.get(rdkitObject.getClass());
+
+			if (handle != null) {
+				try {
+					handle.invokeExact(rdkitObject);
+					bSuccess = true;
+				}
+				catch (final Throwable exc) {
+					LOGGER.error("Cleaning up a registered object (via delete() call) failed." +
+							" It's of class " + rdkitObject.getClass().getName() + ".", exc);
+				}
+			}
+		}
+
+		return bSuccess;
+	}
+}
@@ -0,0 +1,183 @@
+/* 
+ * This source code, its documentation and all related files
+ * are protected by copyright law. All rights reserved.
+ *
+ * (C)Copyright 2011 by Novartis Pharma AG 
+ * Novartis Campus, CH-4002 Basel, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ */
+package org.rdkit.knime.nodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assume;
+
+/**
+ * Minimal timing harness for the benchmarks of the RDKit nodes. Benchmarks are
+ * written as JUnit tests, so that they run in the same environment as the other
+ * tests (including the loaded RDKit native libraries), but they are skipped unless
+ * the system property {@value #BENCHMARK_PROPERTY} is set to true, e.g. by adding
+ * -Drdkit.benchmarks=true to the VM arguments of the JUnit test launch configuration.
+ * Each measurement is preceded by warm-up rounds and results are written to
+ * standard out in a tab separated format.
+ * 
+ * @author Manuel Schwarze
+ */
+public final class BenchmarkHarness {
+
+	//
+	// Constants
+	//
+
+	/** System property to switch on benchmarks. */
+	public static final String BENCHMARK_PROPERTY = "rdkit.benchmarks";
+
+	/** Number of warm-up rounds before measuring. */
+	public static final int WARMUP_ROUNDS = 3;
+
+	/** Number of measured rounds. The best round is reported. */
+	public static final int MEASURED_ROUNDS = 5;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * This class only provides static methods.
+	 */
+	private BenchmarkHarness() {
+		// Only static methods
+	}
+
+	//
+	// Static Public Methods
+	//
+
+	/**
+	 * Skips the calling test, if benchmarks are not switched on.
+	 */
+	public static void assumeBenchmarksEnabled() {
+		Assume.assumeTrue("Benchmarks are switched off. Set -D" + BENCHMARK_PROPERTY + "=true to run them.",
+				Boolean.getBoolean(BENCHMARK_PROPERTY));
+	}
+
+	/**
+	 * Measures the time of the passed in operation, which performs a number
+	 * of operations per call, and reports the best round.
+	 * 
+	 * @param strName Name of the benchmark. Must not be null.
+	 * @param lOperationsPerRound Number of operations performed in each call of the operation.
+	 * @param operation The operation to measure. Must not be null.
+	 * 
+	 * @return Best measured time per operation in nanoseconds.
+	 * 
+	 * @throws Exception Thrown, if the operation failed.
+	 */
+	public static double measure(final String strName, final long lOperationsPerRound,
+			final Callable<?> operation) throws Exception {
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			operation.call();
+		}
+
+		long lBestNanos = Long.MAX_VALUE;
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			final long lStart = System.nanoTime();
+			operation.call();
+			lBestNanos = Math.min(lBestNanos, System.nanoTime() - lStart);
+		}
+
+		final double dNanosPerOperation = lBestNanos / (double)lOperationsPerRound;
+		System.out.println(String.format(Locale.US, "BENCHMARK\t%s\t%.1f ns/op\t%.0f ops/s",
+				strName, dNanosPerOperation, 1e9d / dNanosPerOperation));
+
+		return dNanosPerOperation;
+	}
+
+	/**
+	 * Runs the passed in operation concurrently in the specified number of threads
+	 * and waits for all of them to finish. This can be passed as operation into
+	 * {@link #measure(String, long, Callable)} to measure scaling with thread count.
+	 * 
+	 * @param iThreads Number of threads. Must be greater than 0.
+	 * @param operation Operation to be run in each thread. Gets the thread index passed in.
+	 * 
+	 * @return Callable that runs all threads once per call.
+	 */
+	public static Callable<Void> concurrently(final int iThreads, final ThreadOperation operation) {
+		return new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				final ExecutorService executor = Executors.newFixedThreadPool(iThreads);
+				try {
+					final List<Future<?>> listFutures = new ArrayList<Future<?>>(iThreads);
+					for (int i = 0; i < iThreads; i++) {
+						final int iThread = i;
+						listFutures.add(executor.submit(new Callable<Void>() {
+							@Override
+							public Void call() throws Exception {
+								operation.run(iThread);
+								return null;
+							}
+						}));
+					}
+					for (final Future<?> future : listFutures) {
+						future.get();
+					}
+				}
+				finally {
+					executor.shutdownNow();
+				}
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Returns the thread counts to be used for scaling benchmarks: 1, 2, 4, ...
+	 * up to twice the number of available processors.
+	 * 
+	 * @return Thread counts. Never null.
+	 */
+	public static int[] getThreadCounts() {
+		final int iMax = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+		final List<Integer> listCounts = new ArrayList<Integer>();
+		for (int i = 1; i <= iMax; i *= 2) {
+			listCounts.add(i);
+		}
+		final int[] arrCounts = new int[listCounts.size()];
+		for (int i = 0; i < arrCounts.length; i++) {
+			arrCounts[i] = listCounts.get(i);
+		}
+		return arrCounts;
+	}
+
+	//
+	// Inner Interfaces
+	//
+
+	/**
+	 * An operation that is run in one of several concurrent threads.
+	 */
+	public interface ThreadOperation {
+
+		/**
+		 * Runs the operation.
+		 * 
+		 * @param iThread Index of the thread running the operation.
+		 * 
+		 * @throws Exception Thrown, if the operation failed.
+		 */
+		void run(int iThread) throws Exception;
+	}
+}
@@ -0,0 +1,250 @@
+/* 
+ * This source code, its documentation and all related files
+ * are protected by copyright law. All rights reserved.
+ *
+ * (C)Copyright 2011 by Novartis Pharma AG 
+ * Novartis Campus, CH-4002 Basel, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ */
+package org.rdkit.knime.nodes;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.Callable;
+
+import org.RDKit.ExplicitBitVect;
+import org.RDKit.RDKFuncs;
+import org.RDKit.ROMol;
+import org.RDKit.RWMol;
+import org.junit.Test;
+import org.knime.core.data.vector.bitvector.BitVectorValue;
+import org.knime.core.data.vector.bitvector.DenseBitVector;
+import org.knime.core.data.vector.bitvector.DenseBitVectorCellFactory;
+import org.rdkit.knime.util.BitVectorUtils;
+
+/**
+ * Benchmark of the conversion between RDKit bit vectors and KNIME bit vectors, which
+ * happens for every calculated fingerprint and for every fingerprint that is read
+ * by the similarity nodes. The bulk conversion of {@link BitVectorUtils} is compared
+ * with the former conversion, which accessed every bit through JNI. It covers
+ * a Morgan fingerprint with 2048 bits and an RDKit fingerprint with 16384 bits.
+ * 
+ * @see BenchmarkHarness
+ * 
+ * @author Manuel Schwarze
+ */
+public class RDKitBitVectorConversionBenchmark {
+
+	//
+	// Constants
+	//
+
+	/** Number of conversions per round. */
+	private static final int CONVERSIONS_PER_ROUND = 2000;
+
+	/** Drug-like test molecule. */
+	private static final String SMILES =
+			"CC(=O)Nc1ccc(cc1)OCCN1CCN(CC1)c1ncnc2ccc(cc12)C(=O)N[C@@H](Cc1ccccc1)C(=O)O";
+
+	//
+	// Tests
+	//
+
+	/**
+	 * Measures the conversion of RDKit bit vectors into KNIME bit vectors.
+	 * 
+	 * @throws Exception Thrown, if the benchmark failed.
+	 */
+	@Test
+	public void benchmarkToDenseBitVector() throws Exception {
+		BenchmarkHarness.assumeBenchmarksEnabled();
+
+		for (final boolean bMorgan : new boolean[] { true, false }) {
+			final ExplicitBitVect fpRdkit = createFingerprint(bMorgan);
+
+			try {
+				BenchmarkHarness.measure("BitVectorUtils.toDenseBitVector " + getName(bMorgan),
+						CONVERSIONS_PER_ROUND, new Callable<Void>() {
+					@Override
+					public Void call() {
+						for (int i = 0; i < CONVERSIONS_PER_ROUND; i++) {
+							BitVectorUtils.toDenseBitVector(fpRdkit);
+						}
+						return null;
+					}
+				});
+				BenchmarkHarness.measure("getBit() per bit " + getName(bMorgan),
+						CONVERSIONS_PER_ROUND, new Callable<Void>() {
+					@Override
+					public Void call() {
+						for (int i = 0; i < CONVERSIONS_PER_ROUND; i++) {
+							toDenseBitVectorPerBit(fpRdkit);
+						}
+						return null;
+					}
+				});
+			}
+			finally {
+				fpRdkit.delete();
+			}
+		}
+	}
+
+	/**
+	 * Measures the conversion of KNIME bit vectors into RDKit bit vectors.
+	 * 
+	 * @throws Exception Thrown, if the benchmark failed.
+	 */
+	@Test
+	public void benchmarkToExplicitBitVect() throws Exception {
+		BenchmarkHarness.assumeBenchmarksEnabled();
+
+		for (final boolean bMorgan : new boolean[] { true, false }) {
+			final BitVectorValue fp = createKnimeFingerprint(bMorgan);
+
+			BenchmarkHarness.measure("BitVectorUtils.toExplicitBitVect " + getName(bMorgan),
+					CONVERSIONS_PER_ROUND, new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int i = 0; i < CONVERSIONS_PER_ROUND; i++) {
+						BitVectorUtils.toExplicitBitVect(fp).delete();
+					}
+					return null;
+				}
+			});
+			BenchmarkHarness.measure("setBit() per on bit " + getName(bMorgan),
+					CONVERSIONS_PER_ROUND, new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int i = 0; i < CONVERSIONS_PER_ROUND; i++) {
+						toExplicitBitVectPerBit(fp).delete();
+					}
+					return null;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Checks that the bulk conversion delivers the same bits as the conversion bit by bit
+	 * in both directions. This test always runs, as it is cheap.
+	 */
+	@Test
+	public void testRoundTrip() {
+		for (final boolean bMorgan : new boolean[] { true, false }) {
+			final ExplicitBitVect fpRdkit = createFingerprint(bMorgan);
+			ExplicitBitVect fpRdkitRead = null;
+
+			try {
+				final DenseBitVector fp = BitVectorUtils.toDenseBitVector(fpRdkit);
+				assertEquals(getName(bMorgan), toDenseBitVectorPerBit(fpRdkit), fp);
+
+				fpRdkitRead = BitVectorUtils.toExplicitBitVect(
+						new DenseBitVectorCellFactory(fp).createDataCell());
+				assertEquals(getName(bMorgan), fpRdkit.getNumBits(), fpRdkitRead.getNumBits());
+				assertEquals(getName(bMorgan), fpRdkit.getNumOnBits(), fpRdkitRead.getNumOnBits());
+				for (long l = 0; l < fpRdkit.getNumBits(); l++) {
+					assertEquals(getName(bMorgan) + " bit " + l, fpRdkit.getBit(l), fpRdkitRead.getBit(l));
+				}
+			}
+			finally {
+				fpRdkit.delete();
+				if (fpRdkitRead != null) {
+					fpRdkitRead.delete();
+				}
+			}
+		}
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Returns the name of the fingerprint type for reporting.
+	 * 
+	 * @param bMorgan True for the Morgan fingerprint, false for the RDKit fingerprint.
+	 * 
+	 * @return Name of the fingerprint type.
+	 */
+	private String getName(final boolean bMorgan) {
+		return bMorgan ? "Morgan-2048" : "RDKit-16384";
+	}
+
+	/**
+	 * Calculates a fingerprint of the test molecule. The caller is responsible
+	 * for deleting it.
+	 * 
+	 * @param bMorgan True for a Morgan fingerprint (radius 2, 2048 bits),
+	 * 		false for an RDKit fingerprint (path length 1 to 7, 16384 bits).
+	 * 
+	 * @return RDKit bit vector.
+	 */
+	private ExplicitBitVect createFingerprint(final boolean bMorgan) {
+		final ROMol mol = RWMol.MolFromSmiles(SMILES);
+		try {
+			return bMorgan ? RDKFuncs.getMorganFingerprintAsBitVect(mol, 2, 2048) :
+				RDKFuncs.RDKFingerprintMol(mol, 1, 7, 16384);
+		}
+		finally {
+			mol.delete();
+		}
+	}
+
+	/**
+	 * Calculates a fingerprint of the test molecule as KNIME bit vector cell.
+	 * 
+	 * @param bMorgan True for a Morgan fingerprint, false for an RDKit fingerprint.
+	 * 
+	 * @return KNIME bit vector.
+	 */
+	private BitVectorValue createKnimeFingerprint(final boolean bMorgan) {
+		final ExplicitBitVect fpRdkit = createFingerprint(bMorgan);
+		try {
+			return new DenseBitVectorCellFactory(toDenseBitVectorPerBit(fpRdkit)).createDataCell();
+		}
+		finally {
+			fpRdkit.delete();
+		}
+	}
+
+	/**
+	 * Converts an RDKit bit vector into a KNIME bit vector bit by bit, as it was done
+	 * before bulk conversion was introduced.
+	 * 
+	 * @param fpRdkit RDKit bit vector. Must not be null.
+	 * 
+	 * @return KNIME bit vector.
+	 */
+	private static DenseBitVector toDenseBitVectorPerBit(final ExplicitBitVect fpRdkit) {
+		final int iCount = (int)fpRdkit.getNumBits();
+		final DenseBitVector fp = new DenseBitVector(iCount);
+		for (int i = 0; i < iCount; i++) {
+			if (fpRdkit.getBit(i)) {
+				fp.set(i);
+			}
+		}
+		return fp;
+	}
+
+	/**
+	 * Converts a KNIME bit vector into an RDKit bit vector by setting every
+	 * on bit, as it was done before bulk conversion was introduced.
+	 * 
+	 * @param fp KNIME bit vector. Must not be null.
+	 * 
+	 * @return RDKit bit vector. The caller is responsible for deleting it.
+	 */
+	private static ExplicitBitVect toExplicitBitVectPerBit(final BitVectorValue fp) {
+		final ExplicitBitVect fpRdkit = new ExplicitBitVect(fp.length());
+		for (long l = fp.nextSetBit(0); l >= 0; l = fp.nextSetBit(l + 1)) {
+			fpRdkit.setBit(l);
+		}
+		return fpRdkit;
+	}
+}
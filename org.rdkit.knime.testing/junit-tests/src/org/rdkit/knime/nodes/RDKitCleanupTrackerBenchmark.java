@@ -0,0 +1,126 @@
+/* 
+ * This source code, its documentation and all related files
+ * are protected by copyright law. All rights reserved.
+ *
+ * (C)Copyright 2011 by Novartis Pharma AG 
+ * Novartis Campus, CH-4002 Basel, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ */
+package org.rdkit.knime.nodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.rdkit.knime.nodes.AbstractRDKitNodeModel.RDKitCleanupTracker;
+
+/**
+ * Benchmark of the cleanup tracker, which is used by all RDKit nodes to free
+ * native RDKit objects after each row. It measures how the cost of marking
+ * objects for cleanup and freeing them per row scales with the number of
+ * concurrently working threads. Every simulated row creates its own wave,
+ * marks a few objects and cleans the wave up afterwards, like
+ * AbstractRDKitCellFactory does for every row.
+ * 
+ * @see BenchmarkHarness
+ * 
+ * @author Manuel Schwarze
+ */
+public class RDKitCleanupTrackerBenchmark {
+
+	//
+	// Constants
+	//
+
+	/** Number of rows processed per thread in each round. */
+	private static final int ROWS_PER_THREAD = 100000;
+
+	/** Number of native objects marked per row. */
+	private static final int OBJECTS_PER_ROW = 6;
+
+	/** Counter of deleted objects. */
+	private static final AtomicLong g_lDeleted = new AtomicLong();
+
+	/** Source of unique wave ids. */
+	private static final AtomicLong g_lNextWave = new AtomicLong(1);
+
+	//
+	// Tests
+	//
+
+	/**
+	 * Measures mark and cleanup throughput for increasing thread counts.
+	 * 
+	 * @throws Exception Thrown, if the benchmark failed.
+	 */
+	@Test
+	public void benchmarkMarkAndCleanupScaling() throws Exception {
+		BenchmarkHarness.assumeBenchmarksEnabled();
+
+		for (final int iThreads : BenchmarkHarness.getThreadCounts()) {
+			final RDKitCleanupTracker tracker = new RDKitCleanupTracker();
+
+			BenchmarkHarness.measure("RDKitCleanupTracker mark+cleanup per row (" + iThreads + " threads)",
+					(long)iThreads * ROWS_PER_THREAD, BenchmarkHarness.concurrently(iThreads,
+							new BenchmarkHarness.ThreadOperation() {
+						@Override
+						public void run(final int iThread) {
+							for (int iRow = 0; iRow < ROWS_PER_THREAD; iRow++) {
+								final long lWave = g_lNextWave.getAndIncrement();
+								for (int i = 0; i < OBJECTS_PER_ROW; i++) {
+									tracker.markForCleanup(new NativeObject(), lWave, false);
+								}
+								tracker.cleanupMarkedObjects(lWave);
+							}
+						}
+					}));
+
+			assertTrue("All waves should have been cleaned up.", tracker.isEmpty());
+		}
+	}
+
+	/**
+	 * Checks that all objects marked during the benchmark get deleted exactly once.
+	 * This test always runs, as it is cheap.
+	 */
+	@Test
+	public void testAllMarkedObjectsGetDeleted() {
+		final RDKitCleanupTracker tracker = new RDKitCleanupTracker();
+		final long lDeletedBefore = g_lDeleted.get();
+		final NativeObject obj = new NativeObject();
+
+		tracker.markForCleanup(obj, 1, false);
+		tracker.markForCleanup(obj, 1, false); // Duplicates must be ignored
+		tracker.markForCleanup(new NativeObject(), 2, false);
+		tracker.cleanupMarkedObjects(1);
+		assertEquals(lDeletedBefore + 1, g_lDeleted.get());
+
+		tracker.cleanupMarkedObjects();
+		assertEquals(lDeletedBefore + 2, g_lDeleted.get());
+		assertTrue(tracker.isEmpty());
+	}
+
+	//
+	// Inner Classes
+	//
+
+	/**
+	 * Stand-in for a SWIG generated RDKit class with a public delete() method.
+	 */
+	public static final class NativeObject {
+
+		/**
+		 * Counts the deletion.
+		 */
+		public void delete() {
+			g_lDeleted.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/* 
+ * This source code, its documentation and all related files
+ * are protected by copyright law. All rights reserved.
+ *
+ * (C)Copyright 2011 by Novartis Pharma AG 
+ * Novartis Campus, CH-4002 Basel, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ */
+package org.rdkit.knime.nodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.vector.bitvector.BitVectorValue;
+import org.knime.core.data.vector.bytevector.ByteVectorValue;
+import org.rdkit.knime.types.RDKitCountBasedFingerprintDeserializer;
+import org.rdkit.knime.types.RDKitFingerprintDeserializer;
+
+/**
+ * Tests the deserializers of fingerprints that are transferred from Python. The byte vectors
+ * are the ones the Python serializers RDKitFingerprintSerializer.py and
+ * RDKitSparseIntVectSerialization.py produce for the tested fingerprints.
+ * 
+ * @author Manuel Schwarze
+ */
+public class RDKitFingerprintDeserializerTest {
+
+	//
+	// Tests
+	//
+
+	/**
+	 * Checks that a fingerprint without bits in packed format is read.
+	 * 
+	 * @throws Exception Thrown, if the test failed.
+	 */
+	@Test
+	public void testPackedEmptyFingerprint() throws Exception {
+		final BitVectorValue bv = readBitVector(new byte[] { 1, 0, 0, 0, 0 });
+		assertEquals(0, bv.length());
+		assertEquals(0, bv.cardinality());
+	}
+
+	/**
+	 * Checks that a fingerprint spanning two 64-bit words in packed format is read.
+	 * 
+	 * @throws Exception Thrown, if the test failed.
+	 */
+	@Test
+	public void testPackedFingerprint() throws Exception {
+		final BitVectorValue bv = readBitVector(new byte[] { 1, 70, 0, 0, 0,
+				9, 0, 0, 0, 0, 0, 0, 0,
+				0x21, 0, 0, 0, 0, 0, 0, 0 });
+		assertEquals(70, bv.length());
+		assertSetBits(bv, 0, 3, 64, 69);
+	}
+
+	/**
+	 * Checks that the packed format and the former BitString format deliver the same bits.
+	 * 
+	 * @throws Exception Thrown, if the test failed.
+	 */
+	@Test
+	public void testPackedAndBitStringFormatsMatch() throws Exception {
+		final BitVectorValue bvPacked = readBitVector(new byte[] { 1, 4, 0, 0, 0, 12, 0, 0, 0, 0, 0, 0, 0 });
+		final BitVectorValue bvBitString = readBitVector("1100".getBytes("US-ASCII"));
+		assertEquals(4, bvPacked.length());
+		assertEquals(4, bvBitString.length());
+		assertSetBits(bvPacked, 2, 3);
+		assertSetBits(bvBitString, 2, 3);
+	}
+
+	/**
+	 * Checks that a truncated fingerprint in packed format is rejected.
+	 */
+	@Test
+	public void testPackedFingerprintTruncated() {
+		try {
+			readBitVector(new byte[] { 1, 70, 0, 0, 0, 9, 0, 0, 0 });
+			fail("Truncated fingerprint was accepted.");
+		}
+		catch (final IOException exc) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Checks that a count-based fingerprint in varint format is read.
+	 * 
+	 * @throws Exception Thrown, if the test failed.
+	 */
+	@Test
+	public void testVarintFingerprint() throws Exception {
+		final ByteVectorValue bv = readByteVector(new byte[] { 2, (byte)0xAC, 0x02, 2, 5, 6, (byte)0xC3, 0x01, 2 });
+		assertEquals(300, bv.length());
+		assertEquals(3, bv.get(5));
+		assertEquals(1, bv.get(200));
+		assertEquals(0, bv.get(6));
+		assertEquals(4, bv.sumOfAllCounts());
+	}
+
+	/**
+	 * Checks that a count-based fingerprint without elements in varint format is read.
+	 * 
+	 * @throws Exception Thrown, if the test failed.
+	 */
+	@Test
+	public void testVarintEmptyFingerprint() throws Exception {
+		final ByteVectorValue bv = readByteVector(new byte[] { 2, 0, 0 });
+		assertEquals(0, bv.length());
+	}
+
+	/**
+	 * Checks that a truncated count-based fingerprint in varint format is rejected.
+	 */
+	@Test
+	public void testVarintFingerprintTruncated() {
+		try {
+			readByteVector(new byte[] { 2, (byte)0xAC, 0x02, 2, 5, 6, (byte)0xC3 });
+			fail("Truncated fingerprint was accepted.");
+		}
+		catch (final IOException exc) {
+			// Expected
+		}
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Reads a fingerprint with the RDKit fingerprint deserializer.
+	 * 
+	 * @param bytes Serialized fingerprint. Must not be null.
+	 * 
+	 * @return Bit vector.
+	 * 
+	 * @throws IOException Thrown, if the fingerprint could not be read.
+	 */
+	private static BitVectorValue readBitVector(final byte[] bytes) throws IOException {
+		final DataCell cell = new RDKitFingerprintDeserializer().deserialize(bytes, null);
+		assertFalse(cell.isMissing());
+		assertTrue(cell instanceof BitVectorValue);
+		return (BitVectorValue)cell;
+	}
+
+	/**
+	 * Reads a fingerprint with the RDKit count-based fingerprint deserializer.
+	 * 
+	 * @param bytes Serialized fingerprint. Must not be null.
+	 * 
+	 * @return Byte vector.
+	 * 
+	 * @throws IOException Thrown, if the fingerprint could not be read.
+	 */
+	private static ByteVectorValue readByteVector(final byte[] bytes) throws IOException {
+		final DataCell cell = new RDKitCountBasedFingerprintDeserializer().deserialize(bytes, null);
+		assertFalse(cell.isMissing());
+		assertTrue(cell instanceof ByteVectorValue);
+		return (ByteVectorValue)cell;
+	}
+
+	/**
+	 * Checks that exactly the specified bits are set.
+	 * 
+	 * @param bv Bit vector to check. Must not be null.
+	 * @param arrBits Indexes of bits, which must be set.
+	 */
+	private static void assertSetBits(final BitVectorValue bv, final long... arrBits) {
+		assertEquals(arrBits.length, bv.cardinality());
+		for (final long lBit : arrBits) {
+			assertTrue("Bit " + lBit + " not set", bv.get(lBit));
+		}
+	}
+}
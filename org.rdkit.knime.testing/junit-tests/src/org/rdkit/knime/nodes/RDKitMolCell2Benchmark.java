@@ -0,0 +1,159 @@
+/* 
+ * This source code, its documentation and all related files
+ * are protected by copyright law. All rights reserved.
+ *
+ * (C)Copyright 2011 by Novartis Pharma AG 
+ * Novartis Campus, CH-4002 Basel, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ */
+package org.rdkit.knime.nodes;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.Callable;
+
+import org.RDKit.ROMol;
+import org.RDKit.RWMol;
+import org.junit.Test;
+import org.knime.core.data.DataCell;
+import org.rdkit.knime.types.RDKitMolCellFactory;
+import org.rdkit.knime.types.RDKitMolValue;
+
+/**
+ * Benchmark of the conversion between RDKit molecules and their pickles stored in
+ * RDKit molecule cells. Unpickling happens in nearly every node for every row
+ * through {@link RDKitMolValue#readMoleculeValue()}, pickling for every
+ * created molecule cell. The benchmark covers small, drug-like and large molecules,
+ * as the cost of the conversion grows with the size of the pickle.
+ * 
+ * @see BenchmarkHarness
+ * 
+ * @author Manuel Schwarze
+ */
+public class RDKitMolCell2Benchmark {
+
+	//
+	// Constants
+	//
+
+	/** Number of conversions per round. */
+	private static final int CONVERSIONS_PER_ROUND = 2000;
+
+	/** Test molecules of increasing size. */
+	private static final String[][] MOLECULES = new String[][] {
+		{ "small", "c1ccccc1O" },
+		{ "drug-like", "CC(=O)Nc1ccc(cc1)OCCN1CCN(CC1)c1ncnc2ccc(cc12)C(=O)N[C@@H](Cc1ccccc1)C(=O)O" },
+		{ "large", "CC[C@H](C)[C@H](NC(=O)[C@H](CCC(N)=O)NC(=O)[C@@H](NC(=O)[C@H](Cc1ccc(O)cc1)NC(=O)"
+				+ "[C@H](CC(C)C)NC(=O)[C@H](CCCNC(N)=N)NC(=O)[C@H](Cc1c[nH]c2ccccc12)NC(=O)[C@H](CO)"
+				+ "NC(=O)[C@H](Cc1ccccc1)NC(=O)[C@@H](N)CCSC)C(C)C)C(=O)N[C@@H](CC(=O)O)C(=O)N[C@@H]"
+				+ "(Cc1cnc[nH]1)C(=O)N[C@@H](CCCCN)C(=O)O" },
+	};
+
+	//
+	// Tests
+	//
+
+	/**
+	 * Measures unpickling of molecules from cells.
+	 * 
+	 * @throws Exception Thrown, if the benchmark failed.
+	 */
+	@Test
+	public void benchmarkReadMoleculeValue() throws Exception {
+		BenchmarkHarness.assumeBenchmarksEnabled();
+
+		for (final String[] arrMolecule : MOLECULES) {
+			final RDKitMolValue cell = createCell(arrMolecule[1]);
+
+			BenchmarkHarness.measure("RDKitMolCell2.readMoleculeValue " + arrMolecule[0],
+					CONVERSIONS_PER_ROUND, new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int i = 0; i < CONVERSIONS_PER_ROUND; i++) {
+						cell.readMoleculeValue().delete();
+					}
+					return null;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Measures pickling of molecules into new cells.
+	 * 
+	 * @throws Exception Thrown, if the benchmark failed.
+	 */
+	@Test
+	public void benchmarkCreateCell() throws Exception {
+		BenchmarkHarness.assumeBenchmarksEnabled();
+
+		for (final String[] arrMolecule : MOLECULES) {
+			final ROMol mol = RWMol.MolFromSmiles(arrMolecule[1]);
+
+			try {
+				BenchmarkHarness.measure("RDKitMolCellFactory.createRDKitMolCell " + arrMolecule[0],
+						CONVERSIONS_PER_ROUND, new Callable<Void>() {
+					@Override
+					public Void call() {
+						for (int i = 0; i < CONVERSIONS_PER_ROUND; i++) {
+							RDKitMolCellFactory.createRDKitMolCell(mol, arrMolecule[1]);
+						}
+						return null;
+					}
+				});
+			}
+			finally {
+				mol.delete();
+			}
+		}
+	}
+
+	/**
+	 * Checks that a molecule survives pickling and unpickling. This test always runs,
+	 * as it is cheap.
+	 */
+	@Test
+	public void testRoundTrip() {
+		for (final String[] arrMolecule : MOLECULES) {
+			final ROMol mol = RWMol.MolFromSmiles(arrMolecule[1]);
+			final ROMol molRead = createCell(arrMolecule[1]).readMoleculeValue();
+
+			try {
+				assertEquals(arrMolecule[0], mol.getNumAtoms(), molRead.getNumAtoms());
+				assertEquals(arrMolecule[0], RDKitMolCellFactory.createRDKitMolCell(mol).toString(),
+						RDKitMolCellFactory.createRDKitMolCell(molRead).toString());
+			}
+			finally {
+				mol.delete();
+				molRead.delete();
+			}
+		}
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Creates a molecule cell from the passed in SMILES.
+	 * 
+	 * @param strSmiles SMILES. Must not be null.
+	 * 
+	 * @return RDKit molecule cell.
+	 */
+	private RDKitMolValue createCell(final String strSmiles) {
+		final ROMol mol = RWMol.MolFromSmiles(strSmiles);
+		try {
+			final DataCell cell = RDKitMolCellFactory.createRDKitMolCell(mol);
+			return (RDKitMolValue)cell;
+		}
+		finally {
+			mol.delete();
+		}
+	}
+}
@@ -0,0 +1,292 @@
+/* 
+ * This source code, its documentation and all related files
+ * are protected by copyright law. All rights reserved.
+ *
+ * (C)Copyright 2011 by Novartis Pharma AG 
+ * Novartis Campus, CH-4002 Basel, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ */
+package org.rdkit.knime.nodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.RDKit.Int_Vect;
+import org.RDKit.ROMol;
+import org.RDKit.RWMol;
+import org.junit.Test;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataCellDataInput;
+import org.knime.core.data.DataCellDataOutput;
+import org.rdkit.knime.types.RDKitMolCell2;
+import org.rdkit.knime.types.RDKitMolCellFactory;
+
+/**
+ * Tests the serializer of RDKit molecule cells. Cells are written in the versioned
+ * format and read back, and cells written in the legacy format by older versions
+ * of the RDKit Nodes must still be readable.
+ * 
+ * @author Manuel Schwarze
+ */
+@SuppressWarnings("deprecation")
+public class RDKitMolCell2SerializerTest {
+
+	//
+	// Constants
+	//
+
+	/** Marker of the legacy format with SMILES. */
+	private static final int FORMAT_LEGACY_WITH_SMILES = -1;
+
+	/** Marker of the versioned format. */
+	private static final int FORMAT_VERSIONED = -2;
+
+	/** Test molecules. */
+	private static final String[] SMILES = new String[] {
+		"c1ccccc1O",
+		"CC(=O)Nc1ccc(cc1)OCCN1CCN(CC1)c1ncnc2ccc(cc12)C(=O)N[C@@H](Cc1ccccc1)C(=O)O",
+		"[Na+].[Cl-]",
+	};
+
+	//
+	// Tests
+	//
+
+	/**
+	 * Checks that cells survive writing and reading in the versioned format, and that
+	 * canonical SMILES, which were not calculated yet, do not get calculated for writing.
+	 * 
+	 * @throws Exception Thrown, if the test failed.
+	 */
+	@Test
+	public void testVersionedFormatRoundTrip() throws Exception {
+		for (final String strSmiles : SMILES) {
+			final ROMol mol = RWMol.MolFromSmiles(strSmiles);
+
+			try {
+				final RDKitMolCell2 cell = (RDKitMolCell2)RDKitMolCellFactory.createRDKitMolCell(mol);
+				final byte[] arrSerialized = serialize(cell);
+				assertEquals(strSmiles, FORMAT_VERSIONED, new DataInputStream(
+						new ByteArrayInputStream(arrSerialized)).readInt());
+
+				final RDKitMolCell2 cellRead = deserialize(arrSerialized);
+				assertEquals(strSmiles, cell, cellRead);
+				assertEquals(strSmiles, cell.hashCode(), cellRead.hashCode());
+				assertEquals(strSmiles, cell.getSmilesValue(), cellRead.getSmilesValue());
+				assertTrue(strSmiles, cellRead.isSmilesCanonical());
+				assertNumAtoms(strSmiles, mol, cellRead);
+			}
+			finally {
+				mol.delete();
+			}
+		}
+	}
+
+	/**
+	 * Checks that cells written in the legacy format by older versions of the RDKit Nodes
+	 * can still be read.
+	 * 
+	 * @throws Exception Thrown, if the test failed.
+	 */
+	@Test
+	public void testLegacyFormatIsRead() throws Exception {
+		for (final String strSmiles : SMILES) {
+			final ROMol mol = RWMol.MolFromSmiles(strSmiles);
+
+			try {
+				final byte[] arrPickle = toByteArray(mol);
+				final ByteArrayOutputStream out = new ByteArrayOutputStream();
+				final DataOutputStream output = new DataOutputStream(out);
+				output.writeInt(FORMAT_LEGACY_WITH_SMILES);
+				output.writeUTF(strSmiles);
+				output.writeInt(arrPickle.length);
+				output.write(arrPickle);
+				output.writeBoolean(false);
+				output.flush();
+
+				final RDKitMolCell2 cellRead = deserialize(out.toByteArray());
+				assertEquals(strSmiles, strSmiles, cellRead.getSmilesValue());
+				assertFalse(strSmiles, cellRead.isSmilesCanonical());
+				assertNumAtoms(strSmiles, mol, cellRead);
+				assertEquals(strSmiles, RDKitMolCellFactory.createRDKitMolCell(mol), cellRead);
+
+				// Writing it again uses the versioned format
+				final RDKitMolCell2 cellReread = deserialize(serialize(cellRead));
+				assertEquals(strSmiles, strSmiles, cellReread.getSmilesValue());
+				assertFalse(strSmiles, cellReread.isSmilesCanonical());
+				assertEquals(strSmiles, cellRead, cellReread);
+			}
+			finally {
+				mol.delete();
+			}
+		}
+	}
+
+	/**
+	 * Checks that a molecule with a SMILES longer than 64 KB, which cannot be written
+	 * with {@link DataOutputStream#writeUTF(String)}, survives writing and reading.
+	 * 
+	 * @throws Exception Thrown, if the test failed.
+	 */
+	@Test
+	public void testSmilesLongerThan64KB() throws Exception {
+		final StringBuilder sb = new StringBuilder();
+		while (sb.length() <= 0xFFFF) {
+			sb.append(sb.length() == 0 ? "" : ".").append("OCC(=O)N");
+		}
+		final String strSmiles = sb.toString();
+		final ROMol mol = RWMol.MolFromSmiles(strSmiles);
+
+		try {
+			final RDKitMolCell2 cell = (RDKitMolCell2)RDKitMolCellFactory.createRDKitMolCell(mol, strSmiles);
+			final RDKitMolCell2 cellRead = deserialize(serialize(cell));
+			assertEquals(strSmiles, cellRead.getSmilesValue());
+			assertFalse(cellRead.isSmilesCanonical());
+			assertEquals(cell, cellRead);
+			assertNumAtoms("Long SMILES", mol, cellRead);
+		}
+		finally {
+			mol.delete();
+		}
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Writes the passed in cell with the RDKit molecule cell serializer.
+	 * 
+	 * @param cell Cell to write. Must not be null.
+	 * 
+	 * @return Serialized cell.
+	 * 
+	 * @throws IOException Thrown, if the cell could not be written.
+	 */
+	private static byte[] serialize(final RDKitMolCell2 cell) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final CellDataOutput output = new CellDataOutput(out);
+		RDKitMolCell2.getCellSerializer().serialize(cell, output);
+		output.flush();
+		return out.toByteArray();
+	}
+
+	/**
+	 * Reads a cell with the RDKit molecule cell serializer.
+	 * 
+	 * @param arrSerialized Serialized cell. Must not be null.
+	 * 
+	 * @return Cell.
+	 * 
+	 * @throws IOException Thrown, if the cell could not be read.
+	 */
+	private static RDKitMolCell2 deserialize(final byte[] arrSerialized) throws IOException {
+		final CellDataInput input = new CellDataInput(new ByteArrayInputStream(arrSerialized));
+		final RDKitMolCell2 cell = RDKitMolCell2.getCellSerializer().deserialize(input);
+		assertEquals("Unread bytes of serialized cell", 0, input.available());
+		return cell;
+	}
+
+	/**
+	 * Pickles the passed in molecule the same way as the RDKit molecule cell does.
+	 * 
+	 * @param mol Molecule. Must not be null.
+	 * 
+	 * @return Binary representation of the molecule.
+	 */
+	private static byte[] toByteArray(final ROMol mol) {
+		final Int_Vect iv = mol.ToBinary();
+		try {
+			final byte[] bytes = new byte[(int)iv.size()];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = (byte)iv.get(i);
+			}
+			return bytes;
+		}
+		finally {
+			iv.delete();
+		}
+	}
+
+	/**
+	 * Checks that the molecule of a cell has as many atoms as the expected molecule.
+	 * 
+	 * @param strMessage Message for failures.
+	 * @param molExpected Expected molecule. Must not be null.
+	 * @param cell Cell to check. Must not be null.
+	 */
+	private static void assertNumAtoms(final String strMessage, final ROMol molExpected,
+			final RDKitMolCell2 cell) {
+		final ROMol mol = cell.readMoleculeValue();
+		try {
+			assertEquals(strMessage, molExpected.getNumAtoms(), mol.getNumAtoms());
+		}
+		finally {
+			mol.delete();
+		}
+	}
+
+	//
+	// Inner Classes
+	//
+
+	/**
+	 * Data output for a single cell, which does not support nested cells.
+	 */
+	private static class CellDataOutput extends DataOutputStream implements DataCellDataOutput {
+
+		/**
+		 * Creates a new cell data output.
+		 * 
+		 * @param out Stream to write to.
+		 */
+		private CellDataOutput(final OutputStream out) {
+			super(out);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void writeDataCell(final DataCell cell) throws IOException {
+			throw new UnsupportedOperationException("Nested cells are not supported.");
+		}
+	}
+
+	/**
+	 * Data input for a single cell, which does not support nested cells.
+	 */
+	private static class CellDataInput extends DataInputStream implements DataCellDataInput {
+
+		/**
+		 * Creates a new cell data input.
+		 * 
+		 * @param in Stream to read from.
+		 */
+		private CellDataInput(final InputStream in) {
+			super(in);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public DataCell readDataCell() throws IOException {
+			throw new UnsupportedOperationException("Nested cells are not supported.");
+		}
+	}
+}
@@ -0,0 +1,222 @@
+/* 
+ * This source code, its documentation and all related files
+ * are protected by copyright law. All rights reserved.
+ *
+ * (C)Copyright 2011 by Novartis Pharma AG 
+ * Novartis Campus, CH-4002 Basel, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ */
+package org.rdkit.knime.nodes.rdkfingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.RDKit.RDKFuncs;
+import org.RDKit.ROMol;
+import org.RDKit.RWMol;
+import org.junit.Test;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.RowKey;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.vector.bitvector.DenseBitVector;
+import org.knime.core.data.vector.bitvector.DenseBitVectorCellFactory;
+import org.rdkit.knime.nodes.AbstractRDKitCellFactory;
+import org.rdkit.knime.properties.FingerprintSettingsHeaderProperty;
+import org.rdkit.knime.types.RDKitMolCellFactory;
+import org.rdkit.knime.util.InputDataInfo;
+
+/**
+ * Checks that the RDKit Multi Fingerprint node delivers for every fingerprint type
+ * the same fingerprints as the single-type RDKit Fingerprint node with the same settings.
+ * The multi node unpickles a molecule only once per row and calculates all fingerprint
+ * types from the same molecule object, which must not change the results.
+ * 
+ * @author Manuel Schwarze
+ */
+public class RDKitMultiFingerprintNodeModelTest {
+
+	//
+	// Constants
+	//
+
+	/** Test molecules, including stereochemistry, charges and a salt. */
+	private static final String[] SMILES = new String[] {
+		"c1ccccc1",
+		"CC(=O)Oc1ccccc1C(=O)O",
+		"CC(=O)Nc1ccc(cc1)OCCN1CCN(CC1)c1ncnc2ccc(cc12)C(=O)N[C@@H](Cc1ccccc1)C(=O)O",
+		"C[C@H](N)C(=O)O",
+		"C/C=C/C(=O)[O-].[Na+]",
+		"OC[C@H]1OC(O)[C@H](O)[C@@H](O)[C@@H]1O"
+	};
+
+	/** Name of the molecule column of the test table. */
+	private static final String INPUT_COLUMN = "Molecule";
+
+	//
+	// Tests
+	//
+
+	/**
+	 * Runs the cell factory of the multi fingerprint node with its default settings
+	 * and compares every output cell with the fingerprint that the single-type node
+	 * calculates for the same type and settings from a freshly unpickled molecule.
+	 * 
+	 * @throws Exception Thrown, if the test failed unexpectedly.
+	 */
+	@Test
+	public void testOutputMatchesSingleTypeNode() throws Exception {
+		final DataTableSpec inSpec = new DataTableSpec(
+				new DataColumnSpecCreator(INPUT_COLUMN, RDKitMolCellFactory.TYPE).createSpec());
+		final RDKitMultiFingerprintNodeModel model = new RDKitMultiFingerprintNodeModel();
+
+		try {
+			// Auto guesses the input column and delivers the output columns of the selected types
+			final DataTableSpec outSpec = model.configure(new DataTableSpec[] { inSpec })[0];
+			final FingerprintType[] arrTypes = RDKitMultiFingerprintNodeDialog.createFPTypesModel().getValues();
+			assertEquals(inSpec.getNumColumns() + arrTypes.length, outSpec.getNumColumns());
+
+			final InputDataInfo[] arrInputDataInfos = model.createInputDataInfos(0, inSpec);
+			final AbstractRDKitCellFactory factory = model.createOutputFactories(0, inSpec)[0];
+
+			for (int i = 0; i < arrTypes.length; i++) {
+				// Every column must carry the settings of the single-type node
+				final FingerprintSettingsHeaderProperty property =
+						new FingerprintSettingsHeaderProperty(factory.getColumnSpecs()[i]);
+				assertTrue(arrTypes[i].toString(),
+						FingerprintType.isCompatible(createSingleTypeSettings(arrTypes[i]), property));
+			}
+
+			for (int iRow = 0; iRow < SMILES.length; iRow++) {
+				final DataRow row = createRow(iRow);
+				final DataCell[] arrCells = factory.process(arrInputDataInfos, row, iRow + 1);
+				model.cleanupMarkedObjects(iRow + 1);
+
+				assertEquals(arrTypes.length, arrCells.length);
+				for (int i = 0; i < arrTypes.length; i++) {
+					assertEquals(arrTypes[i] + " of " + SMILES[iRow],
+							createSingleTypeCell(arrTypes[i], SMILES[iRow]), arrCells[i]);
+				}
+			}
+		}
+		finally {
+			model.cleanupMarkedObjects();
+		}
+	}
+
+	/**
+	 * Calculates all bit-based fingerprint types one after the other from the same
+	 * molecule object, in both orders, and compares them with fingerprints
+	 * calculated from a fresh molecule per type. This covers also the types that
+	 * are not selected by default in the multi fingerprint node.
+	 */
+	@Test
+	public void testSharedMoleculeMatchesFreshMolecule() {
+		final FingerprintType[] arrTypes = RDKitFingerprintNodeModel.getBitBasedFingerprintTypes();
+
+		for (final String strSmiles : SMILES) {
+			for (final boolean bReverse : new boolean[] { false, true }) {
+				final ROMol mol = RWMol.MolFromSmiles(strSmiles);
+
+				try {
+					for (int j = 0; j < arrTypes.length; j++) {
+						final FingerprintType fpType = arrTypes[bReverse ? arrTypes.length - 1 - j : j];
+						assertEquals(fpType + " of " + strSmiles,
+								createSingleTypeCell(fpType, strSmiles),
+								createCell(fpType.calculateBitBased(mol, createSingleTypeSettings(fpType))));
+					}
+				}
+				finally {
+					mol.delete();
+				}
+			}
+		}
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Creates a row of the test table.
+	 * 
+	 * @param iRow Index of the molecule in {@link #SMILES}.
+	 * 
+	 * @return Row with a single RDKit molecule cell.
+	 */
+	private DataRow createRow(final int iRow) {
+		final ROMol mol = RWMol.MolFromSmiles(SMILES[iRow]);
+		try {
+			return new DefaultRow(new RowKey("Row" + iRow), RDKitMolCellFactory.createRDKitMolCell(mol));
+		}
+		finally {
+			mol.delete();
+		}
+	}
+
+	/**
+	 * Creates the fingerprint settings that the single-type fingerprint node uses
+	 * with its default settings and the specified fingerprint type.
+	 * 
+	 * @param fpType Fingerprint type. Must not be null.
+	 * 
+	 * @return Fingerprint settings.
+	 */
+	private FingerprintSettings createSingleTypeSettings(final FingerprintType fpType) {
+		return fpType.getSpecification(
+				AbstractRDKitFingerprintNodeDialog.createTorsionPathLengthModel().getIntValue(),
+				AbstractRDKitFingerprintNodeDialog.createMinPathModel().getIntValue(),
+				AbstractRDKitFingerprintNodeDialog.createMaxPathModel().getIntValue(),
+				AbstractRDKitFingerprintNodeDialog.createAtomPairMinPathModel().getIntValue(),
+				AbstractRDKitFingerprintNodeDialog.createAtomPairMaxPathModel().getIntValue(),
+				AbstractRDKitFingerprintNodeDialog.createNumBitsModel().getIntValue(),
+				AbstractRDKitFingerprintNodeDialog.createRadiusModel().getIntValue(),
+				AbstractRDKitFingerprintNodeDialog.createLayerFlagsModel().getIntValue(),
+				AbstractRDKitFingerprintNodeDialog.createUseChiralityModel().getBooleanValue(),
+				AbstractRDKitFingerprintNodeDialog.createRootedOptionModel().getBooleanValue(),
+				null, false);
+	}
+
+	/**
+	 * Calculates the fingerprint cell like the single-type fingerprint node does,
+	 * from a freshly parsed molecule.
+	 * 
+	 * @param fpType Fingerprint type. Must not be null.
+	 * @param strSmiles SMILES of the molecule. Must not be null.
+	 * 
+	 * @return Fingerprint cell or missing cell.
+	 */
+	private DataCell createSingleTypeCell(final FingerprintType fpType, final String strSmiles) {
+		final ROMol mol = RWMol.MolFromSmiles(strSmiles);
+
+		try {
+			if (AbstractRDKitFingerprintNodeDialog.createUseChiralityModel().getBooleanValue()) {
+				RDKFuncs.assignStereochemistry(mol);
+			}
+			return createCell(fpType.calculateBitBased(mol, createSingleTypeSettings(fpType)));
+		}
+		finally {
+			mol.delete();
+		}
+	}
+
+	/**
+	 * Creates a KNIME cell for the specified fingerprint.
+	 * 
+	 * @param bitVector Fingerprint. Can be null.
+	 * 
+	 * @return Bit vector cell or missing cell, if null was passed in.
+	 */
+	private DataCell createCell(final DenseBitVector bitVector) {
+		return bitVector == null ? DataType.getMissingCell() :
+			new DenseBitVectorCellFactory(bitVector).createDataCell();
+	}
+}
@@ -0,0 +1,224 @@
+/* 
+ * This source code, its documentation and all related files
+ * are protected by copyright law. All rights reserved.
+ *
+ * (C)Copyright 2011 by Novartis Pharma AG 
+ * Novartis Campus, CH-4002 Basel, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ */
+package org.rdkit.knime.nodes.similaritysearch;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the similarity search of the in-memory {@link FingerprintArena}, which sorts
+ * fingerprints by popcount and skips popcounts that cannot reach the threshold or
+ * the k-th best similarity. The results must be identical to comparing the query
+ * with every fingerprint, including the order of hits with equal similarity.
+ * 
+ * @author Manuel Schwarze
+ */
+public class FingerprintArenaTest {
+
+	//
+	// Constants
+	//
+
+	/** Fingerprint lengths to test, including lengths that are no multiple of 64. */
+	private static final int[] NUM_BITS = new int[] { 64, 167, 1024 };
+
+	/** Number of fingerprints in each arena. */
+	private static final int FINGERPRINT_COUNT = 2000;
+
+	/** Number of queries per fingerprint length and metric. */
+	private static final int QUERY_COUNT = 10;
+
+	/** Thresholds to test. */
+	private static final double[] THRESHOLDS = new double[] { 0.0d, 0.3d, 0.6d, 1.0d };
+
+	/** Top k values to test. 0 means no limit. */
+	private static final int[] TOP_K = new int[] { 0, 1, 5, 37, FINGERPRINT_COUNT + 1 };
+
+	//
+	// Tests
+	//
+
+	/**
+	 * Compares the results of searches with all metrics, thresholds and top k values
+	 * with the results of a brute force search over random fingerprints.
+	 */
+	@Test
+	public void testSearchMatchesBruteForce() {
+		final Random random = new Random(4711);
+
+		for (final int iNumBits : NUM_BITS) {
+			final List<long[]> listFingerprints = createFingerprints(random, iNumBits, FINGERPRINT_COUNT);
+			final FingerprintArena.Builder builder = new FingerprintArena.Builder(iNumBits);
+			for (final long[] arrWords : listFingerprints) {
+				builder.add(arrWords);
+			}
+			final FingerprintArena arena = builder.build();
+			assertEquals(iNumBits, arena.getNumBits());
+			assertEquals(FINGERPRINT_COUNT, arena.size());
+
+			for (final SimilarityMetric metric : SimilarityMetric.values()) {
+				for (int q = 0; q < QUERY_COUNT; q++) {
+					// Use modified fingerprints of the arena, so that there are many good hits
+					final long[] arrQuery = listFingerprints.get(random.nextInt(FINGERPRINT_COUNT)).clone();
+					arrQuery[0] ^= random.nextLong() & 0xFF;
+
+					for (final double dThreshold : THRESHOLDS) {
+						for (final int iTopK : TOP_K) {
+							assertSearch(arena, listFingerprints, arrQuery, metric, dThreshold, iTopK);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks searches with an empty query, which matches only empty fingerprints,
+	 * and searches in an empty arena.
+	 */
+	@Test
+	public void testEmptyFingerprintsAndArena() {
+		final Random random = new Random(815);
+		final List<long[]> listFingerprints = createFingerprints(random, 167, 100);
+		listFingerprints.add(new long[3]);
+		listFingerprints.add(new long[3]);
+		final FingerprintArena.Builder builder = new FingerprintArena.Builder(167);
+		for (final long[] arrWords : listFingerprints) {
+			builder.add(arrWords);
+		}
+		final FingerprintArena arena = builder.build();
+
+		for (final SimilarityMetric metric : SimilarityMetric.values()) {
+			final AbstractFingerprintArena.Hits hits = arena.search(new long[3], metric, 1.0d, 0);
+			assertEquals(metric.name(), 2, hits.size());
+			assertEquals(metric.name(), 100, hits.getIndex(0));
+			assertEquals(metric.name(), 101, hits.getIndex(1));
+			assertEquals(metric.name(), 1.0d, hits.getSimilarity(0), 0.0d);
+			assertSearch(arena, listFingerprints, new long[3], metric, 0.0d, 0);
+
+			final AbstractFingerprintArena.Hits hitsNone = new FingerprintArena.Builder(167).build().search(
+					listFingerprints.get(0), metric, 0.0d, 5);
+			assertEquals(metric.name(), 0, hitsNone.size());
+		}
+	}
+
+	//
+	// Static Package Methods
+	//
+
+	/**
+	 * Creates random fingerprints with very different numbers of on bits. None of them is empty.
+	 * 
+	 * @param random Random number generator. Must not be null.
+	 * @param iNumBits Number of bits of each fingerprint.
+	 * @param iCount Number of fingerprints.
+	 * 
+	 * @return List of fingerprints as 64-bit words.
+	 */
+	static List<long[]> createFingerprints(final Random random, final int iNumBits, final int iCount) {
+		final List<long[]> listFingerprints = new ArrayList<long[]>(iCount);
+		final int iWords = (iNumBits + 63) >>> 6;
+
+		for (int i = 0; i < iCount; i++) {
+			final long[] arrWords = new long[iWords];
+			final int iBitsToSet = 1 + random.nextInt(Math.max(1, iNumBits / 3));
+			for (int j = 0; j < iBitsToSet; j++) {
+				final int iBit = random.nextInt(iNumBits);
+				arrWords[iBit >>> 6] |= 1L << iBit;
+			}
+			listFingerprints.add(arrWords);
+		}
+
+		return listFingerprints;
+	}
+
+	/**
+	 * Searches the specified arena and compares the result with a brute force search.
+	 * 
+	 * @param arena Arena or index to be searched. Must not be null.
+	 * @param listFingerprints All fingerprints of the arena in their original order. Must not be null.
+	 * @param arrQuery Query fingerprint. Must not be null.
+	 * @param metric Similarity metric. Must not be null.
+	 * @param dThreshold Minimal similarity.
+	 * @param iTopK Maximal number of hits or 0 for no limit.
+	 */
+	static void assertSearch(final AbstractFingerprintArena arena, final List<long[]> listFingerprints,
+			final long[] arrQuery, final SimilarityMetric metric, final double dThreshold, final int iTopK) {
+		final String strContext = metric + ", threshold " + dThreshold + ", top " + iTopK;
+		final int iQueryOnBits = countOnBits(arrQuery);
+		final int iCount = listFingerprints.size();
+
+		// Brute force: Compare with all fingerprints and sort by similarity and index
+		final double[] arrSimilarities = new double[iCount];
+		final Integer[] arrOrder = new Integer[iCount];
+		for (int i = 0; i < iCount; i++) {
+			final long[] arrWords = listFingerprints.get(i);
+			int iCommon = 0;
+			for (int j = 0; j < arrWords.length; j++) {
+				iCommon += Long.bitCount(arrWords[j] & arrQuery[j]);
+			}
+			arrSimilarities[i] = metric.calculate(iCommon, iQueryOnBits, countOnBits(arrWords));
+			arrOrder[i] = i;
+		}
+		Arrays.sort(arrOrder, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer i1, final Integer i2) {
+				final int iResult = Double.compare(arrSimilarities[i2], arrSimilarities[i1]);
+				return (iResult != 0 ? iResult : Integer.compare(i1, i2));
+			}
+		});
+
+		final List<Integer> listExpected = new ArrayList<Integer>();
+		for (final Integer index : arrOrder) {
+			if (arrSimilarities[index] < dThreshold - 1.0E-10d || (iTopK > 0 && listExpected.size() == iTopK)) {
+				break;
+			}
+			listExpected.add(index);
+		}
+
+		final AbstractFingerprintArena.Hits hits = arena.search(arrQuery, metric, dThreshold, iTopK);
+		assertEquals(strContext, listExpected.size(), hits.size());
+		for (int i = 0; i < hits.size(); i++) {
+			final int iExpected = listExpected.get(i);
+			assertEquals(strContext + ", hit " + i, iExpected, hits.getIndex(i));
+			assertEquals(strContext + ", hit " + i, arrSimilarities[iExpected], hits.getSimilarity(i), 0.0d);
+		}
+	}
+
+	//
+	// Static Private Methods
+	//
+
+	/**
+	 * Counts the on bits of a fingerprint.
+	 * 
+	 * @param arrWords Fingerprint as 64-bit words. Must not be null.
+	 * 
+	 * @return Number of on bits.
+	 */
+	private static int countOnBits(final long[] arrWords) {
+		int iOnBits = 0;
+		for (final long lWord : arrWords) {
+			iOnBits += Long.bitCount(lWord);
+		}
+		return iOnBits;
+	}
+}
@@ -0,0 +1,273 @@
+/* 
+ * This source code, its documentation and all related files
+ * are protected by copyright law. All rights reserved.
+ *
+ * (C)Copyright 2011 by Novartis Pharma AG 
+ * Novartis Campus, CH-4002 Basel, Switzerland
+ *
+ * You may not modify, publish, transmit, transfer or sell, reproduce,
+ * create derivative works from, distribute, perform, display, or in
+ * any way exploit any of the content, in whole or in part, except as
+ * otherwise expressly permitted in writing by the copyright owner or
+ * as specified in the license file distributed with this product.
+ */
+package org.rdkit.knime.nodes.similaritysearch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks writing and reading {@link FingerprintIndex} files with the {@link FingerprintIndexWriter}
+ * and that searching an index delivers the same results as searching a {@link FingerprintArena}
+ * with the same fingerprints.
+ * 
+ * @author Manuel Schwarze
+ */
+public class FingerprintIndexTest {
+
+	//
+	// Constants
+	//
+
+	/** Number of bits of the test fingerprints. */
+	private static final int NUM_BITS = 167;
+
+	/** Number of fingerprints in the test index. */
+	private static final int FINGERPRINT_COUNT = 3000;
+
+	/** Number of queries per metric. */
+	private static final int QUERY_COUNT = 25;
+
+	//
+	// Members
+	//
+
+	/** The fingerprints of the test index in their original order. */
+	private List<long[]> m_listFingerprints;
+
+	/** The IDs of the test index in their original order. */
+	private List<String> m_listIds;
+
+	/** The test index file. */
+	private File m_file;
+
+	//
+	// Setup
+	//
+
+	/**
+	 * Creates random fingerprints and IDs and writes them into a temporary index file.
+	 * 
+	 * @throws IOException Thrown, if the file could not be written.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		m_listFingerprints = FingerprintArenaTest.createFingerprints(new Random(42), NUM_BITS, FINGERPRINT_COUNT);
+		m_listIds = new ArrayList<String>(FINGERPRINT_COUNT);
+		for (int i = 0; i < FINGERPRINT_COUNT; i++) {
+			// Empty IDs and multi-byte characters must survive as well
+			m_listIds.add(i % 100 == 0 ? "" : "Mol-\u00e4\u03b1-" + i);
+		}
+
+		m_file = File.createTempFile("rdkit-test-", FingerprintIndex.FILE_EXTENSION);
+		writeIndex(m_file, m_listFingerprints, m_listIds);
+	}
+
+	/**
+	 * Deletes the temporary index file.
+	 */
+	@After
+	public void tearDown() {
+		if (m_file != null) {
+			m_file.delete();
+		}
+	}
+
+	//
+	// Tests
+	//
+
+	/**
+	 * Writes an index and reads back all fingerprints and IDs in their original order.
+	 * 
+	 * @throws IOException Thrown, if the test failed unexpectedly.
+	 */
+	@Test
+	public void testWriteReadRoundTrip() throws IOException {
+		final FingerprintIndex index = FingerprintIndex.open(m_file);
+
+		try {
+			assertEquals(NUM_BITS, index.getNumBits());
+			assertEquals(FINGERPRINT_COUNT, index.size());
+			for (int i = 0; i < FINGERPRINT_COUNT; i++) {
+				assertArrayEquals("Fingerprint " + i, m_listFingerprints.get(i), index.getFingerprint(i));
+				assertEquals("ID " + i, m_listIds.get(i), index.getId(i));
+			}
+		}
+		finally {
+			index.close();
+		}
+	}
+
+	/**
+	 * Compares searches in the memory mapped index with searches in an in-memory
+	 * arena and with a brute force search.
+	 * 
+	 * @throws IOException Thrown, if the test failed unexpectedly.
+	 */
+	@Test
+	public void testSearchMatchesArena() throws IOException {
+		final FingerprintArena.Builder builder = new FingerprintArena.Builder(NUM_BITS);
+		for (final long[] arrWords : m_listFingerprints) {
+			builder.add(arrWords);
+		}
+		final FingerprintArena arena = builder.build();
+		final FingerprintIndex index = FingerprintIndex.open(m_file);
+		final Random random = new Random(7);
+
+		try {
+			for (final SimilarityMetric metric : SimilarityMetric.values()) {
+				for (int q = 0; q < QUERY_COUNT; q++) {
+					final long[] arrQuery = m_listFingerprints.get(random.nextInt(FINGERPRINT_COUNT)).clone();
+					arrQuery[0] ^= random.nextLong() & 0xFF;
+
+					for (final double dThreshold : new double[] { 0.0d, 0.5d, 0.8d }) {
+						for (final int iTopK : new int[] { 0, 1, 10 }) {
+							final AbstractFingerprintArena.Hits hitsArena = arena.search(arrQuery, metric, dThreshold, iTopK);
+							final AbstractFingerprintArena.Hits hitsIndex = index.search(arrQuery, metric, dThreshold, iTopK);
+							final String strContext = metric + ", threshold " + dThreshold + ", top " + iTopK;
+
+							assertEquals(strContext, hitsArena.size(), hitsIndex.size());
+							assertEquals(strContext, hitsArena.getComparisons(), hitsIndex.getComparisons());
+							for (int i = 0; i < hitsArena.size(); i++) {
+								assertEquals(strContext, hitsArena.getIndex(i), hitsIndex.getIndex(i));
+								assertEquals(strContext, hitsArena.getSimilarity(i), hitsIndex.getSimilarity(i), 0.0d);
+							}
+							FingerprintArenaTest.assertSearch(index, m_listFingerprints, arrQuery, metric, dThreshold, iTopK);
+						}
+					}
+				}
+			}
+		}
+		finally {
+			index.close();
+		}
+	}
+
+	/**
+	 * Checks that closing an index releases the file, so that it can be overwritten and
+	 * deleted right away, and that a closed index cannot be used anymore.
+	 * 
+	 * @throws IOException Thrown, if the test failed unexpectedly.
+	 */
+	@Test
+	public void testClose() throws IOException {
+		final FingerprintIndex index = FingerprintIndex.open(m_file);
+		index.close();
+		index.close(); // Has no effect
+
+		try {
+			index.getId(0);
+			fail("A closed index must not be accessible.");
+		}
+		catch (final IllegalStateException exc) {
+			// Expected
+		}
+		try {
+			index.search(m_listFingerprints.get(0), SimilarityMetric.Tanimoto, 0.5d, 0);
+			fail("A closed index must not be searchable.");
+		}
+		catch (final IllegalStateException exc) {
+			// Expected
+		}
+
+		// On Windows this fails as long as the file is mapped
+		final List<long[]> listFingerprints = m_listFingerprints.subList(0, 10);
+		writeIndex(m_file, listFingerprints, m_listIds.subList(0, 10));
+		final FingerprintIndex indexRewritten = FingerprintIndex.open(m_file);
+		try {
+			assertEquals(10, indexRewritten.size());
+			assertArrayEquals(listFingerprints.get(9), indexRewritten.getFingerprint(9));
+		}
+		finally {
+			indexRewritten.close();
+		}
+		assertTrue("Closed index file could not be deleted.", m_file.delete());
+	}
+
+	/**
+	 * Checks that truncated and incompletely written files are rejected.
+	 * 
+	 * @throws IOException Thrown, if the test failed unexpectedly.
+	 */
+	@Test
+	public void testInvalidFiles() throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(m_file, "rw")) {
+			raf.setLength(raf.length() - 1);
+		}
+		assertOpenFails(m_file);
+
+		// A writer that is not finished leaves a file without header
+		try (FingerprintIndexWriter writer = new FingerprintIndexWriter(m_file, NUM_BITS)) {
+			writer.prepare(m_listFingerprints.get(0), m_listIds.get(0));
+			writer.startWriting();
+			writer.write(m_listFingerprints.get(0), m_listIds.get(0));
+		}
+		assertOpenFails(m_file);
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Writes an index file in two passes like the Fingerprint Index Writer node.
+	 * 
+	 * @param file File to be written. Must not be null.
+	 * @param listFingerprints Fingerprints. Must not be null.
+	 * @param listIds IDs of the fingerprints. Must not be null.
+	 * 
+	 * @throws IOException Thrown, if the file could not be written.
+	 */
+	private void writeIndex(final File file, final List<long[]> listFingerprints,
+			final List<String> listIds) throws IOException {
+		try (FingerprintIndexWriter writer = new FingerprintIndexWriter(file, NUM_BITS)) {
+			for (int i = 0; i < listFingerprints.size(); i++) {
+				writer.prepare(listFingerprints.get(i), listIds.get(i));
+			}
+			writer.startWriting();
+			for (int i = 0; i < listFingerprints.size(); i++) {
+				writer.write(listFingerprints.get(i), listIds.get(i));
+			}
+			writer.finish();
+		}
+	}
+
+	/**
+	 * Checks that the specified file cannot be opened as index.
+	 * 
+	 * @param file File. Must not be null.
+	 */
+	private void assertOpenFails(final File file) {
+		try {
+			FingerprintIndex.open(file).close();
+			fail("Invalid index file was opened.");
+		}
+		catch (final IOException exc) {
+			// Expected
+		}
+	}
+}
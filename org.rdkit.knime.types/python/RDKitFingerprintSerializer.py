@@ -1,2 +1,17 @@
+import binascii
+import struct
+
+# Version byte of the packed format, see RDKitFingerprintDeserializer.java
+FORMAT_PACKED_WORDS = 1
+
 def serialize(object_value):
-	return object_value.ToBitString()
+	# The bit string read as binary number has the bit order of KNIME fingerprints,
+	# its little endian bytes are the packed 64-bit words
+	length = object_value.GetNumBits()
+	words = (length + 63) // 64
+	if length == 0:
+		packed = b''
+	else:
+		value = int(object_value.ToBitString(), 2)
+		packed = binascii.unhexlify('%0*x' % (words * 16, value))[::-1]
+	return struct.pack('<Bi', FORMAT_PACKED_WORDS, length) + packed
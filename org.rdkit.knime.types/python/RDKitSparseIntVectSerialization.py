@@ -0,0 +1,22 @@
+# Version byte of the varint format, see RDKitCountBasedFingerprintDeserializer.java
+FORMAT_VARINT_PAIRS = 2
+
+def write_varint(value, out):
+	while value > 0x7f:
+		out.append((value & 0x7f) | 0x80)
+		value >>= 7
+	out.append(value)
+
+def serialize(object_value):
+	# Length, number of pairs and for each pair the index delta and the zigzag encoded count
+	elements = object_value.GetNonzeroElements()
+	out = bytearray([FORMAT_VARINT_PAIRS])
+	write_varint(object_value.GetLength(), out)
+	write_varint(len(elements), out)
+	previous = 0
+	for index in sorted(elements):
+		count = elements[index]
+		write_varint(index - previous, out)
+		write_varint(count << 1 if count >= 0 else ((-count) << 1) - 1, out)
+		previous = index
+	return bytes(out)
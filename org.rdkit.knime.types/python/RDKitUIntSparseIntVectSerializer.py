@@ -1,2 +1,9 @@
-def serialize(object_value):
-	return str({"length":object_value.GetLength(),"bits":object_value.GetNonzeroElements()})
+import os
+import sys
+
+# The varint format is shared by all sparse int vector types
+_directory = os.path.dirname(os.path.abspath(__file__))
+if _directory not in sys.path:
+	sys.path.append(_directory)
+
+from RDKitSparseIntVectSerialization import serialize
@@ -63,6 +63,7 @@ import org.knime.core.node.NodeLogger;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Version;
+import org.rdkit.knime.types.AvalonFingerprintWorkerPool;
 
 /**
  * This is the activator for this plugin that is instantiated by the Eclipse
@@ -186,6 +187,7 @@ public class RDKitTypesPluginActivator extends AbstractUIPlugin {
 	 */
 	@Override
 	public void stop(final BundleContext context) throws Exception {
+		AvalonFingerprintWorkerPool.shutdown();
 		super.stop(context);
 		g_instance = null;
 	}
@@ -493,6 +495,31 @@ public class RDKitTypesPluginActivator extends AbstractUIPlugin {
 		}
 	}
 
+	/**
+	 * Returns the names of the native libraries that are necessary to run the RDKit
+	 * on the current platform in the order they need to be loaded.
+	 * 
+	 * @return Library names (without OS specifics). Empty, if the platform is not supported.
+	 */
+	public static String[] getNativeLibraries() {
+		final String[] arrLibraries = LIBRARIES.get(Platform.getOS() + "."
+				+ Platform.getOSArch());
+		return (arrLibraries == null ? new String[0] : arrLibraries.clone());
+	}
+
+	/**
+	 * Returns all (known) paths where native RDKit libraries are loaded from,
+	 * i.e. the path of the RDKit Binary Plugin for the current platform and the
+	 * Java library path. Used to launch other processes with the RDKit.
+	 * 
+	 * @return Library paths. Empty, if the plug-in is not active.
+	 */
+	public static String[] getNativeLibraryPaths() {
+		final RDKitTypesPluginActivator plugin = getDefault();
+		return (plugin == null ? new String[0] : plugin.getLibraryPaths(
+				Platform.getBundle("org.rdkit.knime.bin." + Platform.getOS() + "." + Platform.getOSArch())));
+	}
+
 	/**
 	 * Returns the shared instance.
 	 *
@@ -0,0 +1,232 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.types;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.RDKit.ExplicitBitVect;
+import org.RDKit.Int_Vect;
+import org.RDKit.RDKFuncs;
+import org.RDKit.ROMol;
+
+/**
+ * Main class of a child process that calculates Avalon fingerprints. The Avalon
+ * fingerprint code is not thread-safe, so inside of KNIME all calculations are
+ * serialized by a global lock. Every worker process has its own copy of the native
+ * libraries and calculates one fingerprint at a time, so several worker processes
+ * calculate Avalon fingerprints in parallel without any lock.
+ * This class must not depend on any KNIME or Eclipse classes, because the worker process
+ * only has the RDKit Java wrapper and the native RDKit libraries available.
+ * Requests are read in batches from the standard input and answered on the standard output:
+ * <ul>
+ * 	<li>Request: int count (0 to terminate), then per molecule int number of bits,
+ * 		int number of similarity bits, int pickle length and the RDKit molecule pickle.</li>
+ * 	<li>Response: int {@link #RESPONSE_MAGIC}, int count, then per molecule int length and
+ * 		the pickled fingerprint, or -1 followed by an UTF error message.</li>
+ * </ul>
+ * A whole batch is read before any response is written, so the parent process can write
+ * a batch completely before it starts reading without risking a deadlock of full pipes.
+ *
+ * @author Manuel Schwarze
+ * @see AvalonFingerprintWorkerPool
+ */
+public final class AvalonFingerprintWorker {
+
+	//
+	// Constants
+	//
+
+	/** Marker that starts every response. Used to detect output that does not belong to the protocol. */
+	static final int RESPONSE_MAGIC = 0x52444B41;
+
+	/** Length that marks a failed calculation in a response. */
+	static final int FAILURE = -1;
+
+	/** Exit code if the native libraries could not be loaded. */
+	static final int EXIT_LIBRARY_ERROR = 2;
+
+	/** Exit code if the communication with the parent process failed. */
+	static final int EXIT_IO_ERROR = 3;
+
+	/** Buffer size of the standard input and output streams. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * This constructor serves only the purpose to avoid instantiation of this class.
+	 */
+	private AvalonFingerprintWorker() {
+		// To avoid instantiation of this class.
+	}
+
+	//
+	// Static Public Methods
+	//
+
+	/**
+	 * Loads the passed in native libraries and processes requests until the standard input
+	 * is closed or a batch with count 0 is received.
+	 * 
+	 * @param args Names of the native libraries to load in that order.
+	 */
+	public static void main(final String[] args) {
+		// The standard output belongs exclusively to the protocol
+		final PrintStream out = System.out;
+		System.setOut(System.err);
+
+		try {
+			for (final String strLibName : args) {
+				System.loadLibrary(strLibName);
+			}
+		}
+		catch (final Throwable exc) {
+			System.err.println("Avalon fingerprint worker could not load native RDKit library: " + exc.getMessage());
+			System.exit(EXIT_LIBRARY_ERROR);
+		}
+
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(System.in, BUFFER_SIZE));
+		final DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+
+		try {
+			int iCount;
+			while ((iCount = in.readInt()) > 0) {
+				final int[] arrNumBits = new int[iCount];
+				final int[] arrSimilarityBits = new int[iCount];
+				final byte[][] arrPickles = new byte[iCount][];
+
+				for (int i = 0; i < iCount; i++) {
+					arrNumBits[i] = in.readInt();
+					arrSimilarityBits[i] = in.readInt();
+					arrPickles[i] = new byte[in.readInt()];
+					in.readFully(arrPickles[i]);
+				}
+
+				dataOut.writeInt(RESPONSE_MAGIC);
+				dataOut.writeInt(iCount);
+
+				for (int i = 0; i < iCount; i++) {
+					byte[] arrFingerprint = null;
+					String strError = null;
+
+					try {
+						arrFingerprint = calculate(arrPickles[i], arrNumBits[i], arrSimilarityBits[i]);
+					}
+					catch (final Exception exc) {
+						strError = (exc.getMessage() == null ? exc.getClass().getName() : exc.getMessage());
+					}
+
+					if (arrFingerprint != null) {
+						dataOut.writeInt(arrFingerprint.length);
+						dataOut.write(arrFingerprint);
+					}
+					else {
+						dataOut.writeInt(FAILURE);
+						dataOut.writeUTF(strError == null ? "Unknown error" : strError);
+					}
+				}
+
+				dataOut.flush();
+			}
+		}
+		catch (final EOFException exc) {
+			// The parent process went away - nothing to do anymore
+		}
+		catch (final IOException exc) {
+			System.err.println("Avalon fingerprint worker failed to communicate: " + exc.getMessage());
+			System.exit(EXIT_IO_ERROR);
+		}
+	}
+
+	//
+	// Static Private Methods
+	//
+
+	/**
+	 * Calculates the Avalon fingerprint of a pickled molecule.
+	 * 
+	 * @param arrPickle RDKit molecule pickle. Must not be null.
+	 * @param iNumBits Number of bits of the fingerprint.
+	 * @param iSimilarityBits Similarity bits parameter of the Avalon fingerprint.
+	 * 
+	 * @return Pickled fingerprint as produced by {@link ExplicitBitVect#toByteArray()}.
+	 */
+	private static byte[] calculate(final byte[] arrPickle, final int iNumBits, final int iSimilarityBits) {
+		final Int_Vect iv = new Int_Vect(arrPickle.length);
+		ROMol mol = null;
+		ExplicitBitVect fingerprint = null;
+
+		try {
+			for (int i = 0; i < arrPickle.length; i++) {
+				iv.set(i, arrPickle[i]);
+			}
+			mol = ROMol.MolFromBinary(iv);
+			fingerprint = new ExplicitBitVect(iNumBits);
+			RDKFuncs.getAvalonFP(mol, fingerprint, iNumBits, false, false, iSimilarityBits);
+			return fingerprint.toByteArray();
+		}
+		finally {
+			iv.delete();
+			if (mol != null) {
+				mol.delete();
+			}
+			if (fingerprint != null) {
+				fingerprint.delete();
+			}
+		}
+	}
+}
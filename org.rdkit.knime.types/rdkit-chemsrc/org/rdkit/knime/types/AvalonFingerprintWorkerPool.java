@@ -0,0 +1,814 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.types;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.RDKit.ExplicitBitVect;
+import org.RDKit.ROMol;
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Platform;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.NodeLogger;
+import org.osgi.framework.Bundle;
+import org.rdkit.knime.RDKitTypesPluginActivator;
+
+/**
+ * A pool of child processes that calculate Avalon fingerprints in parallel. Inside of
+ * KNIME all Avalon fingerprint calculations are serialized by a global lock, because the
+ * Avalon code is not thread-safe. Every worker process loads its own copy of the native RDKit
+ * libraries and is used by only one thread at a time, so no lock is necessary. As a side effect
+ * a crash in the native Avalon code only kills a worker process and not KNIME.
+ * Worker processes are started lazily up to the configured number and stay alive until
+ * the number changes or the plug-in gets stopped. Molecules are sent as RDKit pickles and
+ * fingerprints are returned as pickles of {@link ExplicitBitVect} objects, see
+ * {@link AvalonFingerprintWorker} for the protocol. A worker process that does not answer
+ * within {@link #RESPONSE_TIMEOUT} milliseconds or whose caller gets cancelled is killed,
+ * and a new one is launched for the next request.
+ * The pool is disabled by default. If worker processes cannot be launched, the pool disables
+ * itself and callers are expected to fall back to the in-process calculation.
+ *
+ * @author Manuel Schwarze
+ */
+public final class AvalonFingerprintWorkerPool {
+
+	//
+	// Constants
+	//
+
+	/** The logger instance. */
+	private static final NodeLogger LOGGER = NodeLogger
+			.getLogger(AvalonFingerprintWorkerPool.class);
+
+	/** The default number of worker processes. 0 means that fingerprints are calculated in-process. */
+	public static final int DEFAULT_PROCESS_COUNT = 0;
+
+	/** The maximal number of molecules sent to a worker process at once. */
+	public static final int MAX_BATCH_SIZE = 1000;
+
+	/** The maximal heap size of a worker process. Molecules and fingerprints live in native memory. */
+	private static final String WORKER_MAX_HEAP = "-Xmx128m";
+
+	/** Time in milliseconds to wait for a worker process to exit after a failure. */
+	private static final long EXIT_TIMEOUT = 1000;
+
+	/** Time in milliseconds a worker process may take to answer a batch of {@link #MAX_BATCH_SIZE} molecules. */
+	private static final long RESPONSE_TIMEOUT = 60000;
+
+	/** Interval in milliseconds to check a busy worker process for timeout and cancellation. */
+	private static final long WATCHDOG_INTERVAL = 100;
+
+	/** Time in milliseconds after a launch failure before launching worker processes is tried again. */
+	private static final long RETRY_DELAY = 5 * 60 * 1000;
+
+	/** Bundle class path entries that may contain the worker class and the RDKit Java wrapper. */
+	private static final String[] CLASS_PATH_ENTRIES = { "rdkit-chem.jar", "bin", "lib/org.RDKit.jar" };
+
+	//
+	// Globals
+	//
+
+	/** The current pool. Null, if worker processes are disabled or failed to launch. */
+	private static volatile AvalonFingerprintWorkerPool g_instance;
+
+	/** The configured number of worker processes. */
+	private static int g_iProcessCount = DEFAULT_PROCESS_COUNT;
+
+	/**
+	 * Flag to tell that worker processes could not be launched. They are tried again, when the
+	 * number of worker processes changes or when {@link #RETRY_DELAY} elapsed.
+	 */
+	private static boolean g_bFailed = false;
+
+	/** The time of the last launch failure. */
+	private static long g_lFailedTimestamp = 0;
+
+	/** The command to launch a worker process. Determined lazily. */
+	private static List<String> g_listCommand;
+
+	/** Kills worker processes that time out or whose callers get cancelled. */
+	private static final ScheduledExecutorService g_watchdog = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "RDKit Avalon Fingerprint Watchdog");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	//
+	// Members
+	//
+
+	/** The maximal number of worker processes of this pool. */
+	private final int m_iSize;
+
+	/** Worker processes that are currently not used by any thread. */
+	private final LinkedBlockingQueue<Worker> m_queueIdle;
+
+	/** The number of running worker processes. Guarded by this pool. */
+	private int m_iStarted;
+
+	/** Flag to tell that this pool was shut down. Returned workers get terminated then. */
+	private volatile boolean m_bShutdown;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Creates a new pool of worker processes.
+	 * 
+	 * @param iSize The maximal number of worker processes.
+	 */
+	private AvalonFingerprintWorkerPool(final int iSize) {
+		m_iSize = iSize;
+		m_queueIdle = new LinkedBlockingQueue<Worker>();
+		m_iStarted = 0;
+		m_bShutdown = false;
+	}
+
+	//
+	// Static Public Methods
+	//
+
+	/**
+	 * Sets the number of worker processes. Changing the number terminates all idle worker
+	 * processes. Processes that are in use get terminated when they are returned.
+	 * If worker processes failed to launch before, they are tried again, if the number
+	 * changes or if the last failure happened more than {@link #RETRY_DELAY} ago.
+	 * 
+	 * @param iProcessCount The number of worker processes. 0 to calculate Avalon fingerprints in-process.
+	 */
+	public static synchronized void setProcessCount(final int iProcessCount) {
+		final int iCount = Math.max(0, iProcessCount);
+		final boolean bRetry = (g_bFailed && iCount > 0 &&
+				System.currentTimeMillis() - g_lFailedTimestamp > RETRY_DELAY);
+		if (iCount != g_iProcessCount || bRetry) {
+			g_iProcessCount = iCount;
+			g_bFailed = false;
+			final AvalonFingerprintWorkerPool pool = g_instance;
+			g_instance = (iCount > 0 ? new AvalonFingerprintWorkerPool(iCount) : null);
+			if (pool != null) {
+				pool.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns the configured number of worker processes.
+	 * 
+	 * @return The number of worker processes. 0, if Avalon fingerprints are calculated in-process.
+	 */
+	public static synchronized int getProcessCount() {
+		return g_iProcessCount;
+	}
+
+	/**
+	 * Determines, if Avalon fingerprints shall be calculated by worker processes.
+	 * 
+	 * @return True, if worker processes are configured and did not fail to launch.
+	 */
+	public static boolean isEnabled() {
+		return g_instance != null;
+	}
+
+	/**
+	 * Calculates the Avalon fingerprint of the passed in molecule in a worker process.
+	 * 
+	 * @param mol Molecule. Must not be null.
+	 * @param iNumBits Number of bits of the fingerprint.
+	 * @param iSimilarityBits Similarity bits parameter of the Avalon fingerprint.
+	 * 
+	 * @return The fingerprint, which needs to be deleted by the caller, or null, if
+	 * 		worker processes are disabled or could not be launched. The caller
+	 * 		should calculate the fingerprint in-process then.
+	 * 
+	 * @throws RuntimeException Thrown, if the fingerprint could not be calculated, e.g.
+	 * 		because the worker process died while calculating it.
+	 */
+	public static ExplicitBitVect calculate(final ROMol mol, final int iNumBits, final int iSimilarityBits) {
+		final AvalonFingerprintWorkerPool pool = g_instance;
+		if (pool == null) {
+			return null;
+		}
+
+		final String[] arrErrors = new String[1];
+		byte[][] arrFingerprints = null;
+		try {
+			arrFingerprints = pool.process(new byte[][] { RDKitMolCell2.toByteArray(mol) },
+					iNumBits, iSimilarityBits, arrErrors, null);
+		}
+		catch (final CanceledExecutionException exc) {
+			// Cannot happen without execution monitor - the thread was interrupted
+			throw new RuntimeException("Avalon fingerprint calculation was interrupted.", exc);
+		}
+		if (arrFingerprints == null) {
+			return null;
+		}
+		if (arrFingerprints[0] == null) {
+			throw new RuntimeException("Avalon fingerprint calculation failed: " + arrErrors[0]);
+		}
+
+		return ExplicitBitVect.fromByteArray(arrFingerprints[0]);
+	}
+
+	/**
+	 * Calculates the Avalon fingerprints of the passed in molecules in worker processes.
+	 * The pickles stored in RDKit molecule cells are sent as they are, without unpickling
+	 * the molecules in this process. Large arrays are sent in chunks of {@link #MAX_BATCH_SIZE}
+	 * molecules.
+	 * 
+	 * @param arrMols Molecules. Null elements are skipped. Must not be null.
+	 * @param iNumBits Number of bits of the fingerprints.
+	 * @param iSimilarityBits Similarity bits parameter of the Avalon fingerprint.
+	 * @param arrErrors Optional array of the same length as the molecules, which receives the
+	 * 		error messages of failed calculations. Can be null.
+	 * @param exec Execution monitor to check for cancellation while waiting for a worker process.
+	 * 		Can be null.
+	 * 
+	 * @return Pickled fingerprints as produced by {@link ExplicitBitVect#toByteArray()} with
+	 * 		null elements for skipped molecules and molecules that failed, or null, if worker
+	 * 		processes are disabled or could not be launched.
+	 * 
+	 * @throws CanceledExecutionException Thrown, if the execution was cancelled. The busy
+	 * 		worker process gets killed then.
+	 * @throws RuntimeException Thrown, if a worker process died or timed out while calculating fingerprints.
+	 */
+	public static byte[][] calculate(final RDKitMolValue[] arrMols, final int iNumBits,
+			final int iSimilarityBits, final String[] arrErrors, final ExecutionMonitor exec)
+					throws CanceledExecutionException {
+		final AvalonFingerprintWorkerPool pool = g_instance;
+		if (pool == null) {
+			return null;
+		}
+
+		// Collects the pickles of all molecules that are present
+		final int[] arrIndexes = new int[arrMols.length];
+		final byte[][] arrPickles = new byte[arrMols.length][];
+		int iCount = 0;
+		for (int i = 0; i < arrMols.length; i++) {
+			if (arrMols[i] != null) {
+				final RDKitMolCell2 cell = RDKitMolCell2.asRDKitMolCell(arrMols[i]);
+				if (cell != null) {
+					arrPickles[iCount] = cell.getBinaryContent();
+				}
+				else {
+					final ROMol mol = arrMols[i].readMoleculeValue();
+					try {
+						arrPickles[iCount] = RDKitMolCell2.toByteArray(mol);
+					}
+					finally {
+						mol.delete();
+					}
+				}
+				arrIndexes[iCount++] = i;
+			}
+		}
+
+		final String[] arrBatchErrors = (arrErrors == null ? null : new String[iCount]);
+		final byte[][] arrBatchFingerprints = pool.process(Arrays.copyOf(arrPickles, iCount),
+				iNumBits, iSimilarityBits, arrBatchErrors, exec);
+		if (arrBatchFingerprints == null) {
+			return null;
+		}
+
+		final byte[][] arrFingerprints = new byte[arrMols.length][];
+		for (int i = 0; i < iCount; i++) {
+			arrFingerprints[arrIndexes[i]] = arrBatchFingerprints[i];
+			if (arrErrors != null) {
+				arrErrors[arrIndexes[i]] = arrBatchErrors[i];
+			}
+		}
+
+		return arrFingerprints;
+	}
+
+	/**
+	 * Terminates all worker processes and disables the pool. Called when the plug-in gets stopped.
+	 */
+	public static synchronized void shutdown() {
+		final AvalonFingerprintWorkerPool pool = g_instance;
+		g_instance = null;
+		g_iProcessCount = 0;
+		if (pool != null) {
+			pool.close();
+		}
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Calculates fingerprints in a worker process of this pool.
+	 * 
+	 * @param arrPickles RDKit molecule pickles. Must not be null.
+	 * @param iNumBits Number of bits of the fingerprints.
+	 * @param iSimilarityBits Similarity bits parameter of the Avalon fingerprint.
+	 * @param arrErrors Optional array for error messages. Can be null.
+	 * @param exec Execution monitor to check for cancellation. Can be null.
+	 * 
+	 * @return Pickled fingerprints or null, if no worker process could be launched.
+	 * 
+	 * @throws CanceledExecutionException Thrown, if the execution was cancelled.
+	 */
+	private byte[][] process(final byte[][] arrPickles, final int iNumBits,
+			final int iSimilarityBits, final String[] arrErrors, final ExecutionMonitor exec)
+					throws CanceledExecutionException {
+		final byte[][] arrFingerprints = new byte[arrPickles.length][];
+		Worker worker = null;
+
+		try {
+			worker = borrow();
+			if (worker == null) {
+				return null;
+			}
+
+			for (int iStart = 0; iStart < arrPickles.length; iStart += MAX_BATCH_SIZE) {
+				if (exec != null) {
+					exec.checkCanceled();
+				}
+				worker.calculate(arrPickles, iStart, Math.min(arrPickles.length, iStart + MAX_BATCH_SIZE),
+						iNumBits, iSimilarityBits, arrFingerprints, arrErrors, exec);
+			}
+
+			giveBack(worker, true);
+			worker = null;
+		}
+		catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Avalon fingerprint calculation was interrupted.", exc);
+		}
+		catch (final IOException exc) {
+			final int iExitCode = worker.terminate();
+			final boolean bCancelled = worker.m_bCancelled;
+			final boolean bTimedOut = worker.m_bTimedOut;
+			giveBack(worker, false);
+			worker = null;
+
+			// A new worker process gets launched for the next request
+			if (bCancelled) {
+				if (exec == null) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Avalon fingerprint calculation was interrupted.", exc);
+				}
+				throw new CanceledExecutionException("Avalon fingerprint calculation was cancelled.");
+			}
+			if (bTimedOut) {
+				throw new RuntimeException("Avalon fingerprint worker process did not respond within " +
+						(RESPONSE_TIMEOUT / 1000) + " seconds and was killed.", exc);
+			}
+			if (iExitCode == AvalonFingerprintWorker.EXIT_LIBRARY_ERROR) {
+				disable("Avalon fingerprint worker process could not load the RDKit libraries.", null);
+				return null;
+			}
+
+			throw new RuntimeException("Avalon fingerprint worker process terminated unexpectedly" +
+					(iExitCode == Integer.MIN_VALUE ? "" : " (exit code " + iExitCode + ")") + ".", exc);
+		}
+		finally {
+			if (worker != null) {
+				giveBack(worker, false);
+			}
+		}
+
+		return arrFingerprints;
+	}
+
+	/**
+	 * Gets an idle worker process or launches a new one, if the pool is not exhausted yet.
+	 * Otherwise waits for a worker process to be returned by another thread.
+	 * 
+	 * @return Worker process or null, if the pool was shut down or no worker process could be launched.
+	 * 
+	 * @throws InterruptedException Thrown, if the thread was interrupted while waiting.
+	 */
+	private Worker borrow() throws InterruptedException {
+		while (!m_bShutdown) {
+			Worker worker = m_queueIdle.poll();
+			if (worker != null) {
+				return worker;
+			}
+
+			boolean bLaunch = false;
+			synchronized (this) {
+				if (m_iStarted < m_iSize) {
+					m_iStarted++;
+					bLaunch = true;
+				}
+			}
+
+			if (bLaunch) {
+				try {
+					return launch();
+				}
+				catch (final IOException exc) {
+					synchronized (this) {
+						m_iStarted--;
+					}
+					disable("Avalon fingerprint worker process could not be launched.", exc);
+					return null;
+				}
+			}
+
+			worker = m_queueIdle.poll(1, TimeUnit.SECONDS);
+			if (worker != null) {
+				return worker;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns a worker process to the pool. If it failed or the pool was shut down
+	 * in the meantime, the worker process gets terminated.
+	 * 
+	 * @param worker Worker process. Must not be null.
+	 * @param bReusable True, if the worker process can be used again.
+	 */
+	private void giveBack(final Worker worker, final boolean bReusable) {
+		if (bReusable && !m_bShutdown) {
+			m_queueIdle.offer(worker);
+
+			// Avoid leaking a worker process that slipped in after closing the pool
+			if (m_bShutdown && m_queueIdle.remove(worker)) {
+				worker.stop();
+				release();
+			}
+		}
+		else {
+			worker.stop();
+			release();
+		}
+	}
+
+	/**
+	 * Decrements the number of running worker processes.
+	 */
+	private synchronized void release() {
+		m_iStarted--;
+	}
+
+	/**
+	 * Shuts down this pool and terminates all idle worker processes.
+	 */
+	private void close() {
+		m_bShutdown = true;
+		Worker worker;
+		while ((worker = m_queueIdle.poll()) != null) {
+			worker.stop();
+			release();
+		}
+	}
+
+	//
+	// Static Private Methods
+	//
+
+	/**
+	 * Disables worker processes, because they cannot be launched. Logs a warning only once
+	 * until worker processes are tried again.
+	 * 
+	 * @param strMessage Reason of the failure.
+	 * @param exc Exception that caused the failure. Can be null.
+	 */
+	private static synchronized void disable(final String strMessage, final Exception exc) {
+		if (!g_bFailed) {
+			g_bFailed = true;
+			LOGGER.warn(strMessage + " Avalon fingerprints will be calculated in-process.", exc);
+		}
+		g_lFailedTimestamp = System.currentTimeMillis();
+
+		final AvalonFingerprintWorkerPool pool = g_instance;
+		g_instance = null;
+		if (pool != null) {
+			pool.close();
+		}
+	}
+
+	/**
+	 * Launches a new worker process.
+	 * 
+	 * @return Worker process. Never null.
+	 * 
+	 * @throws IOException Thrown, if the process could not be launched.
+	 */
+	private static Worker launch() throws IOException {
+		final ProcessBuilder builder = new ProcessBuilder(getCommand());
+		builder.redirectError(Redirect.INHERIT);
+
+		// Dependent libraries are only found via the PATH on Windows
+		if (Platform.OS_WIN32.equals(Platform.getOS())) {
+			final Map<String, String> mapEnv = builder.environment();
+			final String strPath = mapEnv.get("PATH");
+			final String strLibraryPath = String.join(File.pathSeparator,
+					RDKitTypesPluginActivator.getNativeLibraryPaths());
+			mapEnv.put("PATH", strPath == null ? strLibraryPath : strLibraryPath + File.pathSeparator + strPath);
+		}
+
+		return new Worker(builder.start());
+	}
+
+	/**
+	 * Determines the command to launch a worker process with the Java runtime of KNIME,
+	 * the class path of this plug-in and the native RDKit libraries.
+	 * 
+	 * @return Command line. Never null.
+	 * 
+	 * @throws IOException Thrown, if the plug-in or its class path could not be located.
+	 */
+	private static synchronized List<String> getCommand() throws IOException {
+		if (g_listCommand == null) {
+			final RDKitTypesPluginActivator plugin = RDKitTypesPluginActivator.getDefault();
+			if (plugin == null) {
+				throw new IOException("The RDKit Types Plug-In is not active.");
+			}
+
+			final Bundle bundle = plugin.getBundle();
+			final List<String> listClassPath = new ArrayList<String>();
+			for (final String strEntry : CLASS_PATH_ENTRIES) {
+				final URL url = FileLocator.find(bundle, new Path(strEntry), null);
+				if (url != null) {
+					listClassPath.add(new File(FileLocator.toFileURL(url).getPath()).getAbsolutePath());
+				}
+			}
+			if (listClassPath.isEmpty()) {
+				throw new IOException("The class path of the RDKit Types Plug-In could not be located.");
+			}
+
+			final File fileJava = new File(new File(System.getProperty("java.home"), "bin"),
+					Platform.OS_WIN32.equals(Platform.getOS()) ? "java.exe" : "java");
+
+			final List<String> listCommand = new ArrayList<String>();
+			listCommand.add(fileJava.getAbsolutePath());
+			listCommand.add(WORKER_MAX_HEAP);
+			listCommand.add("-Djava.library.path=" + String.join(File.pathSeparator,
+					RDKitTypesPluginActivator.getNativeLibraryPaths()));
+			listCommand.add("-cp");
+			listCommand.add(String.join(File.pathSeparator, listClassPath));
+			listCommand.add(AvalonFingerprintWorker.class.getName());
+			listCommand.addAll(Arrays.asList(RDKitTypesPluginActivator.getNativeLibraries()));
+
+			LOGGER.debug("Avalon fingerprint worker command: " + listCommand);
+			g_listCommand = listCommand;
+		}
+
+		return g_listCommand;
+	}
+
+	//
+	// Inner Classes
+	//
+
+	/**
+	 * A running worker process and its pipes. Used by one thread at a time.
+	 */
+	private static final class Worker {
+
+		/** The worker process. */
+		private final Process m_process;
+
+		/** Requests to the worker process. */
+		private final DataOutputStream m_out;
+
+		/** Responses of the worker process. */
+		private final DataInputStream m_in;
+
+		/** Flag to tell that the worker process was killed, because its caller got cancelled. */
+		private volatile boolean m_bCancelled;
+
+		/** Flag to tell that the worker process was killed, because it did not answer in time. */
+		private volatile boolean m_bTimedOut;
+
+		/**
+		 * Wraps a launched worker process.
+		 * 
+		 * @param process Worker process. Must not be null.
+		 */
+		private Worker(final Process process) {
+			m_process = process;
+			m_out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream(), 64 * 1024));
+			m_in = new DataInputStream(new BufferedInputStream(process.getInputStream(), 64 * 1024));
+		}
+
+		/**
+		 * Sends a batch of molecules to the worker process and reads the results. While
+		 * waiting, a watchdog kills the worker process, if it does not answer within
+		 * {@link #RESPONSE_TIMEOUT} milliseconds, or if the calling thread gets interrupted
+		 * or the execution gets cancelled. Reading fails with an IOException then.
+		 * 
+		 * @param arrPickles RDKit molecule pickles.
+		 * @param iStart First index of the batch (inclusive).
+		 * @param iEnd Last index of the batch (exclusive).
+		 * @param iNumBits Number of bits of the fingerprints.
+		 * @param iSimilarityBits Similarity bits parameter of the Avalon fingerprint.
+		 * @param arrFingerprints Receives the pickled fingerprints at the same indexes.
+		 * @param arrErrors Receives error messages at the same indexes. Can be null.
+		 * @param exec Execution monitor to check for cancellation. Can be null.
+		 * 
+		 * @throws IOException Thrown, if the communication with the worker process failed.
+		 */
+		private void calculate(final byte[][] arrPickles, final int iStart, final int iEnd,
+				final int iNumBits, final int iSimilarityBits, final byte[][] arrFingerprints,
+				final String[] arrErrors, final ExecutionMonitor exec) throws IOException {
+			final ScheduledFuture<?> watchdog = startWatchdog(exec);
+			try {
+				exchange(arrPickles, iStart, iEnd, iNumBits, iSimilarityBits, arrFingerprints, arrErrors);
+			}
+			finally {
+				watchdog.cancel(false);
+			}
+		}
+
+		/**
+		 * Starts watching this worker process while it is busy.
+		 * 
+		 * @param exec Execution monitor to check for cancellation. Can be null.
+		 * 
+		 * @return Future of the watchdog, which needs to be cancelled when the worker process answered.
+		 */
+		private ScheduledFuture<?> startWatchdog(final ExecutionMonitor exec) {
+			final Thread threadCaller = Thread.currentThread();
+			final long lDeadline = System.currentTimeMillis() + RESPONSE_TIMEOUT;
+
+			return g_watchdog.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					if (m_bCancelled || m_bTimedOut) {
+						return;
+					}
+
+					boolean bCancelled = threadCaller.isInterrupted();
+					if (!bCancelled && exec != null) {
+						try {
+							exec.checkCanceled();
+						}
+						catch (final CanceledExecutionException exc) {
+							bCancelled = true;
+						}
+					}
+
+					if (bCancelled) {
+						m_bCancelled = true;
+						m_process.destroyForcibly();
+					}
+					else if (System.currentTimeMillis() > lDeadline) {
+						m_bTimedOut = true;
+						m_process.destroyForcibly();
+					}
+				}
+			}, WATCHDOG_INTERVAL, WATCHDOG_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+
+		/**
+		 * Writes a batch of molecules to the worker process and reads the results.
+		 * 
+		 * @param arrPickles RDKit molecule pickles.
+		 * @param iStart First index of the batch (inclusive).
+		 * @param iEnd Last index of the batch (exclusive).
+		 * @param iNumBits Number of bits of the fingerprints.
+		 * @param iSimilarityBits Similarity bits parameter of the Avalon fingerprint.
+		 * @param arrFingerprints Receives the pickled fingerprints at the same indexes.
+		 * @param arrErrors Receives error messages at the same indexes. Can be null.
+		 * 
+		 * @throws IOException Thrown, if the communication with the worker process failed.
+		 */
+		private void exchange(final byte[][] arrPickles, final int iStart, final int iEnd,
+				final int iNumBits, final int iSimilarityBits, final byte[][] arrFingerprints,
+				final String[] arrErrors) throws IOException {
+			final int iCount = iEnd - iStart;
+			m_out.writeInt(iCount);
+			for (int i = iStart; i < iEnd; i++) {
+				m_out.writeInt(iNumBits);
+				m_out.writeInt(iSimilarityBits);
+				m_out.writeInt(arrPickles[i].length);
+				m_out.write(arrPickles[i]);
+			}
+			m_out.flush();
+
+			if (m_in.readInt() != AvalonFingerprintWorker.RESPONSE_MAGIC || m_in.readInt() != iCount) {
+				throw new IOException("Unexpected response of Avalon fingerprint worker process.");
+			}
+
+			for (int i = iStart; i < iEnd; i++) {
+				final int iLength = m_in.readInt();
+				if (iLength == AvalonFingerprintWorker.FAILURE) {
+					final String strError = m_in.readUTF();
+					if (arrErrors != null) {
+						arrErrors[i] = strError;
+					}
+				}
+				else if (iLength < 0) {
+					throw new IOException("Unexpected response of Avalon fingerprint worker process.");
+				}
+				else {
+					arrFingerprints[i] = new byte[iLength];
+					m_in.readFully(arrFingerprints[i]);
+				}
+			}
+		}
+
+		/**
+		 * Waits shortly for the worker process to exit after a failure and kills it otherwise.
+		 * 
+		 * @return Exit code or Integer.MIN_VALUE, if the worker process had to be killed.
+		 */
+		private int terminate() {
+			try {
+				if (m_process.waitFor(EXIT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+					return m_process.exitValue();
+				}
+			}
+			catch (final InterruptedException exc) {
+				Thread.currentThread().interrupt();
+			}
+
+			m_process.destroy();
+			return Integer.MIN_VALUE;
+		}
+
+		/**
+		 * Asks the worker process to exit and closes the pipes. Kills the process, if
+		 * it cannot be asked anymore.
+		 */
+		private void stop() {
+			try {
+				m_out.writeInt(0);
+				m_out.flush();
+				m_out.close();
+				m_in.close();
+			}
+			catch (final IOException exc) {
+				m_process.destroy();
+			}
+		}
+	}
+}
@@ -93,6 +93,13 @@ public class RDKitAdapterCell extends AdapterCell implements RDKitMolValue, SdfV
 	private static final RDKitAdapterCellSerializer SERIALIZER =
 			new RDKitAdapterCellSerializer();
 
+	//
+	// Members
+	//
+
+	/** Cached hash code of this immutable cell. 0, if not calculated yet. */
+	private transient int m_iHashCode;
+
 	//
 	// Constructors
 	//
@@ -316,14 +323,19 @@ public class RDKitAdapterCell extends AdapterCell implements RDKitMolValue, SdfV
 
 	@Override
 	public int hashCode() {
-		int result = 1;
+		int result = m_iHashCode;
 		
-		try {
-		   final int prime = 31;
-			result = prime * result + ((RDKitMolValue)getAdapterMap().get(RDKitMolValue.class)).getSmilesValue().hashCode();
-		}
-		catch (Exception exc) {
-			LOGGER.error("Unable to calculate hash code for RDKit molecule.", exc);
+		if (result == 0) {
+			result = 1;
+			try {
+			   final int prime = 31;
+				result = prime * result + ((RDKitMolValue)getAdapterMap().get(RDKitMolValue.class)).getSmilesValue().hashCode();
+				// Cache only successful calculations (a race just calculates the same value twice)
+				m_iHashCode = result;
+			}
+			catch (Exception exc) {
+				LOGGER.error("Unable to calculate hash code for RDKit molecule.", exc);
+			}
 		}
 		
 		return result;
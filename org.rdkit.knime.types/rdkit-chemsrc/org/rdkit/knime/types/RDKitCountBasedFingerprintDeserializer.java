@@ -17,6 +17,10 @@ import org.knime.python.typeextension.DeserializerFactory;
 /**
  * Deserializer implementation for converting Python RDKit count-based fingerprint types
  * UIntSparseIntVect, IntSparseIntVect and LongSparseIntVect into KNIME Fingerprint cells.
+ * Fingerprints are either transferred in the binary format, which starts with the version
+ * byte {@link #FORMAT_VARINT_PAIRS}, followed by the length and the number of non-zero elements
+ * and for each element the index delta to the previous element and the zigzag encoded count
+ * (all as unsigned LEB128 varints), or in the former JSON-like text format.
  * 
  * @author Manuel Schwarze
  */
@@ -50,7 +54,10 @@ public class RDKitCountBasedFingerprintDeserializer implements Deserializer {
 	/** The logging instance. */
 	private static final NodeLogger LOGGER = NodeLogger.getLogger(RDKitCountBasedFingerprintDeserializer.class);
 
-	/** RegEx to parse JSON produced by Python glue code. */
+	/** Version byte of the varint binary format. The JSON-like format starts with a brace instead. */
+	public static final byte FORMAT_VARINT_PAIRS = 2;
+
+	/** RegEx to parse JSON produced by former Python glue code. */
 	private static final Pattern JSON_REGEX = Pattern.compile(".*?\\{.*?'length':.*?(\\d+).*?'bits':.*?\\{(.*?)\\}.*\\}");
 
 	//
@@ -65,6 +72,10 @@ public class RDKitCountBasedFingerprintDeserializer implements Deserializer {
 		// Generate a KNIME Fingerprint from a serialized RDKit Fingerprint in special KNIME serializer format
 		if (bytes != null && bytes.length > 0) {
 			try {
+				if (bytes[0] == FORMAT_VARINT_PAIRS) {
+					return new DenseByteVectorCellFactory(readVarintPairs(bytes)).createDataCell();
+				}
+
 				final String strJson = new String(bytes, "UTF-8");
 				final Matcher matcher = JSON_REGEX.matcher(strJson);
 				if (matcher.find()) {
@@ -84,7 +95,9 @@ public class RDKitCountBasedFingerprintDeserializer implements Deserializer {
 			}
 			catch (final Exception exc) {
 				LOGGER.debug(exc);
-				LOGGER.debug("Got the following format: " + new String(bytes, "UTF-8"));
+				if (bytes[0] != FORMAT_VARINT_PAIRS) {
+					LOGGER.debug("Got the following format: " + new String(bytes, "UTF-8"));
+				}
 
 				// In case of an error throw an IOException
 				String strMsg = exc.getMessage();
@@ -97,4 +110,64 @@ public class RDKitCountBasedFingerprintDeserializer implements Deserializer {
 
 		return cell;
 	}
+
+	//
+	// Static Private Methods
+	//
+
+	/**
+	 * Reads a count-based fingerprint in varint binary format.
+	 * 
+	 * @param bytes Serialized fingerprint starting with the version byte. Must not be null.
+	 * 
+	 * @return Byte vector.
+	 * 
+	 * @throws IOException Thrown, if the data is truncated or the length is too large.
+	 */
+	private static DenseByteVector readVarintPairs(final byte[] bytes) throws IOException {
+		final int[] arrPos = new int[] { 1 };
+		final long lLength = readVarLong(bytes, arrPos);
+		if (lLength > Integer.MAX_VALUE) {
+			throw new IOException("Fingerprint length " + lLength + " is too large.");
+		}
+
+		final DenseByteVector byteVector = new DenseByteVector((int)lLength);
+		final long lPairs = readVarLong(bytes, arrPos);
+		long lIndex = 0;
+		for (long i = 0; i < lPairs; i++) {
+			lIndex += readVarLong(bytes, arrPos);
+			final long lZigZag = readVarLong(bytes, arrPos);
+			final long lCount = (lZigZag >>> 1) ^ -(lZigZag & 1);
+			byteVector.set((int)lIndex, (int)lCount);
+		}
+
+		return byteVector;
+	}
+
+	/**
+	 * Reads an unsigned LEB128 varint.
+	 * 
+	 * @param bytes Buffer. Must not be null.
+	 * @param arrPos Array with the current read position as single element, which gets advanced.
+	 * 
+	 * @return Value.
+	 * 
+	 * @throws IOException Thrown, if the data is truncated or the varint is too long.
+	 */
+	private static long readVarLong(final byte[] bytes, final int[] arrPos) throws IOException {
+		long lValue = 0;
+		int iPos = arrPos[0];
+		for (int iShift = 0; iShift < 64; iShift += 7) {
+			if (iPos >= bytes.length) {
+				throw new IOException("Truncated fingerprint data.");
+			}
+			final byte b = bytes[iPos++];
+			lValue |= (long)(b & 0x7f) << iShift;
+			if ((b & 0x80) == 0) {
+				arrPos[0] = iPos;
+				return lValue;
+			}
+		}
+		throw new IOException("Malformed varint in fingerprint data.");
+	}
 }
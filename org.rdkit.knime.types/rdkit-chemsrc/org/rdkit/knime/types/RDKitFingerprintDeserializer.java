@@ -1,6 +1,8 @@
 package org.rdkit.knime.types;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataType;
@@ -14,6 +16,9 @@ import org.knime.python.typeextension.DeserializerFactory;
 
 /**
  * Deserializer implementation for converting Python RDKit ExplicitBitVect type into KNIME Fingerprint cells.
+ * Fingerprints are either transferred in the packed binary format, which starts with the version
+ * byte {@link #FORMAT_PACKED_WORDS}, followed by the number of bits (int32) and the bits as
+ * 64-bit words in KNIME bit order (all little endian), or in the former RDKit BitString format.
  * 
  * @author Manuel Schwarze
  */
@@ -47,6 +52,9 @@ public class RDKitFingerprintDeserializer implements Deserializer {
 	/** The logging instance. */
 	private static final NodeLogger LOGGER = NodeLogger.getLogger(RDKitFingerprintDeserializer.class);
 
+	/** Version byte of the packed binary format. BitStrings start with '0' or '1' instead. */
+	public static final byte FORMAT_PACKED_WORDS = 1;
+
 	//
 	// Public Methods
 	//
@@ -60,6 +68,26 @@ public class RDKitFingerprintDeserializer implements Deserializer {
 			cell = DataType.getMissingCell();
 		}
 
+		// Generate a KNIME Fingerprint from a serialized RDKit Fingerprint in packed binary format
+		else if (bytes[0] == FORMAT_PACKED_WORDS) {
+			try {
+				final ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1).order(ByteOrder.LITTLE_ENDIAN);
+				final int iLength = buffer.getInt();
+				final long[] arrWords = new long[(iLength + 63) >>> 6];
+				buffer.asLongBuffer().get(arrWords);
+				cell = new DenseBitVectorCellFactory(new DenseBitVector(arrWords, iLength)).createDataCell();
+			}
+			catch (final Exception exc) {
+				LOGGER.debug(exc);
+				// In case of an error throw an IOException
+				String strMsg = exc.getMessage();
+				if (strMsg == null || strMsg.trim().isEmpty()) {
+					strMsg = "Unknown error";
+				}
+				throw new IOException("Unable to interpret RDKit Fingerprint: " + strMsg);
+			}
+		}
+
 		// Generate a KNIME Fingerprint from a serialized RDKit Fingerprint in BitString Format
 		else {
 			try {
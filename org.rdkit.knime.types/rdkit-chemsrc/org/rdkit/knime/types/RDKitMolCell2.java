@@ -47,12 +47,18 @@
 package org.rdkit.knime.types;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.RDKit.Int_Vect;
 import org.RDKit.RDKFuncs;
 import org.RDKit.ROMol;
 import org.knime.chem.types.SdfValue;
 import org.knime.chem.types.SmilesValue;
+import org.knime.core.data.AdapterValue;
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataCellDataInput;
 import org.knime.core.data.DataCellDataOutput;
@@ -60,6 +66,8 @@ import org.knime.core.data.DataCellSerializer;
 import org.knime.core.data.DataType;
 import org.knime.core.data.DataValue;
 import org.knime.core.data.StringValue;
+import org.knime.core.node.NodeLogger;
+import org.rdkit.knime.types.preferences.RDKitTypesPreferencePage;
 
 /**
  * Implementation of an RDKit Molecule Cell. 
@@ -74,6 +82,9 @@ public class RDKitMolCell2 extends DataCell implements RDKitMolValue,
 
 	private static final String SDF_POSTFIX = "\n$$$$\n";
 
+	/** The logger instance. */
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(RDKitMolCell2.class);
+
 	/**
 	 * Convenience access member for
 	 * <code>DataType.getType(RDKitMolCell2.class)</code>.
@@ -100,23 +111,37 @@ public class RDKitMolCell2 extends DataCell implements RDKitMolValue,
 		return SERIALIZER;
 	}
 
-	private final String m_smilesString;
+	/**
+	 * The SMILES of the molecule. If no SMILES was passed in, this is null until the canonical
+	 * SMILES gets calculated from the binary content on first access.
+	 */
+	private volatile String m_smilesString;
 	private final boolean m_smilesIsCanonical;
 	private final byte[] m_byteContent;
 
+	/**
+	 * The number of atoms of the molecule, which is used as sort key. It is known when the cell
+	 * gets created from a molecule or read in the current format, otherwise it is -1 until
+	 * it gets calculated from the binary content on first access.
+	 */
+	private volatile int m_atomCount;
+
+	/**
+	 * 64-bit hash of the binary content, which is used to compare molecules quickly.
+	 * 0 until it gets calculated or read.
+	 */
+	private volatile long m_contentHash;
+
 	/** Package scope constructor that wraps the argument molecule.
+	 * If no SMILES is passed in, only the binary content is stored and the
+	 * canonical SMILES gets calculated lazily when it is accessed the first time.
 	 * @param mol The molecule to wrap.
-	 * @param smiles smiles for the molecule.
+	 * @param smiles smiles for the molecule. Can be null or empty.
 	 */
 	RDKitMolCell2(final ROMol mol, final String smiles) {
 		if(smiles == null || smiles.length() == 0) {
 		   // For empty molecules we create an empty SMILES and still set the canonical flag
-		   if (mol.getNumAtoms() > 0) {
-		      m_smilesString = RDKFuncs.MolToSmiles(mol, true);
-		   }
-		   else {
-		      m_smilesString = "";
-		   }
+		   m_smilesString = (mol.getNumAtoms() > 0 ? null : "");
 		   m_smilesIsCanonical = true;
 		} 
 		else {
@@ -124,25 +149,25 @@ public class RDKitMolCell2 extends DataCell implements RDKitMolValue,
 			m_smilesIsCanonical = false;
 		}
 		m_byteContent = toByteArray(mol);
+		m_atomCount = (int)mol.getNumAtoms();
 	}
 
 	/** Deserialisation constructor.
 	 * @param byteContent The byte content
 	 * @param smiles smiles for the molecule.
+	 * @param atomCount number of atoms of the molecule or -1, if unknown.
 	 */
 	private RDKitMolCell2(final byte[] byteContent, final String smiles,
-			final boolean smilesIsCanonical) {
+			final boolean smilesIsCanonical, final int atomCount, final long contentHash) {
 		if (byteContent == null) {
 			throw new NullPointerException("Argument must not be null.");
 		}
 		m_byteContent = byteContent;
+		m_atomCount = atomCount;
+		m_contentHash = contentHash;
 		if(smiles == null || smiles.length() == 0){
-			final ROMol mol = toROMol(byteContent);
-			try {
-				m_smilesString = RDKFuncs.MolToSmiles(mol, true);
-			} finally {
-				mol.delete();
-			}
+			// Calculated lazily
+			m_smilesString = null;
 			m_smilesIsCanonical=true;
 		} else {
 			m_smilesString = smiles;
@@ -155,7 +180,7 @@ public class RDKitMolCell2 extends DataCell implements RDKitMolValue,
 	 */
 	@Override
 	public String getStringValue() {
-		return m_smilesString;
+		return getOrCreateSmiles();
 	}
 
 	/**
@@ -163,7 +188,7 @@ public class RDKitMolCell2 extends DataCell implements RDKitMolValue,
 	 */
 	@Override
 	public String getSmilesValue() {
-		return m_smilesString;
+		return getOrCreateSmiles();
 	}
 
 	/** {@inheritDoc} */
@@ -235,7 +260,7 @@ public class RDKitMolCell2 extends DataCell implements RDKitMolValue,
 	 */
 	@Override
 	protected boolean equalsDataCell(final DataCell dc) {
-		return m_smilesString.equals(((RDKitMolCell2)dc).m_smilesString);
+		return getOrCreateSmiles().equals(((RDKitMolCell2)dc).getOrCreateSmiles());
 	}
 
 	/**
@@ -246,6 +271,16 @@ public class RDKitMolCell2 extends DataCell implements RDKitMolValue,
 		return RDKitMolValue.equals(this, (RDKitMolValue)otherValue);
 	}
 	
+	/**
+	 * Returns the binary representation of the RDKit Mol value of this cell without
+	 * copying it. The returned array must not be modified.
+	 * 
+	 * @return Binary value.
+	 */
+	byte[] getBinaryContent() {
+		return m_byteContent;
+	}
+
 	/**
 	 * Returns a copy of the binary representation of the RDKit Mol value of this cell.
 	 * 
@@ -267,41 +302,337 @@ public class RDKitMolCell2 extends DataCell implements RDKitMolValue,
 	 */
 	@Override
 	public int hashCode() {
-		return m_smilesString.hashCode();
+		return getOrCreateSmiles().hashCode();
+	}
+
+	/**
+	 * Returns the SMILES of this cell. If no SMILES was set, the canonical SMILES
+	 * gets calculated from the binary content and cached in this cell.
+	 * 
+	 * @return SMILES. Empty, if it could not be calculated.
+	 */
+	private String getOrCreateSmiles() {
+		String smiles = m_smilesString;
+
+		if (smiles == null) {
+			// Concurrent calculations lead to the same result, hence we do not need to lock
+			try {
+				final ROMol mol = toROMol(m_byteContent);
+				try {
+					smiles = RDKFuncs.MolToSmiles(mol, true);
+					if (m_atomCount < 0) {
+						m_atomCount = (int)mol.getNumAtoms();
+					}
+				} finally {
+					mol.delete();
+				}
+			}
+			catch (final Exception exc) {
+				LOGGER.warn("Unable to calculate canonical SMILES of RDKit molecule.", exc);
+				smiles = "";
+			}
+			m_smilesString = smiles;
+		}
+
+		return smiles;
 	}
 
+	/**
+	 * Returns the SMILES of this cell only, if it is known already, without
+	 * calculating it.
+	 * 
+	 * @return SMILES or null, if it was not calculated yet.
+	 */
+	String getSmilesIfAvailable() {
+		return m_smilesString;
+	}
+
+	/**
+	 * Returns the number of atoms of the molecule, which serves as cheap sort key.
+	 * For cells that were read from an older format the number is calculated once
+	 * from the binary content and cached in this cell.
+	 * 
+	 * @return Number of atoms. 0, if it could not be calculated.
+	 */
+	int getAtomCount() {
+		int iAtomCount = m_atomCount;
+
+		if (iAtomCount < 0) {
+			// Concurrent calculations lead to the same result, hence we do not need to lock
+			try {
+				final ROMol mol = toROMol(m_byteContent);
+				try {
+					iAtomCount = (int)mol.getNumAtoms();
+				} finally {
+					mol.delete();
+				}
+			}
+			catch (final Exception exc) {
+				LOGGER.warn("Unable to determine number of atoms of RDKit molecule.", exc);
+				iAtomCount = 0;
+			}
+			m_atomCount = iAtomCount;
+		}
+
+		return iAtomCount;
+	}
+
+	/**
+	 * Returns a 64-bit hash of the binary content of this cell. It is calculated
+	 * once and cached in this cell. Equal binary contents have equal hashes.
+	 * 
+	 * @return Content hash.
+	 */
+	long getContentHash() {
+		long lHash = m_contentHash;
+
+		if (lHash == 0) {
+			lHash = calculateContentHash(m_byteContent);
+			m_contentHash = lHash;
+		}
+
+		return lHash;
+	}
+
+	/**
+	 * Returns the length of the binary content of this cell. Together with the content hash
+	 * it identifies a molecule cheaply, without unpickling it.
+	 * 
+	 * @return Length in bytes.
+	 */
+	int getContentLength() {
+		return m_byteContent.length;
+	}
+
+	/**
+	 * Determines, if this cell has exactly the same binary content as the passed in cell.
+	 * The content hashes are compared first, the binary contents only if the hashes are equal.
+	 * 
+	 * @param cell Cell to compare with. Must not be null.
+	 * 
+	 * @return True, if the binary contents are equal. False otherwise.
+	 */
+	boolean hasSameContent(final RDKitMolCell2 cell) {
+		return this == cell || (getContentHash() == cell.getContentHash() &&
+				Arrays.equals(m_byteContent, cell.m_byteContent));
+	}
+
+	/**
+	 * Returns the RDKit cell behind the passed in molecule value, which can be the value itself or
+	 * the RDKit cell of an adapter cell.
+	 * 
+	 * @param value Molecule value. Can be null.
+	 * 
+	 * @return RDKit cell or null, if the value is not backed by an RDKit cell.
+	 */
+	static RDKitMolCell2 asRDKitMolCell(final RDKitMolValue value) {
+		RDKitMolValue molValue = value;
+
+		if (molValue instanceof AdapterValue) {
+			try {
+				molValue = ((AdapterValue) molValue).getAdapter(RDKitMolValue.class);
+			}
+			catch (final IllegalArgumentException exc) {
+				// Ignored - use the value as it is
+			}
+		}
+
+		return (molValue instanceof RDKitMolCell2 ? (RDKitMolCell2) molValue : null);
+	}
+
+	/**
+	 * Calculates a 64-bit FNV-1a hash of the passed in binary content. As 0 marks
+	 * an unknown hash, it is never returned.
+	 * 
+	 * @param bytes Binary content. Must not be null.
+	 * 
+	 * @return Content hash. Never 0.
+	 */
+	static long calculateContentHash(final byte[] bytes) {
+		long lHash = 0xcbf29ce484222325L;
+		for (final byte b : bytes) {
+			lHash ^= (b & 0xFF);
+			lHash *= 0x100000001b3L;
+		}
+		return (lHash == 0 ? 1 : lHash);
+	}
+
+	/**
+	 * Pickles the passed in molecule into a byte array. The RDKit binding only offers
+	 * the pickle as Int_Vect, which is copied element by element and freed right away.
+	 * 
+	 * @param mol Molecule to pickle. Must not be null.
+	 * 
+	 * @return Binary representation of the molecule.
+	 */
 	protected static byte[] toByteArray(final ROMol mol) {
 		final Int_Vect iv = mol.ToBinary();
-		final byte[] bytes = new byte[(int)iv.size()];
-		for (int i = 0; i < bytes.length; i++) {
-			bytes[i] = (byte)iv.get(i);
+		try {
+			final byte[] bytes = new byte[(int)iv.size()];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = (byte)iv.get(i);
+			}
+			return bytes;
+		}
+		finally {
+			iv.delete();
 		}
-		return bytes;
 	}
 
+	/**
+	 * Unpickles a molecule from the passed in byte array. The RDKit binding only accepts
+	 * the pickle as Int_Vect, which is filled element by element and freed right away.
+	 * 
+	 * @param bytes Binary representation of a molecule. Must not be null.
+	 * 
+	 * @return New molecule, which needs to be deleted by the caller.
+	 */
 	protected static ROMol toROMol(final byte[] bytes) {
 		final Int_Vect iv = new Int_Vect(bytes.length);
-		for (int i = 0; i < bytes.length; i++) {
-			iv.set(i, bytes[i]);
+		try {
+			for (int i = 0; i < bytes.length; i++) {
+				iv.set(i, bytes[i]);
+			}
+			return ROMol.MolFromBinary(iv);
+		}
+		finally {
+			iv.delete();
 		}
-		return ROMol.MolFromBinary(iv);
 	}
 
-	/** Factory for (de-)serializing a RDKitMolCell. */
+	/**
+	 * Factory for (de-)serializing a RDKitMolCell.
+	 * <p>
+	 * Cells are written in a versioned format, which starts with the marker {@link #FORMAT_VERSIONED}
+	 * followed by a version byte and a flags byte. Depending on the flags a SMILES (UTF-8 with int length,
+	 * hence not limited to 64 KB), the number of atoms used as sort key and the content hash follow, then the length of the binary content and the binary content,
+	 * which is optionally deflate-compressed. Compression and storing of canonical SMILES can be configured
+	 * in the RDKit Types preferences. SMILES that were not calculated yet are never written and
+	 * will be calculated lazily after reading.
+	 * <p>
+	 * Older formats are still read: A leading -1 marker is followed by a UTF SMILES, the length
+	 * of the binary content, the binary content and the canonical flag. A leading value &gt;= 0 is the
+	 * length of the binary content without SMILES.
+	 */
 	public static class RDKitSerializer implements
 	DataCellSerializer<RDKitMolCell2> {
+
+		/** Marker of the legacy format with SMILES. */
+		private static final int FORMAT_LEGACY_WITH_SMILES = -1;
+
+		/** Marker of the versioned format. */
+		private static final int FORMAT_VERSIONED = -2;
+
+		/** Current version of the versioned format. */
+		private static final byte VERSION = 1;
+
+		/** Flag: A SMILES is stored. */
+		private static final int FLAG_SMILES = 0x01;
+
+		/** Flag: The stored SMILES is canonical. */
+		private static final int FLAG_SMILES_CANONICAL = 0x02;
+
+		/** Flag: The binary content is compressed. */
+		private static final int FLAG_COMPRESSED = 0x04;
+
+		/** Flag: The number of atoms is stored as sort key. */
+		private static final int FLAG_ATOM_COUNT = 0x08;
+
+		/** Flag: The 64-bit hash of the binary content is stored. */
+		private static final int FLAG_CONTENT_HASH = 0x10;
+
+		/** All flags known by this version. */
+		private static final int KNOWN_FLAGS = FLAG_SMILES | FLAG_SMILES_CANONICAL | FLAG_COMPRESSED |
+				FLAG_ATOM_COUNT | FLAG_CONTENT_HASH;
+
+		/** Binary content smaller than this is never compressed. */
+		private static final int MIN_COMPRESSION_SIZE = 128;
+
+		/** Per-thread deflater to avoid allocating native zlib memory for every cell. */
+		private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+			@Override
+			protected Deflater initialValue() {
+				return new Deflater(Deflater.BEST_SPEED, true);
+			}
+		};
+
+		/** Per-thread inflater to avoid allocating native zlib memory for every cell. */
+		private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+			@Override
+			protected Inflater initialValue() {
+				return new Inflater(true);
+			}
+		};
+
 		/**
 		 * {@inheritDoc}
+		 * Cells are always written in the versioned format. The legacy format would force
+		 * the calculation of SMILES, could not store SMILES longer than 64 KB and
+		 * would lose the atom count and the content hash.
 		 */
 		@Override
 		public void serialize(final RDKitMolCell2 cell,
 				final DataCellDataOutput output) throws IOException {
-			output.writeInt(-1);
-			output.writeUTF(cell.getSmilesValue());
+			serializeVersioned(cell, output, RDKitTypesPreferencePage.isCompressMolecules(),
+					RDKitTypesPreferencePage.isStoreCanonicalSmiles());
+		}
+
+		/**
+		 * Writes a cell in the versioned format.
+		 * 
+		 * @param cell Cell to write.
+		 * @param output Output to write to.
+		 * @param bCompress True to compress the binary content, if it saves space.
+		 * @param bStoreCanonicalSmiles True to store canonical SMILES. False to
+		 * 		recalculate them when needed.
+		 * 
+		 * @throws IOException Thrown, if the cell could not be written.
+		 */
+		private void serializeVersioned(final RDKitMolCell2 cell, final DataCellDataOutput output,
+				final boolean bCompress, final boolean bStoreCanonicalSmiles) throws IOException {
 			final byte[] bytes = cell.m_byteContent;
+			String smiles = cell.getSmilesIfAvailable();
+			if (smiles != null && cell.m_smilesIsCanonical && !bStoreCanonicalSmiles) {
+				smiles = null;
+			}
+			final byte[] compressed = (bCompress ? compress(bytes) : null);
+
+			int flags = 0;
+			if (smiles != null && !smiles.isEmpty()) {
+				flags |= FLAG_SMILES;
+				if (cell.m_smilesIsCanonical) {
+					flags |= FLAG_SMILES_CANONICAL;
+				}
+			}
+			if (compressed != null) {
+				flags |= FLAG_COMPRESSED;
+			}
+			final int iAtomCount = cell.m_atomCount;
+			if (iAtomCount >= 0) {
+				flags |= FLAG_ATOM_COUNT;
+			}
+			flags |= FLAG_CONTENT_HASH;
+
+			output.writeInt(FORMAT_VERSIONED);
+			output.writeByte(VERSION);
+			output.writeByte(flags);
+			if ((flags & FLAG_SMILES) != 0) {
+				final byte[] smilesBytes = smiles.getBytes(StandardCharsets.UTF_8);
+				output.writeInt(smilesBytes.length);
+				output.write(smilesBytes);
+			}
+			if ((flags & FLAG_ATOM_COUNT) != 0) {
+				output.writeInt(iAtomCount);
+			}
+			output.writeLong(cell.getContentHash());
 			output.writeInt(bytes.length);
-			output.write(bytes);
-			output.writeBoolean(cell.m_smilesIsCanonical);
+			if (compressed != null) {
+				output.writeInt(compressed.length);
+				output.write(compressed);
+			}
+			else {
+				output.write(bytes);
+			}
 		}
 
 		/**
@@ -310,12 +641,20 @@ public class RDKitMolCell2 extends DataCell implements RDKitMolValue,
 		@Override
 		public RDKitMolCell2 deserialize(final DataCellDataInput input)
 				throws IOException {
-			int length = input.readInt();
+			final int marker = input.readInt();
+			if (marker == FORMAT_VERSIONED) {
+				return deserializeVersioned(input);
+			}
+
+			int length = marker;
 			String smiles = "";
-			if(length < 0) {
+			if(length == FORMAT_LEGACY_WITH_SMILES) {
 				smiles = input.readUTF();
 				length = input.readInt();
 			}
+			else if (length < 0) {
+				throw new IOException("Unknown format of RDKit molecule cell: " + length);
+			}
 			final byte[] bytes = new byte[length];
 			input.readFully(bytes);
 			boolean isCanonical;
@@ -324,7 +663,110 @@ public class RDKitMolCell2 extends DataCell implements RDKitMolValue,
 			} catch (final IOException e) {
 				isCanonical=true;
 			}
-			return new RDKitMolCell2(bytes, smiles,isCanonical);
+			return new RDKitMolCell2(bytes, smiles,isCanonical, -1, 0);
+		}
+
+		/**
+		 * Reads a cell in versioned format. The marker has been read already.
+		 * 
+		 * @param input Input to read from.
+		 * 
+		 * @return Cell.
+		 * 
+		 * @throws IOException Thrown, if the cell could not be read.
+		 */
+		private RDKitMolCell2 deserializeVersioned(final DataCellDataInput input) throws IOException {
+			final byte version = input.readByte();
+			if (version > VERSION) {
+				throw new IOException("RDKit molecule cell was written in a newer format (version " +
+						version + ") - Please update the RDKit Nodes.");
+			}
+			final int flags = input.readByte() & 0xFF;
+			if ((flags & ~KNOWN_FLAGS) != 0) {
+				throw new IOException("RDKit molecule cell uses unknown format flags: " + flags);
+			}
+
+			String smiles = null;
+			if ((flags & FLAG_SMILES) != 0) {
+				final byte[] smilesBytes = new byte[input.readInt()];
+				input.readFully(smilesBytes);
+				smiles = new String(smilesBytes, StandardCharsets.UTF_8);
+			}
+
+			final int iAtomCount = ((flags & FLAG_ATOM_COUNT) != 0 ? input.readInt() : -1);
+			final long lContentHash = ((flags & FLAG_CONTENT_HASH) != 0 ? input.readLong() : 0);
+
+			final byte[] bytes = new byte[input.readInt()];
+			if ((flags & FLAG_COMPRESSED) != 0) {
+				final byte[] compressed = new byte[input.readInt()];
+				input.readFully(compressed);
+				decompress(compressed, bytes);
+			}
+			else {
+				input.readFully(bytes);
+			}
+
+			// Without SMILES the cell calculates its canonical SMILES lazily
+			return new RDKitMolCell2(bytes, smiles, smiles == null || (flags & FLAG_SMILES_CANONICAL) != 0,
+					iAtomCount, lContentHash);
+		}
+
+		/**
+		 * Compresses the passed in binary content.
+		 * 
+		 * @param bytes Binary content.
+		 * 
+		 * @return Compressed content or null, if compression does not save at least 1/8 of the size.
+		 */
+		private static byte[] compress(final byte[] bytes) {
+			if (bytes.length < MIN_COMPRESSION_SIZE) {
+				return null;
+			}
+
+			final Deflater deflater = DEFLATER.get();
+			try {
+				deflater.setInput(bytes);
+				deflater.finish();
+				final int iLimit = bytes.length - bytes.length / 8;
+				final byte[] buffer = new byte[iLimit];
+				final int iLength = deflater.deflate(buffer);
+				return (deflater.finished() && iLength < iLimit ? Arrays.copyOf(buffer, iLength) : null);
+			}
+			finally {
+				deflater.reset();
+			}
+		}
+
+		/**
+		 * Decompresses binary content.
+		 * 
+		 * @param compressed Compressed content.
+		 * @param bytes Target array, which has exactly the size of the uncompressed content.
+		 * 
+		 * @throws IOException Thrown, if the content could not be decompressed.
+		 */
+		private static void decompress(final byte[] compressed, final byte[] bytes) throws IOException {
+			final Inflater inflater = INFLATER.get();
+			try {
+				inflater.setInput(compressed);
+				int iOffset = 0;
+				while (iOffset < bytes.length) {
+					final int iRead = inflater.inflate(bytes, iOffset, bytes.length - iOffset);
+					if (iRead == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+					iOffset += iRead;
+				}
+				if (iOffset != bytes.length) {
+					throw new IOException("Compressed RDKit molecule is corrupt.");
+				}
+			}
+			catch (final DataFormatException exc) {
+				throw new IOException("Compressed RDKit molecule is corrupt.", exc);
+			}
+			finally {
+				inflater.reset();
+			}
 		}
 	}
 
@@ -128,7 +128,7 @@ public final class RDKitMolCellFactory implements DataCellFactory {
     /**
      * Creates a new RDKit Adapter Cell with an RDKit Mol Cell 
      * based on the given molecule. A canonicalized SMILES will be
-     * created as part of the inner RDKit Cell. The argument
+     * created lazily by the inner RDKit Cell when it is accessed the first time. The argument
      * can (and should) be {@link ROMol#delete() deleted} after this method
      * returns.
      * @param mol the ROMol value to store
@@ -140,7 +140,7 @@ public final class RDKitMolCellFactory implements DataCellFactory {
         if (mol == null) {
             throw new NullPointerException("Mol value must not be null.");
         }
-        return new RDKitAdapterCell(new RDKitMolCell2(mol, null)); // This forces the generation of a canonicalized SMILES
+        return new RDKitAdapterCell(new RDKitMolCell2(mol, null)); // This leads to the lazy generation of a canonicalized SMILES
     }
 
     /**
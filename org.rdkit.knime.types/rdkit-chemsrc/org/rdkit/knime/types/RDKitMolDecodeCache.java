@@ -0,0 +1,357 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2010
+ *  Novartis Institutes for BioMedical Research
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * -------------------------------------------------------------------
+ *
+ */
+package org.rdkit.knime.types;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.RDKit.ROMol;
+
+/**
+ * A bounded, per-thread LRU cache of decoded read-only molecules. The cache is keyed
+ * by the content of {@link RDKitMolCell2} objects (also when wrapped in adapter cells),
+ * so reading the same cell several times in the same thread (e.g. by chained filters or
+ * multiple passes of a node) unpickles the molecule only once.
+ * Molecules returned by {@link #getMolecule(RDKitMolValue)} are owned by the cache.
+ * They must neither be modified nor deleted by the caller, and must not be
+ * registered for cleanup. They stay valid until {@link #releaseEvicted()} is called in the
+ * same thread, which RDKit nodes do when cleaning up the RDKit objects of a row.
+ * Molecules that are evicted from the cache or that cannot be cached are freed at that time.
+ * When a node finishes execution it calls {@link #invalidateAll()}, which frees the cached
+ * molecules of all threads that are not using them at that time.
+ *
+ * @author Manuel Schwarze
+ */
+public final class RDKitMolDecodeCache {
+
+	//
+	// Constants
+	//
+
+	/** The default number of molecules cached per thread. */
+	public static final int DEFAULT_CAPACITY = 16;
+
+	//
+	// Globals
+	//
+
+	/** The number of molecules cached per thread. 0 disables caching. */
+	private static volatile int g_iCapacity = DEFAULT_CAPACITY;
+
+	/** Generation of all caches. Incrementing it invalidates the caches of all threads. */
+	private static final AtomicLong g_lGeneration = new AtomicLong();
+
+	/** Number of cache hits of all threads. */
+	private static final LongAdder g_lHits = new LongAdder();
+
+	/** Number of cache misses of all threads. */
+	private static final LongAdder g_lMisses = new LongAdder();
+
+	/** The caches of all threads, used to free cached molecules when invalidating. */
+	private static final Set<RDKitMolDecodeCache> g_setCaches = ConcurrentHashMap.newKeySet();
+
+	/** The cache of the current thread. */
+	private static final ThreadLocal<RDKitMolDecodeCache> g_tlCache = new ThreadLocal<RDKitMolDecodeCache>() {
+		@Override
+		protected RDKitMolDecodeCache initialValue() {
+			final RDKitMolDecodeCache cache = new RDKitMolDecodeCache(Thread.currentThread());
+			g_setCaches.add(cache);
+			return cache;
+		}
+	};
+
+	//
+	// Members
+	//
+
+	/** Cached cells, the most recently used one first. */
+	private RDKitMolCell2[] m_arrCells;
+
+	/** Decoded molecules of the cached cells at the same index. */
+	private ROMol[] m_arrMols;
+
+	/** Number of cached molecules. */
+	private int m_iSize;
+
+	/** Molecules that are not cached anymore and will be freed with the next release call. */
+	private final List<ROMol> m_listRetired;
+
+	/** Generation of the cache content. */
+	private long m_lGeneration;
+
+	/** The thread owning this cache. */
+	private final Thread m_threadOwner;
+
+	/**
+	 * Flag to tell, if the owner thread may still use molecules returned by this cache,
+	 * which is the case between a get call and the next release call.
+	 */
+	private boolean m_bInUse;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * Creates an empty cache for a single thread.
+	 *
+	 * @param threadOwner The thread owning this cache. Must not be null.
+	 */
+	private RDKitMolDecodeCache(final Thread threadOwner) {
+		m_threadOwner = threadOwner;
+		m_arrCells = new RDKitMolCell2[0];
+		m_arrMols = new ROMol[0];
+		m_listRetired = new ArrayList<ROMol>();
+		m_lGeneration = -1; // Applies the capacity with the first access
+	}
+
+	//
+	// Static Public Methods
+	//
+
+	/**
+	 * Returns the decoded read-only molecule of the passed in value. It gets
+	 * decoded only, if it is not found in the cache of the current thread.
+	 * The returned molecule must not be modified, deleted or registered for cleanup.
+	 * It is valid until {@link #releaseEvicted()} gets called in the current thread.
+	 *
+	 * @param value Molecule value. Can be null.
+	 *
+	 * @return Read-only molecule or null, if null was passed in.
+	 */
+	public static ROMol getMolecule(final RDKitMolValue value) {
+		ROMol mol = null;
+
+		if (value != null) {
+			final RDKitMolDecodeCache cache = g_tlCache.get();
+			synchronized (cache) {
+				cache.m_bInUse = true;
+				mol = cache.get(value);
+			}
+		}
+
+		return mol;
+	}
+
+	/**
+	 * Frees all molecules of the current thread, which have been evicted from the
+	 * cache or could not be cached. Call this method when the molecules returned by
+	 * {@link #getMolecule(RDKitMolValue)} are not used anymore, e.g. after processing a row.
+	 */
+	public static void releaseEvicted() {
+		final RDKitMolDecodeCache cache = g_tlCache.get();
+		synchronized (cache) {
+			cache.m_bInUse = false;
+			if (!cache.m_listRetired.isEmpty() || cache.m_lGeneration != g_lGeneration.get()) {
+				cache.freeRetired();
+			}
+		}
+	}
+
+	/**
+	 * Invalidates the caches of all threads, e.g. when a node execution finished.
+	 * The cached molecules of threads, which are not using molecules of their cache at
+	 * the moment, are freed right away. All other threads free their cached molecules
+	 * with their next release call, so molecules still in use are not affected.
+	 */
+	public static void invalidateAll() {
+		g_lGeneration.incrementAndGet();
+
+		for (final RDKitMolDecodeCache cache : g_setCaches) {
+			synchronized (cache) {
+				if (!cache.m_bInUse) {
+					cache.freeRetired();
+
+					// Forget caches of threads that do not exist anymore
+					if (!cache.m_threadOwner.isAlive()) {
+						g_setCaches.remove(cache);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets the number of molecules cached per thread. The new capacity
+	 * gets applied to every thread cache with its next access.
+	 *
+	 * @param iCapacity Number of molecules. 0 disables caching.
+	 */
+	public static void setCapacity(final int iCapacity) {
+		final int iNewCapacity = Math.max(0, iCapacity);
+		if (iNewCapacity != g_iCapacity) {
+			g_iCapacity = iNewCapacity;
+			invalidateAll();
+		}
+	}
+
+	/**
+	 * Returns the number of molecules cached per thread.
+	 *
+	 * @return Capacity. 0, if caching is disabled.
+	 */
+	public static int getCapacity() {
+		return g_iCapacity;
+	}
+
+	/**
+	 * Returns the number of requests of all threads that were answered from a cache.
+	 *
+	 * @return Hit count.
+	 */
+	public static long getHitCount() {
+		return g_lHits.sum();
+	}
+
+	/**
+	 * Returns the number of requests of all threads that required decoding a molecule.
+	 *
+	 * @return Miss count.
+	 */
+	public static long getMissCount() {
+		return g_lMisses.sum();
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Looks up the molecule of the passed in value or decodes it.
+	 *
+	 * @param value Molecule value. Must not be null.
+	 *
+	 * @return Read-only molecule.
+	 */
+	private ROMol get(final RDKitMolValue value) {
+		if (m_lGeneration != g_lGeneration.get()) {
+			retireAll();
+		}
+
+		// Standard RDKit columns deliver adapter cells, which wrap the RDKit cell
+		final RDKitMolCell2 cell = RDKitMolCell2.asRDKitMolCell(value);
+
+		if (cell != null) {
+			for (int i = 0; i < m_iSize; i++) {
+				if (cell.hasSameContent(m_arrCells[i])) {
+					final ROMol mol = m_arrMols[i];
+					moveToFront(i, m_arrCells[i], mol);
+					g_lHits.increment();
+					return mol;
+				}
+			}
+		}
+
+		g_lMisses.increment();
+		final ROMol mol = (cell != null ? cell.readMoleculeValue() : value.readMoleculeValue());
+
+		if (mol != null) {
+			if (cell != null && m_arrCells.length > 0) {
+				if (m_iSize == m_arrCells.length) {
+					m_iSize--;
+					m_listRetired.add(m_arrMols[m_iSize]);
+					m_arrCells[m_iSize] = null;
+					m_arrMols[m_iSize] = null;
+				}
+				moveToFront(m_iSize++, cell, mol);
+			}
+			else {
+				m_listRetired.add(mol);
+			}
+		}
+
+		return mol;
+	}
+
+	/**
+	 * Shifts all entries before the specified index one position back and puts
+	 * the passed in entry at the first position.
+	 *
+	 * @param iIndex Index of the entry to be moved. Its former content gets overwritten.
+	 * @param cell Cell of the entry.
+	 * @param mol Molecule of the entry.
+	 */
+	private void moveToFront(final int iIndex, final RDKitMolCell2 cell, final ROMol mol) {
+		System.arraycopy(m_arrCells, 0, m_arrCells, 1, iIndex);
+		System.arraycopy(m_arrMols, 0, m_arrMols, 1, iIndex);
+		m_arrCells[0] = cell;
+		m_arrMols[0] = mol;
+	}
+
+	/**
+	 * Moves all cached molecules to the retired list and applies the current capacity.
+	 */
+	private void retireAll() {
+		for (int i = 0; i < m_iSize; i++) {
+			m_listRetired.add(m_arrMols[i]);
+		}
+		final int iCapacity = g_iCapacity;
+		m_arrCells = new RDKitMolCell2[iCapacity];
+		m_arrMols = new ROMol[iCapacity];
+		m_iSize = 0;
+		m_lGeneration = g_lGeneration.get();
+	}
+
+	/**
+	 * Frees all retired molecules. If the cache was invalidated, also the cached
+	 * molecules get freed.
+	 */
+	private void freeRetired() {
+		if (m_lGeneration != g_lGeneration.get()) {
+			retireAll();
+		}
+
+		for (final ROMol mol : m_listRetired) {
+			mol.delete();
+		}
+		m_listRetired.clear();
+	}
+}
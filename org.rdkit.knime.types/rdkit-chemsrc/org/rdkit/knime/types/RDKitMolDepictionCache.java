@@ -0,0 +1,831 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.types;
+
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.RDKit.MolDraw2DSVG;
+import org.RDKit.MolSanitizeException;
+import org.RDKit.RDKFuncs;
+import org.RDKit.ROMol;
+import org.RDKit.RWMol;
+import org.apache.batik.dom.svg.SAXSVGDocumentFactory;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.knime.base.data.xml.SvgValueRenderer;
+import org.w3c.dom.svg.SVGDocument;
+
+/**
+ * A bounded, memory-sensitive cache of 2D depictions of RDKit molecules, which
+ * are keyed by the content hash of {@link RDKitMolCell2} objects. Depictions are
+ * held softly, so the garbage collector can reclaim them under memory pressure.
+ * Depictions can be rendered in a background thread, which repaints the requesting
+ * component when they are ready. This keeps the event dispatch thread from blocking
+ * on the RDKit and on XML parsing while scrolling through large tables.
+ * Cached SVG documents are shared and must not be modified by the caller. Painting
+ * them must be synchronized on the document, see {@link #paint(SVGDocument, Graphics2D, Rectangle)}.
+ * Additionally, depictions are cached as raster tiles of the size they are painted with,
+ * so that repainting a table cell only needs to copy an image.
+ *
+ * @author Manuel Schwarze
+ */
+public final class RDKitMolDepictionCache {
+
+	//
+	// Constants
+	//
+
+	/** The default number of depictions cached. */
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	/** The maximal number of depictions waiting for background rendering. Older requests get dropped. */
+	private static final int MAX_PENDING_REQUESTS = 200;
+
+	/** Width and height of rendered depictions. */
+	private static final int DEPICTION_SIZE = 300;
+
+	/** The default memory in bytes used by cached raster tiles. */
+	public static final long DEFAULT_TILE_MEMORY = 64L * 1024 * 1024;
+
+	/** The maximal width and height of raster tiles. Larger depictions are painted directly. */
+	private static final int MAX_TILE_SIZE = 1024;
+
+	//
+	// Globals
+	//
+
+	/** The number of depictions cached. 0 disables caching. */
+	private static volatile int g_iCapacity = DEFAULT_CAPACITY;
+
+	/** The cached depictions, the least recently used one first. Access must be synchronized on the map. */
+	private static final Map<Long, CacheEntry> g_mapCache = new LinkedHashMap<Long, CacheEntry>(256, 0.75f, true) {
+
+		/** Serial number. */
+		private static final long serialVersionUID = -3404823012834507736L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Long, CacheEntry> eldest) {
+			return size() > g_iCapacity;
+		}
+	};
+
+	/** The memory in bytes used by cached raster tiles. 0 disables tile caching. */
+	private static volatile long g_lTileMemory = DEFAULT_TILE_MEMORY;
+
+	/** The cached raster tiles, the least recently used one first. Access must be synchronized on the map. */
+	private static final Map<TileKey, TileEntry> g_mapTiles = new LinkedHashMap<TileKey, TileEntry>(256, 0.75f, true);
+
+	/** Tiles that are currently rasterised in the background. Access must be synchronized on the tile map. */
+	private static final Map<TileKey, TileTask> g_mapPendingTiles = new HashMap<TileKey, TileTask>();
+
+	/** The memory in bytes of all cached raster tiles. Access must be synchronized on the tile map. */
+	private static long g_lTileMemoryUsed = 0;
+
+	/** Renders depictions in the background, the most recent request first. */
+	private static final ThreadPoolExecutor g_executor = new ThreadPoolExecutor(1, 1,
+			30, TimeUnit.SECONDS, new LatestFirstQueue(), new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "RDKit Depiction Renderer");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+			return thread;
+		}
+	});
+
+	static {
+		g_executor.allowCoreThreadTimeOut(true);
+	}
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private RDKitMolDepictionCache() {
+		// Utility class
+	}
+
+	//
+	// Static Public Methods
+	//
+
+	/**
+	 * Returns the 2D depiction of the passed in molecule value. If a component is passed in
+	 * and the depiction is not cached yet, it gets rendered in the background and the returned
+	 * future is not done yet. The component gets repainted in the event dispatch thread
+	 * when the depiction is ready. Without a component the depiction gets rendered in the
+	 * current thread, or this method waits until the background renderer finished it,
+	 * so that the returned future is always done.
+	 * Only values backed by an {@link RDKitMolCell2} are cached.
+	 *
+	 * @param value Molecule value. Must not be null.
+	 * @param compToRepaint Component to be repainted when a background rendering finished.
+	 * 		Can be null to render synchronously.
+	 *
+	 * @return Future of the depiction. Its result is null, if the depiction failed.
+	 */
+	public static Future<SVGDocument> getDepiction(final RDKitMolValue value,
+			final Component compToRepaint) {
+		final RDKitMolCell2 cell = RDKitMolCell2.asRDKitMolCell(value);
+		DepictionTask task = null;
+		boolean bSchedule = false;
+
+		if (cell != null && g_iCapacity > 0) {
+			final Long key = cell.getContentHash();
+			final int iLength = cell.getContentLength();
+
+			synchronized (g_mapCache) {
+				final CacheEntry entry = g_mapCache.get(key);
+				if (entry != null && entry.matches(iLength)) {
+					task = entry.m_refTask.get();
+				}
+				if (task == null || task.isCancelled()) {
+					task = new DepictionTask(cell);
+					g_mapCache.put(key, new CacheEntry(iLength, task));
+					bSchedule = (compToRepaint != null);
+				}
+				if (compToRepaint != null && !task.isDone()) {
+					task.addComponentToRepaint(compToRepaint);
+				}
+			}
+		}
+		else {
+			task = new DepictionTask(value);
+		}
+
+		if (compToRepaint == null) {
+			// Runs the task in this thread, unless it is already running or done
+			task.run();
+			// Waits, if the background renderer is running it right now
+			awaitQuietly(task);
+			if (task.isCancelled()) {
+				// Dropped from the background queue before it was started
+				task = new DepictionTask(value);
+				task.run();
+			}
+		}
+		else if (bSchedule) {
+			g_executor.execute(task);
+		}
+
+		return task;
+	}
+
+	/**
+	 * Returns the result of a depiction that is done.
+	 *
+	 * @param depiction Depiction returned by {@link #getDepiction(RDKitMolValue, Component)}.
+	 * 		Can be null.
+	 *
+	 * @return SVG document or null, if the depiction is not done or failed.
+	 */
+	public static SVGDocument getResult(final Future<SVGDocument> depiction) {
+		SVGDocument svgDocument = null;
+
+		if (depiction != null && depiction.isDone() && !depiction.isCancelled()) {
+			try {
+				svgDocument = depiction.get();
+			}
+			catch (final InterruptedException exc) {
+				Thread.currentThread().interrupt();
+			}
+			catch (final ExecutionException exc) {
+				// Rendering failed - this shows up as error message
+			}
+		}
+
+		return svgDocument;
+	}
+
+	/**
+	 * Returns the raster tile of the 2D depiction of the passed in molecule value with the
+	 * passed in size. If it is not cached yet, it gets rasterised in the background and
+	 * null is returned. The component gets repainted in the event dispatch thread when
+	 * the tile is ready. This method never blocks on rendering.
+	 * Only values backed by an {@link RDKitMolCell2} have tiles.
+	 *
+	 * @param value Molecule value. Can be null.
+	 * @param iWidth Width of the tile.
+	 * @param iHeight Height of the tile.
+	 * @param compToRepaint Component to be repainted when the tile is ready. Can be null,
+	 * 		e.g. to prefetch tiles.
+	 *
+	 * @return Tile or null, if it is not available (yet).
+	 */
+	public static BufferedImage getTile(final RDKitMolValue value, final int iWidth, final int iHeight,
+			final Component compToRepaint) {
+		final RDKitMolCell2 cell = RDKitMolCell2.asRDKitMolCell(value);
+		if (cell == null || iWidth <= 0 || iHeight <= 0 || iWidth > MAX_TILE_SIZE ||
+				iHeight > MAX_TILE_SIZE || g_lTileMemory <= 0 || g_iCapacity <= 0) {
+			return null;
+		}
+
+		final TileKey key = new TileKey(cell.getContentHash(), iWidth, iHeight);
+		final int iLength = cell.getContentLength();
+		TileTask task = null;
+
+		synchronized (g_mapTiles) {
+			final TileEntry entry = g_mapTiles.get(key);
+			if (entry != null && entry.matches(iLength)) {
+				final BufferedImage tile = entry.m_refTile.get();
+				if (tile != null) {
+					return tile;
+				}
+			}
+
+			task = g_mapPendingTiles.get(key);
+			if (task == null) {
+				task = new TileTask(key, iLength, cell);
+				g_mapPendingTiles.put(key, task);
+				g_executor.execute(task);
+			}
+			if (compToRepaint != null) {
+				task.addComponentToRepaint(compToRepaint);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Paints the passed in depiction into the specified area. As Batik documents
+	 * must not be painted concurrently, painting is synchronized on the document.
+	 *
+	 * @param svgDocument Depiction. Must not be null.
+	 * @param g Graphics context. Must not be null.
+	 * @param bounds Area to paint into. Must not be null.
+	 */
+	public static void paint(final SVGDocument svgDocument, final Graphics2D g, final Rectangle bounds) {
+		synchronized (svgDocument) {
+			SvgValueRenderer.paint(svgDocument, g, bounds, true);
+		}
+	}
+
+	/**
+	 * Sets the memory used by cached raster tiles. Reducing it evicts the least
+	 * recently used tiles with the next tile that gets cached.
+	 *
+	 * @param lBytes Memory in bytes. 0 disables tile caching.
+	 */
+	public static void setTileMemory(final long lBytes) {
+		g_lTileMemory = Math.max(0, lBytes);
+		if (g_lTileMemory == 0) {
+			synchronized (g_mapTiles) {
+				g_mapTiles.clear();
+				g_lTileMemoryUsed = 0;
+			}
+		}
+	}
+
+	/**
+	 * Returns the memory used by cached raster tiles.
+	 *
+	 * @return Memory in bytes. 0, if tile caching is disabled.
+	 */
+	public static long getTileMemory() {
+		return g_lTileMemory;
+	}
+
+	/**
+	 * Sets the number of depictions cached. Reducing the capacity evicts
+	 * the least recently used depictions with the next request.
+	 *
+	 * @param iCapacity Number of depictions. 0 disables caching.
+	 */
+	public static void setCapacity(final int iCapacity) {
+		g_iCapacity = Math.max(0, iCapacity);
+		if (g_iCapacity == 0) {
+			clear();
+		}
+	}
+
+	/**
+	 * Returns the number of depictions cached.
+	 *
+	 * @return Capacity. 0, if caching is disabled.
+	 */
+	public static int getCapacity() {
+		return g_iCapacity;
+	}
+
+	/**
+	 * Removes all depictions and raster tiles from the cache.
+	 */
+	public static void clear() {
+		synchronized (g_mapCache) {
+			g_mapCache.clear();
+		}
+		synchronized (g_mapTiles) {
+			g_mapTiles.clear();
+			g_lTileMemoryUsed = 0;
+		}
+	}
+
+	//
+	// Static Package Methods
+	//
+
+	/**
+	 * Renders the 2D depiction of the passed in molecule value.
+	 *
+	 * @param value Molecule value. Must not be null.
+	 *
+	 * @return SVG document or null, if the depiction failed.
+	 */
+	static SVGDocument createSvgDocument(final RDKitMolValue value) {
+		SVGDocument svgDocument = null;
+		ROMol omol = null;
+		final Thread t = Thread.currentThread();
+		final ClassLoader contextClassLoader = t.getContextClassLoader();
+		t.setContextClassLoader(RDKitMolDepictionCache.class.getClassLoader());
+
+		try {
+			omol = value.readMoleculeValue();
+
+			RWMol mol;
+			mol = new RWMol(omol);
+			try {
+				RDKFuncs.prepareMolForDrawing(mol);
+			} catch(final MolSanitizeException ex) {
+				mol.delete();
+				mol = new RWMol(omol);
+				// skip kekulization. If this still fails we throw up our hands
+				RDKFuncs.prepareMolForDrawing(mol,false);
+			}
+			final MolDraw2DSVG molDrawing = new MolDraw2DSVG(DEPICTION_SIZE, DEPICTION_SIZE);
+			molDrawing.drawMolecule((ROMol)mol);
+			molDrawing.finishDrawing();
+
+			// the svg namespace causes problems with the javascript table (github #29)
+			final String svg = molDrawing.getDrawingText().replaceAll("svg:", "").replaceAll("xmlns:svg=", "xmlns=");
+			mol.delete();
+			molDrawing.delete();
+
+			final String parserClass = XMLResourceDescriptor.getXMLParserClassName();
+			final SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parserClass);
+
+			/*
+			 * The document factory loads the XML parser
+			 * (org.apache.xerces.parsers.SAXParser), using the thread's context
+			 * class loader. In KNIME desktop (and batch) this is correctly set, in
+			 * the KNIME server the thread is some TCP-socket-listener-thread, which
+			 * fails to load the parser class (class loading happens in
+			 * org.xml.sax.helpers.XMLReaderFactory# createXMLReader(String) ...
+			 * follow the call)
+			 */
+			svgDocument = f.createSVGDocument(null, new StringReader(svg));
+			// remove xml:space='preserved' attribute because it causes atom
+			// labels to be printed off their places
+			svgDocument.getRootElement().removeAttributeNS(
+					"http://www.w3.org/XML/1998/namespace", "space");
+		}
+		catch (final Exception ex) {
+			// If conversion fails we return a null value, which will show up as error message
+			svgDocument = null;
+			// Logging something here may swamp the log files - not desired.
+		}
+		finally {
+			t.setContextClassLoader(contextClassLoader);
+			if (omol != null) {
+				omol.delete();
+			}
+		}
+
+		return svgDocument;
+	}
+
+	/**
+	 * Rasterises the passed in depiction into a transparent image.
+	 *
+	 * @param svgDocument Depiction. Must not be null.
+	 * @param iWidth Width of the image.
+	 * @param iHeight Height of the image.
+	 *
+	 * @return Raster tile.
+	 */
+	static BufferedImage createTile(final SVGDocument svgDocument, final int iWidth, final int iHeight) {
+		final BufferedImage tile = new BufferedImage(iWidth, iHeight, BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D g = tile.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			paint(svgDocument, g, new Rectangle(0, 0, iWidth, iHeight));
+		}
+		finally {
+			g.dispose();
+		}
+		return tile;
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Waits until the passed in task is done or cancelled. Rendering errors are not
+	 * thrown here, they show up as null result.
+	 *
+	 * @param task Task to wait for. Must not be null.
+	 */
+	private static void awaitQuietly(final Future<?> task) {
+		try {
+			task.get();
+		}
+		catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+		}
+		catch (final ExecutionException exc) {
+			// Rendering failed - this shows up as error message
+		}
+		catch (final CancellationException exc) {
+			// Dropped from the background queue - rendered again by the caller
+		}
+	}
+
+	/**
+	 * Puts a raster tile into the cache and evicts the least recently used
+	 * tiles, until the tile memory is not exceeded anymore.
+	 *
+	 * @param key Tile key. Must not be null.
+	 * @param iLength Length of the binary content of the depicted molecule.
+	 * @param tile Raster tile. Must not be null.
+	 */
+	private static void putTile(final TileKey key, final int iLength, final BufferedImage tile) {
+		synchronized (g_mapTiles) {
+			final TileEntry entryOld = g_mapTiles.put(key, new TileEntry(iLength, tile));
+			if (entryOld != null) {
+				g_lTileMemoryUsed -= entryOld.m_lBytes;
+			}
+			g_lTileMemoryUsed += key.getBytes();
+
+			final Iterator<TileEntry> i = g_mapTiles.values().iterator();
+			while (g_lTileMemoryUsed > g_lTileMemory && i.hasNext()) {
+				g_lTileMemoryUsed -= i.next().m_lBytes;
+				i.remove();
+			}
+		}
+	}
+
+	//
+	// Inner Classes
+	//
+
+	/**
+	 * A cached depiction. The length of the binary content of the molecule protects
+	 * against hash collisions.
+	 */
+	private static final class CacheEntry {
+
+		/** Length of the binary content of the depicted molecule. */
+		private final int m_iLength;
+
+		/** The depiction task, which holds the result when it is done. */
+		private final SoftReference<DepictionTask> m_refTask;
+
+		/**
+		 * Creates a new cache entry.
+		 *
+		 * @param iLength Length of the binary content of the depicted molecule.
+		 * @param task Depiction task. Must not be null.
+		 */
+		private CacheEntry(final int iLength, final DepictionTask task) {
+			m_iLength = iLength;
+			m_refTask = new SoftReference<DepictionTask>(task);
+		}
+
+		/**
+		 * Determines, if this entry belongs to a molecule with the passed in binary length.
+		 * The content hash was compared already as key of the entry.
+		 *
+		 * @param iLength Length of the binary content of a molecule.
+		 *
+		 * @return True, if the lengths are equal.
+		 */
+		private boolean matches(final int iLength) {
+			return m_iLength == iLength;
+		}
+	}
+
+	/**
+	 * A background task that repaints all registered components when it is done.
+	 * This happens also, if the task was dropped, so that still visible cells request
+	 * their depiction again.
+	 *
+	 * @param <V> Result type.
+	 */
+	private static class RepaintingTask<V> extends FutureTask<V> {
+
+		/** Components to be repainted when done. Access must be synchronized on the task. */
+		private List<WeakReference<Component>> m_listComponentsToRepaint;
+
+		/**
+		 * Creates a new task.
+		 *
+		 * @param callable Computes the result. Must not be null.
+		 */
+		private RepaintingTask(final Callable<V> callable) {
+			super(callable);
+		}
+
+		/**
+		 * Registers a component to be repainted when the task is done.
+		 * Registering the same component several times repaints it only once.
+		 *
+		 * @param comp Component. Must not be null.
+		 */
+		protected synchronized void addComponentToRepaint(final Component comp) {
+			if (m_listComponentsToRepaint == null) {
+				m_listComponentsToRepaint = new ArrayList<WeakReference<Component>>(1);
+			}
+			for (final WeakReference<Component> ref : m_listComponentsToRepaint) {
+				if (ref.get() == comp) {
+					return;
+				}
+			}
+			m_listComponentsToRepaint.add(new WeakReference<Component>(comp));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * Repaints all registered components in the event dispatch thread.
+		 */
+		@Override
+		protected void done() {
+			final List<WeakReference<Component>> listComponents;
+			synchronized (this) {
+				listComponents = m_listComponentsToRepaint;
+				m_listComponentsToRepaint = null;
+			}
+
+			if (listComponents != null) {
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						for (final WeakReference<Component> ref : listComponents) {
+							final Component comp = ref.get();
+							if (comp != null) {
+								comp.repaint();
+							}
+						}
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Renders a depiction.
+	 */
+	private static final class DepictionTask extends RepaintingTask<SVGDocument> {
+
+		/**
+		 * Creates a new task that renders the depiction of the passed in value.
+		 *
+		 * @param value Molecule value. Must not be null.
+		 */
+		private DepictionTask(final RDKitMolValue value) {
+			super(new Callable<SVGDocument>() {
+				@Override
+				public SVGDocument call() throws Exception {
+					return createSvgDocument(value);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Rasterises a depiction and puts the tile into the cache.
+	 */
+	private static final class TileTask extends RepaintingTask<BufferedImage> {
+
+		/** Key of the tile. */
+		private final TileKey m_key;
+
+		/**
+		 * Creates a new task that rasterises the depiction of the passed in cell.
+		 *
+		 * @param key Key of the tile. Must not be null.
+		 * @param iLength Length of the binary content of the cell.
+		 * @param cell Molecule cell. Must not be null.
+		 */
+		private TileTask(final TileKey key, final int iLength, final RDKitMolCell2 cell) {
+			super(new Callable<BufferedImage>() {
+				@Override
+				public BufferedImage call() throws Exception {
+					BufferedImage tile = null;
+					// Uses the cached depiction or renders it in this thread
+					final SVGDocument svgDocument = getResult(getDepiction(cell, null));
+					if (svgDocument != null) {
+						tile = createTile(svgDocument, key.m_iWidth, key.m_iHeight);
+						putTile(key, iLength, tile);
+					}
+					return tile;
+				}
+			});
+			m_key = key;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * Removes the tile from the pending tiles before repainting.
+		 */
+		@Override
+		protected void done() {
+			synchronized (g_mapTiles) {
+				if (g_mapPendingTiles.get(m_key) == this) {
+					g_mapPendingTiles.remove(m_key);
+				}
+			}
+			super.done();
+		}
+	}
+
+	/**
+	 * Key of a raster tile: content hash of the molecule and tile size.
+	 */
+	private static final class TileKey {
+
+		/** Content hash of the molecule. */
+		private final long m_lHash;
+
+		/** Width of the tile. */
+		private final int m_iWidth;
+
+		/** Height of the tile. */
+		private final int m_iHeight;
+
+		/**
+		 * Creates a new tile key.
+		 *
+		 * @param lHash Content hash of the molecule.
+		 * @param iWidth Width of the tile.
+		 * @param iHeight Height of the tile.
+		 */
+		private TileKey(final long lHash, final int iWidth, final int iHeight) {
+			m_lHash = lHash;
+			m_iWidth = iWidth;
+			m_iHeight = iHeight;
+		}
+
+		/**
+		 * Returns the memory used by a tile with this key.
+		 *
+		 * @return Memory in bytes.
+		 */
+		private long getBytes() {
+			return 4L * m_iWidth * m_iHeight;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int)(m_lHash ^ (m_lHash >>> 32)) * 31 * 31 + m_iWidth * 31 + m_iHeight;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof TileKey)) {
+				return false;
+			}
+			final TileKey key = (TileKey)obj;
+			return m_lHash == key.m_lHash && m_iWidth == key.m_iWidth && m_iHeight == key.m_iHeight;
+		}
+	}
+
+	/**
+	 * A cached raster tile. The length of the binary content of the molecule protects
+	 * against hash collisions.
+	 */
+	private static final class TileEntry {
+
+		/** Length of the binary content of the depicted molecule. */
+		private final int m_iLength;
+
+		/** The raster tile. */
+		private final SoftReference<BufferedImage> m_refTile;
+
+		/** Memory in bytes used by the tile. */
+		private final long m_lBytes;
+
+		/**
+		 * Creates a new tile entry.
+		 *
+		 * @param iLength Length of the binary content of the depicted molecule.
+		 * @param tile Raster tile. Must not be null.
+		 */
+		private TileEntry(final int iLength, final BufferedImage tile) {
+			m_iLength = iLength;
+			m_refTile = new SoftReference<BufferedImage>(tile);
+			m_lBytes = 4L * tile.getWidth() * tile.getHeight();
+		}
+
+		/**
+		 * Determines, if this entry belongs to a molecule with the passed in binary length.
+		 * The content hash was compared already as key of the entry.
+		 *
+		 * @param iLength Length of the binary content of a molecule.
+		 *
+		 * @return True, if the lengths are equal.
+		 */
+		private boolean matches(final int iLength) {
+			return m_iLength == iLength;
+		}
+	}
+
+	/**
+	 * A bounded work queue for the background renderer, which hands out the most
+	 * recent request first. When the queue is full, the oldest request gets cancelled,
+	 * as it belongs to rows that were most likely scrolled out of view already.
+	 */
+	private static final class LatestFirstQueue extends LinkedBlockingDeque<Runnable> {
+
+		/** Serial number. */
+		private static final long serialVersionUID = 6170938474917311418L;
+
+		@Override
+		public boolean offer(final Runnable runnable) {
+			offerFirst(runnable);
+			while (size() > MAX_PENDING_REQUESTS) {
+				final Runnable dropped = pollLast();
+				if (dropped instanceof Future) {
+					((Future<?>)dropped).cancel(false);
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -40,11 +40,14 @@ public class RDKitMolSerializer implements Serializer<RDKitMolValue> {
 
 	/**
 	 * The serialization considers only the byte content of the RDKit Molecule Cell, but
-	 * not the SMILES value or canonical flag of the cell.
+	 * not the SMILES value or canonical flag of the cell. For an RDKit Mol Cell the
+	 * returned array is the one held by the immutable cell and not a copy, hence
+	 * callers must not modify it. For other values a new array is returned.
 	 * 
 	 * @param value RDKit Mol Value, usually an RDKit Mol Cell. Can be null.
 	 * 
-	 * @return Binary representation of the molecule. Null, if null was passed in.
+	 * @return Binary representation of the molecule, which must not be modified.
+	 * 		Null, if null was passed in.
 	 */
 	@Override
 	public byte[] serialize(final RDKitMolValue value) throws IOException {
@@ -52,11 +55,13 @@ public class RDKitMolSerializer implements Serializer<RDKitMolValue> {
 
 		if (value != null) {
 			// Shortcut for the normal case that we have a normal RDKit Mol Cell
+			// The content is not copied, as KNIME only writes it to the Python process
 			if (value instanceof RDKitMolCell2) {
-				arrBinaryMolecule = ((RDKitMolCell2)value).getBinaryValue();
+				arrBinaryMolecule = ((RDKitMolCell2)value).getBinaryContent();
 			}
 
 			// Longer way if we have a different implementation (e.g. Adapter Cell), which is slower but always works
+			// The pickle is created freshly, so the array is not shared with anybody
 			else {
 				ROMol mol = null;
 
@@ -116,10 +116,16 @@ public interface RDKitMolValue extends DataValue {
 	 */
 	public static boolean equals(RDKitMolValue mol1, RDKitMolValue mol2) {
 		boolean bSame = false;
+		final RDKitMolCell2 cell1 = RDKitMolCell2.asRDKitMolCell(mol1);
+		final RDKitMolCell2 cell2 = RDKitMolCell2.asRDKitMolCell(mol2);
 
 		if (mol1 == null && mol2 == null) {
 			bSame = true;
 		} 
+		else if (cell1 != null && cell2 != null) {
+			// Shortcut: Compare stored content hashes first and binary content only if they match
+			bSame = cell1.hasSameContent(cell2);
+		}
 		else if (mol1 != null && mol2 != null) {
 			ROMol molRDKit1 = null;
 			ROMol molRDKit2 = null;
@@ -176,26 +182,34 @@ public interface RDKitMolValue extends DataValue {
 		private static final DataValueComparator COMPARATOR = new DataValueComparator() {
 			@Override
 			protected int compareDataValues(final DataValue v1, final DataValue v2) {
-				int atomCount1;
-				int atomCount2;
-				final ROMol mol1 = ((RDKitMolValue) v1).readMoleculeValue();
-				try {
-					atomCount1 = (int) mol1.getNumAtoms();
-				} 
-				finally {
-					mol1.delete();
-				}
-				final ROMol mol2 = ((RDKitMolValue) v2).readMoleculeValue();
-				try {
-					atomCount2 = (int) mol2.getNumAtoms();
-				} 
-				finally {
-					mol2.delete();
-				}
-				return atomCount1 - atomCount2;
+				return Integer.compare(getAtomCount((RDKitMolValue) v1), getAtomCount((RDKitMolValue) v2));
 			}
 		};
 
+		/**
+		 * Determines the number of atoms of the passed in molecule, which is used as sort key.
+		 * For RDKit cells (also wrapped in adapter cells) the number is stored with the cell,
+		 * hence no unpickling is necessary.
+		 * 
+		 * @param value Molecule value. Must not be null.
+		 * 
+		 * @return Number of atoms.
+		 */
+		private static int getAtomCount(final RDKitMolValue value) {
+			final RDKitMolCell2 cell = RDKitMolCell2.asRDKitMolCell(value);
+			if (cell != null) {
+				return cell.getAtomCount();
+			}
+
+			final ROMol mol = value.readMoleculeValue();
+			try {
+				return (int) mol.getNumAtoms();
+			} 
+			finally {
+				mol.delete();
+			}
+		}
+
 		/** Only subclasses are allowed to instantiate this class. */
 		protected RDKUtilityFactory() {
 			super(RDKitMolValue.class);
@@ -51,21 +51,18 @@
 package org.rdkit.knime.types;
 
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.io.StringReader;
-
-import org.RDKit.MolDraw2DSVG;
-import org.RDKit.MolSanitizeException;
-import org.RDKit.RDKFuncs;
-import org.RDKit.ROMol;
-import org.RDKit.RWMol;
-import org.apache.batik.dom.svg.SAXSVGDocumentFactory;
-import org.apache.batik.util.XMLResourceDescriptor;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Future;
+
+import javax.swing.JList;
+import javax.swing.JTable;
+
 import org.knime.base.data.xml.SvgProvider;
-import org.knime.base.data.xml.SvgValueRenderer;
 import org.knime.core.data.AdapterValue;
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
@@ -73,6 +70,7 @@ import org.knime.core.data.MissingCell;
 import org.knime.core.data.renderer.AbstractDataValueRendererFactory;
 import org.knime.core.data.renderer.AbstractPainterDataValueRenderer;
 import org.knime.core.data.renderer.DataValueRenderer;
+import org.rdkit.knime.types.preferences.RDKitTypesPreferencePage;
 import org.w3c.dom.svg.SVGDocument;
 
 /**
@@ -101,6 +99,8 @@ implements SvgProvider {
 		 */
 		@Override
 		public DataValueRenderer createRenderer(final DataColumnSpec colSpec) {
+			// Applies the depiction cache settings from the preferences, if not done yet
+			RDKitTypesPreferencePage.initializeDefaultPreferences();
 			return new RDKitMolValueRenderer();
 		}
 	}
@@ -131,7 +131,10 @@ implements SvgProvider {
 	/** Flag to tell the painting method that the cell is a missing cell. */
 	private boolean m_bIsMissingCell;
 
-	/** Smiles value of the currently painted cell. Only used in error conditions. */
+	/**
+	 * Smiles value of the currently painted cell. Only used in error conditions,
+	 * hence determined lazily when painting an error.
+	 */
 	private String m_strSmiles;
 
 	/** An error string. Only used in error conditions. */
@@ -140,6 +143,15 @@ implements SvgProvider {
 	/** The SVG structure to paint, if it could be determined properly. */
 	private SVGDocument m_svgDocument;
 
+	/** The depiction of the current cell, which may still be rendered in the background. */
+	private Future<SVGDocument> m_depiction;
+
+	/** The molecule value of the current cell. Used to render a pending depiction synchronously. */
+	private RDKitMolValue m_molValue;
+
+	/** Table or list the renderer paints into. Null, if used standalone. */
+	private Component m_compParent;
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -147,6 +159,8 @@ implements SvgProvider {
 	protected void setValue(final Object value) {
 		// Reset values important for painting
 		m_svgDocument = null;
+		m_depiction = null;
+		m_molValue = null;
 		m_strSmiles = null;
 		m_strError = null;
 		m_bIsMissingCell = (value instanceof DataCell && ((DataCell)value).isMissing());
@@ -180,69 +194,46 @@ implements SvgProvider {
 		}
 
 		if (molCell != null) {
-			// Try to render the cell
-			m_strSmiles = molCell.getSmilesValue();
-			ROMol omol = null;
-			final Thread t = Thread.currentThread();
-			final ClassLoader contextClassLoader = t.getContextClassLoader();
-			t.setContextClassLoader(getClass().getClassLoader());
-
-			try {
-				omol = molCell.readMoleculeValue();
-
-				RWMol mol;
-				mol = new RWMol(omol);
-				try {
-					RDKFuncs.prepareMolForDrawing(mol);
-				} catch(final MolSanitizeException ex) {
-					mol.delete();
-					mol = new RWMol(omol);
-					// skip kekulization. If this still fails we throw up our hands
-					RDKFuncs.prepareMolForDrawing(mol,false);
-				}
-				final MolDraw2DSVG molDrawing = new MolDraw2DSVG(300, 300);
-				molDrawing.drawMolecule((ROMol)mol);
-				molDrawing.finishDrawing();
-
-				// the svg namespace causes problems with the javascript table (github #29)
-				final String svg = molDrawing.getDrawingText().replaceAll("svg:", "").replaceAll("xmlns:svg=", "xmlns=");
-				if(mol != omol){
-					mol.delete();
-				}
-				molDrawing.delete();
-				
-				final String parserClass = XMLResourceDescriptor.getXMLParserClassName();
-				final SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parserClass);
-
-				/*
-				 * The document factory loads the XML parser
-				 * (org.apache.xerces.parsers.SAXParser), using the thread's context
-				 * class loader. In KNIME desktop (and batch) this is correctly set, in
-				 * the KNIME server the thread is some TCP-socket-listener-thread, which
-				 * fails to load the parser class (class loading happens in
-				 * org.xml.sax.helpers.XMLReaderFactory# createXMLReader(String) ...
-				 * follow the call)
-				 */
-				m_svgDocument = f.createSVGDocument(null, new StringReader(svg));
-				// remove xml:space='preserved' attribute because it causes atom
-				// labels to be printed off their places
-				m_svgDocument.getRootElement().removeAttributeNS(
-						"http://www.w3.org/XML/1998/namespace", "space");
-			}
-			catch (final Exception ex) {
-				// If conversion fails we set a null value, which will show up as error messgae
-				m_svgDocument = null;
-				// Logging something here may swam the log files - not desired.
-			}
-			finally {
-				t.setContextClassLoader(contextClassLoader);
-				if (omol != null) {
-					omol.delete();
-				}
-			}
+			// Try to render the cell - in the background, if it is painted into a table or list
+			m_molValue = molCell;
+			m_depiction = RDKitMolDepictionCache.getDepiction(molCell, m_compParent);
+			m_svgDocument = RDKitMolDepictionCache.getResult(m_depiction);
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * Remembers the table to repaint it when a depiction was rendered in the background.
+	 */
+	@Override
+	public Component getTableCellRendererComponent(final JTable table, final Object value,
+			final boolean isSelected, final boolean hasFocus, final int row, final int column) {
+		m_compParent = table;
+		return super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Remembers the list to repaint it when a depiction was rendered in the background.
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	public Component getListCellRendererComponent(final JList list, final Object value,
+			final int index, final boolean isSelected, final boolean cellHasFocus) {
+		m_compParent = list;
+		return super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Without a table or list the depiction gets rendered synchronously.
+	 */
+	@Override
+	public Component getRendererComponent(final Object val) {
+		m_compParent = null;
+		return super.getRendererComponent(val);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -281,10 +272,17 @@ implements SvgProvider {
 			}
 		}
 
-		// Case 2: A SVG structure is available
+		// Case 2: A SVG structure is available - painted from a raster tile, if possible
 		else if (m_svgDocument != null) {
 			try {
-				SvgValueRenderer.paint(m_svgDocument, (Graphics2D)g, getBounds(), true);
+				final BufferedImage tile = (m_compParent == null ? null :
+					RDKitMolDepictionCache.getTile(m_molValue, getWidth(), getHeight(), m_compParent));
+				if (tile != null) {
+					g.drawImage(tile, 0, 0, null);
+				}
+				else {
+					RDKitMolDepictionCache.paint(m_svgDocument, (Graphics2D)g, getBounds());
+				}
 			}
 			catch (final Throwable excPainting) {
 				if (excPainting instanceof ThreadDeath) {
@@ -293,18 +291,27 @@ implements SvgProvider {
 				g.setFont(NO_SVG_FONT);
 				drawString(g, "Painting failed for", 2, 14);
 				g.setFont(SMILES_FONT);
-				drawString(g, m_strSmiles, 2, 28);
+				drawString(g, getSmilesForError(), 2, 28);
 			}
 		}
 
-		// Case 3: An error occurred in the RDKit
+		// Case 3: The depiction is still rendered in the background
+		else if (m_depiction != null && !m_depiction.isDone()) {
+			g.setFont(NO_SVG_FONT);
+			g.setColor(Color.gray);
+			drawString(g, "Rendering...", 2, 14);
+			g.setColor(Color.black);
+		}
+
+		// Case 4: An error occurred in the RDKit
 		else {
 			g.setFont(NO_SVG_FONT);
 			g.setColor(Color.red);
-			drawString(g, "2D depiction failed" + (m_strSmiles == null ? "" : " for"), 2, 14);
-			if (m_strSmiles != null) {
+			final String strSmiles = getSmilesForError();
+			drawString(g, "2D depiction failed" + (strSmiles == null ? "" : " for"), 2, 14);
+			if (strSmiles != null) {
 				g.setFont(SMILES_FONT);
-				drawString(g, m_strSmiles, 2, 28);
+				drawString(g, strSmiles, 2, 28);
 			}
 			g.setColor(Color.black);
 		}
@@ -315,6 +322,10 @@ implements SvgProvider {
 	 */
 	@Override
 	public SVGDocument getSvg() {
+		if (m_svgDocument == null && m_depiction != null && !m_depiction.isDone()) {
+			m_depiction = RDKitMolDepictionCache.getDepiction(m_molValue, null);
+			m_svgDocument = RDKitMolDepictionCache.getResult(m_depiction);
+		}
 		return m_svgDocument;
 	}
 
@@ -322,6 +333,25 @@ implements SvgProvider {
 	// Private Methods
 	//
 
+	/**
+	 * Returns the SMILES of the current value to be shown in an error message. They are
+	 * only determined here, because calculating them from the molecule is too expensive
+	 * for every painted cell.
+	 *
+	 * @return SMILES or null, if not available.
+	 */
+	private String getSmilesForError() {
+		if (m_strSmiles == null && m_molValue != null) {
+			try {
+				m_strSmiles = m_molValue.getSmilesValue();
+			}
+			catch (final Exception exc) {
+				// Ignored - the error message is shown without SMILES
+			}
+		}
+		return m_strSmiles;
+	}
+
 	/**
 	 * Draws a multiline string to the specified graphics context at the position (x;y).
 	 * 
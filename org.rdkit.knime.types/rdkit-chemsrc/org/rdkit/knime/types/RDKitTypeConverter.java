@@ -49,6 +49,10 @@ package org.rdkit.knime.types;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.RDKit.ROMol;
 import org.RDKit.RWMol;
@@ -84,6 +88,21 @@ public abstract class RDKitTypeConverter extends DataCellTypeConverter implement
    /** The logging instance. */
    private static final NodeLogger LOGGER = NodeLogger.getLogger(RDKitTypeConverter.class);
 
+	/** The maximal number of sample inputs recorded per error class. */
+	private static final int MAX_ERROR_SAMPLES = 3;
+
+	/**
+	 * The maximal number of error classes recorded. Further errors are counted
+	 * in the class {@link #OTHER_ERRORS}.
+	 */
+	private static final int MAX_ERROR_CLASSES = 20;
+
+	/** The error class that collects all errors exceeding {@link #MAX_ERROR_CLASSES}. */
+	private static final String OTHER_ERRORS = "Other errors";
+
+	/** The maximal length of molecule strings in error messages and samples. */
+	private static final int MAX_SAMPLE_LENGTH = 200;
+
 	/** Array with the value classes that can be handled by an RDKit Adapter. */
 	@SuppressWarnings("unchecked")
 	public static final Class<? extends DataValue>[] ADAPTABLE_VALUE_CLASSES = new Class[] {
@@ -99,8 +118,11 @@ public abstract class RDKitTypeConverter extends DataCellTypeConverter implement
 	/** The output type of the converter instance. */
 	private final DataType m_outputType;
    
-	/** The list of registered listeners. */
-   private final List<RDKitTypeConversionErrorListener> m_listListeners;
+	/** The list of registered listeners. Copied on write, so that errors can be fired without locking. */
+   private final CopyOnWriteArrayList<RDKitTypeConversionErrorListener> m_listListeners;
+
+	/** Aggregated conversion errors, keyed by error class. */
+	private final ConcurrentHashMap<String, ErrorStatistics> m_mapErrors;
 
 	//
 	// Constructors
@@ -115,7 +137,8 @@ public abstract class RDKitTypeConverter extends DataCellTypeConverter implement
 		super(true); // True means that parallel processing of conversion is allowed
 		m_inputDataInfo = null;
 		m_outputType = outputType;
-		m_listListeners = new ArrayList<>();
+		m_listListeners = new CopyOnWriteArrayList<>();
+		m_mapErrors = new ConcurrentHashMap<>();
 	}
 
 	//
@@ -148,31 +171,81 @@ public abstract class RDKitTypeConverter extends DataCellTypeConverter implement
 		return m_outputType;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * Records the error in the aggregated error statistics and notifies all listeners.
+	 */
 	@Override
 	public void onConvertException(DataCell source, Exception e) {
 	   super.onConvertException(source, e);
+	   recordError(source, e);
 	   onFireConversionErrorEvent(source, e);
 	}
 	
 	@Override
 	public void addTypeConversionErrorListener(RDKitTypeConversionErrorListener l) {
       if (l != null) {
-         synchronized (m_listListeners) {
-            if (!m_listListeners.contains(l)) {
-               m_listListeners.add(l);
-            }
-         }
+         m_listListeners.addIfAbsent(l);
       }
 	}
 	
 	@Override
 	public void removeTypeConversionErrorListener(RDKitTypeConversionErrorListener l) {
       if (l != null) {
-         synchronized (m_listListeners) {
-            m_listListeners.remove(l);
-         }
+         m_listListeners.remove(l);
       }
 	}
+
+	/**
+	 * Returns the total number of conversion errors that were recorded
+	 * since creation or the last call to {@link #resetErrors()}.
+	 * 
+	 * @return Number of errors.
+	 */
+	public long getErrorCount() {
+	   long lCount = 0;
+	   for (final ErrorStatistics stats : m_mapErrors.values()) {
+	      lCount += stats.m_lCount.sum();
+	   }
+	   return lCount;
+	}
+
+	/**
+	 * Returns a summary of all recorded conversion errors with one line per error class,
+	 * containing the number of occurrences and a few sample inputs.
+	 * 
+	 * @return Error summary or null, if no errors were recorded.
+	 */
+	public String getErrorSummary() {
+	   if (m_mapErrors.isEmpty()) {
+	      return null;
+	   }
+
+	   final StringBuilder sb = new StringBuilder();
+	   for (final Map.Entry<String, ErrorStatistics> entry : m_mapErrors.entrySet()) {
+	      final ErrorStatistics stats = entry.getValue();
+	      if (sb.length() > 0) {
+	         sb.append('\n');
+	      }
+	      sb.append(stats.m_lCount.sum()).append(" x ").append(entry.getKey());
+	      final List<String> listSamples = stats.getSamples();
+	      if (!listSamples.isEmpty()) {
+	         sb.append(", e.g. for ");
+	         for (int i = 0; i < listSamples.size(); i++) {
+	            sb.append(i == 0 ? "'" : ", '").append(listSamples.get(i)).append('\'');
+	         }
+	      }
+	   }
+
+	   return sb.toString();
+	}
+
+	/**
+	 * Clears all recorded conversion errors.
+	 */
+	public void resetErrors() {
+	   m_mapErrors.clear();
+	}
 	
 	//
 	// Protected Methods
@@ -185,21 +258,14 @@ public abstract class RDKitTypeConverter extends DataCellTypeConverter implement
     * @param exc Exception that occurred.
     */
    protected void onFireConversionErrorEvent(final DataCell source, final Exception exc) {
-      // Get copy of list
-      List<RDKitTypeConversionErrorListener> listCopy = null;
-
-      // Make a copy of the listener list
-      synchronized (m_listListeners) {
-         listCopy = new ArrayList<RDKitTypeConversionErrorListener>(m_listListeners.size());
-         for (final RDKitTypeConversionErrorListener l : m_listListeners) {
-            listCopy.add(l);
-         }
+      if (m_listListeners.isEmpty()) {
+         return;
       }
 
       final InputDataInfo inputDataInfo = getInputDataInfo(); // Can be null
       
-      // Notify listeners
-      for (final RDKitTypeConversionErrorListener l : listCopy) {
+      // Notify listeners - iterating a copy-on-write list needs no locking
+      for (final RDKitTypeConversionErrorListener l : m_listListeners) {
          try {
             l.onTypeConversionError(inputDataInfo, source, exc);
          }
@@ -484,35 +550,8 @@ public abstract class RDKitTypeConverter extends DataCellTypeConverter implement
 
 				// Do error handling depending on user settings
 				if (mol == null || excCaught != null) {
-					// Find error message
-					final StringBuilder sbError = new StringBuilder("SDF");
-
-					// Specify error type
-					if (mol == null) {
-						sbError.append(" Parsing Error (");
-					}
-					else {
-						sbError.append(" Process Error (");
-					}
-
-					// Specify exception
-					if (excCaught != null) {
-						sbError.append(excCaught.getClass().getSimpleName());
-
-						// Specify error message
-						final String strMessage = excCaught.getMessage();
-						if (strMessage != null) {
-							sbError.append(" (").append(strMessage).append(")");
-						}
-					}
-					else {
-						sbError.append("Details unknown");
-					}
-
-					sbError.append(") for\n" + strSdf);
-
 					// Throw an exception - this will lead to a missing cell with the error message
-					throw new RDKitTypeConverterException(sbError.toString(), excCaught);
+					throw createConversionException("SDF", mol == null, excCaught, strSdf);
 				}
 			}
 			finally {
@@ -565,35 +604,8 @@ public abstract class RDKitTypeConverter extends DataCellTypeConverter implement
 
 				// Do error handling depending on user settings
 				if (mol == null || excCaught != null) {
-					// Find error message
-					final StringBuilder sbError = new StringBuilder("SMILES");
-
-					// Specify error type
-					if (mol == null) {
-						sbError.append(" Parsing Error (");
-					}
-					else {
-						sbError.append(" Process Error (");
-					}
-
-					// Specify exception
-					if (excCaught != null) {
-						sbError.append(excCaught.getClass().getSimpleName());
-
-						// Specify error message
-						final String strMessage = excCaught.getMessage();
-						if (strMessage != null) {
-							sbError.append(" (").append(strMessage).append(")");
-						}
-					}
-					else {
-						sbError.append("Details unknown");
-					}
-
-					sbError.append(") for\n" + strSmiles);
-
 					// Throw an exception - this will lead to a missing cell with the error message
-					throw new RDKitTypeConverterException(sbError.toString(), excCaught);
+					throw createConversionException("SMILES", mol == null, excCaught, strSmiles);
 				}
 			}
 			finally {
@@ -605,6 +617,109 @@ public abstract class RDKitTypeConverter extends DataCellTypeConverter implement
 
 		return cell;
 	}
+
+
+	/**
+	 * Determines the error class of the passed in conversion exception, which is the
+	 * error message without molecule information.
+	 * 
+	 * @param exc Conversion exception. Can be null.
+	 * 
+	 * @return Error class. Never null.
+	 */
+	public static String getErrorClass(final Exception exc) {
+	   String strErrorClass = null;
+
+	   if (exc instanceof RDKitTypeConverterException) {
+	      strErrorClass = ((RDKitTypeConverterException)exc).getErrorClass();
+	   }
+
+	   if (strErrorClass == null) {
+	      final String strMessage = (exc == null ? null : exc.getMessage());
+	      if (strMessage == null || strMessage.trim().isEmpty()) {
+	         strErrorClass = (exc == null ? "Unknown error." : exc.getClass().getSimpleName());
+	      }
+	      else {
+	         final int iIndex = strMessage.indexOf('\n');
+	         strErrorClass = (iIndex >= 0 ? strMessage.substring(0, iIndex) : strMessage);
+	      }
+	   }
+
+	   return strErrorClass;
+	}
+
+	//
+	// Private Methods
+	//
+
+	/**
+	 * Records a conversion error in the aggregated error statistics. Once
+	 * {@link #MAX_ERROR_CLASSES} error classes are known, errors of new classes
+	 * are counted as {@link #OTHER_ERRORS}, so that the statistics stay small.
+	 * 
+	 * @param source Data cell that failed conversion. Can be null.
+	 * @param exc Exception that occurred. Can be null.
+	 */
+	private void recordError(final DataCell source, final Exception exc) {
+	   String strErrorClass = getErrorClass(exc);
+	   ErrorStatistics stats = m_mapErrors.get(strErrorClass);
+	   if (stats == null && m_mapErrors.size() >= MAX_ERROR_CLASSES) {
+	      strErrorClass = OTHER_ERRORS;
+	      stats = m_mapErrors.get(strErrorClass);
+	   }
+	   if (stats == null) {
+	      final ErrorStatistics statsNew = new ErrorStatistics();
+	      stats = m_mapErrors.putIfAbsent(strErrorClass, statsNew);
+	      if (stats == null) {
+	         stats = statsNew;
+	      }
+	   }
+
+	   stats.m_lCount.increment();
+	   if (source != null && stats.needsSamples()) {
+	      stats.addSample(abbreviate(source.toString()));
+	   }
+	}
+
+	//
+	// Private Static Methods
+	//
+
+	/**
+	 * Creates the exception for a failed conversion. The error message contains
+	 * the message of the causing exception and an abbreviated version of the molecule
+	 * string. The error class consists of format and exception type only, because
+	 * RDKit messages often name atoms or positions of the individual molecule.
+	 * 
+	 * @param strFormat Molecule format, e.g. SDF or SMILES.
+	 * @param bParsingFailed True, if parsing failed. False, if processing the parsed molecule failed.
+	 * @param excCaught The causing exception. Can be null.
+	 * @param strInput The molecule string that failed conversion.
+	 * 
+	 * @return Conversion exception.
+	 */
+	private static RDKitTypeConverterException createConversionException(final String strFormat,
+	      final boolean bParsingFailed, final Exception excCaught, final String strInput) {
+	   final String strErrorClass = strFormat + (bParsingFailed ? " Parsing Error (" : " Process Error (") +
+	         (excCaught != null ? excCaught.getClass().getSimpleName() : "Details unknown") + ")";
+	   final String strMessage = (excCaught == null ? null : excCaught.getMessage());
+
+	   return new RDKitTypeConverterException(strErrorClass +
+	         (strMessage != null ? ": " + strMessage : "") + " for\n" + abbreviate(strInput),
+	         excCaught, strErrorClass);
+	}
+
+	/**
+	 * Abbreviates the passed in molecule string, if it is longer than {@link #MAX_SAMPLE_LENGTH}.
+	 * 
+	 * @param str Molecule string. Can be null.
+	 * 
+	 * @return Abbreviated string or null, if null was passed in.
+	 */
+	private static String abbreviate(final String str) {
+	   return (str == null || str.length() <= MAX_SAMPLE_LENGTH ? str :
+	      str.substring(0, MAX_SAMPLE_LENGTH) + "...");
+	}
    
    /**
     * Traverses the list of RDKit supported value classes and returns only the classes that are not compatible and 
@@ -655,4 +770,54 @@ public abstract class RDKitTypeConverter extends DataCellTypeConverter implement
 	   
 	   return (Class<? extends DataValue>[])listValueClasses.toArray(new Class[listValueClasses.size()]);
 	}
+
+	//
+	// Inner Classes
+	//
+
+	/**
+	 * Number of occurrences and a few sample inputs of a single error class.
+	 */
+	private static final class ErrorStatistics {
+
+	   /** Number of occurrences. */
+	   private final LongAdder m_lCount = new LongAdder();
+
+	   /** The first sample inputs. Access must be synchronized on the list. */
+	   private final List<String> m_listSamples = new ArrayList<String>(MAX_ERROR_SAMPLES);
+
+	   /**
+	    * Determines, if more samples are needed. This check is not synchronized,
+	    * it just avoids the string conversion of the source cell in most cases.
+	    * 
+	    * @return True, if less than {@link #MAX_ERROR_SAMPLES} samples were recorded.
+	    */
+	   private boolean needsSamples() {
+	      return m_listSamples.size() < MAX_ERROR_SAMPLES;
+	   }
+
+	   /**
+	    * Adds a sample input, if less than {@link #MAX_ERROR_SAMPLES} samples were recorded.
+	    * 
+	    * @param strSample Sample input.
+	    */
+	   private void addSample(final String strSample) {
+	      synchronized (m_listSamples) {
+	         if (m_listSamples.size() < MAX_ERROR_SAMPLES) {
+	            m_listSamples.add(strSample);
+	         }
+	      }
+	   }
+
+	   /**
+	    * Returns a copy of the recorded samples.
+	    * 
+	    * @return Samples.
+	    */
+	   private List<String> getSamples() {
+	      synchronized (m_listSamples) {
+	         return new ArrayList<String>(m_listSamples);
+	      }
+	   }
+	}
 }
@@ -63,24 +63,59 @@ public class RDKitTypeConverterException extends RuntimeException {
 	/** The serial number. */
 	private static final long serialVersionUID = 4754887531605515749L;
 
+	//
+	// Members
+	//
+
+	/** Short error description without molecule information, used to aggregate errors. Can be null. */
+	private final String m_strErrorClass;
+
 	//
 	// Constructors
 	//
 
 	public RDKitTypeConverterException() {
-		super();
+		this(null, null, null);
 	}
 
 	public RDKitTypeConverterException(final String message) {
-		super(message);
+		this(message, null, null);
 	}
 
 	public RDKitTypeConverterException(final Throwable cause) {
 		super(cause);
+		m_strErrorClass = null;
 	}
 
 	public RDKitTypeConverterException(final String message, final Throwable cause) {
+		this(message, cause, null);
+	}
+
+	/**
+	 * Creates a new exception.
+	 * 
+	 * @param message Full error message. Can be null.
+	 * @param cause Causing exception. Can be null.
+	 * @param errorClass Short error description without molecule information, which
+	 * 		is the same for all errors of the same kind. Can be null.
+	 */
+	public RDKitTypeConverterException(final String message, final Throwable cause, final String errorClass) {
 		super(message, cause);
+		m_strErrorClass = errorClass;
+	}
+
+	//
+	// Public Methods
+	//
+
+	/**
+	 * Returns the short error description without molecule information, which
+	 * is the same for all errors of the same kind.
+	 * 
+	 * @return Error class or null, if not set.
+	 */
+	public String getErrorClass() {
+		return m_strErrorClass;
 	}
 
 }
@@ -48,13 +48,18 @@
  */
 package org.rdkit.knime.types.preferences;
 
+import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.preference.IntegerFieldEditor;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 import org.knime.core.node.NodeLogger;
 import org.rdkit.knime.RDKitTypesPluginActivator;
 import org.rdkit.knime.headers.HeaderPropertyHandlerRegistry;
+import org.rdkit.knime.types.RDKitMolDepictionCache;
 
 /**
  * This is the preference page for the RDKit chemistry type definition. It
@@ -83,6 +88,31 @@ implements IWorkbenchPreferencePage {
 	public static final String PREF_KEY_HANDLERS_DISABLED =
 			HeaderPropertyHandlerRegistry.PREF_KEY_HANDLERS_DISABLED;
 
+	/** The preference key to store the binary content of RDKit molecules compressed in tables. */
+	public static final String PREF_KEY_COMPRESS_MOLECULES = "compressMolecules";
+
+	/** The preference key to store canonical SMILES together with RDKit molecules in tables. */
+	public static final String PREF_KEY_STORE_CANONICAL_SMILES = "storeCanonicalSmiles";
+
+	/** The preference key for the number of 2D depictions kept in memory. */
+	public static final String PREF_KEY_DEPICTION_CACHE_SIZE = "depictionCacheSize";
+
+	/** The preference key for the memory in MB used for raster tiles of 2D depictions. */
+	public static final String PREF_KEY_DEPICTION_TILE_MEMORY = "depictionTileMemory";
+
+	/** The default setting for compressing RDKit molecules in tables. */
+	public static final boolean DEFAULT_COMPRESS_MOLECULES = false;
+
+	/** The default setting for storing canonical SMILES together with RDKit molecules in tables. */
+	public static final boolean DEFAULT_STORE_CANONICAL_SMILES = true;
+
+	/** The default number of 2D depictions kept in memory. */
+	public static final int DEFAULT_DEPICTION_CACHE_SIZE = RDKitMolDepictionCache.DEFAULT_CAPACITY;
+
+	/** The default memory in MB used for raster tiles of 2D depictions. */
+	public static final int DEFAULT_DEPICTION_TILE_MEMORY =
+			(int)(RDKitMolDepictionCache.DEFAULT_TILE_MEMORY / (1024 * 1024));
+
 	/** The logger instance. */
 	private static final NodeLogger LOGGER = NodeLogger.getLogger(
 			RDKitTypesPreferencePage.class);
@@ -97,6 +127,18 @@ implements IWorkbenchPreferencePage {
 	 */
 	private static boolean g_bDefaultInitializationDone = false;
 
+	/**
+	 * Cached setting for compressing RDKit molecules. It is read for every stored cell,
+	 * hence it is kept here and updated when the preference changes.
+	 */
+	private static volatile boolean g_bCompressMolecules = DEFAULT_COMPRESS_MOLECULES;
+
+	/**
+	 * Cached setting for storing canonical SMILES. It is read for every stored cell,
+	 * hence it is kept here and updated when the preference changes.
+	 */
+	private static volatile boolean g_bStoreCanonicalSmiles = DEFAULT_STORE_CANONICAL_SMILES;
+
 	//
 	// Constructors
 	//
@@ -115,6 +157,22 @@ implements IWorkbenchPreferencePage {
 	/** {@inheritDoc} */
 	@Override
 	protected void createFieldEditors() {
+		addField(new BooleanFieldEditor(PREF_KEY_COMPRESS_MOLECULES,
+				"Compress RDKit molecules when storing tables",
+				getFieldEditorParent()));
+		addField(new BooleanFieldEditor(PREF_KEY_STORE_CANONICAL_SMILES,
+				"Store canonical SMILES with RDKit molecules",
+				getFieldEditorParent()));
+
+		final IntegerFieldEditor editorDepictionCacheSize = new IntegerFieldEditor(PREF_KEY_DEPICTION_CACHE_SIZE,
+				"2D depictions kept in memory (0 = no caching): ", getFieldEditorParent());
+		editorDepictionCacheSize.setValidRange(0, 100000);
+		addField(editorDepictionCacheSize);
+
+		final IntegerFieldEditor editorDepictionTileMemory = new IntegerFieldEditor(PREF_KEY_DEPICTION_TILE_MEMORY,
+				"Memory for pre-rendered 2D depictions in MB (0 = no pre-rendering): ", getFieldEditorParent());
+		editorDepictionTileMemory.setValidRange(0, 1024);
+		addField(editorDepictionTileMemory);
 	}
 
 	/**
@@ -153,6 +211,30 @@ implements IWorkbenchPreferencePage {
 					prefStore.setDefault(
 							HeaderPropertyHandlerRegistry.PREF_KEY_HANDLERS_DISABLED,
 							HeaderPropertyHandlerRegistry.getInstance().getDefaultDisabledColumnRenderers());
+					prefStore.setDefault(PREF_KEY_COMPRESS_MOLECULES, DEFAULT_COMPRESS_MOLECULES);
+					prefStore.setDefault(PREF_KEY_STORE_CANONICAL_SMILES, DEFAULT_STORE_CANONICAL_SMILES);
+					prefStore.setDefault(PREF_KEY_DEPICTION_CACHE_SIZE, DEFAULT_DEPICTION_CACHE_SIZE);
+					prefStore.setDefault(PREF_KEY_DEPICTION_TILE_MEMORY, DEFAULT_DEPICTION_TILE_MEMORY);
+
+					// Keep storage settings cached, because they are read for every stored cell
+					g_bCompressMolecules = prefStore.getBoolean(PREF_KEY_COMPRESS_MOLECULES);
+					g_bStoreCanonicalSmiles = prefStore.getBoolean(PREF_KEY_STORE_CANONICAL_SMILES);
+					applyDepictionCacheSettings(prefStore);
+					prefStore.addPropertyChangeListener(new IPropertyChangeListener() {
+						@Override
+						public void propertyChange(final PropertyChangeEvent event) {
+							if (PREF_KEY_COMPRESS_MOLECULES.equals(event.getProperty())) {
+								g_bCompressMolecules = prefStore.getBoolean(PREF_KEY_COMPRESS_MOLECULES);
+							}
+							else if (PREF_KEY_STORE_CANONICAL_SMILES.equals(event.getProperty())) {
+								g_bStoreCanonicalSmiles = prefStore.getBoolean(PREF_KEY_STORE_CANONICAL_SMILES);
+							}
+							else if (PREF_KEY_DEPICTION_CACHE_SIZE.equals(event.getProperty()) ||
+									PREF_KEY_DEPICTION_TILE_MEMORY.equals(event.getProperty())) {
+								applyDepictionCacheSettings(prefStore);
+							}
+						}
+					});
 				}
 			}
 			catch (final Exception exc) {
@@ -161,4 +243,48 @@ implements IWorkbenchPreferencePage {
 		}
 	}
 
+	/**
+	 * Passes the depiction cache settings of the preference store to the
+	 * {@link RDKitMolDepictionCache}.
+	 * 
+	 * @param prefStore Preference store. Must not be null.
+	 */
+	private static void applyDepictionCacheSettings(final IPreferenceStore prefStore) {
+		RDKitMolDepictionCache.setCapacity(Math.max(0, prefStore.getInt(PREF_KEY_DEPICTION_CACHE_SIZE)));
+		RDKitMolDepictionCache.setTileMemory(
+				Math.max(0, prefStore.getInt(PREF_KEY_DEPICTION_TILE_MEMORY)) * 1024L * 1024L);
+	}
+
+	/**
+	 * Initializes the default preferences and the cached settings, if not done yet.
+	 */
+	private static void ensureDefaultsInitialized() {
+		if (!g_bDefaultInitializationDone) {
+			initializeDefaultPreferences();
+		}
+	}
+
+	/**
+	 * Determines, if the binary content of RDKit molecules shall be stored compressed in tables.
+	 * 
+	 * @return True to compress molecules. False otherwise.
+	 */
+	public static boolean isCompressMolecules() {
+		ensureDefaultsInitialized();
+		return g_bCompressMolecules;
+	}
+
+	/**
+	 * Determines, if canonical SMILES shall be stored together with RDKit molecules in tables.
+	 * If not, they get recalculated from the molecule when needed. SMILES that were
+	 * provided as input (non-canonical) are always stored. Canonical SMILES that were
+	 * not calculated yet are never stored.
+	 * 
+	 * @return True to store canonical SMILES. False otherwise.
+	 */
+	public static boolean isStoreCanonicalSmiles() {
+		ensureDefaultsInitialized();
+		return g_bStoreCanonicalSmiles;
+	}
+
 }
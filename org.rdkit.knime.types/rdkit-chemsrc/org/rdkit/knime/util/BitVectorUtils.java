@@ -0,0 +1,373 @@
+/*
+ * ------------------------------------------------------------------
+ * This source code, its documentation and all appendant files
+ * are protected by copyright law. All rights reserved.
+ *
+ * Copyright (C) 2012
+ * Novartis Institutes for BioMedical Research
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.rdkit.knime.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.RDKit.ExplicitBitVect;
+import org.RDKit.Int_Vect;
+import org.knime.core.data.vector.bitvector.BitVectorValue;
+import org.knime.core.data.vector.bitvector.DenseBitVector;
+import org.knime.core.data.vector.bitvector.DenseBitVectorCell;
+
+/**
+ * Utility class to convert bit vectors between RDKit and KNIME in bulk. Instead of
+ * reading or setting every bit with a separate JNI call, the bits are transferred in
+ * the binary pickle format of RDKit, which run length encodes the on bits, and filled
+ * into the 64-bit words of a {@link DenseBitVector} in a single pass. If a pickle cannot
+ * be interpreted, the conversion falls back to transferring the list of on bits.
+ * 
+ * @author Manuel Schwarze
+ */
+public final class BitVectorUtils {
+
+	//
+	// Constants
+	//
+
+	/** The pickle version of RDKit bit vectors with run length encoded on bits. */
+	private static final int PICKLE_VERSION = 32;
+
+	/** Size of the pickle header: version, number of bits and number of on bits. */
+	private static final int PICKLE_HEADER_SIZE = 12;
+
+	//
+	// Constructor
+	//
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private BitVectorUtils() {
+		// Utility class
+	}
+
+	//
+	// Static Public Methods
+	//
+
+	/**
+	 * Converts the passed in RDKit bit vector into a KNIME bit vector.
+	 * 
+	 * @param fpRdkit RDKit bit vector. Can be null.
+	 * 
+	 * @return KNIME bit vector. Null, if null was passed in.
+	 */
+	public static DenseBitVector toDenseBitVector(final ExplicitBitVect fpRdkit) {
+		DenseBitVector fp = null;
+
+		if (fpRdkit != null) {
+			try {
+				fp = fromPickle(fpRdkit.toByteArray());
+			}
+			catch (final RuntimeException exc) {
+				// Ignored - the fallback below is used
+			}
+
+			if (fp == null) {
+				fp = fromOnBits(fpRdkit);
+			}
+		}
+
+		return fp;
+	}
+
+	/**
+	 * Converts the passed in pickle of an RDKit bit vector, as produced by
+	 * {@link ExplicitBitVect#toByteArray()}, into a KNIME bit vector. If the pickle
+	 * cannot be decoded here, it gets unpickled by the RDKit.
+	 * 
+	 * @param arrPickle Pickle of an RDKit bit vector. Can be null.
+	 * 
+	 * @return KNIME bit vector. Null, if null was passed in.
+	 */
+	public static DenseBitVector toDenseBitVector(final byte[] arrPickle) {
+		DenseBitVector fp = null;
+
+		if (arrPickle != null) {
+			fp = fromPickle(arrPickle);
+
+			if (fp == null) {
+				final ExplicitBitVect fpRdkit = ExplicitBitVect.fromByteArray(arrPickle);
+				try {
+					fp = fromOnBits(fpRdkit);
+				}
+				finally {
+					fpRdkit.delete();
+				}
+			}
+		}
+
+		return fp;
+	}
+
+	/**
+	 * Converts the passed in KNIME bit vector into an RDKit bit vector.
+	 * The caller is responsible for deleting it.
+	 * 
+	 * @param fp KNIME bit vector. Can be null.
+	 * 
+	 * @return RDKit bit vector. Null, if null was passed in.
+	 */
+	public static ExplicitBitVect toExplicitBitVect(final BitVectorValue fp) {
+		ExplicitBitVect fpRdkit = null;
+
+		if (fp != null) {
+			final long lLength = fp.length();
+			final long lCardinality = fp.cardinality();
+
+			if (lLength <= Integer.MAX_VALUE) {
+				try {
+					fpRdkit = ExplicitBitVect.fromByteArray(toPickle(fp, (int)lLength, (int)lCardinality));
+					if (fpRdkit != null && (fpRdkit.getNumBits() != lLength ||
+							fpRdkit.getNumOnBits() != lCardinality)) {
+						fpRdkit.delete();
+						fpRdkit = null;
+					}
+				}
+				catch (final RuntimeException exc) {
+					// Ignored - the fallback below is used
+					fpRdkit = null;
+				}
+			}
+
+			if (fpRdkit == null) {
+				fpRdkit = new ExplicitBitVect(lLength);
+				for (long lBit = fp.nextSetBit(0); lBit >= 0; lBit = fp.nextSetBit(lBit + 1)) {
+					fpRdkit.setBit(lBit);
+				}
+			}
+		}
+
+		return fpRdkit;
+	}
+
+	/**
+	 * Returns the bits of the passed in KNIME bit vector as 64-bit words, with bit 0
+	 * in the lowest bit of the first word. The words of a {@link DenseBitVectorCell}
+	 * are copied in one go, other bit vectors are read bit by bit.
+	 * 
+	 * @param fp KNIME bit vector. Can be null.
+	 * 
+	 * @return Array of (length + 63) / 64 words. Null, if null was passed in or
+	 * 		if the bit vector is too long to be stored in an array.
+	 */
+	public static long[] toWords(final BitVectorValue fp) {
+		long[] arrWords = null;
+
+		if (fp != null) {
+			final long lLength = fp.length();
+
+			if (fp instanceof DenseBitVectorCell) {
+				arrWords = ((DenseBitVectorCell)fp).getBitVectorCopy().getAllBits();
+			}
+			else if (((lLength + 63) >>> 6) <= Integer.MAX_VALUE) {
+				arrWords = new long[(int)((lLength + 63) >>> 6)];
+				for (long lBit = fp.nextSetBit(0); lBit >= 0; lBit = fp.nextSetBit(lBit + 1)) {
+					arrWords[(int)(lBit >>> 6)] |= 1L << lBit;
+				}
+			}
+		}
+
+		return arrWords;
+	}
+
+	//
+	// Static Private Methods
+	//
+
+	/**
+	 * Creates a KNIME bit vector from the pickle of an RDKit bit vector.
+	 * 
+	 * @param arrPickle Pickle. Can be null.
+	 * 
+	 * @return KNIME bit vector or null, if the pickle has an unknown version or is inconsistent.
+	 */
+	private static DenseBitVector fromPickle(final byte[] arrPickle) {
+		if (arrPickle == null || arrPickle.length < PICKLE_HEADER_SIZE) {
+			return null;
+		}
+
+		final ByteBuffer buffer = ByteBuffer.wrap(arrPickle).order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.getInt() != -PICKLE_VERSION) {
+			return null;
+		}
+
+		final int iLength = buffer.getInt();
+		final int iOnBits = buffer.getInt();
+		if (iLength < 0 || iOnBits < 0 || iOnBits > iLength) {
+			return null;
+		}
+
+		final long[] arrWords = new long[(iLength + 63) >>> 6];
+		long lBit = -1;
+		for (int i = 0; i < iOnBits; i++) {
+			lBit += readPackedInt(buffer) + 1;
+			if (lBit >= iLength) {
+				return null;
+			}
+			arrWords[(int)(lBit >>> 6)] |= 1L << lBit;
+		}
+
+		// The trailing zeros must complete the vector exactly
+		if (lBit + readPackedInt(buffer) + 1 != iLength || buffer.hasRemaining()) {
+			return null;
+		}
+
+		return new DenseBitVector(arrWords, iLength);
+	}
+
+	/**
+	 * Creates a KNIME bit vector from the on bits of an RDKit bit vector.
+	 * 
+	 * @param fpRdkit RDKit bit vector. Must not be null.
+	 * 
+	 * @return KNIME bit vector.
+	 */
+	private static DenseBitVector fromOnBits(final ExplicitBitVect fpRdkit) {
+		final long lLength = fpRdkit.getNumBits();
+		final long[] arrWords = new long[(int)((lLength + 63) >>> 6)];
+		final Int_Vect vectOnBits = fpRdkit.getOnBits();
+
+		try {
+			final int iCount = (int)vectOnBits.size();
+			for (int i = 0; i < iCount; i++) {
+				final int iBit = vectOnBits.get(i);
+				arrWords[iBit >>> 6] |= 1L << iBit;
+			}
+		}
+		finally {
+			vectOnBits.delete();
+		}
+
+		return new DenseBitVector(arrWords, lLength);
+	}
+
+	/**
+	 * Creates the pickle of an RDKit bit vector from a KNIME bit vector.
+	 * 
+	 * @param fp KNIME bit vector. Must not be null.
+	 * @param iLength Number of bits.
+	 * @param iCardinality Number of on bits.
+	 * 
+	 * @return Pickle.
+	 */
+	private static byte[] toPickle(final BitVectorValue fp, final int iLength, final int iCardinality) {
+		final ByteBuffer buffer = ByteBuffer.allocate(PICKLE_HEADER_SIZE + 4 * (iCardinality + 1))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(-PICKLE_VERSION);
+		buffer.putInt(iLength);
+		buffer.putInt(iCardinality);
+
+		long lPrevious = -1;
+		for (long lBit = fp.nextSetBit(0); lBit >= 0; lBit = fp.nextSetBit(lBit + 1)) {
+			writePackedInt(buffer, (int)(lBit - lPrevious - 1));
+			lPrevious = lBit;
+		}
+		writePackedInt(buffer, (int)(iLength - lPrevious - 1));
+
+		final byte[] arrPickle = new byte[buffer.position()];
+		System.arraycopy(buffer.array(), 0, arrPickle, 0, arrPickle.length);
+		return arrPickle;
+	}
+
+	/**
+	 * Reads an integer in the packed format of RDKit, which uses 1 to 4 bytes. The lowest
+	 * bits of the first byte tell the number of bytes, the value is stored above them with
+	 * an offset of the values that fit into fewer bytes.
+	 * 
+	 * @param buffer Buffer to read from. Must not be null.
+	 * 
+	 * @return Value.
+	 */
+	private static int readPackedInt(final ByteBuffer buffer) {
+		int iValue = buffer.get() & 0xFF;
+		if ((iValue & 1) == 0) {
+			return iValue >>> 1;
+		}
+		iValue |= (buffer.get() & 0xFF) << 8;
+		if ((iValue & 3) == 1) {
+			return (iValue >>> 2) + 128;
+		}
+		iValue |= (buffer.get() & 0xFF) << 16;
+		if ((iValue & 7) == 3) {
+			return (iValue >>> 3) + 128 + 16384;
+		}
+		iValue |= (buffer.get() & 0xFF) << 24;
+		return (iValue >>> 3) + 128 + 16384 + 2097152;
+	}
+
+	/**
+	 * Writes an integer in the packed format of RDKit.
+	 * 
+	 * @param buffer Buffer to write to. Must not be null.
+	 * @param iNum Value. Must be smaller than 2^29 + 2^21 + 2^14 + 2^7.
+	 * 
+	 * @see #readPackedInt(ByteBuffer)
+	 */
+	private static void writePackedInt(final ByteBuffer buffer, final int iNum) {
+		int iValue = iNum;
+		if (iValue < 128) {
+			buffer.put((byte)(iValue << 1));
+		}
+		else if ((iValue -= 128) < 16384) {
+			iValue = (iValue << 2) | 1;
+			buffer.put((byte)iValue).put((byte)(iValue >>> 8));
+		}
+		else if ((iValue -= 16384) < 2097152) {
+			iValue = (iValue << 3) | 3;
+			buffer.put((byte)iValue).put((byte)(iValue >>> 8)).put((byte)(iValue >>> 16));
+		}
+		else {
+			iValue = ((iValue - 2097152) << 3) | 7;
+			buffer.put((byte)iValue).put((byte)(iValue >>> 8)).put((byte)(iValue >>> 16)).put((byte)(iValue >>> 24));
+		}
+	}
+}
@@ -89,6 +89,7 @@ import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeLogger;
 import org.knime.core.node.defaultnodesettings.SettingsModelColumnName;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.rdkit.knime.types.RDKitMolDecodeCache;
 import org.rdkit.knime.types.RDKitMolValue;
 
 /**
@@ -1024,16 +1025,8 @@ public class InputDataInfo {
 
 		if (cell != null) {
 			if (cell.getType().isCompatible(BitVectorValue.class)) {
-				final BitVectorValue bitVector = ((BitVectorValue)cell);
-
-				// Convert the bit vector to RDKit style explicit bit vector
-				expBitVector = new ExplicitBitVect(bitVector.length());
-				long nextBit = bitVector.nextSetBit(0);
-
-				while (nextBit >= 0) {
-					expBitVector.setBit(nextBit);
-					nextBit = bitVector.nextSetBit(nextBit+1);
-				}
+				// Convert the bit vector to RDKit style explicit bit vector in bulk
+				expBitVector = BitVectorUtils.toExplicitBitVect((BitVectorValue)cell);
 			}
 			else {
 				throw new IllegalArgumentException("The cell in column " + getColumnSpec().getName() +
@@ -1082,6 +1075,48 @@ public class InputDataInfo {
 		return mol;
 	}
 
+	/**
+	 * Convenience method that returns the molecule of the result of {@link #getCell(DataRow)}
+	 * as read-only ROMol object, which may come from the per-thread decode cache. This avoids
+	 * unpickling the same cell repeatedly. The cell must be compatible with RDKitMolValue.
+	 * The returned molecule must neither be modified nor deleted nor registered for cleanup.
+	 * It is valid until the RDKit objects of the current row get cleaned up.
+	 * 
+	 * @param row The data row with concrete data cells. This data row must
+	 * 		belong to the table, which spec was used in the constructor.
+	 * 		Otherwise the behavior is undefined and will probably cause an
+	 * 		undefined Exception. Must not be null.
+	 * 
+	 * @return The read-only ROMol value of the correct cell.
+	 * 
+	 * @throws EmptyCellException See {@link #getCell(DataRow)}.
+	 * @throws IllegalArgumentException Thrown, if the cell is not compatible
+	 * 		with the RDKitMolValue class.
+	 * 
+	 * @see #getROMol(DataRow)
+	 * @see RDKitMolDecodeCache
+	 */
+	public ROMol getReadOnlyROMol(final DataRow row) throws EmptyCellException {
+		final DataCell cell = getCell(row);
+		RDKitMolValue value = null;
+
+		if (cell != null) {
+			if (cell.getType().isCompatible(RDKitMolValue.class)) {
+				value = (RDKitMolValue)cell;
+			}
+			else if (cell.getType().isCompatible(AdapterValue.class)
+					&& ((AdapterValue)cell).isAdaptable(RDKitMolValue.class)) {
+				value = ((AdapterValue)cell).getAdapter(RDKitMolValue.class);
+			}
+			else {
+				throw new IllegalArgumentException("The cell in column " + getColumnSpec().getName() +
+						" is not compatible with a RDKitMolValue. This is usually an implementation error.");
+			}
+		}
+
+		return RDKitMolDecodeCache.getMolecule(value);
+	}
+
 	/**
 	 * Convenience method that converts the result of {@link #getCell(DataRow)} into
 	 * a ChemicalReaction object. The cell must be compatible with RxnValue.